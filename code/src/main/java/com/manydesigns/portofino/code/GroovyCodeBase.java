@@ -20,26 +20,46 @@
 
 package com.manydesigns.portofino.code;
 
+import groovy.transform.CompileStatic;
 import groovy.util.GroovyScriptEngine;
 import groovy.util.ResourceException;
 import groovy.util.ScriptException;
+import org.apache.commons.vfs2.FileExtensionSelector;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.manydesigns.portofino.code.JavaCodeBase.classNameToPath;
 
 /**
- * CodeBase that knows how to load Groovy classes.
+ * CodeBase that knows how to load Groovy classes. By default, sources are checked for changes and recompiled when
+ * classes are loaded (development mode). After {@link #precompileAll(boolean)}, the codebase is in production mode:
+ * all the sources have been compiled once and classes are looked up in an immutable map, without accessing the file
+ * system.
  */
 public class GroovyCodeBase extends AbstractCodeBase {
     
     protected GroovyScriptEngine groovyScriptEngine;
+    /**
+     * Classes compiled ahead of time, by name. Null in development mode.
+     */
+    protected volatile Map<String, Class> precompiledClasses;
+    /**
+     * In production mode, classes loaded with {@link #loadGroovyFile(FileObject)}, by source URL.
+     */
+    protected final ConcurrentMap<String, Class> productionScripts = new ConcurrentHashMap<>();
+    protected boolean staticCompilation;
     private static final Logger logger = LoggerFactory.getLogger(GroovyCodeBase.class);
     
     public GroovyCodeBase(FileObject root) throws IOException {
@@ -54,6 +74,10 @@ public class GroovyCodeBase extends AbstractCodeBase {
     }
 
     public void resetGroovyScriptEngine() throws FileSystemException {
+        resetGroovyScriptEngine(true, false);
+    }
+
+    protected void resetGroovyScriptEngine(boolean recompile, boolean staticCompilation) throws FileSystemException {
         CompilerConfiguration cc = new CompilerConfiguration(CompilerConfiguration.DEFAULT);
         try {
             String classpath = this.root.getName().getPath();
@@ -61,10 +85,71 @@ public class GroovyCodeBase extends AbstractCodeBase {
         } catch (Exception e) {
             logger.debug("Could not set classpath", e);
         }
-        cc.setRecompileGroovySource(true);
+        cc.setRecompileGroovySource(recompile);
+        if(staticCompilation) {
+            cc.addCompilationCustomizers(new ASTTransformationCustomizer(CompileStatic.class));
+        }
         groovyScriptEngine = new GroovyScriptEngine(new URL[] { this.root.getURL() }, parent != null ? parent.asClassLoader() : getClassLoader());
         groovyScriptEngine.setConfig(cc);
-        groovyScriptEngine.getGroovyClassLoader().setShouldRecompile(Boolean.TRUE);
+        groovyScriptEngine.getGroovyClassLoader().setShouldRecompile(recompile);
+        precompiledClasses = null;
+        productionScripts.clear();
+    }
+
+    /**
+     * Switches to production mode, compiling all the Groovy sources under the root of this codebase. Afterwards,
+     * sources are no longer checked for changes; {@link #clear(boolean)} compiles them again.
+     * @param staticCompilation whether to try to compile the sources with <code>@CompileStatic</code>. If any source
+     *                          cannot be compiled statically, all the sources are compiled dynamically instead, so that
+     *                          there is only one version of each class.
+     */
+    public synchronized void precompileAll(boolean staticCompilation) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, Class> classes;
+        if(staticCompilation) {
+            try {
+                classes = compileAll(true);
+            } catch (ScriptException | ResourceException | RuntimeException e) {
+                logger.warn("Static compilation of " + root + " failed, compiling dynamically", e);
+                classes = null;
+            }
+        } else {
+            classes = null;
+        }
+        this.staticCompilation = staticCompilation;
+        try {
+            if(classes == null) {
+                classes = compileAll(false);
+            }
+        } catch (ScriptException | ResourceException | RuntimeException e) {
+            resetGroovyScriptEngine();
+            throw new IOException("Could not compile the Groovy sources in " + root, e);
+        }
+        precompiledClasses = Collections.unmodifiableMap(classes);
+        logger.info("Compiled {} Groovy classes in {} in {}ms",
+                classes.size(), root, System.currentTimeMillis() - start);
+    }
+
+    protected Map<String, Class> compileAll(boolean staticCompilation)
+            throws FileSystemException, ResourceException, ScriptException {
+        resetGroovyScriptEngine(false, staticCompilation);
+        Map<String, Class> classes = new HashMap<>();
+        FileObject[] sources = root.findFiles(new FileExtensionSelector("groovy"));
+        if(sources == null) {
+            return classes;
+        }
+        for(FileObject source : sources) {
+            String path = root.getName().getRelativeName(source.getName());
+            String className = path.substring(0, path.length() - ".groovy".length()).replace('/', '.');
+            Class theClass = groovyScriptEngine.loadScriptByName(source.getURL().toString());
+            classes.put(className, theClass);
+            productionScripts.put(source.getURL().toString(), theClass);
+        }
+        return classes;
+    }
+
+    public boolean isProductionMode() {
+        return precompiledClasses != null;
     }
 
     public GroovyCodeBase(FileObject root, CodeBase parent) throws IOException {
@@ -73,6 +158,10 @@ public class GroovyCodeBase extends AbstractCodeBase {
 
     @Override
     protected Class loadLocalClass(String className) throws IOException, ClassNotFoundException {
+        Map<String, Class> precompiledClasses = this.precompiledClasses;
+        if(precompiledClasses != null) {
+            return precompiledClasses.get(className);
+        }
         String resourceName = classNameToPath(className);
         FileObject fileObject = root.resolveFile(resourceName + ".groovy");
         if(fileObject.exists()) {
@@ -88,7 +177,20 @@ public class GroovyCodeBase extends AbstractCodeBase {
     }
 
     public Class loadGroovyFile(FileObject fileObject) throws FileSystemException, ResourceException, ScriptException {
-        return groovyScriptEngine.loadScriptByName(fileObject.getURL().toString());
+        String url = fileObject.getURL().toString();
+        if(precompiledClasses == null) {
+            return groovyScriptEngine.loadScriptByName(url);
+        }
+        //Sources outside the root (e.g. actions) are compiled on first use and never checked again
+        Class theClass = productionScripts.get(url);
+        if(theClass == null) {
+            theClass = groovyScriptEngine.loadScriptByName(url);
+            Class existing = productionScripts.putIfAbsent(url, theClass);
+            if(existing != null) {
+                theClass = existing;
+            }
+        }
+        return theClass;
     }
 
     @Override
@@ -99,6 +201,10 @@ public class GroovyCodeBase extends AbstractCodeBase {
     @Override
     public void clear(boolean recursively) throws Exception {
         super.clear(recursively);
-        resetGroovyScriptEngine();
+        if(precompiledClasses != null) {
+            precompileAll(staticCompilation);
+        } else {
+            resetGroovyScriptEngine();
+        }
     }
 }
@@ -35,6 +35,9 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
@@ -50,6 +53,16 @@ public class JavaCodeBase extends AbstractCodeBase {
     protected InMemoryFileManager fileManager;
     protected VFSClassloader sourceClassloader;
     protected VFSClassloader compiledClassloader;
+    /**
+     * Where classes compiled in batch are stored across restarts. If null, each source file is compiled on demand,
+     * in memory, the first time its class is requested.
+     */
+    protected FileObject compiledClassesCache;
+    protected FileObject batchDirectory;
+    protected VFSClassloader batchClassloader;
+    protected boolean batchFailed;
+
+    public static final String BATCH_COMPLETE_MARKER = ".complete";
 
     private static final Logger logger = LoggerFactory.getLogger(JavaCodeBase.class);
 
@@ -71,6 +84,9 @@ public class JavaCodeBase extends AbstractCodeBase {
             sourceClassloader = new VFSClassloader(fileManager.directory, getClassLoader());
         }
         compiledClassloader = new VFSClassloader(root, getClassLoader());
+        batchDirectory = null;
+        batchClassloader = null;
+        batchFailed = false;
     }
 
     public JavaCodeBase(FileObject root, CodeBase parent) throws IOException {
@@ -84,9 +100,16 @@ public class JavaCodeBase extends AbstractCodeBase {
         if(fileObject.exists()) {
             return compiledClassloader.loadClass(className);
         }
-        fileObject = root.resolveFile(resourceName + ".java");
+        //Nested classes have no source file of their own, but they're compiled in the batch with their outer class
+        String topLevelClassName = StringUtils.substringBefore(className, "$");
+        fileObject = root.resolveFile(classNameToPath(topLevelClassName) + ".java");
         if(fileObject.exists()) {
-            if(compiler != null) {
+            Class batchClass = loadBatchCompiledClass(className);
+            if(batchClass != null) {
+                return batchClass;
+            } else if(!topLevelClassName.equals(className)) {
+                return null;
+            } else if(compiler != null) {
                 return loadJavaFile(fileObject, className);
             } else {
                 throw new ClassNotFoundException("Java compiler not available to compile " + fileObject.getName().getPath());
@@ -124,6 +147,216 @@ public class JavaCodeBase extends AbstractCodeBase {
         }
     }
 
+    /**
+     * Loads a class from the batch compiled classes, compiling all the sources in this codebase first if they're not
+     * in the cache.
+     * @param className the name of the class.
+     * @return the class, or null if the cache is disabled or batch compilation has failed.
+     */
+    protected synchronized Class loadBatchCompiledClass(String className) throws FileSystemException, ClassNotFoundException {
+        if(compiledClassesCache == null || batchFailed) {
+            return null;
+        }
+        if(batchClassloader == null) {
+            try {
+                compileAll();
+            } catch (Exception e) {
+                logger.warn("Batch compilation failed, falling back to compiling each class on demand", e);
+            }
+            if(batchClassloader == null) {
+                batchFailed = true;
+                return null;
+            }
+        }
+        if(batchDirectory.resolveFile(classNameToPath(className) + ".class").exists()) {
+            return batchClassloader.loadClass(className);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Compiles all the Java sources in this codebase as a single compilation unit and stores the resulting classes
+     * in the compiled classes cache, unless they're already there. Cached classes are keyed by a hash of all
+     * the sources visible to this codebase (including those of the parent codebases, which they might depend on),
+     * the class path and the Java version; so, changing any source invalidates the whole batch. Stale batches of
+     * this codebase are deleted when a new one is compiled; other codebases can share the same cache directory.
+     * @throws Exception if the sources could not be read or compiled, or the cache could not be written.
+     */
+    public synchronized void compileAll() throws Exception {
+        if(compiledClassesCache == null) {
+            throw new IllegalStateException("The compiled classes cache is not configured");
+        }
+        List<FileObject> sources = new ArrayList<>();
+        collectSources(root, sources);
+        String batchName = getBatchPrefix() + computeFingerprint();
+        FileObject cachedBatch = compiledClassesCache.resolveFile(batchName);
+        if(!cachedBatch.resolveFile(BATCH_COMPLETE_MARKER).exists()) {
+            if(compiler == null) {
+                throw new IllegalStateException("Java compiler not available to compile " + root);
+            }
+            logger.info("Compiling {} Java sources in {}", sources.size(), root);
+            long start = System.currentTimeMillis();
+            List<JavaFileObject> compilationUnits = new ArrayList<>(sources.size());
+            for(FileObject source : sources) {
+                String binaryName = FilenameUtils.removeExtension(
+                        root.getName().getRelativeName(source.getName())).replace(FileName.SEPARATOR_CHAR, '.');
+                compilationUnits.add(new VFSJavaFileObject(JavaFileObject.Kind.SOURCE, source, binaryName));
+            }
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(null, fileManager, diagnostics, getCompilerOptions(), null, compilationUnits);
+            if(!task.call()) {
+                for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    logger.warn("{}", diagnostic);
+                }
+                throw new Exception("Compilation errors in " + root);
+            }
+            FileObject tempBatch = compiledClassesCache.resolveFile(batchName + ".tmp");
+            tempBatch.deleteAll();
+            tempBatch.createFolder();
+            tempBatch.copyFrom(fileManager.directory, Selectors.EXCLUDE_SELF);
+            tempBatch.resolveFile(BATCH_COMPLETE_MARKER).createFile();
+            cachedBatch.deleteAll();
+            tempBatch.moveTo(cachedBatch);
+            logger.info("Compiled {} Java sources in {}ms", sources.size(), System.currentTimeMillis() - start);
+            deleteStaleBatches(cachedBatch);
+        } else {
+            logger.info("Loading compiled classes for {} from {}", root, cachedBatch);
+        }
+        batchDirectory = cachedBatch;
+        batchClassloader = new VFSClassloader(cachedBatch, getClassLoader());
+    }
+
+    protected void collectSources(FileObject directory, List<FileObject> sources) throws FileSystemException {
+        FileObject[] files = directory.findFiles(new FileExtensionSelector("java"));
+        if(files != null) {
+            Arrays.sort(files, Comparator.comparing((FileObject f) -> f.getName().getPath()));
+            sources.addAll(Arrays.asList(files));
+        }
+    }
+
+    protected String computeFingerprint() throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(String.valueOf(System.getProperty("java.version")).getBytes(StandardCharsets.UTF_8));
+        digestClassPath(digest);
+        CodeBase codeBase = this;
+        while (codeBase instanceof JavaCodeBase) {
+            FileObject codeBaseRoot = codeBase.getRoot();
+            List<FileObject> sources = new ArrayList<>();
+            ((JavaCodeBase) codeBase).collectSources(codeBaseRoot, sources);
+            for(FileObject source : sources) {
+                digest.update(codeBaseRoot.getName().getRelativeName(source.getName()).getBytes(StandardCharsets.UTF_8));
+                try(InputStream inputStream = source.getContent().getInputStream()) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = inputStream.read(buffer)) > 0) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            }
+            codeBase = codeBase.getParent();
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        for(byte b : digest.digest()) {
+            fingerprint.append(String.format("%02x", b));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Adds the class path that compiled classes depend on to the fingerprint: the system class path, and the URLs of
+     * the class loaders of this codebase (e.g. WEB-INF/classes and WEB-INF/lib in a servlet container), together with
+     * the size and modification time of the files they point to, so that replacing a library invalidates the cache.
+     */
+    protected void digestClassPath(MessageDigest digest) throws IOException {
+        String classPath = String.valueOf(System.getProperty("java.class.path"));
+        digest.update(classPath.getBytes(StandardCharsets.UTF_8));
+        for(String entry : classPath.split(File.pathSeparator)) {
+            File file = new File(entry);
+            if(file.isFile()) { //Directories (e.g. ".") could be huge
+                digestFile(digest, file);
+            }
+        }
+        for(ClassLoader loader = getClassLoader(); loader != null; loader = loader.getParent()) {
+            if(loader instanceof URLClassLoader) {
+                for(URL url : ((URLClassLoader) loader).getURLs()) {
+                    digest.update(url.toString().getBytes(StandardCharsets.UTF_8));
+                    if("file".equals(url.getProtocol())) {
+                        try {
+                            digestFile(digest, new File(url.toURI()));
+                        } catch (URISyntaxException | IllegalArgumentException e) {
+                            logger.debug("Not a file: " + url, e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    protected void digestFile(MessageDigest digest, File file) {
+        if(file.isDirectory()) {
+            File[] children = file.listFiles();
+            if(children != null) {
+                Arrays.sort(children);
+                for(File child : children) {
+                    digest.update(child.getName().getBytes(StandardCharsets.UTF_8));
+                    digestFile(digest, child);
+                }
+            }
+        } else if(file.isFile()) {
+            digest.update((file.length() + ":" + file.lastModified()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the prefix of the names of the batches compiled for this codebase, derived from its root, so that
+     * codebases sharing the cache directory (e.g. a parent and its children) don't touch each other's batches.
+     */
+    protected String getBatchPrefix() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest(root.getName().getURI().getBytes(StandardCharsets.UTF_8));
+        StringBuilder prefix = new StringBuilder();
+        for(int i = 0; i < 8; i++) {
+            prefix.append(String.format("%02x", hash[i]));
+        }
+        return prefix.append("-").toString();
+    }
+
+    /**
+     * Deletes the batches compiled for previous versions of the sources or of the class path of this codebase.
+     * @param currentBatch the batch to keep.
+     */
+    protected void deleteStaleBatches(FileObject currentBatch) {
+        try {
+            String prefix = getBatchPrefix();
+            for(FileObject batch : compiledClassesCache.getChildren()) {
+                if(batch.getName().getBaseName().startsWith(prefix) &&
+                   !batch.getName().equals(currentBatch.getName())) {
+                    logger.debug("Deleting stale compiled classes {}", batch);
+                    batch.deleteAll();
+                }
+            }
+        } catch (FileSystemException | NoSuchAlgorithmException e) {
+            logger.warn("Could not delete stale compiled classes in " + compiledClassesCache, e);
+        }
+    }
+
+    public FileObject getCompiledClassesCache() {
+        return compiledClassesCache;
+    }
+
+    /**
+     * Enables batch compilation with the given directory as the persistent cache of compiled classes.
+     * @param compiledClassesCache the cache directory, or null to compile each class on demand.
+     */
+    public synchronized void setCompiledClassesCache(FileObject compiledClassesCache) {
+        this.compiledClassesCache = compiledClassesCache;
+        batchDirectory = null;
+        batchClassloader = null;
+        batchFailed = false;
+    }
+
     protected List<String> getCompilerOptions() throws URISyntaxException {
         StringBuilder classpath = new StringBuilder();
         String separator = System.getProperty("path.separator");
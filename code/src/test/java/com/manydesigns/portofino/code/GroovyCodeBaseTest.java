@@ -0,0 +1,65 @@
+package com.manydesigns.portofino.code;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.testng.Assert.*;
+
+public class GroovyCodeBaseTest {
+
+    File directory;
+    FileObject sources;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("portofino-codebase").toFile();
+        File sourceDir = new File(directory, "pkg");
+        FileUtils.write(new File(sourceDir, "A.groovy"),
+                "package pkg\nclass A { B b = new B() }", StandardCharsets.UTF_8);
+        FileUtils.write(new File(sourceDir, "B.groovy"),
+                "package pkg\nclass B { def hello() { 'hello'.missingMethod() } }", StandardCharsets.UTF_8);
+        sources = VFS.getManager().resolveFile(directory.toURI().toString());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testPrecompiledClassesAreNotReloaded() throws Exception {
+        GroovyCodeBase codeBase = new GroovyCodeBase(sources);
+        codeBase.precompileAll(false);
+        assertTrue(codeBase.isProductionMode());
+        Class a = codeBase.loadClass("pkg.A");
+        assertEquals(a.getName(), "pkg.A");
+
+        File source = new File(directory, "pkg/A.groovy");
+        FileUtils.write(source, "package pkg\nclass A { String changed }", StandardCharsets.UTF_8);
+        source.setLastModified(System.currentTimeMillis() + 10000);
+        assertSame(codeBase.loadClass("pkg.A"), a);
+        assertSame(codeBase.loadGroovyFile(sources.resolveFile("pkg/A.groovy")), a);
+
+        codeBase.clear(false);
+        assertTrue(codeBase.isProductionMode());
+        assertNotSame(codeBase.loadClass("pkg.A"), a);
+        codeBase.close();
+    }
+
+    @Test
+    public void testStaticCompilationFallsBackToDynamic() throws Exception {
+        GroovyCodeBase codeBase = new GroovyCodeBase(sources);
+        //B calls a method that does not exist, which only compiles dynamically
+        codeBase.precompileAll(true);
+        assertEquals(codeBase.loadClass("pkg.B").getName(), "pkg.B");
+        codeBase.close();
+    }
+}
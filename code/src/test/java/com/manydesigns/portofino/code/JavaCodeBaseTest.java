@@ -0,0 +1,113 @@
+package com.manydesigns.portofino.code;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.testng.Assert.*;
+
+public class JavaCodeBaseTest {
+
+    File directory;
+    FileObject sources;
+    FileObject cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("portofino-codebase").toFile();
+        File sourceDir = new File(directory, "src/pkg");
+        FileUtils.write(new File(sourceDir, "A.java"),
+                "package pkg; public class A { public B b = new B(); }", StandardCharsets.UTF_8);
+        FileUtils.write(new File(sourceDir, "B.java"),
+                "package pkg; public class B { public static class Inner {} }", StandardCharsets.UTF_8);
+        sources = VFS.getManager().resolveFile(new File(directory, "src").toURI().toString());
+        cache = VFS.getManager().resolveFile(new File(directory, "cache").toURI().toString());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testBatchCompilationIsCached() throws Exception {
+        JavaCodeBase codeBase = new JavaCodeBase(sources);
+        codeBase.setCompiledClassesCache(cache);
+        Class a = codeBase.loadClass("pkg.A");
+        assertEquals(a.getName(), "pkg.A");
+        assertEquals(codeBase.loadClass("pkg.B").getName(), "pkg.B");
+        assertEquals(cache.getChildren().length, 1);
+        codeBase.close();
+
+        //Simulate a restart without a compiler: classes must come from the cache
+        codeBase = new JavaCodeBase(sources);
+        codeBase.compiler = null;
+        codeBase.setCompiledClassesCache(cache);
+        assertEquals(codeBase.loadClass("pkg.A").getName(), "pkg.A");
+        assertEquals(codeBase.loadClass("pkg.B$Inner").getName(), "pkg.B$Inner");
+        codeBase.close();
+    }
+
+    @Test
+    public void testChangedSourceInvalidatesCache() throws Exception {
+        JavaCodeBase codeBase = new JavaCodeBase(sources);
+        codeBase.setCompiledClassesCache(cache);
+        codeBase.compileAll();
+        String fingerprint = codeBase.computeFingerprint();
+        FileUtils.write(new File(directory, "src/pkg/B.java"),
+                "package pkg; public class B { public int x; }", StandardCharsets.UTF_8);
+        assertNotEquals(codeBase.computeFingerprint(), fingerprint);
+        codeBase.clear();
+        assertNotNull(codeBase.loadClass("pkg.B").getField("x"));
+        codeBase.close();
+    }
+
+    @Test
+    public void testChangedLibraryInvalidatesCache() throws Exception {
+        File lib = new File(directory, "lib");
+        File jar = new File(lib, "library.jar");
+        FileUtils.write(jar, "v1", StandardCharsets.UTF_8);
+        URLClassLoader classLoader = new URLClassLoader(new URL[] { lib.toURI().toURL() }, getClass().getClassLoader());
+        JavaCodeBase codeBase = new JavaCodeBase(sources, null, classLoader);
+        codeBase.setCompiledClassesCache(cache);
+        codeBase.compileAll();
+        String fingerprint = codeBase.computeFingerprint();
+        FileUtils.write(jar, "version 2", StandardCharsets.UTF_8);
+        assertNotEquals(codeBase.computeFingerprint(), fingerprint);
+
+        //Recompiling deletes the stale batch
+        codeBase.compileAll();
+        assertEquals(cache.getChildren().length, 1);
+        assertEquals(
+                cache.getChildren()[0].getName().getBaseName(),
+                codeBase.getBatchPrefix() + codeBase.computeFingerprint());
+        codeBase.close();
+    }
+
+    @Test
+    public void testCodeBasesSharingTheCacheKeepTheirBatches() throws Exception {
+        File childDir = new File(directory, "child/pkg2");
+        FileUtils.write(new File(childDir, "C.java"),
+                "package pkg2; public class C { public pkg.A a = new pkg.A(); }", StandardCharsets.UTF_8);
+        FileObject childSources = VFS.getManager().resolveFile(new File(directory, "child").toURI().toString());
+        JavaCodeBase parent = new JavaCodeBase(sources);
+        parent.setCompiledClassesCache(cache);
+        JavaCodeBase child = new JavaCodeBase(childSources, parent);
+        child.setCompiledClassesCache(cache);
+        assertEquals(child.loadClass("pkg2.C").getName(), "pkg2.C");
+        parent.compileAll();
+        child.compileAll();
+        assertEquals(cache.getChildren().length, 2);
+        child.close();
+        parent.close();
+    }
+}
@@ -21,9 +21,13 @@
 package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import org.hibernate.dialect.DB2Dialect;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
 * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -65,4 +69,11 @@ public class IbmDb2DatabasePlatform extends AbstractDatabasePlatform {
     public boolean isApplicable(ConnectionProvider connectionProvider) {
         return connectionProvider.getDatabaseProductName().startsWith("DB2/");
     }
+
+    @Override
+    protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout) throws SQLException {
+        //card is -1 if runstats has never been run on the table
+        String sql = "select card from syscat.tables where tabschema = ? and tabname = ?";
+        return queryRowCount(connection, sql, queryTimeout, table.getSchemaName(), table.getTableName());
+    }
 }
@@ -79,4 +79,10 @@ public class JTDSDatabasePlatform extends AbstractDatabasePlatform {
                 .startsWith("Microsoft SQL Server") &&
 	       connectionProvider.getDriverName().contains("jTDS");
     }
+
+    @Override
+    public String getFullTextSearchCondition(String column, String parameter) {
+        //Full-text indexes require a catalog and a unique key index, so only the substring match is supported
+        return "lower(" + column + ") like lower('%' + " + parameter + " + '%')";
+    }
 }
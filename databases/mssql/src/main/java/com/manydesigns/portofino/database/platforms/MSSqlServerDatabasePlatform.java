@@ -21,9 +21,13 @@
 package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import org.hibernate.dialect.SQLServerDialect;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
 * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -64,4 +68,21 @@ public class MSSqlServerDatabasePlatform extends AbstractDatabasePlatform {
                 .startsWith("Microsoft SQL Server") &&
 	       !connectionProvider.getDriverName().contains("jTDS");
     }
+
+    @Override
+    protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout) throws SQLException {
+        //Heap (0) or clustered index (1) partitions hold one entry per row
+        String sql =
+                "select sum(p.rows) from sys.partitions p " +
+                "join sys.tables t on t.object_id = p.object_id " +
+                "join sys.schemas s on s.schema_id = t.schema_id " +
+                "where s.name = ? and t.name = ? and p.index_id in (0, 1)";
+        return queryRowCount(connection, sql, queryTimeout, table.getSchemaName(), table.getTableName());
+    }
+
+    @Override
+    public String getFullTextSearchCondition(String column, String parameter) {
+        //Full-text indexes require a catalog and a unique key index, so only the substring match is supported
+        return "lower(" + column + ") like lower('%' + " + parameter + " + '%')";
+    }
 }
@@ -64,5 +64,13 @@ public class MariaDBDatabasePlatform extends MySql5DatabasePlatform {
         return false;
     }
 
+    /**
+     * Unlike MySQL Connector/J, the MariaDB driver streams the results when the fetch size is positive.
+     */
+    @Override
+    public int getStreamingFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+
 }
 
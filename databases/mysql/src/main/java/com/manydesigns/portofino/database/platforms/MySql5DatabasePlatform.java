@@ -21,9 +21,11 @@
 package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import org.hibernate.dialect.MySQLDialect;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -78,5 +80,43 @@ public class MySql5DatabasePlatform extends AbstractDatabasePlatform {
         }
         return schemaNames;
     }
-}
 
+    @Override
+    protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout) throws SQLException {
+        String sql = "select table_rows from information_schema.tables where table_schema = ? and table_name = ?";
+        return queryRowCount(connection, sql, queryTimeout, table.getSchemaName(), table.getTableName());
+    }
+
+    /**
+     * MySQL rejects this condition (error 1191) if the column has no FULLTEXT index: see
+     * {@link #ensureFullTextIndex(Connection, Table, String)}.
+     */
+    @Override
+    public String getFullTextSearchCondition(String column, String parameter) {
+        return "match(" + column + ") against (" + parameter + ")";
+    }
+
+    @Override
+    public String getFullTextIndexStatement(String indexName, String tableName, String columnName) {
+        return "create fulltext index " + indexName + " on " + tableName + " (" + columnName + ")";
+    }
+
+    /**
+     * MySQL Connector/J ignores positive fetch sizes (unless the connection has <code>useCursorFetch=true</code>) and
+     * reads the whole result set in memory; it only streams the results row by row with this special value. While
+     * such a result set is open, the connection can't run other statements.
+     */
+    @Override
+    public int getStreamingFetchSize(int fetchSize) {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    protected boolean hasFullTextIndex(Connection connection, Table table, String columnName) throws SQLException {
+        String sql =
+                "select count(*) from information_schema.statistics " +
+                "where table_schema = ? and table_name = ? and column_name = ? and index_type = 'FULLTEXT'";
+        Long count = queryRowCount(connection, sql, 0, table.getSchemaName(), table.getTableName(), columnName);
+        return count != null && count > 0;
+    }
+}
@@ -21,9 +21,11 @@
 package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import org.hibernate.dialect.Oracle9iDialect;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -73,4 +75,10 @@ public class OracleDatabasePlatform extends AbstractDatabasePlatform {
         schemaNames.removeIf(schemaName -> "SYS".equals(schemaName[1]) || "SYSTEM".equals(schemaName[1]));
         return schemaNames;
     }
+
+    @Override
+    protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout) throws SQLException {
+        String sql = "select num_rows from all_tables where owner = ? and table_name = ?";
+        return queryRowCount(connection, sql, queryTimeout, table.getSchemaName(), table.getTableName());
+    }
 }
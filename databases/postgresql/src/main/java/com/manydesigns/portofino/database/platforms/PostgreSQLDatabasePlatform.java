@@ -22,11 +22,13 @@ package com.manydesigns.portofino.database.platforms;
 
 import com.manydesigns.portofino.model.database.Column;
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
 import com.manydesigns.portofino.persistence.hibernate.ColumnParameterType;
 import org.hibernate.dialect.PostgreSQL82Dialect;
 import org.hibernate.usertype.DynamicParameterizedType;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -95,4 +97,35 @@ public class PostgreSQLDatabasePlatform extends AbstractDatabasePlatform {
         schemaNames.removeIf(schema -> "information_schema".equalsIgnoreCase(schema[1]) || schema[1].startsWith("pg_"));
         return schemaNames;
     }
+
+    @Override
+    protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout) throws SQLException {
+        //reltuples is -1 (or 0 with no pages on versions before 14) if the table has never been analyzed
+        String sql =
+                "select case when c.relpages = 0 and c.reltuples = 0 then -1 else c.reltuples end " +
+                "from pg_catalog.pg_class c join pg_catalog.pg_namespace n on n.oid = c.relnamespace " +
+                "where n.nspname = ? and c.relname = ?";
+        return queryRowCount(connection, sql, queryTimeout, table.getSchemaName(), table.getTableName());
+    }
+
+    /**
+     * The text search configuration used both to search and to index. It must be the same in both places, otherwise
+     * PostgreSQL won't use the index.
+     */
+    protected String getTextSearchConfiguration() {
+        return "'simple'";
+    }
+
+    @Override
+    public String getFullTextSearchCondition(String column, String parameter) {
+        String configuration = getTextSearchConfiguration();
+        return "to_tsvector(" + configuration + ", " + column + ") @@ " +
+               "plainto_tsquery(" + configuration + ", " + parameter + ")";
+    }
+
+    @Override
+    public String getFullTextIndexStatement(String indexName, String tableName, String columnName) {
+        return "create index " + indexName + " on " + tableName +
+               " using gin (to_tsvector(" + getTextSearchConfiguration() + ", " + columnName + "))";
+    }
 }
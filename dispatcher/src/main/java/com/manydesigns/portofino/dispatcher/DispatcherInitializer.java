@@ -49,6 +49,19 @@ public abstract class DispatcherInitializer {
 
     private static final Logger logger = LoggerFactory.getLogger(DispatcherInitializer.class);
 
+    /**
+     * Directory, relative to the application root, where compiled Java classes are cached across restarts.
+     */
+    public static final String JAVA_COMPILED_CLASSES_CACHE = "portofino.codebase.java.cache";
+    /**
+     * Whether to compile all Groovy sources at startup and never check them for changes (production mode).
+     */
+    public static final String GROOVY_PRECOMPILE = "portofino.codebase.groovy.precompile";
+    /**
+     * In production mode, whether to try to compile Groovy sources statically.
+     */
+    public static final String GROOVY_STATIC_COMPILATION = "portofino.codebase.groovy.static";
+
     public FileObject getApplicationRoot() {
         return applicationRoot;
     }
@@ -139,6 +152,12 @@ public abstract class DispatcherInitializer {
         //TODO auto discovery?
         FileObject codeBaseRoot = getCodeBaseRoot();
         JavaCodeBase javaCodeBase = new JavaCodeBase(codeBaseRoot, null, getClass().getClassLoader());
+        String compiledClassesCache = getConfiguration().getString(JAVA_COMPILED_CLASSES_CACHE);
+        if(compiledClassesCache != null) {
+            FileObject cacheDirectory = applicationRoot.resolveFile(compiledClassesCache);
+            logger.info("Java sources will be compiled in batch, caching compiled classes in {}", cacheDirectory);
+            javaCodeBase.setCompiledClassesCache(cacheDirectory);
+        }
         CodeBase codeBase = javaCodeBase;
         try {
             Class<?> gcb = Class.forName("com.manydesigns.portofino.code.GroovyCodeBase");
@@ -147,6 +166,16 @@ public abstract class DispatcherInitializer {
             logger.info("Groovy is available");
         } catch (Exception e) {
             logger.debug("Groovy not available", e);
+            return codeBase;
+        }
+        if(getConfiguration().getBoolean(GROOVY_PRECOMPILE, false)) {
+            logger.info("Compiling Groovy sources ahead of time, hot reload is disabled");
+            try {
+                codeBase.getClass().getMethod("precompileAll", boolean.class).invoke(
+                        codeBase, getConfiguration().getBoolean(GROOVY_STATIC_COMPILATION, false));
+            } catch (Exception e) {
+                logger.error("Could not compile Groovy sources, hot reload remains enabled", e);
+            }
         }
         return codeBase;
     }
@@ -5,6 +5,8 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 public class DefaultFieldEncrypter implements FieldEncrypter {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultFieldEncrypter.class);
@@ -32,4 +34,15 @@ public class DefaultFieldEncrypter implements FieldEncrypter {
         }
         return value;
     }
+
+    @Override
+    public List<String> decrypt(List<String> values) {
+        try {
+            return CryptoService.getInstance().decrypt(values);
+        } catch (Exception e) {
+            logger.error("DefaultFieldEncrypter.decrypt error:"+e.getMessage(),e);
+        }
+        //Decrypt the values that can be decrypted, leaving the others as they are
+        return FieldEncrypter.super.decrypt(values);
+    }
 }
@@ -22,6 +22,7 @@ package com.manydesigns.elements;
 
 import com.manydesigns.elements.blobs.MultipartWrapper;
 import com.manydesigns.elements.i18n.TextProvider;
+import com.manydesigns.elements.util.RequestTimings;
 import ognl.OgnlContext;
 
 import javax.servlet.ServletContext;
@@ -44,6 +45,7 @@ public class ElementsContext {
     protected ServletContext servletContext;
     protected OgnlContext ognlContext;
     protected MultipartWrapper multipart;
+    protected RequestTimings requestTimings;
 
     //**************************************************************************
     // Constructors
@@ -101,4 +103,12 @@ public class ElementsContext {
     public void setMultipart(MultipartWrapper multipart) {
         this.multipart = multipart;
     }
+
+    public RequestTimings getRequestTimings() {
+        return requestTimings;
+    }
+
+    public void setRequestTimings(RequestTimings requestTimings) {
+        this.requestTimings = requestTimings;
+    }
 }
@@ -138,6 +138,7 @@ public final class ElementsThreadLocals {
         elementsContext.setHttpServletRequest(null);
         elementsContext.setHttpServletResponse(null);
         elementsContext.setServletContext(null);
+        elementsContext.setRequestTimings(null);
     }
 
     public static void removeElementsContext() {
@@ -1,8 +1,28 @@
 package com.manydesigns.elements;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encrypts and decrypts the values of the fields annotated with {@link com.manydesigns.elements.annotations.Encrypted}.
+ * A single instance of each implementation is shared by all such fields, so implementations must be thread-safe.
+ */
 public interface FieldEncrypter {
 
   public String encrypt(String value);
 
   public String decrypt(String value);
+
+  /**
+   * Decrypts many values at once, e.g. a column of a page of search results. The default implementation decrypts
+   * them one by one.
+   * @return the decrypted values, in the same order.
+   */
+  default List<String> decrypt(List<String> values) {
+    List<String> decrypted = new ArrayList<>(values.size());
+    for (String value : values) {
+      decrypted.add(decrypt(value));
+    }
+    return decrypted;
+  }
 }
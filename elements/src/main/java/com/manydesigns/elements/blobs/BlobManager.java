@@ -20,8 +20,12 @@
 
 package com.manydesigns.elements.blobs;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 
 /**
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -37,6 +41,37 @@ public interface BlobManager {
 
     InputStream openStream(Blob blob) throws IOException;
 
+    /**
+     * Opens a stream over a range of the contents of a blob, e.g. to answer a partial content request. The default
+     * implementation opens the whole blob and skips the bytes before the range; managers that can read a range
+     * directly should override it.
+     * @param blob the blob.
+     * @param offset the index of the first byte to read.
+     * @param length the number of bytes to read.
+     * @return the stream, that is also set on the blob.
+     */
+    default InputStream openStream(Blob blob, long offset, long length) throws IOException {
+        InputStream inputStream = openStream(blob);
+        try {
+            IOUtils.skipFully(inputStream, offset);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+        blob.setInputStream(new BoundedInputStream(inputStream, length));
+        return blob.getInputStream();
+    }
+
+    /**
+     * Returns a URL from which clients can download the contents of a blob directly, without them passing through
+     * the application. The default implementation returns null, meaning that the application serves the contents.
+     * @param blob the blob, with its metadata loaded.
+     * @return the URL, or null if direct downloads are not supported or not enabled.
+     */
+    default URL getDirectDownloadUrl(Blob blob) throws IOException {
+        return null;
+    }
+
     void save(Blob blob) throws IOException;
 
     boolean delete(Blob blob) throws IOException;
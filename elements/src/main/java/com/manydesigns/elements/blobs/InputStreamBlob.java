@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.blobs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * A {@link java.sql.Blob} whose contents are read, only once, from a stream of known length, so that they can be
+ * passed to the JDBC driver without holding them in memory. It only supports {@link #length()},
+ * {@link #getBinaryStream()} and {@link #free()}.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class InputStreamBlob implements java.sql.Blob {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    protected final long length;
+    protected InputStream inputStream;
+    protected boolean consumed;
+
+    public InputStreamBlob(InputStream inputStream, long length) {
+        this.inputStream = inputStream;
+        this.length = length;
+    }
+
+    @Override
+    public long length() throws SQLException {
+        return length;
+    }
+
+    @Override
+    public InputStream getBinaryStream() throws SQLException {
+        if(inputStream == null) {
+            throw new SQLException("The blob has been freed");
+        }
+        if(consumed) {
+            throw new SQLException("The contents of the blob can only be read once");
+        }
+        consumed = true;
+        return inputStream;
+    }
+
+    @Override
+    public void free() throws SQLException {
+        if(inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                throw new SQLException("Could not close the blob stream", e);
+            } finally {
+                inputStream = null;
+            }
+        }
+    }
+
+    @Override
+    public byte[] getBytes(long pos, int length) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public InputStream getBinaryStream(long pos, long length) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public long position(byte[] pattern, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public long position(java.sql.Blob pattern, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public int setBytes(long pos, byte[] bytes) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public OutputStream setBinaryStream(long pos) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public void truncate(long len) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
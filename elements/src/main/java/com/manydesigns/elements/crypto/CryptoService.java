@@ -7,25 +7,82 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CryptoService {
 
   //Affect resulting file size
   private String typeAlgo = "AES";
-  private static CryptoService single;
+
+  /**
+   * Bulk decryption of at least this many values uses several threads.
+   */
+  public static final int PARALLEL_DECRYPTION_THRESHOLD = 256;
+
+  /**
+   * Maximum number of initialized ciphers kept for reuse, per mode.
+   */
+  public static final int CIPHER_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  //After the constants used by the constructor, so that they are initialized when the instance is created
+  private static final CryptoService single = new CryptoService();
+
+  //Ciphers are expensive to obtain and initialize, so a few of them per mode are kept, initialized with the key.
+  //Unlike thread-locals, a pool does not leave ciphers behind in the container's threads when the application stops.
+  private final BlockingQueue<PooledCipher> encryptCiphers = new ArrayBlockingQueue<>(CIPHER_POOL_SIZE);
+  private final BlockingQueue<PooledCipher> decryptCiphers = new ArrayBlockingQueue<>(CIPHER_POOL_SIZE);
+  private volatile SecretKey key;
 
   public String getTypeAlgo(){
     return typeAlgo;
   }
 
   public static CryptoService getInstance() {
-    if (single == null)
-      single = new CryptoService();
     return single;
   }
 
   private SecretKey getkey() throws GeneralSecurityException, IOException {
-    return KeyManager.getInstance().getSimmK();
+    SecretKey secretKey = key;
+    if (secretKey == null) {
+      secretKey = KeyManager.getInstance().getSimmK();
+      key = secretKey;
+    }
+    return secretKey;
+  }
+
+  private PooledCipher borrowCipher(BlockingQueue<PooledCipher> ciphers, int mode)
+    throws GeneralSecurityException, IOException {
+    SecretKey secretKey = getkey();
+    PooledCipher pooledCipher = ciphers.poll();
+    if (pooledCipher == null || pooledCipher.key != secretKey) {
+      Cipher cipher = Cipher.getInstance(typeAlgo);
+      cipher.init(mode, secretKey);
+      pooledCipher = new PooledCipher(cipher, secretKey);
+    }
+    return pooledCipher;
+  }
+
+  private byte[] doFinal(BlockingQueue<PooledCipher> ciphers, int mode, byte[] input)
+    throws GeneralSecurityException, IOException {
+    PooledCipher pooledCipher = borrowCipher(ciphers, mode);
+    //doFinal resets the cipher to its initialized state, ready for the next value. If it fails, the cipher may be
+    //left in an inconsistent state, so it's not returned to the pool.
+    byte[] output = pooledCipher.cipher.doFinal(input);
+    //If the pool is full, the cipher is discarded
+    ciphers.offer(pooledCipher);
+    return output;
+  }
+
+  /**
+   * Discards the ciphers kept for reuse, e.g. when the application stops.
+   */
+  public void clearCiphers() {
+    encryptCiphers.clear();
+    decryptCiphers.clear();
   }
 
   public String encrypt(String decrypted)
@@ -38,14 +95,50 @@ public class CryptoService {
     return new String(decrypt(Base64.getDecoder().decode(encrypted.getBytes())));
   }
 
+  /**
+   * Decrypts many Base64-encoded values at once, using several threads if there are at least
+   * {@link #PARALLEL_DECRYPTION_THRESHOLD} of them. Null and blank values are returned as they are.
+   */
+  public List<String> decrypt(List<String> encrypted)
+    throws GeneralSecurityException, IOException {
+    return decrypt(encrypted, encrypted.size() >= PARALLEL_DECRYPTION_THRESHOLD);
+  }
+
+  /**
+   * Decrypts many Base64-encoded values at once. Null and blank values are returned as they are.
+   * @param parallel whether to decrypt the values using several threads.
+   * @return the decrypted values, in the same order.
+   */
+  public List<String> decrypt(List<String> encrypted, boolean parallel)
+    throws GeneralSecurityException, IOException {
+    Stream<String> stream = parallel ? encrypted.parallelStream() : encrypted.stream();
+    try {
+      return stream.map(value -> {
+        if (value == null || value.trim().isEmpty()) {
+          return value;
+        }
+        try {
+          return decrypt(value);
+        } catch (GeneralSecurityException | IOException e) {
+          throw new BulkDecryptionException(e);
+        }
+      }).collect(Collectors.toList());
+    } catch (BulkDecryptionException e) {
+      if (e.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) e.getCause();
+      }
+      throw (IOException) e.getCause();
+    }
+  }
+
   public byte[] encrypt(byte[] decrypted)
     throws GeneralSecurityException, IOException {
-    return encrypt(decrypted, typeAlgo, getkey());
+    return doFinal(encryptCiphers, Cipher.ENCRYPT_MODE, decrypted);
   }
 
   public byte[] decrypt(byte[] encrypted)
     throws GeneralSecurityException, IOException {
-    return decrypt(encrypted, typeAlgo, getkey());
+    return doFinal(decryptCiphers, Cipher.DECRYPT_MODE, encrypted);
   }
 
   public InputStream encrypt(InputStream decrypted)
@@ -89,4 +182,20 @@ public class CryptoService {
     double value = Math.ceil(originalSize.doubleValue()/16d)*16;
     return (long) value;
   }
+
+  private static class PooledCipher {
+    final Cipher cipher;
+    final SecretKey key;
+
+    PooledCipher(Cipher cipher, SecretKey key) {
+      this.cipher = cipher;
+      this.key = key;
+    }
+  }
+
+  private static class BulkDecryptionException extends RuntimeException {
+    BulkDecryptionException(Exception cause) {
+      super(cause);
+    }
+  }
 }
@@ -24,11 +24,13 @@ import com.manydesigns.elements.Mode;
 import com.manydesigns.elements.annotations.DatabaseBlob;
 import com.manydesigns.elements.blobs.Blob;
 import com.manydesigns.elements.blobs.BlobManager;
+import com.manydesigns.elements.blobs.InputStreamBlob;
 import com.manydesigns.elements.ognl.OgnlUtils;
 import com.manydesigns.elements.reflection.ClassAccessor;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.util.RandomUtil;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.AutoCloseInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -36,11 +38,15 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.sql.SQLException;
+import java.util.function.BiFunction;
 
 /**
+ * A blob stored in a column of the object itself, either as a <code>byte[]</code> or as a {@link java.sql.Blob}.
+ * With the latter, the contents are never held in memory: they are only read from the database when the blob is
+ * downloaded, and uploads are streamed to the driver.
+ *
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
  * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
@@ -52,6 +58,13 @@ public class DatabaseBlobField extends AbstractBlobField {
 
     private static final Logger logger = LoggerFactory.getLogger(DatabaseBlobField.class);
 
+    /**
+     * Creates the {@link java.sql.Blob} values written to properties of that type, from a stream and its length.
+     * Persistence layers that would copy the contents of a foreign Blob implementation in memory should replace it
+     * with a factory of their own streaming implementation.
+     */
+    protected static volatile BiFunction<InputStream, Long, java.sql.Blob> sqlBlobFactory = InputStreamBlob::new;
+
     protected final PropertyAccessor contentTypeAccessor;
     protected final PropertyAccessor fileNameAccessor;
     protected final PropertyAccessor timestampAccessor;
@@ -88,13 +101,18 @@ public class DatabaseBlobField extends AbstractBlobField {
         if (obj == null) {
             forgetBlob();
         } else {
-            byte[] value = (byte[]) accessor.get(obj);
+            Object value = accessor.get(obj);
             if(value == null) {
                 forgetBlob();
             } else {
-                blob = new Blob(null);
-                blob.setSize(value.length);
-                blob.setInputStream(new ByteArrayInputStream(value));
+                if(value instanceof java.sql.Blob) {
+                    blob = new LazyBlob((java.sql.Blob) value);
+                } else {
+                    byte[] bytes = (byte[]) value;
+                    blob = new Blob(null);
+                    blob.setSize(bytes.length);
+                    blob.setInputStream(new ByteArrayInputStream(bytes));
+                }
                 if(fileNameAccessor != null) {
                     blob.setFilename((String) fileNameAccessor.get(obj));
                 } else {
@@ -119,10 +137,8 @@ public class DatabaseBlobField extends AbstractBlobField {
         if (blob == null) {
             writeToObject(obj, null);
         } else {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
             try {
-                IOUtils.copyLarge(blob.getInputStream(), baos);
-                writeToObject(obj, baos.toByteArray());
+                writeToObject(obj, getPropertyValue(blob));
                 if(fileNameAccessor != null) {
                     writeToObject(fileNameAccessor, obj, blob.getFilename());
                 }
@@ -143,6 +159,52 @@ public class DatabaseBlobField extends AbstractBlobField {
         }
     }
 
+    protected Object getPropertyValue(Blob blob) throws IOException {
+        if(java.sql.Blob.class.isAssignableFrom(accessor.getType())) {
+            if(blob instanceof LazyBlob) {
+                //Unchanged: keep the value that's already in the database
+                return ((LazyBlob) blob).getSqlBlob();
+            } else {
+                return createSqlBlob(blob);
+            }
+        } else if(blob.getSize() >= 0 && blob.getSize() <= Integer.MAX_VALUE) {
+            //Allocate the array once instead of growing a buffer and copying it
+            return IOUtils.toByteArray(blob.getInputStream(), blob.getSize());
+        } else {
+            return IOUtils.toByteArray(blob.getInputStream());
+        }
+    }
+
+    protected java.sql.Blob createSqlBlob(Blob blob) throws IOException {
+        InputStream inputStream = blob.getInputStream();
+        long size = blob.getSize();
+        if(size < 0) {
+            //The size is unknown, e.g. with a chunked upload. Spool the contents to a temporary file to learn it.
+            File file = File.createTempFile("blob", ".tmp");
+            try(InputStream in = inputStream; OutputStream out = new FileOutputStream(file)) {
+                size = IOUtils.copyLarge(in, out);
+            } catch (IOException e) {
+                if(!file.delete()) {
+                    logger.warn("Could not delete temporary file {}", file);
+                }
+                throw e;
+            }
+            inputStream = new AutoCloseInputStream(new FileInputStream(file) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if(!file.delete()) {
+                            logger.warn("Could not delete temporary file {}", file);
+                        }
+                    }
+                }
+            });
+        }
+        return sqlBlobFactory.apply(inputStream, size);
+    }
+
     @Override
     protected void loadBlob(BlobManager blobManager, Blob blob, boolean loadContents) throws IOException {
         if(!blob.isPropertiesLoaded()) {
@@ -165,4 +227,62 @@ public class DatabaseBlobField extends AbstractBlobField {
     public PropertyAccessor getFileNameAccessor() {
         return fileNameAccessor;
     }
+
+    public static BiFunction<InputStream, Long, java.sql.Blob> getSqlBlobFactory() {
+        return sqlBlobFactory;
+    }
+
+    public static void setSqlBlobFactory(BiFunction<InputStream, Long, java.sql.Blob> sqlBlobFactory) {
+        DatabaseBlobField.sqlBlobFactory = sqlBlobFactory;
+    }
+
+    /**
+     * A blob backed by a {@link java.sql.Blob}, typically a locator, whose size and contents are only read from the
+     * database when they're requested.
+     */
+    public static class LazyBlob extends Blob {
+
+        protected final java.sql.Blob sqlBlob;
+        protected boolean sizeLoaded;
+
+        public LazyBlob(java.sql.Blob sqlBlob) {
+            super(null);
+            this.sqlBlob = sqlBlob;
+        }
+
+        @Override
+        public long getSize() {
+            if(!sizeLoaded) {
+                try {
+                    size = sqlBlob.length();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Could not read the size of the blob", e);
+                }
+                sizeLoaded = true;
+            }
+            return size;
+        }
+
+        @Override
+        public void setSize(long size) {
+            super.setSize(size);
+            sizeLoaded = true;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            if(inputStream == null) {
+                try {
+                    inputStream = sqlBlob.getBinaryStream();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Could not read the blob", e);
+                }
+            }
+            return inputStream;
+        }
+
+        public java.sql.Blob getSqlBlob() {
+            return sqlBlob;
+        }
+    }
 }
@@ -25,6 +25,9 @@ import com.manydesigns.elements.Mode;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.xml.XhtmlBuffer;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
 * @author Angelo Lupo          - angelo.lupo@manydesigns.com
@@ -35,7 +38,14 @@ public class EncryptedField extends TextField {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
+    //One instance per encrypter class, shared by all the fields, so that the values of a column can be decrypted
+    //together
+    protected static final Map<String, FieldEncrypter> encrypters = new ConcurrentHashMap<>();
+
     private FieldEncrypter encrypter;
+    protected boolean prefetched;
+    protected String prefetchedEncryptedValue;
+    protected String prefetchedDecryptedValue;
 
     //**************************************************************************
     // Constructors
@@ -43,12 +53,27 @@ public class EncryptedField extends TextField {
 
     public EncryptedField(PropertyAccessor accessor, Mode mode, String prefix , String classPath) {
         super(accessor, mode, prefix);
-        try {
-            Class<?> clazz = Class.forName(classPath);
-            encrypter = (FieldEncrypter)clazz.newInstance();
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            logger.error(e.getMessage(),e);
+        encrypter = getEncrypter(classPath);
+    }
+
+    /**
+     * @return the shared instance of the given encrypter class, or null if it cannot be instantiated.
+     */
+    protected static FieldEncrypter getEncrypter(String classPath) {
+        FieldEncrypter encrypter = encrypters.get(classPath);
+        if (encrypter == null) {
+            try {
+                Class<?> clazz = Class.forName(classPath);
+                encrypter = (FieldEncrypter)clazz.newInstance();
+                FieldEncrypter existing = encrypters.putIfAbsent(classPath, encrypter);
+                if (existing != null) {
+                    encrypter = existing;
+                }
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+                logger.error(e.getMessage(),e);
+            }
         }
+        return encrypter;
     }
 
     @Override
@@ -57,7 +82,55 @@ public class EncryptedField extends TextField {
         if (obj == null) {
             stringValue = null;
         } else {
-            stringValue = encrypter.decrypt( (String)accessor.get(obj) );
+            String encryptedValue = (String) accessor.get(obj);
+            if (prefetched && Objects.equals(encryptedValue, prefetchedEncryptedValue)) {
+                stringValue = prefetchedDecryptedValue;
+            } else {
+                stringValue = encrypter.decrypt(encryptedValue);
+            }
+        }
+        prefetched = false;
+        prefetchedEncryptedValue = null;
+        prefetchedDecryptedValue = null;
+    }
+
+    /**
+     * Supplies the decrypted value of the field, so that the next call to {@link #readFromObject(Object)} doesn't
+     * decrypt it again, provided that the object still holds the same encrypted value.
+     */
+    public void setPrefetchedValue(String encryptedValue, String decryptedValue) {
+        prefetched = true;
+        prefetchedEncryptedValue = encryptedValue;
+        prefetchedDecryptedValue = decryptedValue;
+    }
+
+    public FieldEncrypter getEncrypter() {
+        return encrypter;
+    }
+
+    /**
+     * Decrypts in bulk the values that several encrypted fields are about to read, grouping them by encrypter instance.
+     * @param fields the fields.
+     * @param objects the object each field will read from, in the same order as the fields.
+     */
+    public static void prefetchValues(List<EncryptedField> fields, List<?> objects) {
+        //Encrypters of the same class may be configured differently, e.g. with different keys
+        Map<FieldEncrypter, List<Integer>> groups = new IdentityHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            FieldEncrypter fieldEncrypter = fields.get(i).encrypter;
+            if (fieldEncrypter != null && objects.get(i) != null) {
+                groups.computeIfAbsent(fieldEncrypter, k -> new ArrayList<>()).add(i);
+            }
+        }
+        for (List<Integer> group : groups.values()) {
+            List<String> encryptedValues = new ArrayList<>(group.size());
+            for (int i : group) {
+                encryptedValues.add((String) fields.get(i).accessor.get(objects.get(i)));
+            }
+            List<String> decryptedValues = fields.get(group.get(0)).encrypter.decrypt(encryptedValues);
+            for (int j = 0; j < group.size(); j++) {
+                fields.get(group.get(j)).setPrefetchedValue(encryptedValues.get(j), decryptedValues.get(j));
+            }
         }
     }
 
@@ -105,6 +105,11 @@ public class BaseCriteria extends ArrayList<Criterion> implements Criteria {
         return this;
     }
 
+    public Criteria fullText(PropertyAccessor accessor, String value) {
+        add(new FullTextCriterion(accessor, value));
+        return this;
+    }
+
     public Criteria isNull(PropertyAccessor accessor) {
         add(new IsNullCriterion(accessor));
         return this;
@@ -298,6 +303,19 @@ public class BaseCriteria extends ArrayList<Criterion> implements Criteria {
         }
     }
 
+    public static class FullTextCriterion extends AbstractCriterion {
+        protected final String value;
+
+        public FullTextCriterion(PropertyAccessor accessor, String value) {
+            super(accessor);
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
     public static class IsNullCriterion extends AbstractCriterion {
 
 
@@ -53,6 +53,12 @@ public interface Criteria {
     Criteria ilike(PropertyAccessor accessor, String value,
                                       TextMatchMode textMatchMode);
 
+    /**
+     * Matches the words of a search string against a text property, using the full-text search capabilities of
+     * the underlying store where available.
+     */
+    Criteria fullText(PropertyAccessor accessor, String value);
+
     Criteria isNull(PropertyAccessor accessor);
 
     Criteria isNotNull(PropertyAccessor accessor);
@@ -20,6 +20,7 @@
 
 package com.manydesigns.elements.fields.search;
 
+import com.manydesigns.elements.annotations.FullTextSearch;
 import com.manydesigns.elements.annotations.MaxLength;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.xml.XhtmlBuffer;
@@ -47,6 +48,7 @@ public class TextSearchField extends AbstractSearchField {
     protected String matchModeParam;
     protected boolean showMatchMode = true;
     protected Integer maxLength = null;
+    protected boolean fullTextSearch;
 
     //**************************************************************************
     // Costruttori
@@ -62,6 +64,8 @@ public class TextSearchField extends AbstractSearchField {
         if (accessor.isAnnotationPresent(MaxLength.class)) {
             maxLength = accessor.getAnnotation(MaxLength.class).value();
         }
+        FullTextSearch fullTextSearchAnnotation = accessor.getAnnotation(FullTextSearch.class);
+        fullTextSearch = fullTextSearchAnnotation != null && fullTextSearchAnnotation.value();
 
         matchModeId = id + MODE_SUFFIX;
         matchModeParam = this.inputName + MODE_SUFFIX;
@@ -125,7 +129,12 @@ public class TextSearchField extends AbstractSearchField {
     }
 
     public void configureCriteria(Criteria criteria) {
-        if (value != null) {
+        if (value == null) {
+            return;
+        }
+        if (fullTextSearch && matchMode == TextMatchMode.CONTAINS) {
+            criteria.fullText(accessor, value);
+        } else {
             criteria.ilike(accessor, value, matchMode);
         }
     }
@@ -181,4 +190,12 @@ public class TextSearchField extends AbstractSearchField {
     public void setMaxLength(Integer maxLength) {
         this.maxLength = maxLength;
     }
+
+    public boolean isFullTextSearch() {
+        return fullTextSearch;
+    }
+
+    public void setFullTextSearch(boolean fullTextSearch) {
+        this.fullTextSearch = fullTextSearch;
+    }
 }
@@ -98,7 +98,7 @@ public class AbstractFormBuilder {
         }
     }
 
-    protected boolean isPropertyEnabled(PropertyAccessor propertyAccessor) {
+    public boolean isPropertyEnabled(PropertyAccessor propertyAccessor) {
         // check if field is enabled
         Enabled enabled = propertyAccessor.getAnnotation(Enabled.class);
         if(enabled != null && !enabled.value()) {
@@ -24,11 +24,12 @@ import com.manydesigns.elements.FormElement;
 import com.manydesigns.elements.KeyValueAccessor;
 import com.manydesigns.elements.Mode;
 import com.manydesigns.elements.composites.AbstractCompositeElement;
+import com.manydesigns.elements.fields.EncryptedField;
+import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.xml.XhtmlBuffer;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -74,6 +75,23 @@ public class Form extends AbstractCompositeElement<FieldSet> {
         return mode;
     }
 
+    @Override
+    public void readFromObject(Object obj) {
+        if (obj != null) {
+            //Decrypt all the encrypted fields at once
+            List<EncryptedField> encryptedFields = new ArrayList<>();
+            for (Field field : fields()) {
+                if (field instanceof EncryptedField) {
+                    encryptedFields.add((EncryptedField) field);
+                }
+            }
+            if (encryptedFields.size() > 1) {
+                EncryptedField.prefetchValues(encryptedFields, Collections.nCopies(encryptedFields.size(), obj));
+            }
+        }
+        super.readFromObject(obj);
+    }
+
     public void readFrom(KeyValueAccessor accessor) {
         for (FieldSet current : this) {
             current.readFrom(accessor);
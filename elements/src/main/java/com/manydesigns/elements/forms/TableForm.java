@@ -24,11 +24,13 @@ import com.manydesigns.elements.Element;
 import com.manydesigns.elements.ElementsProperties;
 import com.manydesigns.elements.annotations.Help;
 import com.manydesigns.elements.composites.AbstractCompositeElement;
+import com.manydesigns.elements.fields.EncryptedField;
 import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.fields.FieldUtils;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.text.TextFormat;
 import com.manydesigns.elements.util.RandomUtil;
+import com.manydesigns.elements.util.RequestTimings;
 import com.manydesigns.elements.xml.XhtmlBuffer;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
@@ -36,9 +38,7 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Array;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -170,7 +170,14 @@ public class TableForm implements Element {
     }
 
     public void readFromObject(Object obj) {
+        try(RequestTimings.Span ignored = RequestTimings.span("form")) {
+            doReadFromObject(obj);
+        }
+    }
+
+    protected void doReadFromObject(Object obj) {
         Class clazz = obj.getClass();
+        prefetchEncryptedValues(obj);
         if (clazz.isArray()) { // Tratta obj come un array
             // Scorre tutti gli ellementi dell'array obj,
             // indipendentemente da quante righe ci sono nell table form.
@@ -202,6 +209,33 @@ public class TableForm implements Element {
         }
     }
 
+    /**
+     * Decrypts the values of all the encrypted fields in the table at once, rather than one row at a time.
+     */
+    protected void prefetchEncryptedValues(Object obj) {
+        List<Object> objects = new ArrayList<>();
+        if (obj.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(obj); i++) {
+                objects.add(Array.get(obj, i));
+            }
+        } else if (obj instanceof Collection) {
+            objects.addAll((Collection<?>) obj);
+        }
+        List<EncryptedField> fields = new ArrayList<>();
+        List<Object> fieldObjects = new ArrayList<>();
+        for (int i = 0; i < objects.size() && i < rows.length; i++) {
+            for (Field field : rows[i]) {
+                if (field instanceof EncryptedField) {
+                    fields.add((EncryptedField) field);
+                    fieldObjects.add(objects.get(i));
+                }
+            }
+        }
+        if (!fields.isEmpty()) {
+            EncryptedField.prefetchValues(fields, fieldObjects);
+        }
+    }
+
     public void writeToObject(Object obj) {
         Class clazz = obj.getClass();
         if (clazz.isArray()) { // Tratta obj come un array
@@ -31,20 +31,27 @@ package com.manydesigns.elements.pdf;
 
 import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.forms.TableForm;
-import com.manydesigns.elements.xml.XmlBuffer;
 import org.apache.commons.lang.StringUtils;
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.MimeConstants;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.*;
 import javax.xml.transform.sax.SAXResult;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import java.io.*;
 
 /**
+ * Exports a table to PDF, by transforming an XML representation of it to XSL-FO with a stylesheet and rendering the
+ * result with FOP. The XML is never built as a whole: it is produced as SAX events that are fed directly to the
+ * transformer.
+ *
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
  * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
@@ -70,77 +77,82 @@ public class TableFormPdfExporter {
         Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, outputStream);
 
         // Setup XSLT
-        TransformerFactory factory = TransformerFactory.newInstance();
+        SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
         factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
         factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
         factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
-        Transformer transformer = factory.newTransformer(xsltSource);
+        TransformerHandler transformerHandler = factory.newTransformerHandler(xsltSource);
 
         // Set the value of a <param> in the stylesheet
-        transformer.setParameter("versionParam", "2.0");
-
-        // Setup input for XSLT transformation
-        Reader reader = composeXml();
-        Source src = new StreamSource(reader);
+        transformerHandler.getTransformer().setParameter("versionParam", "2.0");
 
         // Resulting SAX events (the generated FO) must be piped through to
         // FOP
-        Result res = new SAXResult(fop.getDefaultHandler());
+        transformerHandler.setResult(new SAXResult(fop.getDefaultHandler()));
 
-        // Start XSLT transformation and FOP processing
-        transformer.transform(src, res);
-        reader.close();
+        // Feed the XML representing the table to the XSLT transformation and FOP processing
+        try {
+            composeXml(transformerHandler);
+        } catch (SAXException e) {
+            throw new TransformerException(e);
+        }
 
         outputStream.flush();
     }
 
     /**
-     * Composes an XML document representing the current search results.
+     * Produces the XML document representing the current search results as SAX events.
      */
-    protected Reader composeXml() {
-        XmlBuffer xb = new XmlBuffer();
-        xb.writeXmlHeader("UTF-8");
-        xb.openElement("class");
-        xb.openElement("table");
-        if(title != null) {
-            xb.write(title);
-        }
-        xb.closeElement("table");
-
-        double[] columnSizes = setupColumnSizes();
+    protected void composeXml(ContentHandler handler) throws SAXException {
+        handler.startDocument();
+        startElement(handler, "class");
+        writeElement(handler, "table", title);
+        writeColumns(handler, setupColumnSizes());
+        writeRows(handler);
+        endElement(handler, "class");
+        handler.endDocument();
+    }
 
+    protected void writeColumns(ContentHandler handler, double[] columnSizes) throws SAXException {
         for (double columnSize : columnSizes) {
-            xb.openElement("column");
-            xb.openElement("width");
-            xb.write(columnSize + "em");
-            xb.closeElement("width");
-            xb.closeElement("column");
+            startElement(handler, "column");
+            writeElement(handler, "width", columnSize + "em");
+            endElement(handler, "column");
         }
 
         for (TableForm.Column col : form.getColumns()) {
-            xb.openElement("header");
-            xb.openElement("nameColumn");
-            xb.write(col.getLabel());
-            xb.closeElement("nameColumn");
-            xb.closeElement("header");
+            startElement(handler, "header");
+            writeElement(handler, "nameColumn", col.getLabel());
+            endElement(handler, "header");
         }
+    }
 
-
+    protected void writeRows(ContentHandler handler) throws SAXException {
         for (TableForm.Row row : form.getRows()) {
-            xb.openElement("rows");
+            startElement(handler, "rows");
             for (Field field : row) {
-                xb.openElement("row");
-                xb.openElement("value");
-                xb.write(field.getStringValue());
-                xb.closeElement("value");
-                xb.closeElement("row");
+                startElement(handler, "row");
+                writeElement(handler, "value", field.getStringValue());
+                endElement(handler, "row");
             }
-            xb.closeElement("rows");
+            endElement(handler, "rows");
         }
+    }
+
+    protected void startElement(ContentHandler handler, String name) throws SAXException {
+        handler.startElement("", name, name, new AttributesImpl());
+    }
 
-        xb.closeElement("class");
+    protected void endElement(ContentHandler handler, String name) throws SAXException {
+        handler.endElement("", name, name);
+    }
 
-        return new StringReader(xb.toString());
+    protected void writeElement(ContentHandler handler, String name, String text) throws SAXException {
+        startElement(handler, name);
+        if(text != null) {
+            handler.characters(text.toCharArray(), 0, text.length());
+        }
+        endElement(handler, name);
     }
 
     /**
@@ -143,6 +143,43 @@ public class MutableHttpServletRequest implements HttpServletRequest, MultipartW
         this.serverPort = serverPort;
     }
 
+    /**
+     * Creates a request that copies the URL, parameters, headers, locales and encoding of another one. Unlike the
+     * original, the copy remains usable after the request is over, e.g. by work that continues on another thread.
+     * The body, the attributes and the session are not copied.
+     * @param request the request to copy.
+     * @return the copy.
+     */
+    public static MutableHttpServletRequest copyOf(HttpServletRequest request) {
+        MutableHttpServletRequest copy = new MutableHttpServletRequest();
+        copy.setMethod(request.getMethod());
+        copy.setScheme(request.getScheme());
+        copy.setServerName(request.getServerName());
+        copy.setServerPort(request.getServerPort());
+        copy.setContextPath(request.getContextPath());
+        copy.setServletPath(request.getServletPath());
+        copy.setRequestURI(request.getRequestURI());
+        copy.queryString = request.getQueryString();
+        if(request.getCharacterEncoding() != null) {
+            copy.setCharacterEncoding(request.getCharacterEncoding());
+        }
+        copy.parameterMap.putAll(request.getParameterMap());
+        Enumeration<String> headerNames = request.getHeaderNames();
+        while(headerNames != null && headerNames.hasMoreElements()) {
+            String name = headerNames.nextElement();
+            Enumeration<String> values = request.getHeaders(name);
+            if(values != null) {
+                copy.headerMap.put(name, Collections.list(values).toArray(new String[0]));
+            }
+        }
+        copy.locales.clear();
+        copy.locales.addAll(Collections.list(request.getLocales()));
+        if(copy.locales.isEmpty()) {
+            copy.locales.add(Locale.getDefault());
+        }
+        return copy;
+    }
+
     //**************************************************************************
     // HttpServletRequest implementation
     //**************************************************************************
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.elements.util;
+
+import com.manydesigns.elements.ElementsThreadLocals;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects a breakdown of the time spent serving a request, by layer (e.g. dispatching, database queries, form
+ * population). The collector is bound to the current request through the {@link ElementsThreadLocals}; code that
+ * wants to be measured wraps its work in a {@link Span}:
+ * <pre>
+ * try(RequestTimings.Span ignored = RequestTimings.span("db")) {
+ *     ...
+ * }
+ * </pre>
+ * Spans with the same name are added together, and a span nested in another with the same name is not counted
+ * twice. When no collector has been started for the current request, spans cost next to nothing.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class RequestTimings {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    protected static final Span NO_SPAN = new Span(null, null, 0);
+
+    protected final long startTime = System.nanoTime();
+    protected final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    //**************************************************************************
+    // Static access
+    //**************************************************************************
+
+    /**
+     * Starts collecting timings for the current request, discarding any previous collector.
+     * @return the new collector.
+     */
+    public static RequestTimings start() {
+        RequestTimings timings = new RequestTimings();
+        ElementsThreadLocals.getElementsContext().setRequestTimings(timings);
+        return timings;
+    }
+
+    /**
+     * @return the collector of the current request, or null if timings are not being collected.
+     */
+    public static RequestTimings current() {
+        return ElementsThreadLocals.getElementsContext().getRequestTimings();
+    }
+
+    /**
+     * Stops collecting timings for the current request.
+     * @return the collector, or null if timings were not being collected.
+     */
+    public static RequestTimings stop() {
+        RequestTimings timings = current();
+        ElementsThreadLocals.getElementsContext().setRequestTimings(null);
+        return timings;
+    }
+
+    /**
+     * Opens a span in the collector of the current request, if any.
+     * @param name the name of the metric to which the duration of the span is added.
+     * @return the span, to be closed when the measured work is done.
+     */
+    public static Span span(String name) {
+        RequestTimings timings = current();
+        return timings != null ? timings.open(name) : NO_SPAN;
+    }
+
+    //**************************************************************************
+    // Collection
+    //**************************************************************************
+
+    public synchronized Span open(String name) {
+        Metric metric = metrics.computeIfAbsent(name, k -> new Metric());
+        metric.open++;
+        return new Span(this, metric, System.nanoTime());
+    }
+
+    protected synchronized void close(Metric metric, long startTime) {
+        metric.open--;
+        metric.count++;
+        if(metric.open == 0) {
+            metric.nanos += System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Adds a duration measured by other means.
+     * @param name the name of the metric.
+     * @param nanos the duration in nanoseconds.
+     */
+    public synchronized void add(String name, long nanos) {
+        Metric metric = metrics.computeIfAbsent(name, k -> new Metric());
+        metric.count++;
+        metric.nanos += nanos;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * @return the total duration of each metric, in milliseconds, by name.
+     */
+    public synchronized Map<String, Double> getDurations() {
+        Map<String, Double> durations = new LinkedHashMap<>();
+        metrics.forEach((name, metric) -> durations.put(name, toMillis(metric.nanos)));
+        return durations;
+    }
+
+    //**************************************************************************
+    // Formatting
+    //**************************************************************************
+
+    /**
+     * Formats the timings as the value of a <code>Server-Timing</code> HTTP header, e.g.
+     * <code>db;dur=12.3;desc="4 spans", total;dur=20.1</code>. The total is the time elapsed since the collector
+     * has been started.
+     */
+    public synchronized String toServerTimingHeader() {
+        StringBuilder sb = new StringBuilder();
+        metrics.forEach((name, metric) -> {
+            sb.append(name).append(";dur=").append(formatMillis(metric.nanos));
+            if(metric.count > 1) {
+                sb.append(";desc=\"").append(metric.count).append(" spans\"");
+            }
+            sb.append(", ");
+        });
+        sb.append("total;dur=").append(formatMillis(getElapsedNanos()));
+        return sb.toString();
+    }
+
+    /**
+     * Formats the timings for logging, e.g. <code>total 20.1ms [db 12.3ms (4), form 2.0ms]</code>.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("total ").append(formatMillis(getElapsedNanos())).append("ms [");
+        boolean first = true;
+        for(Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            if(!first) {
+                sb.append(", ");
+            }
+            first = false;
+            Metric metric = entry.getValue();
+            sb.append(entry.getKey()).append(" ").append(formatMillis(metric.nanos)).append("ms");
+            if(metric.count > 1) {
+                sb.append(" (").append(metric.count).append(")");
+            }
+        }
+        return sb.append("]").toString();
+    }
+
+    protected static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    protected static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", toMillis(nanos));
+    }
+
+    //**************************************************************************
+    // Inner classes
+    //**************************************************************************
+
+    protected static class Metric {
+        protected long nanos;
+        protected int count;
+        protected int open;
+    }
+
+    /**
+     * A measurement in progress. Closing it more than once has no effect.
+     */
+    public static class Span implements AutoCloseable {
+        protected final RequestTimings timings;
+        protected final Metric metric;
+        protected final long startTime;
+        protected boolean closed;
+
+        protected Span(RequestTimings timings, Metric metric, long startTime) {
+            this.timings = timings;
+            this.metric = metric;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void close() {
+            if(timings != null && !closed) {
+                closed = true;
+                timings.close(metric, startTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.xls;
+
+import com.manydesigns.elements.fields.DateField;
+import com.manydesigns.elements.fields.Field;
+import com.manydesigns.elements.fields.NumericField;
+import com.manydesigns.elements.fields.PasswordField;
+import com.manydesigns.elements.forms.TableForm;
+import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Writes table forms to an OOXML (.xlsx) workbook, one batch of rows at a time. Unlike {@link TableFormXlsExporter},
+ * only the last {@link #getRowWindow() rowWindow} rows are kept in memory; older ones are flushed to a temporary file,
+ * so the number of rows is only limited by the format (when a sheet is full, the rows continue in a new one).
+ * Cells are formatted like in {@link XlsUtil}. The writer must be closed to delete the temporary files.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class TableFormXlsxWriter implements Closeable {
+    public static final String copyright = "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final int DEFAULT_ROW_WINDOW = 100;
+    public static final int MAX_COLUMN_WIDTH = 80;
+
+    protected final SXSSFWorkbook workbook;
+    protected final String title;
+    protected final int rowWindow;
+    protected final CellStyle headerStyle;
+    protected final Map<String, CellStyle> styles = new HashMap<>();
+    protected Sheet sheet;
+    protected List<String> header;
+    protected int nextRow;
+
+    public TableFormXlsxWriter(String title) {
+        this(title, DEFAULT_ROW_WINDOW);
+    }
+
+    public TableFormXlsxWriter(String title, int rowWindow) {
+        this.title = StringUtils.isBlank(title) ? "export" : title;
+        this.rowWindow = rowWindow;
+        workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        Font font = workbook.createFont();
+        font.setFontName("Arial");
+        font.setFontHeightInPoints((short) 12);
+        font.setBold(true);
+        headerStyle = workbook.createCellStyle();
+        headerStyle.setFont(font);
+    }
+
+    /**
+     * Writes the header with the labels of the columns of a table form. It's repeated at the top of every sheet.
+     */
+    public void writeHeader(TableForm form) {
+        List<String> labels = new ArrayList<>();
+        for (TableForm.Column column : form.getColumns()) {
+            labels.add(column.getLabel());
+        }
+        writeHeader(labels);
+    }
+
+    public void writeHeader(List<String> labels) {
+        header = labels;
+        newSheet();
+    }
+
+    public void writeRows(TableForm form) {
+        for (TableForm.Row row : form.getRows()) {
+            writeRow(row);
+        }
+    }
+
+    public void writeRow(Iterable<? extends Field> fields) {
+        if (sheet == null || nextRow > SpreadsheetVersion.EXCEL2007.getLastRowIndex()) {
+            newSheet();
+        }
+        Row row = sheet.createRow(nextRow++);
+        int j = 0;
+        for (Field field : fields) {
+            addFieldToCell(row, j++, field);
+        }
+    }
+
+    protected void newSheet() {
+        int index = workbook.getNumberOfSheets();
+        String name = index == 0 ? title : title + " (" + (index + 1) + ")";
+        sheet = workbook.createSheet(WorkbookUtil.createSafeSheetName(name));
+        nextRow = 0;
+        if (header != null) {
+            Row row = sheet.createRow(nextRow++);
+            for (int j = 0; j < header.size(); j++) {
+                String label = StringUtils.defaultString(header.get(j));
+                Cell cell = row.createCell(j);
+                cell.setCellValue(label);
+                cell.setCellStyle(headerStyle);
+                //Cells are flushed as they are written, so columns can't be sized on their contents
+                sheet.setColumnWidth(j, Math.min(MAX_COLUMN_WIDTH, Math.max(10, label.length() + 4)) * 256);
+            }
+        }
+    }
+
+    protected void addFieldToCell(Row row, int j, Field field) {
+        if (field instanceof NumericField) {
+            NumericField numField = (NumericField) field;
+            BigDecimal decimalValue = numField.getValue();
+            if (decimalValue != null) {
+                Cell cell = row.createCell(j);
+                cell.setCellValue(decimalValue.doubleValue());
+                if (numField.getDecimalFormat() != null) {
+                    cell.setCellStyle(getStyle(numField.getDecimalFormat().toPattern()));
+                }
+            }
+        } else if (field instanceof PasswordField) {
+            row.createCell(j).setCellValue(PasswordField.PASSWORD_PLACEHOLDER);
+        } else if (field instanceof DateField) {
+            DateField dateField = (DateField) field;
+            Date date = dateField.getValue();
+            if (date != null) {
+                Cell cell = row.createCell(j);
+                cell.setCellValue(date);
+                cell.setCellStyle(getStyle(dateField.getDatePattern()));
+            }
+        } else {
+            String value = field.getStringValue();
+            if (value != null) {
+                row.createCell(j).setCellValue(value);
+            }
+        }
+    }
+
+    protected CellStyle getStyle(String pattern) {
+        CellStyle style = styles.get(pattern);
+        if (style == null) {
+            style = workbook.createCellStyle();
+            style.setDataFormat(workbook.createDataFormat().getFormat(pattern));
+            styles.put(pattern, style);
+        }
+        return style;
+    }
+
+    /**
+     * Writes the workbook, including the rows flushed to the temporary file, to the given stream.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        if (sheet == null) {
+            newSheet();
+        }
+        workbook.write(outputStream);
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.dispose();
+        workbook.close();
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getRowWindow() {
+        return rowWindow;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.fields;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.blobs.Blob;
+import com.manydesigns.elements.reflection.ClassAccessor;
+import com.manydesigns.elements.reflection.JavaClassAccessor;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.Test;
+
+import javax.sql.rowset.serial.SerialBlob;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.*;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class DatabaseBlobFieldTest extends AbstractElementsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static class Bean {
+        public byte[] bytes;
+        public java.sql.Blob sqlBlob;
+    }
+
+    protected DatabaseBlobField createField(String propertyName) throws Exception {
+        ClassAccessor classAccessor = JavaClassAccessor.getClassAccessor(Bean.class);
+        return new DatabaseBlobField(classAccessor, classAccessor.getProperty(propertyName), Mode.EDIT, null);
+    }
+
+    public void testSqlBlobIsReadLazily() throws Exception {
+        Bean bean = new Bean();
+        bean.sqlBlob = new SerialBlob("contents".getBytes(StandardCharsets.UTF_8));
+        DatabaseBlobField field = createField("sqlBlob");
+        field.readFromObject(bean);
+
+        Blob blob = field.getValue();
+        assertTrue(blob instanceof DatabaseBlobField.LazyBlob);
+        assertEquals(blob.getSize(), 8);
+        assertEquals(IOUtils.toString(blob.getInputStream(), StandardCharsets.UTF_8), "contents");
+
+        java.sql.Blob original = bean.sqlBlob;
+        field.writeToObject(bean);
+        assertSame(bean.sqlBlob, original);
+    }
+
+    public void testUploadIsStreamedToSqlBlob() throws Exception {
+        Bean bean = new Bean();
+        DatabaseBlobField field = createField("sqlBlob");
+        Blob upload = new Blob(field.generateNewCode());
+        //Unknown size, as with a chunked upload
+        upload.setSize(-1);
+        upload.setInputStream(new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8)));
+        field.setValue(upload);
+        field.writeToObject(bean);
+
+        assertEquals(bean.sqlBlob.length(), 8);
+        assertEquals(IOUtils.toString(bean.sqlBlob.getBinaryStream(), StandardCharsets.UTF_8), "uploaded");
+    }
+
+    public void testUploadToByteArray() throws Exception {
+        Bean bean = new Bean();
+        DatabaseBlobField field = createField("bytes");
+        Blob upload = new Blob(field.generateNewCode());
+        upload.setSize(8);
+        upload.setInputStream(new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8)));
+        field.setValue(upload);
+        field.writeToObject(bean);
+
+        assertEquals(new String(bean.bytes, StandardCharsets.UTF_8), "uploaded");
+    }
+}
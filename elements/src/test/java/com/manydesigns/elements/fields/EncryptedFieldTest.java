@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.fields;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.FieldEncrypter;
+import com.manydesigns.elements.annotations.Encrypted;
+import com.manydesigns.elements.forms.Form;
+import com.manydesigns.elements.forms.FormBuilder;
+import com.manydesigns.elements.forms.TableForm;
+import com.manydesigns.elements.forms.TableFormBuilder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class EncryptedFieldTest extends AbstractElementsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static class CountingEncrypter implements FieldEncrypter {
+        static int singleDecryptions;
+        static int bulkDecryptions;
+
+        public String encrypt(String value) {
+            return value == null ? null : "enc:" + value;
+        }
+
+        public String decrypt(String value) {
+            singleDecryptions++;
+            return value == null ? null : value.substring(4);
+        }
+
+        @Override
+        public List<String> decrypt(List<String> values) {
+            bulkDecryptions++;
+            List<String> decrypted = new ArrayList<>(values.size());
+            for (String value : values) {
+                decrypted.add(value == null ? null : value.substring(4));
+            }
+            return decrypted;
+        }
+    }
+
+    public static class OtherEncrypter extends CountingEncrypter {
+        @Override
+        public List<String> decrypt(List<String> values) {
+            List<String> decrypted = new ArrayList<>(values.size());
+            for (String value : super.decrypt(values)) {
+                decrypted.add(value == null ? null : value.toUpperCase());
+            }
+            return decrypted;
+        }
+    }
+
+    public static class OtherBean {
+        @Encrypted("com.manydesigns.elements.fields.EncryptedFieldTest$CountingEncrypter")
+        public String secret;
+        @Encrypted("com.manydesigns.elements.fields.EncryptedFieldTest$OtherEncrypter")
+        public String otherSecret;
+
+        public OtherBean(String secret, String otherSecret) {
+            this.secret = secret;
+            this.otherSecret = otherSecret;
+        }
+    }
+
+    public static class Bean {
+        @Encrypted("com.manydesigns.elements.fields.EncryptedFieldTest$CountingEncrypter")
+        public String secret;
+        @Encrypted("com.manydesigns.elements.fields.EncryptedFieldTest$CountingEncrypter")
+        public String otherSecret;
+
+        public Bean(String secret, String otherSecret) {
+            this.secret = secret;
+            this.otherSecret = otherSecret;
+        }
+    }
+
+    @Override
+    @BeforeMethod
+    public void setUp() throws Exception {
+        super.setUp();
+        CountingEncrypter.singleDecryptions = 0;
+        CountingEncrypter.bulkDecryptions = 0;
+    }
+
+    public void testTableFormDecryptsInBulk() {
+        List<Bean> beans = new ArrayList<>();
+        beans.add(new Bean("enc:a1", "enc:b1"));
+        beans.add(new Bean("enc:a2", null));
+        beans.add(new Bean("enc:a3", "enc:b3"));
+        TableForm tableForm = new TableFormBuilder(Bean.class).configNRows(beans.size()).build();
+        tableForm.readFromObject(beans);
+
+        assertEquals(CountingEncrypter.bulkDecryptions, 1);
+        assertEquals(CountingEncrypter.singleDecryptions, 0);
+        assertEquals(((EncryptedField) tableForm.getRows()[0].findFieldByPropertyName("secret")).getStringValue(), "a1");
+        assertEquals(((EncryptedField) tableForm.getRows()[1].findFieldByPropertyName("otherSecret")).getStringValue(), null);
+        assertEquals(((EncryptedField) tableForm.getRows()[2].findFieldByPropertyName("otherSecret")).getStringValue(), "b3");
+    }
+
+    public void testFormDecryptsInBulk() {
+        Form form = new FormBuilder(Bean.class).build();
+        form.readFromObject(new Bean("enc:a", "enc:b"));
+
+        assertEquals(CountingEncrypter.bulkDecryptions, 1);
+        assertEquals(CountingEncrypter.singleDecryptions, 0);
+        assertEquals(((EncryptedField) form.findFieldByPropertyName("secret")).getStringValue(), "a");
+        assertEquals(((EncryptedField) form.findFieldByPropertyName("otherSecret")).getStringValue(), "b");
+    }
+
+    public void testEachEncrypterDecryptsItsOwnFields() {
+        List<OtherBean> beans = new ArrayList<>();
+        beans.add(new OtherBean("enc:a1", "enc:b1"));
+        beans.add(new OtherBean("enc:a2", "enc:b2"));
+        TableForm tableForm = new TableFormBuilder(OtherBean.class).configNRows(beans.size()).build();
+        tableForm.readFromObject(beans);
+
+        EncryptedField secret = (EncryptedField) tableForm.getRows()[0].findFieldByPropertyName("secret");
+        EncryptedField otherSecret = (EncryptedField) tableForm.getRows()[1].findFieldByPropertyName("otherSecret");
+        assertSame(((EncryptedField) tableForm.getRows()[1].findFieldByPropertyName("secret")).getEncrypter(),
+                secret.getEncrypter());
+        assertNotSame(otherSecret.getEncrypter(), secret.getEncrypter());
+        assertEquals(CountingEncrypter.bulkDecryptions, 2);
+        assertEquals(CountingEncrypter.singleDecryptions, 0);
+        assertEquals(secret.getStringValue(), "a1");
+        assertEquals(otherSecret.getStringValue(), "B2");
+    }
+
+    public void testChangedValueIsDecryptedAgain() {
+        Form form = new FormBuilder(Bean.class).build();
+        EncryptedField field = (EncryptedField) form.findFieldByPropertyName("secret");
+        field.setPrefetchedValue("enc:old", "old");
+        field.readFromObject(new Bean("enc:new", null));
+
+        assertEquals(field.getStringValue(), "new");
+        assertEquals(CountingEncrypter.singleDecryptions, 1);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.elements.fields.search;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.annotations.FullTextSearch;
+import com.manydesigns.elements.forms.SearchForm;
+import com.manydesigns.elements.forms.SearchFormBuilder;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class TextSearchFieldTest extends AbstractElementsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static class Bean {
+        @FullTextSearch
+        public String description;
+        public String name;
+    }
+
+    public void testFullTextSearchOnlyForAnnotatedProperties() {
+        SearchForm form = new SearchFormBuilder(Bean.class).build();
+        TextSearchField description = (TextSearchField) form.findSearchFieldByPropertyName("description");
+        TextSearchField name = (TextSearchField) form.findSearchFieldByPropertyName("name");
+        assertTrue(description.isFullTextSearch());
+        description.setValue("red chair");
+        name.setValue("chair");
+
+        BaseCriteria criteria = new BaseCriteria();
+        form.configureCriteria(criteria);
+        assertEquals(criteria.size(), 2);
+        for (Criterion criterion : criteria) {
+            String propertyName = criterion.getPropertyAccessor().getName();
+            if ("description".equals(propertyName)) {
+                assertTrue(criterion instanceof BaseCriteria.FullTextCriterion);
+                assertEquals(((BaseCriteria.FullTextCriterion) criterion).getValue(), "red chair");
+            } else {
+                assertTrue(criterion instanceof BaseCriteria.IlikeCriterion);
+            }
+        }
+    }
+
+    public void testOtherMatchModesDoNotUseFullTextSearch() {
+        SearchForm form = new SearchFormBuilder(Bean.class).build();
+        TextSearchField description = (TextSearchField) form.findSearchFieldByPropertyName("description");
+        description.setValue("red");
+        description.setMatchMode(TextMatchMode.STARTS_WITH);
+
+        BaseCriteria criteria = new BaseCriteria();
+        description.configureCriteria(criteria);
+        assertEquals(criteria.size(), 1);
+        BaseCriteria.IlikeCriterion criterion = (BaseCriteria.IlikeCriterion) criteria.get(0);
+        assertEquals(criterion.getTextMatchMode(), TextMatchMode.STARTS_WITH);
+    }
+}
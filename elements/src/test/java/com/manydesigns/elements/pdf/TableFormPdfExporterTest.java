@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.elements.pdf;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.fields.Field;
+import com.manydesigns.elements.forms.TableForm;
+import com.manydesigns.elements.forms.TableFormBuilder;
+import com.manydesigns.elements.xml.XmlBuffer;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertTrue;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class TableFormPdfExporterTest extends AbstractElementsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static class Bean {
+        public String name;
+        public Integer quantity;
+
+        public Bean(String name, Integer quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    public void testXmlIsUnchanged() throws Exception {
+        List<Bean> beans = Arrays.asList(
+                new Bean("Fish & chips", 2), new Bean("<b>bold</b>", null), new Bean(null, 10));
+        TableForm tableForm = new TableFormBuilder(Bean.class).configNRows(beans.size()).build();
+        tableForm.readFromObject(beans);
+        TableFormPdfExporter exporter = new TableFormPdfExporter(tableForm, null);
+        exporter.setTitle("Beans & \"co\"");
+
+        SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
+        TransformerHandler handler = factory.newTransformerHandler();
+        DOMResult result = new DOMResult();
+        handler.setResult(result);
+        exporter.composeXml(handler);
+        Document actual = (Document) result.getNode();
+
+        //Namespace aware, like the DOM built from the SAX events, so that elements have the same local names
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        Document expected = documentBuilderFactory.newDocumentBuilder().parse(
+                new InputSource(new StringReader(composeXmlAsString(exporter))));
+
+        actual.normalizeDocument();
+        expected.normalizeDocument();
+        assertTrue(expected.getDocumentElement().isEqualNode(actual.getDocumentElement()));
+    }
+
+    /**
+     * The XML as it was built before it was produced as SAX events.
+     */
+    protected String composeXmlAsString(TableFormPdfExporter exporter) {
+        XmlBuffer xb = new XmlBuffer();
+        xb.writeXmlHeader("UTF-8");
+        xb.openElement("class");
+        xb.openElement("table");
+        if(exporter.getTitle() != null) {
+            xb.write(exporter.getTitle());
+        }
+        xb.closeElement("table");
+
+        double[] columnSizes = exporter.setupColumnSizes();
+
+        for (double columnSize : columnSizes) {
+            xb.openElement("column");
+            xb.openElement("width");
+            xb.write(columnSize + "em");
+            xb.closeElement("width");
+            xb.closeElement("column");
+        }
+
+        for (TableForm.Column col : exporter.getForm().getColumns()) {
+            xb.openElement("header");
+            xb.openElement("nameColumn");
+            xb.write(col.getLabel());
+            xb.closeElement("nameColumn");
+            xb.closeElement("header");
+        }
+
+
+        for (TableForm.Row row : exporter.getForm().getRows()) {
+            xb.openElement("rows");
+            for (Field field : row) {
+                xb.openElement("row");
+                xb.openElement("value");
+                xb.write(field.getStringValue());
+                xb.closeElement("value");
+                xb.closeElement("row");
+            }
+            xb.closeElement("rows");
+        }
+
+        xb.closeElement("class");
+        return xb.toString();
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.elements.util;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class RequestTimingsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    @AfterMethod
+    public void tearDown() {
+        RequestTimings.stop();
+    }
+
+    public void testSpansWithoutCollector() {
+        assertNull(RequestTimings.current());
+        RequestTimings.span("db").close();
+        assertNull(RequestTimings.current());
+    }
+
+    public void testSpans() {
+        RequestTimings timings = RequestTimings.start();
+        assertSame(RequestTimings.current(), timings);
+        try(RequestTimings.Span ignored = RequestTimings.span("db")) {
+            RequestTimings.span("db").close(); //Nested, not counted twice
+        }
+        RequestTimings.span("form").close();
+        timings.add("db", 2000000);
+        Map<String, Double> durations = timings.getDurations();
+        assertEquals(durations.keySet().toArray(), new String[] { "db", "form" });
+        assertTrue(durations.get("db") >= 2.0);
+
+        String header = timings.toServerTimingHeader();
+        assertTrue(header.startsWith("db;dur="), header);
+        assertTrue(header.contains(";desc=\"3 spans\", form;dur="), header);
+        assertTrue(header.contains(", total;dur="), header);
+        assertTrue(timings.toString().matches("total \\d+\\.\\dms \\[db \\d+\\.\\dms \\(3\\), form \\d+\\.\\dms]"),
+                timings.toString());
+
+        assertSame(RequestTimings.stop(), timings);
+        assertNull(RequestTimings.current());
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.elements.xls;
+
+import com.manydesigns.elements.AbstractElementsTest;
+import com.manydesigns.elements.annotations.Password;
+import com.manydesigns.elements.fields.PasswordField;
+import com.manydesigns.elements.forms.TableForm;
+import com.manydesigns.elements.forms.TableFormBuilder;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class TableFormXlsxWriterTest extends AbstractElementsTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static class Bean {
+        public String name;
+        public BigDecimal amount;
+        public Date date;
+        @Password
+        public String password;
+
+        public Bean(String name, BigDecimal amount, Date date, String password) {
+            this.name = name;
+            this.amount = amount;
+            this.date = date;
+            this.password = password;
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        Date date = new GregorianCalendar(2020, Calendar.SEPTEMBER, 13).getTime();
+        List<Bean> beans = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            beans.add(new Bean("name " + i, i % 2 == 0 ? new BigDecimal(i + ".5") : null, date, "secret"));
+        }
+        TableForm tableForm = new TableFormBuilder(Bean.class).configNRows(beans.size()).build();
+        tableForm.readFromObject(beans);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        //A window smaller than the number of rows, so that some of them are flushed to the temporary file
+        try(TableFormXlsxWriter writer = new TableFormXlsxWriter("Beans", 2)) {
+            writer.writeHeader(tableForm);
+            writer.writeRows(tableForm);
+            writer.write(out);
+        }
+
+        try(Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(workbook.getNumberOfSheets(), 1);
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals(sheet.getSheetName(), "Beans");
+            assertEquals(sheet.getLastRowNum(), beans.size());
+
+            Row header = sheet.getRow(0);
+            TableForm.Column[] columns = tableForm.getColumns();
+            assertEquals(header.getLastCellNum(), columns.length);
+            for(int j = 0; j < columns.length; j++) {
+                assertEquals(header.getCell(j).getStringCellValue(), columns[j].getLabel());
+            }
+
+            for(int i = 0; i < beans.size(); i++) {
+                Row row = sheet.getRow(i + 1);
+                Cell name = row.getCell(0);
+                assertEquals(name.getCellType(), CellType.STRING);
+                assertEquals(name.getStringCellValue(), "name " + i);
+                Cell amount = row.getCell(1);
+                if(i % 2 == 0) {
+                    assertEquals(amount.getCellType(), CellType.NUMERIC);
+                    assertEquals(amount.getNumericCellValue(), i + 0.5, 0.0001);
+                } else {
+                    assertNull(amount);
+                }
+                Cell dateCell = row.getCell(2);
+                assertEquals(dateCell.getCellType(), CellType.NUMERIC);
+                assertTrue(DateUtil.isCellDateFormatted(dateCell));
+                assertEquals(dateCell.getDateCellValue(), date);
+                assertEquals(row.getCell(3).getStringCellValue(), PasswordField.PASSWORD_PLACEHOLDER);
+            }
+        }
+    }
+
+}
@@ -57,6 +57,8 @@ public class FileSystemMailQueue implements MailQueue {
     protected final JAXBContext jaxbContext;
     protected boolean keepSent;
 
+    protected static final Pattern EMAIL_FILE_NAME_PATTERN = Pattern.compile("^email-(.*)\\.xml$");
+
     protected static final Logger logger = LoggerFactory.getLogger(FileSystemMailQueue.class);
 
     public FileSystemMailQueue(File directory) {
@@ -97,7 +99,6 @@ public class FileSystemMailQueue implements MailQueue {
             Marshaller marshaller = jaxbContext.createMarshaller();
             marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
             String emailId = RandomUtil.createRandomId(20);
-            File destinationFile = getEmailFile(emailId);
             checkDirectory(queuedDirectory);
             if(!email.getAttachments().isEmpty()) {
                 File attachDir = getEmailAttachmentsDirectory(emailId);
@@ -112,17 +113,38 @@ public class FileSystemMailQueue implements MailQueue {
                     attachment.setFilePath(attachmentFile.getAbsolutePath());
                 }
             }
-            marshaller.marshal(email, destinationFile);
+            writeEmailFile(marshaller, email, emailId);
             return emailId;
         } catch (Exception e) {
             throw new QueueException("Couldn't enqueue mail", e);
         }
     }
 
+    /**
+     * Writes an email to its file in the queue directory.
+     * @param marshaller the marshaller to use.
+     * @param email the email.
+     * @param emailId the id of the email.
+     */
+    protected void writeEmailFile(Marshaller marshaller, Email email, String emailId)
+            throws JAXBException, QueueException {
+        marshaller.marshal(email, getEmailFile(emailId));
+    }
+
     protected File getEmailFile(String emailId) {
         return RandomUtil.getCodeFile(queuedDirectory, "email-{0}.xml", emailId);
     }
 
+    /**
+     * Returns the file holding an enqueued email, for loading it or marking it as sent or failed. By default, it's
+     * the same as {@link #getEmailFile(String)}; subclasses may keep emails in other places during processing.
+     * @param emailId the id of the email.
+     * @return the file. It might not exist.
+     */
+    protected File locateEmailFile(String emailId) {
+        return getEmailFile(emailId);
+    }
+
     protected File getEmailAttachmentsDirectory(String emailId) {
         return RandomUtil.getCodeFile(queuedDirectory, "email-{0}-attachments", emailId);
     }
@@ -130,21 +152,34 @@ public class FileSystemMailQueue implements MailQueue {
     public List<String> getEnqueuedEmailIds() throws QueueException {
         checkDirectory(queuedDirectory);
         List<String> ids = new ArrayList<String>();
-        Pattern pattern = Pattern.compile("^email-(.*)\\.xml$");
         for(String filename : queuedDirectory.list()) {
-            Matcher matcher = pattern.matcher(filename);
-            if(matcher.matches()) {
+            String id = getEmailId(filename);
+            if(id != null) {
                 logger.debug("Path matched: {}", filename);
-                ids.add(matcher.group(1));
+                ids.add(id);
             }
         }
         return ids;
     }
 
+    /**
+     * Extracts the id of an email from the name of its file in the queue directory.
+     * @param filename the name of the file.
+     * @return the id, or null if the file does not hold a queued email.
+     */
+    protected String getEmailId(String filename) {
+        Matcher matcher = EMAIL_FILE_NAME_PATTERN.matcher(filename);
+        if(matcher.matches()) {
+            return matcher.group(1);
+        } else {
+            return null;
+        }
+    }
+
     public Email loadEmail(String id) throws QueueException {
         try {
             Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            File emailFile = getEmailFile(id);
+            File emailFile = locateEmailFile(id);
             if(emailFile.exists()) {
                 logger.debug("Found email with id: {}", id);
                 Email email = (Email) unmarshaller.unmarshal(emailFile);
@@ -163,12 +198,12 @@ public class FileSystemMailQueue implements MailQueue {
     public void markSent(String id) throws QueueException {
         checkDirectories();
         try {
-            File emailFile = getEmailFile(id);
+            File emailFile = locateEmailFile(id);
             if(emailFile.exists()) {
                 File attachmentsDir = getEmailAttachmentsDirectory(id);
                 if(keepSent) {
                     logger.info("Moving email with id {} to sent directory", id);
-                    FileUtils.moveToDirectory(emailFile, sentDirectory, false);
+                    FileUtils.moveFile(emailFile, new File(sentDirectory, getEmailFile(id).getName()));
                     if(attachmentsDir.exists()) {
                         FileUtils.moveToDirectory(attachmentsDir, sentDirectory, false);
                     }
@@ -196,11 +231,11 @@ public class FileSystemMailQueue implements MailQueue {
     public void markFailed(String id) throws QueueException {
         checkDirectories();
         try {
-            File emailFile = getEmailFile(id);
+            File emailFile = locateEmailFile(id);
             if(emailFile.exists()) {
                 File attachmentsDir = getEmailAttachmentsDirectory(id);
                 logger.info("Marking email with id {} as failed", id);
-                FileUtils.moveToDirectory(emailFile, failedDirectory, false);
+                FileUtils.moveFile(emailFile, new File(failedDirectory, getEmailFile(id).getName()));
                 if(attachmentsDir.exists()) {
                     FileUtils.moveToDirectory(attachmentsDir, failedDirectory, false);
                 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.mail.queue.model.Email;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A {@link FileSystemMailQueue} that keeps the ids of the enqueued emails in memory, in enqueue order, so that
+ * {@link #getEnqueuedEmailIds()} does not have to list the queue directory. The index is backed by an append-only
+ * journal file, which is replayed and reconciled with the contents of the queue directory when the queue is opened.
+ * Thus, the queue recovers from crashes, and an existing directory written by {@link FileSystemMailQueue} is migrated
+ * transparently the first time it's opened.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class IndexedFileSystemMailQueue extends FileSystemMailQueue {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final String JOURNAL_FILE_NAME = "queue.journal";
+    public static final char ENQUEUED = '+';
+    public static final char REMOVED = '-';
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    protected final File journalFile;
+    protected final LinkedHashSet<String> index = new LinkedHashSet<>();
+    protected final Map<String, Long> leases = new HashMap<>();
+    protected Writer journal;
+    protected int removedSinceCompaction;
+    protected int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+    public IndexedFileSystemMailQueue(File directory) {
+        super(directory);
+        this.journalFile = new File(directory, JOURNAL_FILE_NAME);
+        try {
+            open();
+        } catch (IOException e) {
+            throw new Error("Couldn't open the mail queue journal " + journalFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the journal and the queue directory, then rewrites the journal in compact form.
+     */
+    protected synchronized void open() throws IOException {
+        index.clear();
+        if(journalFile.exists()) {
+            replayJournal();
+        } else {
+            logger.info("Mail queue journal {} not found, building it from the queue directory", journalFile);
+        }
+        reconcile();
+        compact();
+    }
+
+    protected void replayJournal() throws IOException {
+        try(BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if(line.length() < 2) {
+                    continue;
+                }
+                String id = line.substring(1);
+                if(line.charAt(0) == ENQUEUED) {
+                    index.add(id);
+                } else if(line.charAt(0) == REMOVED) {
+                    index.remove(id);
+                } else {
+                    logger.warn("Ignoring invalid entry in mail queue journal: {}", line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops ids whose email file is gone and appends emails that are in the queue directory but not in the journal,
+     * oldest first. Both situations can only arise after a crash or when migrating from a non-indexed queue.
+     */
+    protected void reconcile() {
+        index.removeIf(id -> !getEmailFile(id).exists());
+        File[] files = queuedDirectory.listFiles();
+        if(files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for(File file : files) {
+            String id = getEmailId(file.getName());
+            if(id != null && index.add(id)) {
+                logger.debug("Email with id {} was not in the journal, adding it", id);
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the journal with one that only contains the currently enqueued ids.
+     */
+    protected synchronized void compact() throws IOException {
+        closeJournal();
+        File tempFile = new File(journalFile.getParentFile(), JOURNAL_FILE_NAME + ".tmp");
+        try(Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            for(String id : index) {
+                writer.write(ENQUEUED);
+                writer.write(id);
+                writer.write('\n');
+            }
+        }
+        Files.move(tempFile.toPath(), journalFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        removedSinceCompaction = 0;
+        journal = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+    }
+
+    protected void appendToJournal(char operation, String id) throws QueueException {
+        try {
+            journal.write(operation);
+            journal.write(id);
+            journal.write('\n');
+            journal.flush();
+        } catch (IOException e) {
+            throw new QueueException("Couldn't write to the mail queue journal", e);
+        }
+    }
+
+    protected synchronized void removeFromIndex(String id) throws QueueException {
+        leases.remove(id);
+        if(index.remove(id)) {
+            appendToJournal(REMOVED, id);
+            removedSinceCompaction++;
+            if(removedSinceCompaction >= Math.max(compactionThreshold, index.size())) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    throw new QueueException("Couldn't compact the mail queue journal", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String enqueue(Email email) throws QueueException {
+        String id = super.enqueue(email);
+        synchronized (this) {
+            index.add(id);
+            appendToJournal(ENQUEUED, id);
+        }
+        return id;
+    }
+
+    @Override
+    public synchronized List<String> getEnqueuedEmailIds() {
+        return new ArrayList<>(index);
+    }
+
+    /**
+     * Claims an email for the consumers in this process. Leases are only kept in memory, as this queue
+     * does not support sharing its directory among processes.
+     */
+    @Override
+    public synchronized boolean claim(String id, long leaseDuration) {
+        if(!index.contains(id)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        Long expiration = leases.get(id);
+        if(expiration != null && expiration >= now) {
+            return false;
+        }
+        leases.put(id, now + leaseDuration);
+        return true;
+    }
+
+    @Override
+    public synchronized void release(String id) {
+        leases.remove(id);
+    }
+
+    @Override
+    public void markSent(String id) throws QueueException {
+        super.markSent(id);
+        removeFromIndex(id);
+    }
+
+    @Override
+    public void markFailed(String id) throws QueueException {
+        super.markFailed(id);
+        removeFromIndex(id);
+    }
+
+    protected void closeJournal() {
+        if(journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warn("Couldn't close the mail queue journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    public synchronized void close() {
+        closeJournal();
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.elements.util.ElementsFileUtils;
+import com.manydesigns.elements.util.RandomUtil;
+import com.manydesigns.mail.queue.model.Attachment;
+import com.manydesigns.mail.queue.model.Email;
+import com.manydesigns.mail.queue.model.Recipient;
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link MailQueue} that stores emails and their attachments in a relational database, so that it can be shared
+ * among several application nodes. The tables are created and updated with Liquibase. Emails are claimed
+ * with a conditional update of their lease, so that only one consumer can hold a valid lease on an email.
+ * Attachments are copied to a local working directory when an email is loaded, and deleted once it's been processed.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class JdbcMailQueue implements MailQueue {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final String CHANGELOG = "com/manydesigns/mail/queue/jdbc-mail-queue.changelog.xml";
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_SENT = "sent";
+    public static final String STATUS_FAILED = "failed";
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    protected final ConnectionSupplier connectionSupplier;
+    protected final File attachmentsDirectory;
+    protected final JAXBContext jaxbContext;
+    protected boolean keepSent;
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+
+    protected static final Logger logger = LoggerFactory.getLogger(JdbcMailQueue.class);
+
+    @FunctionalInterface
+    public interface ConnectionSupplier {
+        Connection getConnection() throws SQLException;
+    }
+
+    public JdbcMailQueue(DataSource dataSource, File attachmentsDirectory) {
+        this(dataSource::getConnection, attachmentsDirectory);
+    }
+
+    /**
+     * Creates the queue.
+     * @param connectionSupplier provides the connections to the database. Connections are closed after each operation.
+     * @param attachmentsDirectory the local directory where attachments are copied while the email is being sent.
+     */
+    public JdbcMailQueue(ConnectionSupplier connectionSupplier, File attachmentsDirectory) {
+        this.connectionSupplier = connectionSupplier;
+        this.attachmentsDirectory = attachmentsDirectory;
+        if(!ElementsFileUtils.ensureDirectoryExistsAndWritable(attachmentsDirectory)) {
+            logger.warn("Directory does not exist or is not writable: {}", attachmentsDirectory);
+        }
+        try {
+            jaxbContext = JAXBContext.newInstance(Email.class, Recipient.class);
+        } catch (JAXBException e) {
+            throw new Error("Couldn't create jaxb context", e);
+        }
+    }
+
+    /**
+     * Creates or updates the tables of the queue. Requires Liquibase on the classpath; otherwise, the tables must be
+     * created by other means, using the changelog {@link #CHANGELOG} as a reference.
+     * @throws QueueException if Liquibase fails or is not available.
+     */
+    public void updateSchema() throws QueueException {
+        try(Connection connection = connectionSupplier.getConnection()) {
+            liquibase.database.Database database =
+                    DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase(
+                    CHANGELOG, new ClassLoaderResourceAccessor(getClass().getClassLoader()), database);
+            liquibase.update(new Contexts());
+        } catch (NoClassDefFoundError e) {
+            throw new QueueException("Liquibase is not available, the mail queue tables must be created manually", e);
+        } catch (Exception e) {
+            throw new QueueException("Couldn't create or update the mail queue tables", e);
+        }
+    }
+
+    public String enqueue(Email email) throws QueueException {
+        String emailId = RandomUtil.createRandomId(20);
+        try(Connection connection = connectionSupplier.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                String content = marshal(email);
+                try(PreparedStatement statement = connection.prepareStatement(
+                        "insert into portofino_mail_queue (id, status, enqueued_at, content) values (?, ?, ?, ?)")) {
+                    statement.setString(1, emailId);
+                    statement.setString(2, STATUS_QUEUED);
+                    statement.setLong(3, System.currentTimeMillis());
+                    statement.setCharacterStream(4, new StringReader(content), content.length());
+                    statement.executeUpdate();
+                }
+                if(!email.getAttachments().isEmpty()) {
+                    try(PreparedStatement statement = connection.prepareStatement(
+                            "insert into portofino_mail_attachment (email_id, attachment_index, data) values (?, ?, ?)")) {
+                        int index = 0;
+                        for(Attachment attachment : email.getAttachments()) {
+                            try(InputStream inputStream = attachment.getInputStream()) {
+                                statement.setString(1, emailId);
+                                statement.setInt(2, index++);
+                                statement.setBinaryStream(3, inputStream);
+                                statement.executeUpdate();
+                            }
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            }
+            return emailId;
+        } catch (Exception e) {
+            throw new QueueException("Couldn't enqueue mail", e);
+        }
+    }
+
+    protected String marshal(Email email) throws JAXBException {
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(email, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Returns the ids of the first {@link #getBatchSize()} emails, in enqueue order, that are not claimed
+     * by any consumer.
+     */
+    public List<String> getEnqueuedEmailIds() throws QueueException {
+        List<String> ids = new ArrayList<>();
+        try(Connection connection = connectionSupplier.getConnection();
+            PreparedStatement statement = connection.prepareStatement(
+                    "select id from portofino_mail_queue " +
+                    "where status = ? and (lease_expiration is null or lease_expiration < ?) " +
+                    "order by enqueued_at, id")) {
+            statement.setString(1, STATUS_QUEUED);
+            statement.setLong(2, System.currentTimeMillis());
+            statement.setMaxRows(batchSize);
+            try(ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new QueueException("Couldn't read the mail queue", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Claims an email with a single conditional update, that only succeeds if the email is still queued and its
+     * previous lease, if any, has expired. The database serializes concurrent updates of the same row and re-evaluates
+     * the condition, so exactly one consumer gets the lease.
+     */
+    @Override
+    public boolean claim(String id, long leaseDuration) throws QueueException {
+        long now = System.currentTimeMillis();
+        int updated = executeUpdate(
+                "update portofino_mail_queue set lease_expiration = ? " +
+                "where id = ? and status = ? and (lease_expiration is null or lease_expiration < ?)",
+                "Couldn't claim mail with id " + id,
+                now + leaseDuration, id, STATUS_QUEUED, now);
+        return updated == 1;
+    }
+
+    @Override
+    public void release(String id) throws QueueException {
+        deleteLocalAttachments(id);
+        executeUpdate(
+                "update portofino_mail_queue set lease_expiration = null where id = ? and status = ?",
+                "Couldn't release mail with id " + id, id, STATUS_QUEUED);
+    }
+
+    public Email loadEmail(String id) throws QueueException {
+        try(Connection connection = connectionSupplier.getConnection()) {
+            Email email;
+            try(PreparedStatement statement = connection.prepareStatement(
+                    "select content from portofino_mail_queue where id = ? and status = ?")) {
+                statement.setString(1, id);
+                statement.setString(2, STATUS_QUEUED);
+                try(ResultSet resultSet = statement.executeQuery()) {
+                    if(!resultSet.next()) {
+                        logger.debug("Email with id {} not found", id);
+                        return null;
+                    }
+                    try(Reader reader = resultSet.getCharacterStream(1)) {
+                        email = (Email) jaxbContext.createUnmarshaller().unmarshal(reader);
+                    } catch (JAXBException e) {
+                        throw new MailParseException("Couldn't parse email", e);
+                    }
+                }
+            }
+            if(!email.getAttachments().isEmpty()) {
+                loadAttachments(connection, id, email);
+            }
+            return email;
+        } catch (QueueException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new QueueException("Couldn't load email", e);
+        }
+    }
+
+    protected void loadAttachments(Connection connection, String id, Email email) throws SQLException, IOException {
+        File directory = getLocalAttachmentsDirectory(id);
+        if(!ElementsFileUtils.ensureDirectoryExistsAndWritable(directory)) {
+            throw new IOException("Invalid directory " + directory.getAbsolutePath());
+        }
+        try(PreparedStatement statement = connection.prepareStatement(
+                "select attachment_index, data from portofino_mail_attachment " +
+                "where email_id = ? order by attachment_index")) {
+            statement.setString(1, id);
+            try(ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int index = resultSet.getInt(1);
+                    File attachmentFile = new File(directory, index + ".bin");
+                    try(InputStream inputStream = resultSet.getBinaryStream(2)) {
+                        Files.copy(inputStream, attachmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    email.getAttachments().get(index).setFilePath(attachmentFile.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    protected File getLocalAttachmentsDirectory(String emailId) {
+        return RandomUtil.getCodeFile(attachmentsDirectory, "email-{0}-attachments", emailId);
+    }
+
+    protected void deleteLocalAttachments(String emailId) {
+        File directory = getLocalAttachmentsDirectory(emailId);
+        if(directory.exists()) {
+            try {
+                FileUtils.deleteDirectory(directory);
+            } catch (IOException e) {
+                logger.warn("Couldn't delete attachments directory " + directory, e);
+            }
+        }
+    }
+
+    public void markSent(String id) throws QueueException {
+        deleteLocalAttachments(id);
+        if(keepSent) {
+            logger.info("Marking email with id {} as sent", id);
+            executeUpdate(
+                    "update portofino_mail_queue set status = ?, lease_expiration = null where id = ?",
+                    "Couldn't mark mail as sent", STATUS_SENT, id);
+        } else {
+            logger.info("Deleting sent email with id {}", id);
+            try(Connection connection = connectionSupplier.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    try(PreparedStatement statement = connection.prepareStatement(
+                            "delete from portofino_mail_attachment where email_id = ?")) {
+                        statement.setString(1, id);
+                        statement.executeUpdate();
+                    }
+                    try(PreparedStatement statement = connection.prepareStatement(
+                            "delete from portofino_mail_queue where id = ?")) {
+                        statement.setString(1, id);
+                        statement.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new QueueException("Couldn't mark mail as sent", e);
+            }
+        }
+    }
+
+    public void markFailed(String id) throws QueueException {
+        deleteLocalAttachments(id);
+        logger.info("Marking email with id {} as failed", id);
+        executeUpdate(
+                "update portofino_mail_queue set status = ?, lease_expiration = null where id = ?",
+                "Couldn't mark mail as failed", STATUS_FAILED, id);
+    }
+
+    protected int executeUpdate(String sql, String errorMessage, Object... parameters) throws QueueException {
+        try(Connection connection = connectionSupplier.getConnection();
+            PreparedStatement statement = connection.prepareStatement(sql)) {
+            for(int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new QueueException(errorMessage, e);
+        }
+    }
+
+    public boolean isKeepSent() {
+        return keepSent;
+    }
+
+    public void setKeepSent(boolean keepSent) {
+        this.keepSent = keepSent;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public File getAttachmentsDirectory() {
+        return attachmentsDirectory;
+    }
+}
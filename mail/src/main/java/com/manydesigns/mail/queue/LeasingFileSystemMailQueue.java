@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.elements.util.RandomUtil;
+import com.manydesigns.mail.queue.model.Email;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link FileSystemMailQueue} that supports multiple concurrent consumers, possibly in different processes sharing
+ * the same directory, without any locking. An email is claimed by atomically renaming its file from the queue
+ * directory to the claimed directory; only one consumer can succeed. The expiration time of the lease, together with
+ * a random nonce, is part of the name of the claimed file. Expired claims are moved back to the queue directory, again
+ * with an atomic rename of the exact file that was found expired, when listing the enqueued emails. Attachments are never moved while an email is claimed. New
+ * emails are written to a temporary directory and renamed into the queue only when complete.
+ * This class requires a file system that supports atomic renames within the same directory tree.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class LeasingFileSystemMailQueue extends FileSystemMailQueue {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    /**
+     * Matches the name of a claimed email file, capturing the id of the email and the expiration time of the lease.
+     */
+    protected static final Pattern CLAIMED_EMAIL_FILE_NAME_PATTERN =
+            Pattern.compile("^email-(.*)\\.lease-(\\d+)-[a-z0-9]+\\.xml$");
+    protected static final int LEASE_NONCE_LENGTH = 8;
+
+    protected final File claimedDirectory;
+    protected final File temporaryDirectory;
+
+    public LeasingFileSystemMailQueue(File directory) {
+        super(directory);
+        this.claimedDirectory = new File(directory, "claimed");
+        this.temporaryDirectory = new File(directory, "tmp");
+        try {
+            checkDirectory(claimedDirectory);
+            checkDirectory(temporaryDirectory);
+        } catch (QueueException e) {
+            logger.warn("Directory does not exist or is not writable: {} or {}", claimedDirectory, temporaryDirectory);
+        }
+    }
+
+    /**
+     * Writes the email to a temporary file outside the queue directory, then atomically moves it into the queue, so
+     * that other consumers never claim a partially written email.
+     */
+    @Override
+    protected void writeEmailFile(Marshaller marshaller, Email email, String emailId)
+            throws JAXBException, QueueException {
+        File temporaryFile = writeTemporaryEmailFile(marshaller, email, emailId);
+        if(!moveAtomically(temporaryFile, getEmailFile(emailId))) {
+            throw new QueueException("Temporary file disappeared: " + temporaryFile);
+        }
+    }
+
+    protected File writeTemporaryEmailFile(Marshaller marshaller, Email email, String emailId)
+            throws JAXBException, QueueException {
+        checkDirectory(temporaryDirectory);
+        File temporaryFile = RandomUtil.getCodeFile(temporaryDirectory, "email-{0}.xml", emailId);
+        marshaller.marshal(email, temporaryFile);
+        return temporaryFile;
+    }
+
+    /**
+     * The file holding an email claimed with the given lease. The name embeds the expiration time and a random nonce,
+     * so that every claim of the same email has a distinct file.
+     */
+    protected File getClaimedEmailFile(String emailId, long expiration) {
+        String lease = expiration + "-" + RandomUtil.createRandomId(LEASE_NONCE_LENGTH);
+        return new File(claimedDirectory, "email-" + emailId + ".lease-" + lease + ".xml");
+    }
+
+    /**
+     * Finds the file of a claimed email.
+     * @param emailId the id of the email.
+     * @return the file, or null if the email is not claimed.
+     */
+    protected File findClaimedEmailFile(String emailId) {
+        String[] fileNames = claimedDirectory.list();
+        if(fileNames == null) {
+            return null;
+        }
+        for(String fileName : fileNames) {
+            Matcher matcher = CLAIMED_EMAIL_FILE_NAME_PATTERN.matcher(fileName);
+            if(matcher.matches() && matcher.group(1).equals(emailId)) {
+                return new File(claimedDirectory, fileName);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected File locateEmailFile(String emailId) {
+        File claimedFile = findClaimedEmailFile(emailId);
+        if(claimedFile != null) {
+            return claimedFile;
+        } else {
+            return getEmailFile(emailId);
+        }
+    }
+
+    @Override
+    public List<String> getEnqueuedEmailIds() throws QueueException {
+        requeueExpiredClaims();
+        return super.getEnqueuedEmailIds();
+    }
+
+    /**
+     * Moves back to the queue the emails whose lease has expired, so that they are redelivered. Only the exact claimed
+     * file that was observed to be expired is renamed; if it is gone (because the email was sent, released or requeued
+     * by another consumer in the meantime), it is left alone. A new claim of the same email has a different file name,
+     * so it is never requeued by mistake.
+     * @throws QueueException if the claimed directory is not accessible.
+     */
+    protected void requeueExpiredClaims() throws QueueException {
+        checkDirectory(claimedDirectory);
+        String[] fileNames = claimedDirectory.list();
+        if(fileNames == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for(String fileName : fileNames) {
+            Matcher matcher = CLAIMED_EMAIL_FILE_NAME_PATTERN.matcher(fileName);
+            if(!matcher.matches()) {
+                continue;
+            }
+            String id = matcher.group(1);
+            long expiration = Long.parseLong(matcher.group(2));
+            if(expiration < now) {
+                if(moveAtomically(new File(claimedDirectory, fileName), getEmailFile(id))) {
+                    logger.info("Lease on email with id {} has expired, put it back in the queue", id);
+                } else {
+                    logger.debug("Expired claim {} is gone, not requeueing it", fileName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean claim(String id, long leaseDuration) throws QueueException {
+        checkDirectory(claimedDirectory);
+        File claimedFile = getClaimedEmailFile(id, System.currentTimeMillis() + leaseDuration);
+        boolean claimed = moveAtomically(getEmailFile(id), claimedFile);
+        if(claimed) {
+            logger.debug("Claimed email with id {} for {}ms", id, leaseDuration);
+        } else {
+            logger.debug("Email with id {} is no longer in the queue", id);
+        }
+        return claimed;
+    }
+
+    @Override
+    public void release(String id) throws QueueException {
+        File claimedFile = findClaimedEmailFile(id);
+        if(claimedFile != null && moveAtomically(claimedFile, getEmailFile(id))) {
+            logger.debug("Released email with id {}", id);
+        }
+    }
+
+    /**
+     * Atomically renames a file.
+     * @return true if the file was renamed, false if the source file did not exist (i.e. another consumer moved it).
+     * @throws QueueException if the rename failed for any other reason.
+     */
+    protected boolean moveAtomically(File source, File destination) throws QueueException {
+        try {
+            Files.move(source.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new QueueException("Couldn't move " + source + " to " + destination, e);
+        }
+    }
+
+    @Override
+    protected void checkDirectories() throws QueueException {
+        super.checkDirectories();
+        checkDirectory(claimedDirectory);
+        checkDirectory(temporaryDirectory);
+    }
+
+    public File getClaimedDirectory() {
+        return claimedDirectory;
+    }
+}
@@ -88,6 +88,24 @@ public class LockingMailQueue implements MailQueue {
         }
     }
 
+    public boolean claim(String id, long leaseDuration) throws QueueException {
+        lock.writeLock().lock();
+        try {
+            return mailQueue.claim(id, leaseDuration);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void release(String id) throws QueueException {
+        lock.writeLock().lock();
+        try {
+            mailQueue.release(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     public void setKeepSent(boolean keepSent) {
         mailQueue.setKeepSent(keepSent);
     }
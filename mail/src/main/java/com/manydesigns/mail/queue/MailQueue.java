@@ -43,6 +43,30 @@ public interface MailQueue {
     void markSent(String id) throws QueueException;
     void markFailed(String id) throws QueueException;
 
+    /**
+     * Claims an enqueued email so that no other consumer of the queue, in this or in other processes, will send it
+     * until the lease expires or the email is released. A consumer is expected to claim an email before loading it,
+     * and to either mark it as sent, as failed, or release it afterwards. If the consumer dies, the email
+     * is redelivered once the lease has expired; so, the lease should be longer than the time it takes to send
+     * an email.
+     * The default implementation always succeeds, which is correct for queues that only support a single consumer.
+     * @param id the id of the email.
+     * @param leaseDuration the duration of the lease in milliseconds.
+     * @return true if the email was claimed, false if another consumer holds a valid lease on it or if it's no longer
+     * in the queue.
+     * @throws QueueException if the queue could not be accessed.
+     */
+    default boolean claim(String id, long leaseDuration) throws QueueException {
+        return true;
+    }
+
+    /**
+     * Releases a claim without marking the email as sent or failed, so that it can be retried.
+     * @param id the id of the email.
+     * @throws QueueException if the queue could not be accessed.
+     */
+    default void release(String id) throws QueueException {}
+
 
     boolean isKeepSent();
 
@@ -37,8 +37,13 @@ import javax.mail.MethodNotSupportedException;
 import javax.mail.SendFailedException;
 import javax.mail.internet.ParseException;
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -58,6 +63,10 @@ public class DefaultMailSender implements MailSender {
     protected boolean tls = false;
     protected String login;
     protected String password;
+    protected int threads = 1;
+    protected long leaseDuration = DEFAULT_LEASE_DURATION;
+
+    public static final long DEFAULT_LEASE_DURATION = 5 * 60 * 1000;
 
     public static final Logger logger = LoggerFactory.getLogger(DefaultMailSender.class);
 
@@ -73,65 +82,126 @@ public class DefaultMailSender implements MailSender {
             logger.error("Couldn't read email queue", e);
             return -1;
         }
-        int serverErrors = 0;
-        for(String id : ids) {
-            if(idsToMarkAsSent.contains(id)) {
-                logger.info("Mail with id {} already sent but mark failed, retrying", id);
-                try {
-                    queue.markSent(id);
-                    idsToMarkAsSent.remove(id);
-                } catch (Throwable e) {
-                    logger.error("Couldn't mark mail as sent", e);
+        if(threads <= 1 || ids.size() <= 1) {
+            int serverErrors = 0;
+            for(String id : ids) {
+                if(sendOne(id, idsToMarkAsSent)) {
+                    serverErrors++;
                 }
-                continue;
             }
-            Email email;
+            return serverErrors;
+        }
+        Set<String> sharedIdsToMarkAsSent = Collections.synchronizedSet(idsToMarkAsSent);
+        AtomicInteger serverErrors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, ids.size()));
+        try {
+            for(String id : ids) {
+                executor.submit(() -> {
+                    if(sendOne(id, sharedIdsToMarkAsSent)) {
+                        serverErrors.incrementAndGet();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.debug("Still sending emails...");
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while sending emails");
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return serverErrors.get();
+    }
+
+    /**
+     * Claims, loads and sends a single email from the queue.
+     * @param id the id of the email.
+     * @param idsToMarkAsSent the ids of emails that have been sent but couldn't be marked as sent.
+     * @return true if the email could not be sent because of a (possibly temporary) server error.
+     */
+    protected boolean sendOne(String id, Set<String> idsToMarkAsSent) {
+        if(idsToMarkAsSent.contains(id)) {
+            logger.info("Mail with id {} already sent but mark failed, retrying", id);
             try {
-                email = queue.loadEmail(id);
-            } catch (MailParseException e) {
-                logger.error("Mail with id " + id + " is corrupted, marking as failed", e);
-                markFailed(id, e);
-                continue;
+                queue.markSent(id);
+                idsToMarkAsSent.remove(id);
             } catch (Throwable e) {
-                logger.error("Unexpected error loading mail with id " + id + ", skipping", e);
-                continue;
+                logger.error("Couldn't mark mail as sent", e);
             }
-            if(email != null) {
-                boolean sent = false;
-                try {
-                    logger.info("Sending email with id {}", id);
-                    send(email);
-                    sent = true;
-                } catch (EmailException e) {
-                    Throwable cause = e.getCause();
-                    if(cause instanceof ParseException ||
-                       cause instanceof IllegalWriteException ||
-                       cause instanceof MethodNotSupportedException) {
-                        markFailed(id, cause);
-                    } else if(cause instanceof MessagingException) {
-                        if(e.getCause() instanceof SendFailedException && e.getCause().getCause() instanceof SMTPAddressFailedException) {
-                            logger.warn("Mail not sent due to known server error, marking as failed");
-                            markFailed(id, e);
-                        } else {
-                            logger.warn("Mail not sent due to known server error, NOT marking as failed", e);
-                            serverErrors++;
-                        }
-                    } else {
-                        markFailed(id, e);
-                    }
-                } catch (Throwable e) {
+            return false;
+        }
+        try {
+            if(!queue.claim(id, leaseDuration)) {
+                logger.debug("Mail with id {} claimed by another sender, skipping", id);
+                return false;
+            }
+        } catch (Throwable e) {
+            logger.error("Unexpected error claiming mail with id " + id + ", skipping", e);
+            return false;
+        }
+        Email email;
+        try {
+            email = queue.loadEmail(id);
+        } catch (MailParseException e) {
+            logger.error("Mail with id " + id + " is corrupted, marking as failed", e);
+            markFailed(id, e);
+            return false;
+        } catch (Throwable e) {
+            logger.error("Unexpected error loading mail with id " + id + ", skipping", e);
+            release(id);
+            return false;
+        }
+        if(email == null) {
+            release(id);
+            return false;
+        }
+        boolean sent = false;
+        boolean serverError = false;
+        try {
+            logger.info("Sending email with id {}", id);
+            send(email);
+            sent = true;
+        } catch (EmailException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof ParseException ||
+               cause instanceof IllegalWriteException ||
+               cause instanceof MethodNotSupportedException) {
+                markFailed(id, cause);
+            } else if(cause instanceof MessagingException) {
+                if(e.getCause() instanceof SendFailedException && e.getCause().getCause() instanceof SMTPAddressFailedException) {
+                    logger.warn("Mail not sent due to known server error, marking as failed");
                     markFailed(id, e);
+                } else {
+                    logger.warn("Mail not sent due to known server error, NOT marking as failed", e);
+                    release(id);
+                    serverError = true;
                 }
-                if(sent) try {
-                    logger.info("Email with id {} sent, marking as sent ", id);
-                    queue.markSent(id);
-                } catch (Throwable e) {
-                    logger.error("Couldn't mark mail as sent", e);
-                    idsToMarkAsSent.add(id);
-                }
+            } else {
+                markFailed(id, e);
             }
+        } catch (Throwable e) {
+            markFailed(id, e);
+        }
+        if(sent) try {
+            logger.info("Email with id {} sent, marking as sent ", id);
+            queue.markSent(id);
+        } catch (Throwable e) {
+            logger.error("Couldn't mark mail as sent", e);
+            idsToMarkAsSent.add(id);
+        }
+        return serverError;
+    }
+
+    protected void release(String id) {
+        try {
+            queue.release(id);
+        } catch (Throwable e) {
+            logger.warn("Couldn't release mail with id " + id + "; it will be retried when its lease expires", e);
         }
-        return serverErrors;
     }
 
     protected void markFailed(String id, Throwable e) {
@@ -270,4 +340,24 @@ public class DefaultMailSender implements MailSender {
         this.password = password;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of emails that are sent in parallel in each run. Values greater than one are only
+     * effective if the queue supports multiple consumers.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
 }
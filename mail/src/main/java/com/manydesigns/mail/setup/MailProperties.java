@@ -39,8 +39,15 @@ public class MailProperties {
     public static final String MAIL_SMTP_PASSWORD = "mail.smtp.password";
     public static final String MAIL_KEEP_SENT = "mail.keep.sent";
     public static final String MAIL_QUEUE_LOCATION = "mail.queue.location";
+    public static final String MAIL_QUEUE_TYPE = "mail.queue.type";
+    public static final String MAIL_QUEUE_JDBC_DATASOURCE = "mail.queue.jdbc.datasource";
+    public static final String MAIL_QUEUE_JDBC_URL = "mail.queue.jdbc.url";
+    public static final String MAIL_QUEUE_JDBC_USERNAME = "mail.queue.jdbc.username";
+    public static final String MAIL_QUEUE_JDBC_PASSWORD = "mail.queue.jdbc.password";
 
     public static final String MAIL_SENDER_POLL_INTERVAL = "mail.sender.poll.interval";
+    public static final String MAIL_SENDER_THREADS = "mail.sender.threads";
+    public static final String MAIL_SENDER_LEASE_DURATION = "mail.sender.lease.duration";
     public static final String MAIL_SENDER_SERVER_URL = "mail.sender.server_url";
     public static final String MAIL_SENDER_ACTION_ENABLED = "mail.sender.action.enabled";
     public static final String MAIL_SENDER_ACTION_SEGMENT = "mail.sender.action.segment";
@@ -21,15 +21,23 @@
 package com.manydesigns.mail.setup;
 
 import com.manydesigns.mail.queue.FileSystemMailQueue;
+import com.manydesigns.mail.queue.IndexedFileSystemMailQueue;
+import com.manydesigns.mail.queue.JdbcMailQueue;
+import com.manydesigns.mail.queue.LeasingFileSystemMailQueue;
 import com.manydesigns.mail.queue.LockingMailQueue;
 import com.manydesigns.mail.queue.MailQueue;
+import com.manydesigns.mail.queue.QueueException;
 import com.manydesigns.mail.sender.DefaultMailSender;
 import com.manydesigns.mail.sender.MailSender;
 import org.apache.commons.configuration2.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
 import java.io.File;
+import java.sql.DriverManager;
 
 /**
  * Performs standard setup using a Configuration.
@@ -45,6 +53,11 @@ public class MailQueueSetup {
 
     public static final Logger logger = LoggerFactory.getLogger(MailQueueSetup.class);
 
+    public static final String QUEUE_TYPE_FILESYSTEM = "filesystem";
+    public static final String QUEUE_TYPE_INDEXED = "indexed";
+    public static final String QUEUE_TYPE_LEASING = "leasing";
+    public static final String QUEUE_TYPE_JDBC = "jdbc";
+
     protected MailQueue mailQueue;
     protected MailSender mailSender;
     protected final Configuration mailConfiguration;
@@ -56,11 +69,8 @@ public class MailQueueSetup {
     public void setup() {
         boolean mailEnabled = mailConfiguration.getBoolean(MailProperties.MAIL_ENABLED, false);
         if (mailEnabled) {
-            String mailQueueLocation = mailConfiguration.getString(MailProperties.MAIL_QUEUE_LOCATION);
             boolean keepSent = mailConfiguration.getBoolean(MailProperties.MAIL_KEEP_SENT, false);
-            logger.info("Mail queue location: {}", mailQueueLocation);
-            //TODO rendere configurabile
-            mailQueue = new LockingMailQueue(new FileSystemMailQueue(new File(mailQueueLocation)));
+            mailQueue = createMailQueue();
             mailQueue.setKeepSent(keepSent);
             String mailHost = mailConfiguration.getString(MailProperties.MAIL_SMTP_HOST);
             if (null == mailHost) {
@@ -77,8 +87,15 @@ public class MailQueueSetup {
                         MailProperties.MAIL_SMTP_LOGIN);
                 String password = mailConfiguration.getString(
                         MailProperties.MAIL_SMTP_PASSWORD);
-                
-                mailSender = new DefaultMailSender(mailQueue);
+                int threads = mailConfiguration.getInt(
+                        MailProperties.MAIL_SENDER_THREADS, 1);
+                long leaseDuration = mailConfiguration.getLong(
+                        MailProperties.MAIL_SENDER_LEASE_DURATION, DefaultMailSender.DEFAULT_LEASE_DURATION);
+
+                DefaultMailSender defaultMailSender = new DefaultMailSender(mailQueue);
+                defaultMailSender.setThreads(threads);
+                defaultMailSender.setLeaseDuration(leaseDuration);
+                mailSender = defaultMailSender;
                 mailSender.setServer(mailHost);
                 mailSender.setLogin(login);
                 mailSender.setPassword(password);
@@ -93,6 +110,60 @@ public class MailQueueSetup {
         }
     }
 
+    protected MailQueue createMailQueue() {
+        String mailQueueType = mailConfiguration.getString(MailProperties.MAIL_QUEUE_TYPE, QUEUE_TYPE_FILESYSTEM);
+        String mailQueueLocation = mailConfiguration.getString(MailProperties.MAIL_QUEUE_LOCATION);
+        logger.info("Mail queue type: {}, location: {}", mailQueueType, mailQueueLocation);
+        switch (mailQueueType) {
+            case QUEUE_TYPE_FILESYSTEM:
+                return new LockingMailQueue(new FileSystemMailQueue(new File(mailQueueLocation)));
+            case QUEUE_TYPE_INDEXED:
+                return new LockingMailQueue(new IndexedFileSystemMailQueue(new File(mailQueueLocation)));
+            case QUEUE_TYPE_LEASING:
+                //Lock-free, can be shared among threads and processes
+                return new LeasingFileSystemMailQueue(new File(mailQueueLocation));
+            case QUEUE_TYPE_JDBC:
+                return createJdbcMailQueue(new File(mailQueueLocation));
+            default:
+                throw new IllegalArgumentException("Unsupported mail queue type: " + mailQueueType);
+        }
+    }
+
+    /**
+     * Creates a queue in the database identified either by the JNDI name of a data source or by a JDBC URL. The
+     * queue location is only used as a working directory for attachments.
+     */
+    protected JdbcMailQueue createJdbcMailQueue(File attachmentsDirectory) {
+        String dataSourceName = mailConfiguration.getString(MailProperties.MAIL_QUEUE_JDBC_DATASOURCE);
+        JdbcMailQueue queue;
+        if(dataSourceName != null) {
+            logger.info("Mail queue data source: {}", dataSourceName);
+            try {
+                DataSource dataSource = (DataSource) new InitialContext().lookup(dataSourceName);
+                queue = new JdbcMailQueue(dataSource, attachmentsDirectory);
+            } catch (NamingException e) {
+                throw new IllegalArgumentException("Invalid mail queue data source: " + dataSourceName, e);
+            }
+        } else {
+            String url = mailConfiguration.getString(MailProperties.MAIL_QUEUE_JDBC_URL);
+            String username = mailConfiguration.getString(MailProperties.MAIL_QUEUE_JDBC_USERNAME);
+            String password = mailConfiguration.getString(MailProperties.MAIL_QUEUE_JDBC_PASSWORD);
+            if(url == null) {
+                throw new IllegalArgumentException(
+                        "Either " + MailProperties.MAIL_QUEUE_JDBC_DATASOURCE + " or " +
+                        MailProperties.MAIL_QUEUE_JDBC_URL + " is required for the JDBC mail queue");
+            }
+            logger.info("Mail queue JDBC URL: {}", url);
+            queue = new JdbcMailQueue(() -> DriverManager.getConnection(url, username, password), attachmentsDirectory);
+        }
+        try {
+            queue.updateSchema();
+        } catch (QueueException e) {
+            logger.error("Could not create or update the mail queue tables", e);
+        }
+        return queue;
+    }
+
     public MailQueue getMailQueue() {
         return mailQueue;
     }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class IndexedFileSystemMailQueueTest extends AbstractMailQueueTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    @Test
+    public void testEnqueueOrderAndRemoval() throws Exception {
+        IndexedFileSystemMailQueue queue = new IndexedFileSystemMailQueue(directory);
+        String id1 = queue.enqueue(createEmail("1"));
+        String id2 = queue.enqueue(createEmail("2"));
+        String id3 = queue.enqueue(createEmail("3"));
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id1, id2, id3));
+        assertEquals(queue.loadEmail(id2).getSubject(), "2");
+
+        queue.markSent(id1);
+        queue.markFailed(id2);
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id3));
+        queue.close();
+
+        queue = new IndexedFileSystemMailQueue(directory);
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id3));
+        queue.close();
+    }
+
+    @Test
+    public void testMigrationFromFileSystemQueue() throws Exception {
+        FileSystemMailQueue plainQueue = new FileSystemMailQueue(directory);
+        String id1 = plainQueue.enqueue(createEmail("1"));
+        String id2 = plainQueue.enqueue(createEmail("2"));
+
+        IndexedFileSystemMailQueue queue = new IndexedFileSystemMailQueue(directory);
+        assertTrue(queue.getJournalFile().exists());
+        List<String> ids = queue.getEnqueuedEmailIds();
+        assertEquals(ids.size(), 2);
+        assertTrue(ids.containsAll(Arrays.asList(id1, id2)));
+        queue.close();
+    }
+
+    @Test
+    public void testRecoveryAfterCrash() throws Exception {
+        IndexedFileSystemMailQueue queue = new IndexedFileSystemMailQueue(directory);
+        String id1 = queue.enqueue(createEmail("1"));
+        String id2 = queue.enqueue(createEmail("2"));
+        queue.close();
+
+        //Simulate a crash between moving the email file and writing the journal, and vice-versa
+        assertTrue(queue.getEmailFile(id1).delete());
+        String id3 = new FileSystemMailQueue(directory).enqueue(createEmail("3"));
+
+        queue = new IndexedFileSystemMailQueue(directory);
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id2, id3));
+        queue.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        IndexedFileSystemMailQueue queue = new IndexedFileSystemMailQueue(directory);
+        queue.setCompactionThreshold(2);
+        String id1 = queue.enqueue(createEmail("1"));
+        String id2 = queue.enqueue(createEmail("2"));
+        String id3 = queue.enqueue(createEmail("3"));
+        queue.markSent(id1);
+        queue.markSent(id2);
+        List<String> lines = FileUtils.readLines(queue.getJournalFile(), "UTF-8");
+        assertEquals(lines, Arrays.asList(IndexedFileSystemMailQueue.ENQUEUED + id3));
+        queue.close();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.mail.queue.model.Attachment;
+import com.manydesigns.mail.queue.model.Email;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class JdbcMailQueueTest extends AbstractMailQueueTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    String url;
+    Connection keepAlive;
+
+    @Override
+    @BeforeMethod
+    public void setUp() throws Exception {
+        super.setUp();
+        url = "jdbc:h2:mem:" + directory.getName();
+        keepAlive = DriverManager.getConnection(url, "sa", "");
+    }
+
+    @Override
+    @AfterMethod
+    public void tearDown() throws Exception {
+        keepAlive.close();
+        super.tearDown();
+    }
+
+    protected JdbcMailQueue createQueue(String node) throws QueueException {
+        JdbcMailQueue queue = new JdbcMailQueue(
+                () -> DriverManager.getConnection(url, "sa", ""), new File(directory, node));
+        queue.updateSchema();
+        return queue;
+    }
+
+    @Test
+    public void testEnqueueAndLoad() throws Exception {
+        JdbcMailQueue queue = createQueue("node1");
+        Email email = createEmail("1");
+        Attachment attachment = new Attachment();
+        attachment.setName("attachment.txt");
+        attachment.setInputStream(new ByteArrayInputStream("attached".getBytes(StandardCharsets.UTF_8)));
+        email.getAttachments().add(attachment);
+        String id1 = queue.enqueue(email);
+        Thread.sleep(2);
+        String id2 = queue.enqueue(createEmail("2"));
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id1, id2));
+
+        assertTrue(queue.claim(id1, 60000));
+        Email loaded = queue.loadEmail(id1);
+        assertEquals(loaded.getSubject(), "1");
+        assertEquals(loaded.getAttachments().size(), 1);
+        File attachmentFile = new File(loaded.getAttachments().get(0).getFilePath());
+        assertEquals(FileUtils.readFileToString(attachmentFile, StandardCharsets.UTF_8), "attached");
+
+        queue.markSent(id1);
+        assertFalse(attachmentFile.exists());
+        assertNull(queue.loadEmail(id1));
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id2));
+        try(Statement statement = keepAlive.createStatement();
+            ResultSet resultSet = statement.executeQuery("select count(*) from portofino_mail_attachment")) {
+            resultSet.next();
+            assertEquals(resultSet.getInt(1), 0);
+        }
+    }
+
+    @Test
+    public void testClaimIsExclusive() throws Exception {
+        JdbcMailQueue node1 = createQueue("node1");
+        JdbcMailQueue node2 = createQueue("node2");
+        String id = node1.enqueue(createEmail("1"));
+
+        assertTrue(node2.claim(id, 60000));
+        assertFalse(node1.claim(id, 60000));
+        assertTrue(node1.getEnqueuedEmailIds().isEmpty());
+
+        node2.release(id);
+        assertEquals(node1.getEnqueuedEmailIds(), Arrays.asList(id));
+        assertTrue(node1.claim(id, -1000));
+        assertTrue(node2.claim(id, 60000));
+
+        node2.setKeepSent(true);
+        node2.markFailed(id);
+        assertTrue(node1.getEnqueuedEmailIds().isEmpty());
+        assertFalse(node1.claim(id, 60000));
+    }
+
+    @Test
+    public void testConcurrentClaimsAreExclusive() throws Exception {
+        int consumers = 8;
+        List<JdbcMailQueue> nodes = new ArrayList<>();
+        for(int i = 0; i < consumers; i++) {
+            nodes.add(createQueue("node" + i));
+        }
+        List<String> ids = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            ids.add(nodes.get(0).enqueue(createEmail(String.valueOf(i))));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(consumers);
+        try {
+            for(String id : ids) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> claims = new ArrayList<>();
+                for(JdbcMailQueue node : nodes) {
+                    claims.add(executor.submit(() -> {
+                        start.await();
+                        return node.claim(id, 60000);
+                    }));
+                }
+                start.countDown();
+                int claimed = 0;
+                for(Future<Boolean> claim : claims) {
+                    if(claim.get()) {
+                        claimed++;
+                    }
+                }
+                assertEquals(claimed, 1, "Email " + id + " claimed by " + claimed + " consumers");
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(nodes.get(0).getEnqueuedEmailIds().isEmpty());
+    }
+}
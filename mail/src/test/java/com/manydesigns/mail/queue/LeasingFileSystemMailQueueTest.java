@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.mail.queue;
+
+import com.manydesigns.mail.queue.model.Email;
+import org.testng.annotations.Test;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.File;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class LeasingFileSystemMailQueueTest extends AbstractMailQueueTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    @Test
+    public void testClaimIsExclusive() throws Exception {
+        LeasingFileSystemMailQueue node1 = new LeasingFileSystemMailQueue(directory);
+        LeasingFileSystemMailQueue node2 = new LeasingFileSystemMailQueue(directory);
+        String id = node1.enqueue(createEmail("1"));
+        assertEquals(node2.getEnqueuedEmailIds(), Arrays.asList(id));
+
+        assertTrue(node2.claim(id, 60000));
+        assertFalse(node1.claim(id, 60000));
+        assertTrue(node1.getEnqueuedEmailIds().isEmpty());
+        assertEquals(node2.loadEmail(id).getSubject(), "1");
+
+        node2.markSent(id);
+        assertTrue(node1.getEnqueuedEmailIds().isEmpty());
+        assertFalse(node1.locateEmailFile(id).exists());
+    }
+
+    @Test
+    public void testReleaseAndExpiredLease() throws Exception {
+        LeasingFileSystemMailQueue queue = new LeasingFileSystemMailQueue(directory);
+        String id = queue.enqueue(createEmail("1"));
+
+        assertTrue(queue.claim(id, 60000));
+        queue.release(id);
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id));
+
+        assertTrue(queue.claim(id, -1000));
+        assertEquals(queue.getEnqueuedEmailIds(), Arrays.asList(id));
+        assertTrue(queue.claim(id, 60000));
+        queue.markFailed(id);
+        assertTrue(queue.getEnqueuedEmailIds().isEmpty());
+        assertTrue(new File(queue.getFailedDirectory(), queue.getEmailFile(id).getName()).exists());
+    }
+
+    @Test
+    public void testExpiredClaimRenewedConcurrentlyIsNotRequeued() throws Exception {
+        LeasingFileSystemMailQueue node2 = new LeasingFileSystemMailQueue(directory);
+        boolean[] raced = { false };
+        LeasingFileSystemMailQueue node1 = new LeasingFileSystemMailQueue(directory) {
+            @Override
+            protected boolean moveAtomically(File source, File destination) throws QueueException {
+                if(!raced[0] && source.getParentFile().equals(claimedDirectory)) {
+                    raced[0] = true;
+                    //Between observing the expired lease and renaming the file, another consumer requeues the
+                    //email and claims it again
+                    String id = node2.getEnqueuedEmailIds().get(0);
+                    assertTrue(node2.claim(id, 60000));
+                }
+                return super.moveAtomically(source, destination);
+            }
+        };
+        String id = node1.enqueue(createEmail("1"));
+        assertTrue(node1.claim(id, -1000));
+
+        assertTrue(node1.getEnqueuedEmailIds().isEmpty());
+        assertTrue(raced[0]);
+        File claimedFile = node2.locateEmailFile(id);
+        assertEquals(claimedFile.getParentFile(), node2.getClaimedDirectory());
+        assertTrue(claimedFile.exists());
+        assertFalse(node1.claim(id, 60000));
+        assertEquals(node2.loadEmail(id).getSubject(), "1");
+    }
+
+    @Test
+    public void testClaimDuringEnqueue() throws Exception {
+        LeasingFileSystemMailQueue consumer = new LeasingFileSystemMailQueue(directory);
+        boolean[] checked = { false };
+        LeasingFileSystemMailQueue producer = new LeasingFileSystemMailQueue(directory) {
+            @Override
+            protected File writeTemporaryEmailFile(Marshaller marshaller, Email email, String emailId)
+                    throws JAXBException, QueueException {
+                File temporaryFile = super.writeTemporaryEmailFile(marshaller, email, emailId);
+                //The email is written but not yet in the queue
+                assertTrue(temporaryFile.exists());
+                assertTrue(consumer.getEnqueuedEmailIds().isEmpty());
+                assertFalse(consumer.claim(emailId, 60000));
+                checked[0] = true;
+                return temporaryFile;
+            }
+        };
+        String id = producer.enqueue(createEmail("1"));
+        assertTrue(checked[0]);
+        assertEquals(consumer.getEnqueuedEmailIds(), Arrays.asList(id));
+        assertTrue(consumer.claim(id, 60000));
+        assertEquals(consumer.loadEmail(id).getSubject(), "1");
+        assertEquals(producer.temporaryDirectory.list().length, 0);
+    }
+}
@@ -20,28 +20,40 @@
 package com.manydesigns.elements.blobs;
 
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.SdkClientException;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.DeleteObjectRequest;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectResult;
-import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.*;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Stores blobs as objects in an S3 bucket, with their metadata as user metadata of the object. Blobs larger than the
+ * part size are uploaded in parts, several at a time, so that the memory used doesn't depend on the size of the
+ * blob. Ranges of unencrypted blobs are read with ranged requests. The metadata of recently used blobs is cached,
+ * and, optionally, clients are given presigned URLs to download unencrypted blobs directly from S3.
+ *
  * @author Angelo Lupo          - angelo.lupo@manydesigns.com
  * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
  * @author Emanuele Poggi       - emanuele.poggi@manydesigns.com
@@ -50,6 +62,18 @@ import java.util.Properties;
  */
 public class S3BlobManager implements BlobManager {
     public static final String S3_PROPERTIES_PREFIX = "x-amz-meta-";
+    /**
+     * Marks the objects whose content is actually encrypted. Before it was introduced, blobs with an encryption
+     * type were stored in clear, so that property alone can't tell.
+     */
+    public static final String ENCRYPTED_CONTENT_PROPERTY = "encrypted.content";
+    public static final long MINIMUM_PART_SIZE = 5 * 1024 * 1024;
+    public static final long DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    public static final int INITIAL_PART_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_UPLOAD_THREADS = 4;
+    public static final long DEFAULT_METADATA_CACHE_SIZE = 1000;
+    public static final long DEFAULT_METADATA_CACHE_TTL = 300;
+    public static final int DEFAULT_PRESIGNED_URL_EXPIRATION = 60;
     //**************************************************************************
     // Fields
     //**************************************************************************
@@ -57,6 +81,11 @@ public class S3BlobManager implements BlobManager {
 
     final private String bucketName;
     final AmazonS3 s3;
+    protected long partSize = DEFAULT_PART_SIZE;
+    protected int uploadThreads = DEFAULT_UPLOAD_THREADS;
+    protected Cache<String, Properties> metadataCache;
+    protected boolean presignedDownloads;
+    protected int presignedUrlExpiration = DEFAULT_PRESIGNED_URL_EXPIRATION;
     //**************************************************************************
     // Logging
     //**************************************************************************
@@ -71,6 +100,7 @@ public class S3BlobManager implements BlobManager {
 
     public S3BlobManager(String region, String bucketName) {
         this.bucketName = bucketName;
+        configureMetadataCache(DEFAULT_METADATA_CACHE_SIZE, DEFAULT_METADATA_CACHE_TTL);
 
         AWSCredentialsProvider credential = new DefaultAWSCredentialsProviderChain();
         this.s3 = AmazonS3ClientBuilder.standard()
@@ -81,6 +111,7 @@ public class S3BlobManager implements BlobManager {
 
     public S3BlobManager(String region, String bucketName, String endPoint) {
         this.bucketName = bucketName;
+        configureMetadataCache(DEFAULT_METADATA_CACHE_SIZE, DEFAULT_METADATA_CACHE_TTL);
         AwsClientBuilder.EndpointConfiguration endpointConfiguration = new AwsClientBuilder.EndpointConfiguration(endPoint, region);
 
         AWSCredentialsProvider credential = new DefaultAWSCredentialsProviderChain();
@@ -90,6 +121,25 @@ public class S3BlobManager implements BlobManager {
                 .build();
     }
 
+    public S3BlobManager(AmazonS3 s3, String bucketName) {
+        this.bucketName = bucketName;
+        this.s3 = s3;
+        configureMetadataCache(DEFAULT_METADATA_CACHE_SIZE, DEFAULT_METADATA_CACHE_TTL);
+    }
+
+    /**
+     * Configures the cache of blob metadata, discarding its current contents.
+     * @param maximumSize the maximum number of blobs whose metadata is cached; 0 disables the cache.
+     * @param ttl how long, in seconds, the metadata of a blob is cached. Blobs saved or deleted by this manager are
+     *            evicted immediately; the TTL bounds the staleness of changes made by other nodes.
+     */
+    public void configureMetadataCache(long maximumSize, long ttl) {
+        metadataCache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, maximumSize))
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .build();
+    }
+
     //**************************************************************************
     // Methods
     //**************************************************************************
@@ -109,6 +159,16 @@ public class S3BlobManager implements BlobManager {
     }
 
     public Properties loadMetaProperties(String code) throws IOException {
+        Properties metaProperties = metadataCache.getIfPresent(code);
+        if(metaProperties == null) {
+            metaProperties = fetchMetaProperties(code);
+            metadataCache.put(code, metaProperties);
+        }
+        //Callers may modify the returned properties
+        return (Properties) metaProperties.clone();
+    }
+
+    protected Properties fetchMetaProperties(String code) throws IOException {
         Properties metaProperties = new Properties();
         try {
             ObjectMetadata metadata = s3.getObjectMetadata(this.bucketName, code);
@@ -119,7 +179,11 @@ public class S3BlobManager implements BlobManager {
                 } else
                     metaProperties.put(cleanKey, metadata.getUserMetadata().get(key));
             }
-            metaProperties.put(Blob.SIZE_PROPERTY, Long.toString(metadata.getContentLength()));
+            if(!isEncryptedContent(metadata) || !metaProperties.containsKey(Blob.SIZE_PROPERTY)) {
+                //The length of encrypted content includes the padding; the size property is the one in clear
+                metaProperties.put(Blob.SIZE_PROPERTY, Long.toString(metadata.getContentLength()));
+            }
+            metaProperties.remove(ENCRYPTED_CONTENT_PROPERTY);
 
         } catch (AmazonServiceException e) {
             throw new IOException(e.getMessage());
@@ -134,20 +198,79 @@ public class S3BlobManager implements BlobManager {
         return blob.getInputStream();
     }
 
+    @Override
+    public InputStream openStream(Blob blob, long offset, long length) throws IOException {
+        ensureValidCode(blob.getCode());
+        if(length <= 0) {
+            return BlobManager.super.openStream(blob, offset, length);
+        }
+        S3Object s3Object;
+        try {
+            GetObjectRequest request =
+                    new GetObjectRequest(bucketName, blob.getCode()).withRange(offset, offset + length - 1);
+            s3Object = s3.getObject(request);
+        } catch (AmazonServiceException e) {
+            throw new IOException(e.getMessage());
+        }
+        if(isEncryptedContent(s3Object.getObjectMetadata())) {
+            //Encrypted content can only be decrypted from the start
+            s3Object.close();
+            return BlobManager.super.openStream(blob, offset, length);
+        }
+        blob.setInputStream(s3Object.getObjectContent());
+        return blob.getInputStream();
+    }
+
     public InputStream getDataFile(String code) throws IOException {
         try {
             S3Object s3Object = s3.getObject(this.bucketName, code);
-            return s3Object.getObjectContent();
+            ObjectMetadata metadata = s3Object.getObjectMetadata();
+            if(isEncryptedContent(metadata)) {
+                return BlobUtils.decrypt(
+                        s3Object.getObjectContent(), metadata.getUserMetaDataOf(Blob.ENCRYPTION_PROPERTY));
+            } else {
+                return s3Object.getObjectContent();
+            }
         } catch (AmazonServiceException e) {
             throw new IOException(e.getMessage());
         }
     }
 
+    /**
+     * When presigned downloads are enabled, returns a short-lived URL to download an unencrypted blob directly from
+     * S3. The URL makes S3 answer with the content type and file name of the blob.
+     */
+    @Override
+    public URL getDirectDownloadUrl(Blob blob) throws IOException {
+        if(!presignedDownloads || blob.isEncrypted()) {
+            return null;
+        }
+        ensureValidCode(blob.getCode());
+        ResponseHeaderOverrides responseHeaders = new ResponseHeaderOverrides();
+        if(blob.getContentType() != null) {
+            responseHeaders.setContentType(blob.getContentType());
+        }
+        if(blob.getFilename() != null) {
+            responseHeaders.setContentDisposition("attachment; filename=" + blob.getFilename());
+        }
+        GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest(bucketName, blob.getCode(), HttpMethod.GET)
+                .withExpiration(new Date(System.currentTimeMillis() + presignedUrlExpiration * 1000L))
+                .withResponseHeaders(responseHeaders);
+        try {
+            return s3.generatePresignedUrl(request);
+        } catch (SdkClientException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    protected boolean isEncryptedContent(ObjectMetadata metadata) {
+        return "true".equals(metadata.getUserMetaDataOf(ENCRYPTED_CONTENT_PROPERTY));
+    }
+
     @Override
     public void save(Blob blob) throws IOException {
         ensureValidCode(blob.getCode());
         try {
-            InputStream encryptInputStream;
             InputStream inputStream = blob.getInputStream();
             ObjectMetadata metadata = new ObjectMetadata();
             Properties properties = blob.getMetaProperties();
@@ -155,6 +278,10 @@ public class S3BlobManager implements BlobManager {
 
             for (Object obj : properties.keySet()) {
                 metadata.addUserMetadata("app_creator", "Portofino");
+                if (Blob.SIZE_PROPERTY.equals(obj.toString()) && blob.getSize() < 0) {
+                    //Unknown size, e.g. of a chunked upload: recorded by upload() if possible
+                    continue;
+                }
                 if ("filename".equals(obj.toString())) {
                     metadata.addUserMetadata(obj.toString(), URLEncoder.encode(properties.get(obj).toString(), "UTF-8"));
                 } else {
@@ -162,12 +289,18 @@ public class S3BlobManager implements BlobManager {
                 }
             }
 
-            PutObjectResult result;
+            CountingInputStream clearContent = null;
             if (blob.isEncrypted()) {
-                encryptInputStream = BlobUtils.encrypt(inputStream, blob.getEncryptionType());
-                result = s3.putObject(bucketName, blob.getCode(), inputStream, metadata);
-            } else {
-                result = s3.putObject(bucketName, blob.getCode(), inputStream, metadata);
+                clearContent = new CountingInputStream(inputStream);
+                inputStream = BlobUtils.encrypt(clearContent, blob.getEncryptionType());
+                metadata.addUserMetadata(ENCRYPTED_CONTENT_PROPERTY, "true");
+            }
+            metadataCache.invalidate(blob.getCode());
+            try {
+                upload(blob.getCode(), inputStream, metadata, clearContent);
+            } finally {
+                //A concurrent read during the upload may have cached the previous metadata again
+                metadataCache.invalidate(blob.getCode());
             }
 
         } catch (AmazonServiceException e) {
@@ -190,10 +323,141 @@ public class S3BlobManager implements BlobManager {
         blob.dispose();
     }
 
+    /**
+     * Uploads the contents of a blob with a single request if they fit in a part, in parts otherwise.
+     */
+    protected void upload(String key, InputStream inputStream, ObjectMetadata metadata) throws IOException {
+        upload(key, inputStream, metadata, null);
+    }
+
+    /**
+     * Uploads the contents of a blob with a single request if they fit in a part, in parts otherwise.
+     * @param clearContent if the contents are encrypted, the unencrypted stream they are read from. If the size of
+     *                     the blob is missing from the metadata and the contents fit in a single part, the number of
+     *                     bytes read from it is recorded as the size. Otherwise, the metadata is sent before the
+     *                     contents have been read, and the size falls back to the (padded) length of the object.
+     */
+    protected void upload(
+            String key, InputStream inputStream, ObjectMetadata metadata, CountingInputStream clearContent)
+            throws IOException {
+        byte[] firstPart = readPart(inputStream);
+        if(firstPart.length < partSize) {
+            if(clearContent != null && metadata.getUserMetaDataOf(Blob.SIZE_PROPERTY) == null) {
+                metadata.addUserMetadata(Blob.SIZE_PROPERTY, Long.toString(clearContent.getByteCount()));
+            }
+            metadata.setContentLength(firstPart.length);
+            s3.putObject(bucketName, key, new ByteArrayInputStream(firstPart), metadata);
+        } else {
+            multipartUpload(key, firstPart, inputStream, metadata);
+        }
+    }
+
+    /**
+     * Uploads the contents of a blob in parts, up to {@link #uploadThreads} at a time. At most as many parts are
+     * held in memory: reading the next one waits for a part to finish uploading. The upload is aborted if any of
+     * the parts fails, so that the bucket isn't charged for orphaned parts.
+     */
+    protected void multipartUpload(String key, byte[] firstPart, InputStream inputStream, ObjectMetadata metadata)
+            throws IOException {
+        String uploadId =
+                s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key, metadata)).getUploadId();
+        ExecutorService executor = Executors.newFixedThreadPool(uploadThreads);
+        Semaphore buffers = new Semaphore(uploadThreads);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<PartETag>> parts = new ArrayList<>();
+        try {
+            buffers.acquire();
+            byte[] part = firstPart;
+            while (part.length > 0) {
+                parts.add(executor.submit(uploadPart(key, uploadId, parts.size() + 1, part, buffers, failed)));
+                if(part.length < partSize) {
+                    break;
+                }
+                buffers.acquire();
+                if(failed.get()) {
+                    break;
+                }
+                part = readPart(inputStream);
+                if(part.length == 0) {
+                    buffers.release();
+                }
+            }
+            List<PartETag> partETags = new ArrayList<>(parts.size());
+            for(Future<PartETag> result : parts) {
+                partETags.add(result.get());
+            }
+            s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+            logger.debug("Uploaded {} in {} parts", key, partETags.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortMultipartUpload(key, uploadId);
+            throw new InterruptedIOException("Interrupted while uploading " + key);
+        } catch (ExecutionException e) {
+            abortMultipartUpload(key, uploadId);
+            if(e.getCause() instanceof AmazonServiceException) {
+                throw (AmazonServiceException) e.getCause();
+            }
+            throw new IOException("Could not upload " + key, e.getCause());
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(key, uploadId);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected Callable<PartETag> uploadPart(
+            String key, String uploadId, int partNumber, byte[] part, Semaphore buffers, AtomicBoolean failed) {
+        return () -> {
+            try {
+                UploadPartRequest request = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(part.length)
+                        .withInputStream(new ByteArrayInputStream(part));
+                return s3.uploadPart(request).getPartETag();
+            } catch (Throwable e) {
+                failed.set(true);
+                throw e;
+            } finally {
+                buffers.release();
+            }
+        };
+    }
+
+    protected void abortMultipartUpload(String key, String uploadId) {
+        try {
+            s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (Exception e) {
+            logger.warn("Could not abort the multipart upload of " + key, e);
+        }
+    }
+
+    /**
+     * Reads up to {@link #partSize} bytes. The buffer starts small and grows as data arrives, so that saving a small
+     * blob doesn't allocate a whole part.
+     * @return the bytes read, fewer than the part size only if the stream is over.
+     */
+    protected byte[] readPart(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(partSize, INITIAL_PART_BUFFER_SIZE)];
+        int length = 0;
+        while (true) {
+            length += IOUtils.read(inputStream, buffer, length, buffer.length - length);
+            if(length < buffer.length || buffer.length == partSize) {
+                break;
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min(partSize, 2L * buffer.length));
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
     @Override
     public boolean delete(Blob blob) {
         String code = blob.getCode();
         ensureValidCode(code);
+        metadataCache.invalidate(code);
         boolean success = true;
         try {
             DeleteObjectRequest request = new DeleteObjectRequest(bucketName, code);
@@ -202,6 +466,7 @@ public class S3BlobManager implements BlobManager {
             logger.warn("Cound not delete meta file", e);
             success = false;
         }
+        metadataCache.invalidate(code);
 
         return success;
     }
@@ -212,4 +477,39 @@ public class S3BlobManager implements BlobManager {
     public String getBucketName() {
         return bucketName;
     }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public void setPartSize(long partSize) {
+        if(partSize < MINIMUM_PART_SIZE || partSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid part size: " + partSize);
+        }
+        this.partSize = partSize;
+    }
+
+    public int getUploadThreads() {
+        return uploadThreads;
+    }
+
+    public void setUploadThreads(int uploadThreads) {
+        this.uploadThreads = Math.max(1, uploadThreads);
+    }
+
+    public boolean isPresignedDownloads() {
+        return presignedDownloads;
+    }
+
+    public void setPresignedDownloads(boolean presignedDownloads) {
+        this.presignedDownloads = presignedDownloads;
+    }
+
+    public int getPresignedUrlExpiration() {
+        return presignedUrlExpiration;
+    }
+
+    public void setPresignedUrlExpiration(int presignedUrlExpiration) {
+        this.presignedUrlExpiration = presignedUrlExpiration;
+    }
 }
@@ -36,10 +36,25 @@ public class S3BlobManagerFactory implements BlobManagerFactory {
             throw new RuntimeException("Error while creating a S3 blob manager");
         }
 
+        S3BlobManager blobManager;
         if (StringUtils.trimToNull(location) == null)
-            return new S3BlobManager(region, bucketName);
+            blobManager = new S3BlobManager(region, bucketName);
         else
-            return new S3BlobManager(region, bucketName, location);
+            blobManager = new S3BlobManager(region, bucketName, location);
+        blobManager.setPartSize(configuration.getLong(
+                PortofinoProperties.AWS_S3_PART_SIZE, S3BlobManager.DEFAULT_PART_SIZE));
+        blobManager.setUploadThreads(configuration.getInt(
+                PortofinoProperties.AWS_S3_UPLOAD_THREADS, S3BlobManager.DEFAULT_UPLOAD_THREADS));
+        blobManager.configureMetadataCache(
+                configuration.getLong(
+                        PortofinoProperties.AWS_S3_METADATA_CACHE_SIZE, S3BlobManager.DEFAULT_METADATA_CACHE_SIZE),
+                configuration.getLong(
+                        PortofinoProperties.AWS_S3_METADATA_CACHE_TTL, S3BlobManager.DEFAULT_METADATA_CACHE_TTL));
+        blobManager.setPresignedDownloads(
+                configuration.getBoolean(PortofinoProperties.AWS_S3_PRESIGNED_DOWNLOADS, false));
+        blobManager.setPresignedUrlExpiration(configuration.getInt(
+                PortofinoProperties.AWS_S3_PRESIGNED_URL_EXPIRATION, S3BlobManager.DEFAULT_PRESIGNED_URL_EXPIRATION));
+        return blobManager;
     }
 
     @Override
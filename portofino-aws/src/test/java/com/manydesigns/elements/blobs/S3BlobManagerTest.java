@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2013 ManyDesigns srl.  All rights reserved.
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
  * http://www.manydesigns.com/
  *
  * This is free software; you can redistribute it and/or modify it
@@ -20,46 +20,83 @@
 
 package com.manydesigns.elements.blobs;
 
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.PartETag;
 import com.manydesigns.elements.test.ElementsTestSupport;
 import com.manydesigns.elements.util.RandomUtil;
+import io.findify.s3mock.S3Mock;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.testng.Assert.*;
 
-/*
-* @author Angelo Lupo          - angelo.lupo@manydesigns.com
-* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
-* @author Alessio Stalla       - alessio.stalla@manydesigns.com
-*/
-@Test(enabled = false) // FIXME: disable because require a valid AWS_ACCESS_KEY and AWS_SECRET_ACCESS_KEY to access a s3 bucket
+/**
+ * Runs against an in-process, S3-compatible stand-in, so it doesn't need AWS credentials.
+ *
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+@Test
 public class S3BlobManagerTest extends ElementsTestSupport {
     public static final String copyright =
-            "Copyright (c) 2005-2013, ManyDesigns srl";
+            "Copyright (c) 2005-2022, ManyDesigns srl";
+
+    public static final String BUCKET = "test-portofino-s3-bucket";
 
+    int s3Port;
+    S3Mock s3Mock;
+    AmazonS3 s3;
     S3BlobManager manager;
 
     String sampleContent = "This is some content";
     String sampleFilename = "sample.txt";
     String sampleContentType = "text/plain";
 
+    @BeforeClass
+    public void startS3() throws IOException {
+        try(ServerSocket socket = new ServerSocket(0)) {
+            s3Port = socket.getLocalPort();
+        }
+        s3Mock = new S3Mock.Builder().withPort(s3Port).withInMemoryBackend().build();
+        s3Mock.start();
+        s3 = AmazonS3ClientBuilder.standard()
+                .withPathStyleAccessEnabled(true)
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration("http://localhost:" + s3Port, "eu-west-1"))
+                .withCredentials(new AWSStaticCredentialsProvider(new AnonymousAWSCredentials()))
+                .build();
+        s3.createBucket(BUCKET);
+    }
+
+    @AfterClass
+    public void stopS3() {
+        s3.shutdown();
+        s3Mock.shutdown();
+    }
 
     @Override
     @BeforeMethod
     public void setUp() throws Exception {
         super.setUp();
-        createManager();
-    }
-
-    protected void createManager() {
-        manager = new S3BlobManager( "eu-west-1", "test-portofino-s3-noencrypt-bucket");
-    }
-
-    public void testManager1() {
-        assertNotNull(manager);
+        manager = new S3BlobManager(s3, BUCKET);
     }
 
     public void testBlob1() throws IOException {
@@ -68,32 +105,148 @@ public class S3BlobManagerTest extends ElementsTestSupport {
         blob.setInputStream(new ByteArrayInputStream(contentBytes));
         blob.setFilename(sampleFilename);
         blob.setContentType(sampleContentType);
+        blob.setSize(contentBytes.length);
         manager.save(blob);
-        assertNotNull(blob);
 
         String code = blob.getCode();
-        assertNotNull(code);
         assertEquals(RandomUtil.RANDOM_CODE_LENGTH, code.length());
-        assertEquals(sampleFilename, blob.getFilename());
-        assertEquals(sampleContentType, blob.getContentType());
-        
-
-        InputStream dataFile = manager.getDataFile(blob.getCode());
-        Properties metaFile = manager.loadMetaProperties(blob.getCode());
 
+        try(InputStream dataFile = manager.getDataFile(code)) {
+            assertEquals(IOUtils.toByteArray(dataFile), contentBytes);
+        }
+        Properties metaProperties = manager.loadMetaProperties(code);
+        assertEquals(metaProperties.getProperty(Blob.SIZE_PROPERTY), Integer.toString(contentBytes.length));
 
-        // verifica esistenza e corrispondenza contenuto
-        assertTrue(dataFile.available()==1);
-        // verifica esistenza e corrispondenza metadati
-        System.out.println(metaFile);
-        
-        // ricarica il blob
         Blob blob2 = new Blob(code);
         manager.loadMetadata(blob2);
-        assertNotNull(blob2);
         assertNotSame(blob, blob2);
         assertEquals(blob, blob2);
+        assertEquals(blob2.getFilename(), sampleFilename);
+        assertEquals(blob2.getContentType(), sampleContentType);
+    }
+
+    public void testMultipartUpload() throws IOException {
+        //S3Mock loses parts uploaded at the same time to the same upload, so the requests are sent one at a time
+        manager = new S3BlobManager(s3, BUCKET) {
+            @Override
+            protected Callable<PartETag> uploadPart(
+                    String key, String uploadId, int partNumber, byte[] part, Semaphore buffers,
+                    AtomicBoolean failed) {
+                Callable<PartETag> upload = super.uploadPart(key, uploadId, partNumber, part, buffers, failed);
+                return () -> {
+                    synchronized (s3Mock) {
+                        return upload.call();
+                    }
+                };
+            }
+        };
+        manager.setPartSize(S3BlobManager.MINIMUM_PART_SIZE);
+        manager.setUploadThreads(2);
+        byte[] contentBytes = new byte[(int) (S3BlobManager.MINIMUM_PART_SIZE * 2 + 1000)];
+        new Random(42).nextBytes(contentBytes);
+        Blob blob = new Blob(RandomUtil.createRandomId());
+        blob.setInputStream(new ByteArrayInputStream(contentBytes));
+        blob.setFilename("large.bin");
+        //Unknown size, as with a chunked upload
+        blob.setSize(-1);
+        manager.save(blob);
+
+        Blob blob2 = new Blob(blob.getCode());
+        manager.loadMetadata(blob2);
+        assertEquals(blob2.getSize(), contentBytes.length);
+        try(InputStream inputStream = manager.openStream(blob2)) {
+            assertTrue(Arrays.equals(IOUtils.toByteArray(inputStream), contentBytes));
+        }
+    }
+
+    public void testReadPart() throws IOException {
+        manager.setPartSize(S3BlobManager.MINIMUM_PART_SIZE);
+        byte[] contentBytes = new byte[(int) S3BlobManager.MINIMUM_PART_SIZE + 1000];
+        new Random(42).nextBytes(contentBytes);
+        InputStream inputStream = new ByteArrayInputStream(contentBytes);
+        //The buffer grows past its initial size up to a whole part
+        byte[] part = manager.readPart(inputStream);
+        assertEquals(part.length, S3BlobManager.MINIMUM_PART_SIZE);
+        assertTrue(Arrays.equals(part, Arrays.copyOf(contentBytes, part.length)));
+        part = manager.readPart(inputStream);
+        assertEquals(part.length, 1000);
+        assertTrue(Arrays.equals(part, Arrays.copyOfRange(contentBytes, contentBytes.length - 1000, contentBytes.length)));
+        assertEquals(manager.readPart(inputStream).length, 0);
+    }
+
+    public void testEncryptedBlobOfUnknownSize() throws IOException {
+        byte[] contentBytes = sampleContent.getBytes();
+        Blob blob = new Blob(RandomUtil.createRandomId());
+        blob.setInputStream(new ByteArrayInputStream(contentBytes));
+        blob.setFilename(sampleFilename);
+        blob.setEncryptionType("AES");
+        blob.setSize(-1);
+        manager.save(blob);
+
+        //The size is counted on the unencrypted content, not taken from the padded object
+        Properties metaProperties = manager.loadMetaProperties(blob.getCode());
+        assertEquals(metaProperties.getProperty(Blob.SIZE_PROPERTY), Integer.toString(contentBytes.length));
+        Blob blob2 = new Blob(blob.getCode());
+        manager.loadMetadata(blob2);
+        assertEquals(blob2.getSize(), contentBytes.length);
+    }
+
+    public void testRangedDownload() throws IOException {
+        byte[] contentBytes = sampleContent.getBytes();
+        Blob blob = new Blob(RandomUtil.createRandomId());
+        blob.setInputStream(new ByteArrayInputStream(contentBytes));
+        blob.setFilename(sampleFilename);
+        manager.save(blob);
+
+        Blob blob2 = new Blob(blob.getCode());
+        try(InputStream inputStream = manager.openStream(blob2, 8, 4)) {
+            assertEquals(new String(IOUtils.toByteArray(inputStream)), "some");
+        }
+    }
+
+    public void testMetadataCache() throws IOException {
+        Blob blob = saveSampleBlob();
+        Properties metaProperties = manager.loadMetaProperties(blob.getCode());
+        assertEquals(metaProperties.getProperty(Blob.FILENAME_PROPERTY), sampleFilename);
+
+        //Removed behind the manager's back: the cached metadata is still served
+        s3.deleteObject(BUCKET, blob.getCode());
+        metaProperties.setProperty(Blob.FILENAME_PROPERTY, "modified.txt");
+        assertEquals(manager.loadMetaProperties(blob.getCode()).getProperty(Blob.FILENAME_PROPERTY), sampleFilename);
+
+        manager.delete(blob);
+        try {
+            manager.loadMetaProperties(blob.getCode());
+            fail("The metadata of a deleted blob should not be cached");
+        } catch (IOException e) {
+            //Expected
+        }
+    }
+
+    public void testPresignedDownload() throws IOException {
+        Blob blob = saveSampleBlob();
+        Blob blob2 = new Blob(blob.getCode());
+        manager.loadMetadata(blob2);
+        assertNull(manager.getDirectDownloadUrl(blob2));
+
+        manager.setPresignedDownloads(true);
+        URL url = manager.getDirectDownloadUrl(blob2);
+        assertNotNull(url);
+        assertTrue(url.getPath().endsWith(blob.getCode()));
+        try(InputStream inputStream = url.openStream()) {
+            assertEquals(new String(IOUtils.toByteArray(inputStream)), sampleContent);
+        }
+    }
+
+    protected Blob saveSampleBlob() throws IOException {
+        byte[] contentBytes = sampleContent.getBytes();
+        Blob blob = new Blob(RandomUtil.createRandomId());
+        blob.setInputStream(new ByteArrayInputStream(contentBytes));
+        blob.setFilename(sampleFilename);
+        blob.setContentType(sampleContentType);
+        blob.setSize(contentBytes.length);
+        manager.save(blob);
+        return blob;
     }
-    
 
 }
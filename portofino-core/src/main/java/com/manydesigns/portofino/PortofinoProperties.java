@@ -54,12 +54,24 @@ public final class PortofinoProperties {
     //Groovy
     public static final String PRELOAD_ACTIONS = "preload.actions";
     public static final String PRELOAD_CLASSES = "preload.classes";
+    public static final String WARMUP_ACTIONS = "warmup.actions";
+    public static final String WARMUP_THREADS = "warmup.threads";
 
     //BLOB Manager
     public static final String BLOB_MANAGER_TYPE = "blobmanager.type";
     public static final String AWS_REGION = "aws.region";
     public static final String AWS_S3_BUCKET = "aws.s3.bucket";
     public static final String AWS_S3_LOCATION = "aws.s3.location";
+    public static final String AWS_S3_PART_SIZE = "aws.s3.part.size";
+    public static final String AWS_S3_UPLOAD_THREADS = "aws.s3.upload.threads";
+    public static final String AWS_S3_METADATA_CACHE_SIZE = "aws.s3.metadata.cache.size";
+    public static final String AWS_S3_METADATA_CACHE_TTL = "aws.s3.metadata.cache.ttl";
+    public static final String AWS_S3_PRESIGNED_DOWNLOADS = "aws.s3.download.presigned";
+    public static final String AWS_S3_PRESIGNED_URL_EXPIRATION = "aws.s3.download.presigned.expiration";
+
+    //Request timings
+    public static final String TIMING_HEADER = "timing.header";
+    public static final String TIMING_SLOW_REQUEST_THRESHOLD = "timing.slow.threshold";
 
     private PortofinoProperties() {}
 
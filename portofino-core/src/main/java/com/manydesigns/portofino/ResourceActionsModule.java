@@ -29,6 +29,7 @@ import com.manydesigns.portofino.config.ConfigurationSource;
 import com.manydesigns.portofino.dispatcher.ResourceResolver;
 import com.manydesigns.portofino.modules.Module;
 import com.manydesigns.portofino.modules.ModuleStatus;
+import com.manydesigns.portofino.resourceactions.ResourceActionWarmUp;
 import com.manydesigns.portofino.resourceactions.custom.CustomAction;
 import com.manydesigns.portofino.resourceactions.form.FormAction;
 import com.manydesigns.portofino.resourceactions.form.TableFormAction;
@@ -122,6 +123,17 @@ public class ResourceActionsModule implements Module {
                 logger.warn("Could not preload actions", e);
             }
         }
+        if(configuration.getProperties().getBoolean(PortofinoProperties.WARMUP_ACTIONS, false)) {
+            int threads = configuration.getProperties().getInt(
+                    PortofinoProperties.WARMUP_THREADS, Runtime.getRuntime().availableProcessors());
+            try {
+                ResourceResolver resourceResolver =
+                        PortofinoApplicationRoot.getRootFactory().createRoot().getResourceResolver();
+                new ResourceActionWarmUp(resourceResolver, threads).warmUp(actionsDirectory);
+            } catch (Exception e) {
+                logger.warn("Could not warm up actions", e);
+            }
+        }
         if(configuration.getProperties().getBoolean(PortofinoProperties.PRELOAD_CLASSES, false)) {
             logger.info("Preloading Groovy classes");
             preloadClasses(codeBase.getRoot());
@@ -35,6 +35,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -120,12 +121,32 @@ public class Operations {
         boolean pass = true;
         OgnlContext ognlContext = ElementsThreadLocals.getOgnlContext();
         for(Guard guard : guards) {
-            Object result = OgnlUtils.getValueQuietly(guard.test(), ognlContext, actionBean);
+            Object result = OgnlUtils.getValueQuietly(getParsedTest(guard), ognlContext, actionBean);
             pass &= result instanceof Boolean && ((Boolean) result);
         }
         return pass;
     }
 
+    /**
+     * Returns the OGNL expression of a guard, parsed only the first time it's requested.
+     * @param guard the guard.
+     * @return the parsed expression, or null if it's not valid.
+     */
+    public static Object getParsedTest(Guard guard) {
+        return parsedGuardTests.getUnchecked(guard.test()).orElse(null);
+    }
+
+    protected static LoadingCache<String, Optional<Object>> parsedGuardTests =
+            CacheBuilder
+                    .newBuilder()
+                    .maximumSize(1000)
+                    .build(new CacheLoader<String, Optional<Object>>() {
+                        @Override
+                        public Optional<Object> load(String key) {
+                            return Optional.ofNullable(OgnlUtils.parseExpressionQuietly(key));
+                        }
+                    });
+
     public static List<Guard> getGuards(Method method, GuardType type) {
         List<Guard> guardList = new ArrayList<Guard>();
         Guard guard = method.getAnnotation(Guard.class);
@@ -29,10 +29,12 @@ import com.manydesigns.elements.reflection.JavaClassAccessor;
 import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.util.MimeTypes;
 import com.manydesigns.elements.util.ReflectionUtil;
+import com.manydesigns.elements.util.RequestTimings;
 import com.manydesigns.portofino.actions.*;
 import com.manydesigns.portofino.code.CodeBase;
 import com.manydesigns.portofino.dispatcher.AbstractResourceWithParameters;
 import com.manydesigns.portofino.dispatcher.Resource;
+import com.manydesigns.portofino.dispatcher.ResourceResolver;
 import com.manydesigns.portofino.operations.GuardType;
 import com.manydesigns.portofino.operations.Operation;
 import com.manydesigns.portofino.operations.Operations;
@@ -80,6 +82,10 @@ import java.util.stream.Collectors;
 @RequiresPermissions(level = AccessLevel.VIEW)
 public abstract class AbstractResourceAction extends AbstractResourceWithParameters implements ResourceAction {
     public static final String COPYRIGHT = "Copyright (C) 2005-2020 ManyDesigns srl";
+    /**
+     * The name under which the time spent resolving and preparing actions is reported in the {@link RequestTimings}.
+     */
+    public static final String TIMING_NAME = "dispatch";
 
     //--------------------------------------------------------------------------
     // Properties
@@ -114,6 +120,14 @@ public abstract class AbstractResourceAction extends AbstractResourceWithParamet
         maxParameters = ResourceActionLogic.supportsDetail(getClass()) ? Integer.MAX_VALUE : 0;
     }
 
+    @Override
+    public Object getSubResource(FileObject resourceLocation, String segment, ResourceResolver resourceResolver)
+            throws Exception {
+        try(RequestTimings.Span ignored = RequestTimings.span(TIMING_NAME)) {
+            return super.getSubResource(resourceLocation, segment, resourceResolver);
+        }
+    }
+
     @Override
     protected void initSubResource(Resource resource) {
         super.initSubResource(resource);
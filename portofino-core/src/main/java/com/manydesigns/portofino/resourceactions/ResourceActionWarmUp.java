@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.resourceactions;
+
+import com.manydesigns.elements.ElementsThreadLocals;
+import com.manydesigns.elements.reflection.JavaClassAccessor;
+import com.manydesigns.portofino.actions.ActionLogic;
+import com.manydesigns.portofino.dispatcher.ResourceResolver;
+import com.manydesigns.portofino.operations.Operation;
+import com.manydesigns.portofino.operations.Operations;
+import com.manydesigns.portofino.operations.annotations.Guard;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Prepares the actions in a directory tree so that the first request to each of them does not pay the cost of
+ * compiling its class, reading its descriptor, building its class accessors and computing its operations and guards.
+ * The tree is visited depth-first to collect the action directories; then, each action is warmed up in parallel on a
+ * bounded pool of threads. The warm-up is best-effort: failures are logged and never prevent the application from
+ * starting.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class ResourceActionWarmUp {
+    public static final String copyright = "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final Logger logger = LoggerFactory.getLogger(ResourceActionWarmUp.class);
+
+    protected final ResourceResolver resourceResolver;
+    protected final int threads;
+
+    public ResourceActionWarmUp(ResourceResolver resourceResolver, int threads) {
+        this.resourceResolver = resourceResolver;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Warms up all the actions under the given directory, including the directory itself, and waits for completion.
+     * @param actionsDirectory the root of the action tree.
+     * @return the number of actions that were warmed up successfully.
+     */
+    public int warmUp(FileObject actionsDirectory) throws FileSystemException, InterruptedException {
+        long start = System.currentTimeMillis();
+        List<FileObject> directories = new ArrayList<>();
+        collectActionDirectories(actionsDirectory, directories);
+        logger.info("Warming up {} actions using {} threads", directories.size(), threads);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, directories.size())));
+        int warmedUp = 0;
+        try {
+            List<Future<Boolean>> results = new ArrayList<>(directories.size());
+            for(FileObject directory : directories) {
+                results.add(executor.submit(() -> warmUpInThread(directory)));
+            }
+            for(Future<Boolean> result : results) {
+                try {
+                    if(result.get()) {
+                        warmedUp++;
+                    }
+                } catch (ExecutionException e) {
+                    logger.warn("Warm-up task failed", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Warmed up {} of {} actions in {}ms",
+                warmedUp, directories.size(), System.currentTimeMillis() - start);
+        return warmedUp;
+    }
+
+    protected void collectActionDirectories(FileObject directory, List<FileObject> directories)
+            throws FileSystemException {
+        directories.add(directory);
+        for(FileObject child : directory.getChildren()) {
+            if(child.getType() == FileType.FOLDER &&
+               !child.equals(directory) && !child.equals(directory.getParent())) {
+                collectActionDirectories(child, directories);
+            }
+        }
+    }
+
+    protected boolean warmUpInThread(FileObject directory) {
+        ElementsThreadLocals.setupDefaultElementsContext();
+        try {
+            return warmUpAction(directory);
+        } finally {
+            ElementsThreadLocals.removeElementsContext();
+        }
+    }
+
+    /**
+     * Warms up a single action and logs how long it took.
+     * @param directory the directory of the action.
+     * @return true if the action was warmed up, false if it could not be resolved or an error occurred.
+     */
+    protected boolean warmUpAction(FileObject directory) {
+        String path = directory.getName().getPath();
+        long start = System.currentTimeMillis();
+        try {
+            Class<?> actionClass = resourceResolver.resolve(directory, Class.class);
+            if(actionClass == null) {
+                logger.debug("No action class for {}, skipping", path);
+                return false;
+            }
+            long classLoaded = System.currentTimeMillis();
+            if(directory.resolveFile("action.xml").exists()) {
+                ActionLogic.getActionDescriptor(directory);
+            }
+            JavaClassAccessor.getClassAccessor(actionClass);
+            Class<?> configurationClass = ResourceActionLogic.getConfigurationClass(actionClass);
+            if(configurationClass != null) {
+                JavaClassAccessor.getClassAccessor(configurationClass);
+            }
+            List<Operation> operations = Operations.getOperations(actionClass);
+            for(Operation operation : operations) {
+                for(Guard guard : Operations.getGuards(operation.getMethod(), null)) {
+                    Operations.getParsedTest(guard);
+                }
+            }
+            long end = System.currentTimeMillis();
+            logger.info("Warmed up {} ({}) in {}ms (class: {}ms, metadata: {}ms)",
+                    path, actionClass.getName(), end - start, classLoaded - start, end - classLoaded);
+            return true;
+        } catch (Throwable t) {
+            logger.warn("Warm-up failed for action " + path, t);
+            return false;
+        }
+    }
+}
@@ -23,9 +23,11 @@ package com.manydesigns.portofino.rest;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.messages.RequestMessages;
 import com.manydesigns.elements.servlet.ServletConstants;
+import com.manydesigns.elements.util.RequestTimings;
 import com.manydesigns.portofino.cache.ControlsCache;
 import com.manydesigns.portofino.operations.Guarded;
 import com.manydesigns.portofino.operations.Operations;
+import com.manydesigns.portofino.resourceactions.AbstractResourceAction;
 import com.manydesigns.portofino.resourceactions.ResourceAction;
 import com.manydesigns.portofino.resourceactions.log.LogAccesses;
 import com.manydesigns.portofino.security.SecurityFacade;
@@ -68,6 +70,7 @@ public class PortofinoFilter implements ContainerRequestFilter, ContainerRespons
     public static final String ACCESS_LOGGER_NAME = "com.manydesigns.portofino.access";
     public static final String MESSAGE_HEADER = "X-Portofino-Message";
     public static final String PORTOFINO_API_VERSION_HEADER = "X-Portofino-API-Version";
+    public static final String SECURITY_TIMING_NAME = "security";
     private static final Logger logger = LoggerFactory.getLogger(PortofinoFilter.class);
     private static final Logger accessLogger = LoggerFactory.getLogger(ACCESS_LOGGER_NAME);
     public static final String PORTOFINO_API_VERSION = "5.2";
@@ -111,7 +114,9 @@ public class PortofinoFilter implements ContainerRequestFilter, ContainerRespons
             }
             OgnlContext ognlContext = ElementsThreadLocals.getOgnlContext();
             ognlContext.put("securityUtils", resourceAction.getSecurity().getSecurityUtilsBean());
-            resourceAction.prepareForExecution();
+            try(RequestTimings.Span ignored = RequestTimings.span(AbstractResourceAction.TIMING_NAME)) {
+                resourceAction.prepareForExecution();
+            }
         }
         WebApplicationContext context = WebApplicationContextUtils.getWebApplicationContext(servletContext);
         SecurityFacade facade = NoSecurity.AT_ALL;
@@ -122,9 +127,11 @@ public class PortofinoFilter implements ContainerRequestFilter, ContainerRespons
                 logger.debug("No security facade found, using no-op", e);
             }
         }
-        facade.checkWebResourceIsAccessible(requestContext, resource, resourceInfo.getResourceMethod());
-        if(resource instanceof ResourceAction) {
-            checkResourceActionInvocation(requestContext, (ResourceAction) resource);
+        try(RequestTimings.Span ignored = RequestTimings.span(SECURITY_TIMING_NAME)) {
+            facade.checkWebResourceIsAccessible(requestContext, resource, resourceInfo.getResourceMethod());
+            if(resource instanceof ResourceAction) {
+                checkResourceActionInvocation(requestContext, (ResourceAction) resource);
+            }
         }
         Method resourceMethod = resourceInfo.getResourceMethod();
         if(isAccessToBeLogged(resource, resourceMethod)) {
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.rest;
+
+import com.manydesigns.elements.util.RequestTimings;
+import com.manydesigns.portofino.PortofinoProperties;
+import com.manydesigns.portofino.config.ConfigurationSource;
+import com.manydesigns.portofino.spring.PortofinoSpringConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.ConstrainedTo;
+import javax.ws.rs.RuntimeType;
+import javax.ws.rs.container.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects a breakdown of the time spent serving each request (see {@link RequestTimings}), if enabled in the
+ * configuration. The breakdown is returned to the client in a <code>Server-Timing</code> header
+ * ({@link PortofinoProperties#TIMING_HEADER}) and/or logged when the request takes longer than
+ * {@link PortofinoProperties#TIMING_SLOW_REQUEST_THRESHOLD} milliseconds.
+ * This filter runs before the request is matched to a resource, so that the time spent resolving it is included;
+ * the time spent writing the response body only appears in the log, since the header is sent before the body.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+@Provider
+@PreMatching
+@ConstrainedTo(RuntimeType.SERVER)
+public class RequestTimingFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+    public static final String copyright = "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+    public static final String SLOW_REQUESTS_LOGGER_NAME = "com.manydesigns.portofino.slow-requests";
+    public static final String WRITE_TIMING_NAME = "write";
+    protected static final String SLOW_REQUEST_THRESHOLD_PROPERTY = RequestTimingFilter.class.getName() + ".threshold";
+    protected static final String REQUEST_DESCRIPTION_PROPERTY = RequestTimingFilter.class.getName() + ".request";
+    protected static final String SERVER_TIMING_PROPERTY = RequestTimingFilter.class.getName() + ".header";
+
+    private static final Logger slowRequestsLogger = LoggerFactory.getLogger(SLOW_REQUESTS_LOGGER_NAME);
+
+    @Context
+    protected ServletContext servletContext;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        RequestTimings.stop();
+        Configuration configuration = getConfiguration();
+        if(configuration == null) {
+            return;
+        }
+        boolean header = configuration.getBoolean(PortofinoProperties.TIMING_HEADER, false);
+        long threshold = configuration.getLong(PortofinoProperties.TIMING_SLOW_REQUEST_THRESHOLD, 0);
+        if(header || threshold > 0) {
+            RequestTimings.start();
+            requestContext.setProperty(SLOW_REQUEST_THRESHOLD_PROPERTY, threshold);
+            requestContext.setProperty(REQUEST_DESCRIPTION_PROPERTY,
+                    requestContext.getMethod() + " " + requestContext.getUriInfo().getRequestUri().getRawPath());
+            if(header) {
+                requestContext.setProperty(SERVER_TIMING_PROPERTY, true);
+            }
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        RequestTimings timings = RequestTimings.current();
+        if(timings == null) {
+            return;
+        }
+        if(requestContext.getProperty(SERVER_TIMING_PROPERTY) != null) {
+            responseContext.getHeaders().putSingle(SERVER_TIMING_HEADER, timings.toServerTimingHeader());
+        }
+        if(!responseContext.hasEntity()) {
+            requestCompleted(
+                    requestContext.getProperty(SLOW_REQUEST_THRESHOLD_PROPERTY),
+                    requestContext.getProperty(REQUEST_DESCRIPTION_PROPERTY));
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        if(RequestTimings.current() == null) {
+            context.proceed();
+            return;
+        }
+        try(RequestTimings.Span ignored = RequestTimings.span(WRITE_TIMING_NAME)) {
+            context.proceed();
+        } finally {
+            requestCompleted(
+                    context.getProperty(SLOW_REQUEST_THRESHOLD_PROPERTY),
+                    context.getProperty(REQUEST_DESCRIPTION_PROPERTY));
+        }
+    }
+
+    /**
+     * Stops collecting timings for the current request, logging them if the request has been too slow.
+     * @param threshold the threshold in milliseconds, as stored in the request properties.
+     * @param request the description of the request, as stored in the request properties.
+     */
+    protected void requestCompleted(Object threshold, Object request) {
+        RequestTimings timings = RequestTimings.stop();
+        if(timings == null || !(threshold instanceof Long) || (Long) threshold <= 0) {
+            return;
+        }
+        if(TimeUnit.NANOSECONDS.toMillis(timings.getElapsedNanos()) >= (Long) threshold) {
+            logSlowRequest(request, timings);
+        }
+    }
+
+    protected void logSlowRequest(Object request, RequestTimings timings) {
+        slowRequestsLogger.warn("Slow request: {} {}", request, timings);
+    }
+
+    protected Configuration getConfiguration() {
+        if(servletContext == null) {
+            return null;
+        }
+        ConfigurationSource configuration =
+                (ConfigurationSource) servletContext.getAttribute(PortofinoSpringConfiguration.CONFIGURATION_SOURCE);
+        return configuration != null ? configuration.getProperties() : null;
+    }
+}
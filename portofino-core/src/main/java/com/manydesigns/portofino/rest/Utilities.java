@@ -23,6 +23,7 @@ package com.manydesigns.portofino.rest;
 import com.manydesigns.elements.blobs.Blob;
 import com.manydesigns.elements.blobs.BlobManager;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.slf4j.Logger;
 
 import javax.servlet.http.HttpServletRequest;
@@ -31,6 +32,8 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.Date;
 
 /**
@@ -60,16 +63,27 @@ public class Utilities {
                 return Response.status(Response.Status.NOT_MODIFIED).build();
             }
         }
-        final InputStream inputStream;
         if(blob.getInputStream() == null) {
             try {
-                inputStream = blobManager.openStream(blob);
-            } catch (IOException e) {
-                logger.error("Could not load blob", e);
-                return Response.status(Response.Status.NOT_FOUND).build();
+                URL url = blobManager.getDirectDownloadUrl(blob);
+                if(url != null) {
+                    return Response.temporaryRedirect(url.toURI()).build();
+                }
+            } catch (IOException | URISyntaxException e) {
+                logger.warn("Could not obtain a direct download URL, serving the blob", e);
             }
-        } else {
-            inputStream = blob.getInputStream();
+        }
+        long[] range = getRequestedRange(request, contentLength, lastModified);
+        if(range != null && range.length == 0) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE).
+                    header("Content-Range", "bytes */" + contentLength).build();
+        }
+        final InputStream inputStream;
+        try {
+            inputStream = openStream(blob, blobManager, range);
+        } catch (IOException e) {
+            logger.error("Could not load blob", e);
+            return Response.status(Response.Status.NOT_FOUND).build();
         }
         StreamingOutput streamingOutput = output -> {
             try(InputStream i = inputStream) {
@@ -80,10 +94,87 @@ public class Utilities {
                 type(contentType).
                 lastModified(new Date(lastModified)).
                 header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
-        if(contentLength > 0) {
+        if(range != null) {
+            responseBuilder.status(Response.Status.PARTIAL_CONTENT).
+                    header("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + contentLength).
+                    header(HttpHeaders.CONTENT_LENGTH, range[1] - range[0] + 1);
+        } else if(contentLength > 0) {
             responseBuilder.header(HttpHeaders.CONTENT_LENGTH, contentLength);
         }
+        if(contentLength > 0) {
+            responseBuilder.header("Accept-Ranges", "bytes");
+        }
         return responseBuilder.build();
     }
 
+    protected static InputStream openStream(Blob blob, BlobManager blobManager, long[] range) throws IOException {
+        if(range == null) {
+            if(blob.getInputStream() == null) {
+                return blobManager.openStream(blob);
+            } else {
+                return blob.getInputStream();
+            }
+        }
+        long length = range[1] - range[0] + 1;
+        if(blob.getInputStream() == null) {
+            return blobManager.openStream(blob, range[0], length);
+        } else {
+            InputStream inputStream = blob.getInputStream();
+            IOUtils.skipFully(inputStream, range[0]);
+            return new BoundedInputStream(inputStream, length);
+        }
+    }
+
+    /**
+     * Parses the Range header of a request, supporting a single range of bytes. Multiple ranges and ranges that
+     * don't apply to the current version of the resource (If-Range) are ignored, serving the whole content.
+     * @return the first and last byte of the range, an empty array if the range can't be satisfied, or null if the
+     * whole content is to be served.
+     */
+    public static long[] getRequestedRange(HttpServletRequest request, long contentLength, long lastModified) {
+        String header = request.getHeader("Range");
+        if(header == null || contentLength <= 0 || !header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        if(request.getHeader("If-Range") != null) {
+            try {
+                //HTTP dates have a precision of seconds
+                if(request.getDateHeader("If-Range") / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                //An entity tag, that we don't produce
+                return null;
+            }
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if(dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start, end;
+            if(first.isEmpty()) {
+                //Suffix range: the last N bytes
+                long suffixLength = Long.parseLong(last);
+                if(suffixLength <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, contentLength - suffixLength);
+                end = contentLength - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? contentLength - 1 : Math.min(Long.parseLong(last), contentLength - 1);
+            }
+            if(start >= contentLength || start > end) {
+                return new long[0];
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
 }
@@ -123,6 +123,16 @@ public abstract class SecurityFacade {
 
     public abstract Object getUserId();
 
+    /**
+     * Wraps a task so that, when it runs on another thread (e.g. in a background job), it runs on behalf of the
+     * current user. The default implementation returns the task unchanged.
+     * @param task the task.
+     * @return the wrapped task.
+     */
+    public Runnable associateWithCurrentUser(Runnable task) {
+        return task;
+    }
+
     /**
      * Returns the list of groups known to the system. This is used by the framework when presenting a list of
      * possible groups, e.g. when configuring permissions for a page.
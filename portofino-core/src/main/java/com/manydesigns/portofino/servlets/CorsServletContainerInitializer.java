@@ -1,6 +1,7 @@
 package com.manydesigns.portofino.servlets;
 
 import com.manydesigns.portofino.rest.PortofinoFilter;
+import com.manydesigns.portofino.rest.RequestTimingFilter;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,7 +26,8 @@ public class CorsServletContainerInitializer implements ServletContainerInitiali
             "Access-Control-Allow-Origin, Access-Control-Allow-Credentials, " +
             "X-Portofino-Pretty-Name, " + //TODO this is used by the CRUD action. Maybe these should be configurable by modules somehow?
             PortofinoFilter.MESSAGE_HEADER + ", " +
-            PortofinoFilter.PORTOFINO_API_VERSION_HEADER;
+            PortofinoFilter.PORTOFINO_API_VERSION_HEADER + ", " +
+            RequestTimingFilter.SERVER_TIMING_HEADER;
 
     @Override
     public void onStartup(Set<Class<?>> c, ServletContext ctx) throws ServletException {
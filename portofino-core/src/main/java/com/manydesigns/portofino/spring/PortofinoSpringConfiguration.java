@@ -23,6 +23,7 @@ package com.manydesigns.portofino.spring;
 import com.manydesigns.elements.blobs.BlobManager;
 import com.manydesigns.elements.blobs.BlobManagerFactory;
 import com.manydesigns.elements.blobs.DefaultBlobManagerFactory;
+import com.manydesigns.elements.crypto.CryptoService;
 import com.manydesigns.elements.crypto.KeyManager;
 import com.manydesigns.portofino.PortofinoProperties;
 import com.manydesigns.portofino.cache.CacheResetListenerRegistry;
@@ -31,6 +32,7 @@ import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.vfs2.FileObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -39,7 +41,7 @@ import org.springframework.context.annotation.Bean;
 import java.util.List;
 
 @org.springframework.context.annotation.Configuration
-public class PortofinoSpringConfiguration implements InitializingBean {
+public class PortofinoSpringConfiguration implements InitializingBean, DisposableBean {
 
     public static final String APPLICATION_DIRECTORY = "com.manydesigns.portofino.application.directory";
     public static final String DEFAULT_BLOB_MANAGER = "defaultBlobManager";
@@ -85,4 +87,9 @@ public class PortofinoSpringConfiguration implements InitializingBean {
             KeyManager.init(configuration.getProperties());
         }
     }
+
+    @Override
+    public void destroy() {
+        CryptoService.getInstance().clearCiphers();
+    }
 }
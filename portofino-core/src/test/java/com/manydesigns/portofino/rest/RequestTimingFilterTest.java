@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.rest;
+
+import com.manydesigns.elements.util.RequestTimings;
+import com.manydesigns.portofino.PortofinoProperties;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class RequestTimingFilterTest {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    Configuration configuration;
+    Map<String, Object> properties;
+    MultivaluedMap<String, Object> headers;
+    List<String> slowRequests;
+    RequestTimingFilter filter;
+
+    @BeforeMethod
+    public void setup() {
+        configuration = new PropertiesConfiguration();
+        properties = new HashMap<>();
+        headers = new MultivaluedHashMap<>();
+        slowRequests = new ArrayList<>();
+        filter = new RequestTimingFilter() {
+            @Override
+            protected Configuration getConfiguration() {
+                return configuration;
+            }
+
+            @Override
+            protected void logSlowRequest(Object request, RequestTimings timings) {
+                slowRequests.add(request + " " + timings);
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        RequestTimings.stop();
+    }
+
+    public void testDisabled() {
+        filter.filter(createRequestContext());
+        assertNull(RequestTimings.current());
+        RequestTimings.span("db").close();
+        filter.filter(createRequestContext(), createResponseContext(false));
+        assertTrue(headers.isEmpty());
+        assertTrue(slowRequests.isEmpty());
+    }
+
+    public void testServerTimingHeader() throws Exception {
+        configuration.setProperty(PortofinoProperties.TIMING_HEADER, true);
+        filter.filter(createRequestContext());
+        assertNotNull(RequestTimings.current());
+        RequestTimings.span("db").close();
+        filter.filter(createRequestContext(), createResponseContext(true));
+        String header = (String) headers.getFirst(RequestTimingFilter.SERVER_TIMING_HEADER);
+        assertNotNull(header);
+        assertTrue(header.startsWith("db;dur="), header);
+        assertTrue(header.contains(", total;dur="), header);
+
+        //The timings are collected until the body has been written
+        RequestTimings timings = RequestTimings.current();
+        assertNotNull(timings);
+        boolean[] proceeded = { false };
+        filter.aroundWriteTo(createWriterInterceptorContext(() -> proceeded[0] = true));
+        assertTrue(proceeded[0]);
+        assertNull(RequestTimings.current());
+        assertTrue(timings.getDurations().containsKey(RequestTimingFilter.WRITE_TIMING_NAME));
+        assertTrue(slowRequests.isEmpty());
+    }
+
+    public void testSlowRequests() throws Exception {
+        configuration.setProperty(PortofinoProperties.TIMING_SLOW_REQUEST_THRESHOLD, 1);
+        filter.filter(createRequestContext());
+        assertNotNull(RequestTimings.current());
+        Thread.sleep(5);
+        //Without an entity, the request is over when the response filter runs
+        filter.filter(createRequestContext(), createResponseContext(false));
+        assertTrue(headers.isEmpty());
+        assertNull(RequestTimings.current());
+        assertEquals(slowRequests.size(), 1);
+        assertTrue(slowRequests.get(0).startsWith("GET /api/test total "), slowRequests.get(0));
+
+        //Faster requests are not logged
+        configuration.setProperty(PortofinoProperties.TIMING_SLOW_REQUEST_THRESHOLD, 60000);
+        filter.filter(createRequestContext());
+        filter.filter(createRequestContext(), createResponseContext(true));
+        filter.aroundWriteTo(createWriterInterceptorContext(() -> {}));
+        assertNull(RequestTimings.current());
+        assertEquals(slowRequests.size(), 1);
+    }
+
+    protected ContainerRequestContext createRequestContext() {
+        UriInfo uriInfo = fake(UriInfo.class, (method, args) -> {
+            if(method.equals("getRequestUri")) {
+                return URI.create("http://localhost/api/test?q=1");
+            }
+            throw new UnsupportedOperationException(method);
+        });
+        return fake(ContainerRequestContext.class, (method, args) -> {
+            switch (method) {
+                case "getMethod":
+                    return "GET";
+                case "getUriInfo":
+                    return uriInfo;
+                case "getProperty":
+                    return properties.get((String) args[0]);
+                case "setProperty":
+                    properties.put((String) args[0], args[1]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    protected ContainerResponseContext createResponseContext(boolean hasEntity) {
+        return fake(ContainerResponseContext.class, (method, args) -> {
+            switch (method) {
+                case "getHeaders":
+                    return headers;
+                case "hasEntity":
+                    return hasEntity;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    protected WriterInterceptorContext createWriterInterceptorContext(Runnable body) {
+        return fake(WriterInterceptorContext.class, (method, args) -> {
+            switch (method) {
+                case "proceed":
+                    body.run();
+                    return null;
+                case "getProperty":
+                    return properties.get((String) args[0]);
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    protected interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <T> T fake(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(
+                type.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> handler.invoke(method.getName(), args));
+    }
+
+}
@@ -20,19 +20,28 @@
 
 package com.manydesigns.portofino.modules;
 
+import com.manydesigns.elements.blobs.BlobManager;
+import com.manydesigns.elements.xls.TableFormXlsxWriter;
 import com.manydesigns.portofino.resourceactions.crud.CrudAction;
+import com.manydesigns.portofino.resourceactions.crud.export.CSVExporter;
 import com.manydesigns.portofino.resourceactions.crud.export.CrudExporterRegistry;
+import com.manydesigns.portofino.resourceactions.crud.export.ExportJobService;
 import com.manydesigns.portofino.resourceactions.crud.export.JSONExporter;
+import com.manydesigns.portofino.resourceactions.crud.export.XLSXExporter;
 import com.manydesigns.portofino.resourceactions.m2m.ManyToManyAction;
 import com.manydesigns.portofino.resourceactions.registry.ActionRegistry;
+import com.manydesigns.portofino.spring.PortofinoSpringConfiguration;
 import org.apache.commons.configuration2.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
+import org.springframework.util.ClassUtils;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.nio.charset.Charset;
 
 /*
 * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -44,6 +53,15 @@ public class CrudModule implements Module {
     public static final String copyright =
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
+    public static final String CSV_EXPORT_DELIMITER = "crud.export.csv.delimiter";
+    public static final String CSV_EXPORT_ENCODING = "crud.export.csv.encoding";
+    public static final String XLSX_EXPORT_ROW_WINDOW = "crud.export.xlsx.row.window";
+    public static final String EXPORT_JOBS_THREADS = "crud.export.jobs.threads";
+    public static final String EXPORT_JOBS_QUEUE_SIZE = "crud.export.jobs.queue.size";
+    public static final String EXPORT_JOBS_PER_USER = "crud.export.jobs.per.user";
+    public static final String EXPORT_JOBS_TIME_TO_LIVE = "crud.export.jobs.ttl";
+    public static final String BULK_CREATE_BATCH_SIZE = "crud.bulk.create.batch.size";
+
     //**************************************************************************
     // Fields
     //**************************************************************************
@@ -77,9 +95,33 @@ public class CrudModule implements Module {
     public CrudExporterRegistry getCrudExporterRegistry() {
         CrudExporterRegistry registry = new CrudExporterRegistry();
         registry.register(new JSONExporter());
+        String delimiter = configuration.getString(CSV_EXPORT_DELIMITER, ",");
+        if(delimiter.length() != 1) {
+            logger.warn("Invalid {}: {}, using a comma", CSV_EXPORT_DELIMITER, delimiter);
+            delimiter = ",";
+        }
+        Charset charset = Charset.forName(configuration.getString(CSV_EXPORT_ENCODING, "UTF-8"));
+        registry.register(new CSVExporter(delimiter.charAt(0), charset));
+        if(ClassUtils.isPresent("org.apache.poi.xssf.streaming.SXSSFWorkbook", getClass().getClassLoader())) {
+            registry.register(new XLSXExporter(
+                    configuration.getInt(XLSX_EXPORT_ROW_WINDOW, TableFormXlsxWriter.DEFAULT_ROW_WINDOW)));
+        } else {
+            logger.info("Apache POI not found, the XLSX export of CRUD search results is not available");
+        }
         return registry;
     }
 
+    @Bean
+    public ExportJobService getExportJobService(
+            @Autowired @Qualifier(PortofinoSpringConfiguration.DEFAULT_BLOB_MANAGER) BlobManager blobManager) {
+        return new ExportJobService(
+                blobManager,
+                configuration.getInt(EXPORT_JOBS_THREADS, ExportJobService.DEFAULT_THREADS),
+                configuration.getInt(EXPORT_JOBS_QUEUE_SIZE, ExportJobService.DEFAULT_QUEUE_SIZE),
+                configuration.getInt(EXPORT_JOBS_PER_USER, ExportJobService.DEFAULT_JOBS_PER_USER),
+                configuration.getInt(EXPORT_JOBS_TIME_TO_LIVE, ExportJobService.DEFAULT_TIME_TO_LIVE_MINUTES));
+    }
+
     @PostConstruct
     public void init() {
         actionRegistry.register(CrudAction.class);
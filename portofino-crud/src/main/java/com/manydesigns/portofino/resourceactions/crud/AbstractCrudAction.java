@@ -20,9 +20,11 @@
 
 package com.manydesigns.portofino.resourceactions.crud;
 
+import com.manydesigns.elements.ElementsContext;
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.FormElement;
 import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.annotations.DatabaseBlob;
 import com.manydesigns.elements.annotations.FileBlob;
 import com.manydesigns.elements.blobs.Blob;
 import com.manydesigns.elements.blobs.BlobManager;
@@ -41,19 +43,29 @@ import com.manydesigns.elements.text.OgnlTextFormat;
 import com.manydesigns.elements.util.FormUtil;
 import com.manydesigns.elements.util.MimeTypes;
 import com.manydesigns.elements.util.ReflectionUtil;
+import com.manydesigns.elements.util.RequestTimings;
 import com.manydesigns.elements.util.Util;
 import com.manydesigns.elements.xml.XhtmlBuffer;
 import com.manydesigns.portofino.PortofinoProperties;
+import com.manydesigns.portofino.modules.CrudModule;
 import com.manydesigns.portofino.operations.GuardType;
 import com.manydesigns.portofino.operations.annotations.Guard;
 import com.manydesigns.portofino.persistence.IdStrategy;
 import com.manydesigns.portofino.resourceactions.AbstractResourceAction;
+import com.manydesigns.portofino.resourceactions.ActionContext;
 import com.manydesigns.portofino.resourceactions.ActionInstance;
 import com.manydesigns.portofino.resourceactions.annotations.ConfigurationClass;
 import com.manydesigns.portofino.resourceactions.annotations.SupportsDetail;
+import com.manydesigns.portofino.resourceactions.crud.bulk.BulkCreateResult;
+import com.manydesigns.portofino.resourceactions.crud.bulk.CSVRecordIterator;
+import com.manydesigns.portofino.resourceactions.crud.bulk.CSVRecordReader;
+import com.manydesigns.portofino.resourceactions.crud.bulk.JSONArrayRecordIterator;
 import com.manydesigns.portofino.resourceactions.crud.configuration.CrudConfiguration;
 import com.manydesigns.portofino.resourceactions.crud.export.CrudExporter;
 import com.manydesigns.portofino.resourceactions.crud.export.CrudExporterRegistry;
+import com.manydesigns.portofino.resourceactions.crud.export.ExportJob;
+import com.manydesigns.portofino.resourceactions.crud.export.ExportJobRejectedException;
+import com.manydesigns.portofino.resourceactions.crud.export.ExportJobService;
 import com.manydesigns.portofino.resourceactions.crud.reflection.CrudAccessor;
 import com.manydesigns.portofino.resourceactions.crud.security.EntityPermissions;
 import com.manydesigns.portofino.resourceactions.crud.security.EntityPermissionsChecks;
@@ -68,6 +80,7 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import ognl.OgnlContext;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -84,17 +97,22 @@ import org.springframework.beans.factory.annotation.Qualifier;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -163,6 +181,7 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
     public static final String PORTOFINO_PRETTY_NAME_HEADER = "X-Portofino-Pretty-Name";
     public static final Semver PORTOFINO_API_VERSION_5_2 = new Semver("5.2", Semver.SemverType.LOOSE);
     public static final String PK_SEPARATOR = "/";
+    public static final int DEFAULT_BULK_CREATE_BATCH_SIZE = 500;
 
     //--------------------------------------------------------------------------
     // Web parameters
@@ -177,6 +196,10 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
     public Integer maxResults;
     public String sortProperty;
     public String sortDirection;
+    /**
+     * The properties to include in the search results. If null, all the properties in summary are included.
+     */
+    public String[] fields;
 
     //--------------------------------------------------------------------------
     // UI forms
@@ -209,6 +232,9 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
     @Autowired
     protected CrudExporterRegistry crudExporterRegistry;
 
+    @Autowired(required = false)
+    protected ExportJobService exportJobService;
+
     //--------------------------------------------------------------------------
     // Configuration
     //--------------------------------------------------------------------------
@@ -239,6 +265,96 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
      */
     public abstract List<T> loadObjects();
 
+    /**
+     * Returns the properties that a search must load, when it doesn't need whole objects: the ones listed in
+     * {@link #fields}, or else, if the configuration enables the summary projection, those in summary. Properties
+     * that the search results wouldn't show (because they are not enabled, or not in summary when fields is not
+     * specified) are never included. The primary key is not included either; implementations must always load it.
+     * @return the properties to load, or null to load whole objects.
+     */
+    public List<PropertyAccessor> getProjectedProperties() {
+        if(fields == null && !getCrudConfiguration().isSummaryProjection()) {
+            return null;
+        }
+        TableFormBuilder tableFormBuilder = createTableFormBuilder();
+        List<PropertyAccessor> properties = new ArrayList<>();
+        if(fields != null) {
+            for(String fieldName : fields) {
+                try {
+                    PropertyAccessor property = classAccessor.getProperty(fieldName);
+                    if(tableFormBuilder.isPropertyEnabled(property) && !properties.contains(property)) {
+                        properties.add(property);
+                    }
+                } catch (NoSuchFieldException e) {
+                    logger.warn("Field not found: {}", fieldName);
+                }
+            }
+        } else {
+            for(PropertyAccessor property : classAccessor.getProperties()) {
+                if(tableFormBuilder.isPropertyVisible(property)) {
+                    properties.add(property);
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Adds to a list of projected properties (see {@link #getProjectedProperties()}) the other properties that
+     * displaying them requires: the primary key; all the properties of a selection provider, if at least one of them is
+     * projected; the properties referenced by the detail link; and the file name, content type and timestamp of
+     * database blobs.
+     * @param properties the projected properties. Missing properties are appended to it.
+     */
+    protected void addRequiredProperties(List<PropertyAccessor> properties) {
+        for(PropertyAccessor keyProperty : classAccessor.getKeyProperties()) {
+            addProperty(properties, keyProperty.getName());
+        }
+        if(selectionProviderSupport != null) {
+            for (CrudSelectionProvider current : selectionProviderSupport.getCrudSelectionProviders()) {
+                String[] fieldNames = current.getFieldNames();
+                boolean projected = false;
+                for(PropertyAccessor property : properties) {
+                    projected = projected || ArrayUtils.contains(fieldNames, property.getName());
+                }
+                if(projected) {
+                    for(String fieldName : fieldNames) {
+                        addProperty(properties, fieldName);
+                    }
+                }
+            }
+        }
+        Pattern identifier = Pattern.compile("[\\p{L}_$][\\p{L}\\p{N}_$]*");
+        for(String expression : getReadURLFormat().getOgnlExpressions()) {
+            Matcher matcher = identifier.matcher(expression);
+            while(matcher.find()) {
+                addProperty(properties, matcher.group());
+            }
+        }
+        for(PropertyAccessor property : new ArrayList<>(properties)) {
+            DatabaseBlob databaseBlob = property.getAnnotation(DatabaseBlob.class);
+            if(databaseBlob != null) {
+                addProperty(properties, databaseBlob.fileNameProperty());
+                addProperty(properties, databaseBlob.contentTypeProperty());
+                addProperty(properties, databaseBlob.timestampProperty());
+            }
+        }
+    }
+
+    private void addProperty(List<PropertyAccessor> properties, String name) {
+        if(StringUtils.isBlank(name)) {
+            return;
+        }
+        for(PropertyAccessor property : classAccessor.getProperties()) {
+            if(property.getName().equals(name)) {
+                if(!properties.contains(property)) {
+                    properties.add(property);
+                }
+                return;
+            }
+        }
+    }
+
     /**
      * Loads an object by its identifier and returns it. The object must satisfy the current search criteria.
      * @param pkObject the object used as an identifier; the actual implementation is regulated by subclasses.
@@ -283,6 +399,13 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
 
     protected void executeSearch() {
         setupSearchForm();
+        loadSearchResults();
+    }
+
+    /**
+     * Loads the results of the search, according to the search form, and sets up the table form that shows them.
+     */
+    protected void loadSearchResults() {
         if(maxResults == null) {
             //Load only the first actionDescriptor if the crud is paginated
             maxResults = getCrudConfiguration().getRowsPerPage();
@@ -299,8 +422,110 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
      */
     public abstract long getTotalSearchRecords();
 
+    /**
+     * Loads all the objects matching the current search criteria, ignoring first and max results, and passes them
+     * to the consumer in batches. Unlike {@link #loadObjects()}, it's meant for result sets that may not fit in
+     * memory: the consumer must not retain the batches, and implementations are free to discard each batch (e.g.
+     * detaching its objects from the persistence context) once the consumer returns. The default implementation
+     * loads all the objects with {@link #loadObjects()}; subclasses should override it to read them incrementally.
+     * @param batchSize the maximum number of objects in each batch.
+     * @param consumer the consumer of the batches.
+     */
+    public void scrollObjects(int batchSize, Consumer<? super List<T>> consumer) {
+        Integer firstResult = this.firstResult;
+        Integer maxResults = this.maxResults;
+        List<T> objects = this.objects;
+        this.firstResult = null;
+        this.maxResults = null;
+        try {
+            List<T> allObjects = loadObjects();
+            for(int i = 0; i < allObjects.size(); i += batchSize) {
+                consumer.accept(allObjects.subList(i, Math.min(i + batchSize, allObjects.size())));
+            }
+        } finally {
+            this.firstResult = firstResult;
+            this.maxResults = maxResults;
+            this.objects = objects;
+        }
+    }
+
+    /**
+     * Like {@link #scrollObjects(int, Consumer)}, but each batch is presented as a table form, with the same fields
+     * and formatting as the search results.
+     * @param batchSize the maximum number of rows in each table form.
+     * @param consumer the consumer of the table forms.
+     */
+    public void scrollSearchResults(int batchSize, Consumer<? super TableForm> consumer) {
+        scrollObjects(batchSize, batch -> consumer.accept(createSearchResultsTableForm(batch)));
+    }
+
+    /**
+     * Builds a table form, configured like the one holding the search results, that shows the given objects.
+     * @param objects the objects.
+     * @return the table form.
+     */
+    public TableForm createSearchResultsTableForm(List<T> objects) {
+        TableFormBuilder tableFormBuilder = createTableFormBuilder();
+        configureTableFormBuilder(tableFormBuilder, Mode.VIEW, objects.size());
+        TableForm tableForm = buildTableForm(tableFormBuilder);
+        tableForm.readFromObject(objects);
+        BlobUtils.loadBlobs(tableForm, getBlobManager(), false);
+        return tableForm;
+    }
+
     protected Response exportSearchResults(CrudExporter exporter) {
-        return exporter.exportSearchResults(this).build();
+        try(RequestTimings.Span ignored = RequestTimings.span(CrudExporter.TIMING_NAME)) {
+            return exporter.exportSearchResults(this).build();
+        }
+    }
+
+    //**************************************************************************
+    // Export jobs
+    //**************************************************************************
+
+    /**
+     * Prepares this action to continue working after the current request is over, e.g. in an export job. The request
+     * is replaced with a copy that can outlive it.
+     */
+    public void detachFromRequest() {
+        ActionContext detachedContext = new ActionContext();
+        detachedContext.setRequest(MutableHttpServletRequest.copyOf(context.getRequest()));
+        detachedContext.setServletContext(context.getServletContext());
+        detachedContext.setActionPath(context.getActionPath());
+        detachedContext.setElementsContext(context.getElementsContext());
+        setContext(detachedContext);
+    }
+
+    /**
+     * Prepares the current thread for running this action, after {@link #detachFromRequest()}. Subclasses that hold
+     * per-thread resources (e.g. database sessions) should acquire them here.
+     */
+    public void attachToCurrentThread() {
+        ElementsContext elementsContext = context.getElementsContext();
+        ElementsThreadLocals.setupDefaultElementsContext();
+        if(elementsContext != null) {
+            ElementsThreadLocals.setTextProvider(elementsContext.getTextProvider());
+            ElementsThreadLocals.setOgnlContext(elementsContext.getOgnlContext());
+        }
+        ElementsThreadLocals.setHttpServletRequest(context.getRequest());
+        ElementsThreadLocals.setServletContext(context.getServletContext());
+    }
+
+    /**
+     * Releases the resources acquired by {@link #attachToCurrentThread()}.
+     */
+    public void detachFromCurrentThread() {
+        ElementsThreadLocals.removeElementsContext();
+    }
+
+    /**
+     * Exports the search results. Called by export jobs, in the thread where they run. The exporter reads the results
+     * by itself (see {@link CrudExporter#isStreaming()}), so they are not loaded in advance.
+     * @param exporter the exporter.
+     * @return the response that contains the exported results.
+     */
+    public Response runExportJob(CrudExporter exporter) {
+        return exportSearchResults(exporter);
     }
 
     //**************************************************************************
@@ -311,9 +536,11 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
         BlobUtils.loadBlobs(form, getBlobManager(), false);
         refreshBlobDownloadHref();
         String prettyName = safeGetPrettyName();
-        return exporter.exportObject(this)
-                .header(PORTOFINO_PRETTY_NAME_HEADER, prettyName)
-                .build();
+        try(RequestTimings.Span ignored = RequestTimings.span(CrudExporter.TIMING_NAME)) {
+            return exporter.exportObject(this)
+                    .header(PORTOFINO_PRETTY_NAME_HEADER, prettyName)
+                    .build();
+        }
     }
 
     public String safeGetPrettyName() {
@@ -450,6 +677,31 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
      */
     protected void commitTransaction() {}
 
+    /**
+     * Called before a bulk creation starts saving objects.
+     * @param batchSize the number of objects that are saved and committed together.
+     */
+    protected void beginBulkCreate(int batchSize) {}
+
+    /**
+     * Commits the objects saved since the last batch of a bulk creation, and prepares for the next batch.
+     * The default implementation calls {@link #commitTransaction()}.
+     */
+    protected void commitBulkCreateBatch() {
+        commitTransaction();
+    }
+
+    /**
+     * Discards the objects saved since the last batch of a bulk creation, after an error, and prepares for saving
+     * them again one at a time.
+     */
+    protected void rollbackBulkCreateBatch() {}
+
+    /**
+     * Called when a bulk creation is over, even if it failed.
+     */
+    protected void endBulkCreate() {}
+
     public boolean isEditEnabled() {
         return true;
     }
@@ -863,7 +1115,16 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
         configureTableFormSelectionProviders(tableFormBuilder);
         tableFormBuilder.configPrefix(prefix).configNRows(nRows).configMode(mode);
         if(tableFormBuilder.getPropertyAccessors() == null) {
-            tableFormBuilder.configReflectiveFields();
+            if(fields != null) {
+                List<PropertyAccessor> projectedProperties = getProjectedProperties();
+                String[] fieldNames = new String[projectedProperties.size()];
+                for(int i = 0; i < fieldNames.length; i++) {
+                    fieldNames[i] = projectedProperties.get(i).getName();
+                }
+                tableFormBuilder.configFields(fieldNames);
+            } else {
+                tableFormBuilder.configReflectiveFields();
+            }
         }
 
         configureDetailLink(tableFormBuilder);
@@ -1478,6 +1739,8 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
             @QueryParam("newObject") boolean newObject,
             @Parameter(description = "The returned object does not load a displayValue for fields that have selection providers. The client will have to query selection providers by itself. Only valid for create, read, edit.")
             @QueryParam("skipSelectionProviders") boolean skipSelectionProviders,
+            @Parameter(description = "Comma-separated list of the properties to include in the search results. Only the requested properties and the primary key are loaded from the database. Only valid for search.")
+            @QueryParam("fields") String fields,
             @HeaderParam("Accept") String acceptedFormats) {
         checkAccessorPermissions(new String[]{ PERMISSION_READ });
         selectionProviderLoadStrategy = skipSelectionProviders ?
@@ -1497,6 +1760,9 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
             this.maxResults = maxResults;
             this.sortProperty = sortProperty;
             this.sortDirection = sortDirection;
+            if(!StringUtils.isBlank(fields)) {
+                this.fields = StringUtils.split(fields, ", ");
+            }
             executeSearch();
             return exportSearchResults(exporter);
         } else {
@@ -1510,6 +1776,122 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
         }
     }
 
+    /**
+     * Starts exporting the search results in the background. The job can then be polled with
+     * {@link #getExportJob(String)} and its result downloaded with {@link #downloadExportJobResult(String)}.
+     * @return the status of the job as JSON, with status 202 (Accepted).
+     */
+    @POST
+    @Path(":export")
+    @Produces(MimeTypes.APPLICATION_JSON_UTF8)
+    @Operation(summary = "Export the search results in the background, in any supported format")
+    public Response startExportJob(
+            @Parameter(description = "The search string (see https://portofino.manydesigns.com/en/docs/reference/page-types/crud/rest for its format)")
+            @QueryParam("searchString") String searchString,
+            @Parameter(description = "The property according to which the search results are sorted.")
+            @QueryParam("sortProperty") String sortProperty,
+            @Parameter(description = "The direction of the sort (asc or desc).")
+            @QueryParam("sortDirection") String sortDirection,
+            @Parameter(description = "Comma-separated list of the properties to export.")
+            @QueryParam("fields") String fields,
+            @Parameter(description = "The media type of the export, e.g. text/csv", required = true)
+            @QueryParam("format") String format) {
+        if(object != null) {
+            return Response.status(Response.Status.BAD_REQUEST).
+                    entity("Export jobs can only be started on search results (not on /objectKey)").build();
+        }
+        if(exportJobService == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Export jobs are not enabled").build();
+        }
+        if(StringUtils.isBlank(format)) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("The format is required").build();
+        }
+        checkAccessorPermissions(new String[]{ PERMISSION_READ });
+        CrudExporter exporter;
+        try {
+            exporter = crudExporterRegistry.get(org.springframework.http.MediaType.parseMediaTypes(format));
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.NOT_ACCEPTABLE).entity(e.getMessage()).build();
+        }
+        if(!exporter.isStreaming()) {
+            return Response.status(Response.Status.NOT_ACCEPTABLE)
+                    .entity("Export jobs are not supported for the format " + format).build();
+        }
+        this.searchString = searchString;
+        this.sortProperty = sortProperty;
+        this.sortDirection = sortDirection;
+        if(!StringUtils.isBlank(fields)) {
+            this.fields = StringUtils.split(fields, ", ");
+        }
+        setupSearchForm();
+        String actionPath = context.getActionPath();
+        ExportJob job;
+        try {
+            job = exportJobService.submit(this, exporter, format);
+        } catch (ExportJobRejectedException e) {
+            return Response.status(e.getStatus()).entity(e.getMessage()).build();
+        }
+        URI location = URI.create(Util.getAbsoluteUrl(actionPath + "/:export/" + job.getId()));
+        return Response.accepted(exportJobToJson(job, actionPath)).location(location).build();
+    }
+
+    @GET
+    @Path(":export/{jobId}")
+    @Produces(MimeTypes.APPLICATION_JSON_UTF8)
+    @Operation(summary = "The status of an export job")
+    public Response getExportJob(
+            @Parameter(description = "The id of the job", required = true)
+            @PathParam("jobId") String jobId) {
+        ExportJob job = exportJobService != null ? exportJobService.getJob(jobId, this) : null;
+        if(job == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(exportJobToJson(job, context.getActionPath())).build();
+    }
+
+    @GET
+    @Path(":export/{jobId}/download")
+    @Operation(summary = "Downloads the result of a completed export job")
+    public Response downloadExportJobResult(
+            @Parameter(description = "The id of the job", required = true)
+            @PathParam("jobId") String jobId) {
+        ExportJob job = exportJobService != null ? exportJobService.getJob(jobId, this) : null;
+        if(job == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if(job.getStatus() != ExportJob.Status.COMPLETED) {
+            return Response.status(Response.Status.CONFLICT).entity("The export job is " + job.getStatus()).build();
+        }
+        try {
+            Blob blob = exportJobService.getResult(job);
+            return Utilities.downloadBlob(blob, exportJobService.getBlobManager(), context.getRequest(), logger);
+        } catch (IOException e) {
+            logger.error("Could not load the result of export job " + jobId, e);
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+    }
+
+    protected String exportJobToJson(ExportJob job, String actionPath) {
+        JSONStringer js = new JSONStringer();
+        js.object()
+                .key("id").value(job.getId())
+                .key("status").value(job.getStatus().name())
+                .key("format").value(job.getContentType())
+                .key("created").value(job.getCreateTimestamp().getMillis());
+        if(job.getCompleteTimestamp() != null) {
+            js.key("completed").value(job.getCompleteTimestamp().getMillis());
+        }
+        if(job.getStatus() == ExportJob.Status.COMPLETED) {
+            js.key("filename").value(job.getFilename())
+              .key("size").value(job.getSize())
+              .key("download").value(Util.getAbsoluteUrl(actionPath + "/:export/" + job.getId() + "/download"));
+        } else if(job.getStatus() == ExportJob.Status.FAILED) {
+            js.key("error").value(job.getErrorMessage());
+        }
+        js.endObject();
+        return js.toString();
+    }
+
     /**
      * Handles object creation via REST. See <a href="http://portofino.manydesigns.com/en/docs/reference/page-types/crud/rest">the CRUD action REST API documentation.</a>
      * @param jsonObject the object (in serialized JSON form)
@@ -1593,6 +1975,258 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
         return Response.serverError().entity(form).build();
     }
 
+    /**
+     * Creates several objects at once from a JSON array. Each object is validated like in {@link #httpPostJson(String)},
+     * and the valid ones are saved and committed in batches; see {@link #bulkCreate(Iterator)}.
+     * @param inputStream the JSON array of objects, as returned by GET.
+     * @return the number of created objects and the errors of the others, as JSON.
+     * @since 5.3.3
+     */
+    @POST
+    @Path(":bulk")
+    @RequiresPermissions(permissions = PERMISSION_CREATE)
+    @Guard(test = "isCreateEnabled()", type = GuardType.VISIBLE)
+    @Produces(MimeTypes.APPLICATION_JSON_UTF8)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Create several objects at once (without blob data)")
+    public Response bulkCreateJson(
+            @RequestBody(description = "A JSON array of objects, in the form returned by GET") InputStream inputStream) {
+        if(object != null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Bulk creation not supported on /objectKey").build();
+        }
+        checkAccessorPermissions(new String[]{ PERMISSION_CREATE });
+        setupBulkCreateForm();
+        Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        BulkCreateResult result = bulkCreate(new JSONArrayRecordIterator(reader));
+        return Response.ok(result.toJson()).build();
+    }
+
+    /**
+     * Creates several objects at once from a CSV file. The first record is the header: each column is matched to a
+     * property by name, or else by label. Values are parsed like in the create form.
+     * See {@link #bulkCreate(Iterator)}.
+     * @param delimiter the delimiter of the values, a comma by default.
+     * @param contentType the content type of the request, possibly with the charset (UTF-8 by default).
+     * @param inputStream the CSV file.
+     * @return the number of created objects and the errors of the others, as JSON.
+     * @throws IOException if the header can't be read.
+     * @since 5.3.3
+     */
+    @POST
+    @Path(":bulk")
+    @RequiresPermissions(permissions = PERMISSION_CREATE)
+    @Guard(test = "isCreateEnabled()", type = GuardType.VISIBLE)
+    @Produces(MimeTypes.APPLICATION_JSON_UTF8)
+    @Consumes("text/csv")
+    @Operation(summary = "Create several objects at once from a CSV file (without blob data)")
+    public Response bulkCreateCsv(
+            @Parameter(description = "The delimiter of the values (a comma by default)")
+            @QueryParam("delimiter") String delimiter,
+            @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestBody(description = "A CSV file whose first record holds the names or labels of the properties")
+            InputStream inputStream) throws IOException {
+        if(object != null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Bulk creation not supported on /objectKey").build();
+        }
+        if(delimiter != null && delimiter.length() != 1) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid delimiter: " + delimiter).build();
+        }
+        checkAccessorPermissions(new String[]{ PERMISSION_CREATE });
+        Charset charset = StandardCharsets.UTF_8;
+        if(contentType != null) {
+            String charsetName = MediaType.valueOf(contentType).getParameters().get(MediaType.CHARSET_PARAMETER);
+            if(charsetName != null) {
+                charset = Charset.forName(charsetName);
+            }
+        }
+        CSVRecordReader reader = new CSVRecordReader(
+                new InputStreamReader(inputStream, charset), delimiter != null ? delimiter.charAt(0) : ',');
+        List<String> header = reader.readRecord();
+        if(header == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("The CSV file is empty").build();
+        }
+        setupBulkCreateForm();
+        List<String> propertyNames = new ArrayList<>();
+        List<String> unknownColumns = new ArrayList<>();
+        for(String column : header) {
+            Field field = findBulkCreateField(column);
+            if(field != null) {
+                propertyNames.add(field.getPropertyAccessor().getName());
+            } else {
+                propertyNames.add(null);
+                unknownColumns.add(column);
+            }
+        }
+        if(!unknownColumns.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Unknown columns: " + StringUtils.join(unknownColumns, ", ")).build();
+        }
+        BulkCreateResult result = bulkCreate(new CSVRecordIterator(reader, propertyNames));
+        return Response.ok(result.toJson()).build();
+    }
+
+    protected void setupBulkCreateForm() {
+        setupForm(Mode.CREATE);
+        disableBlobFields();
+    }
+
+    /**
+     * @return the field of the create form whose property name is the given CSV column, or else whose label is
+     * the given column (ignoring case); null if there's no such field.
+     */
+    protected Field findBulkCreateField(String column) {
+        Field byLabel = null;
+        for(FieldSet fieldSet : form) {
+            for(FormElement element : fieldSet) {
+                if(element instanceof Field) {
+                    Field field = (Field) element;
+                    if(field.getPropertyAccessor().getName().equals(column)) {
+                        return field;
+                    } else if(byLabel == null && column.trim().equalsIgnoreCase(field.getLabel())) {
+                        byLabel = field;
+                    }
+                }
+            }
+        }
+        return byLabel;
+    }
+
+    /**
+     * Creates objects from a sequence of records, typically read from a file uploaded by the user. The form must
+     * have been set up with {@link #setupBulkCreateForm()}. Every record is validated, and the valid objects are
+     * saved (calling the same hooks as a single creation), then committed in batches of
+     * {@link #getBulkCreateBatchSize()} objects; see {@link #commitBulkCreateBatch()}. If a batch can't be saved,
+     * it's rolled back and its objects are saved and committed one at a time, so that only the faulty ones fail;
+     * note that, in that case, {@link #createPostProcess(Object)} is called twice on those objects.
+     * Batches that have already been committed are not rolled back if a later one fails, or if the input turns out
+     * to be malformed.
+     * @param records the records, in the JSON form accepted by {@link #httpPostJson(String)}.
+     * @return the number of created objects and the errors of the others.
+     * @since 5.3.3
+     */
+    public BulkCreateResult bulkCreate(Iterator<JSONObject> records) {
+        int batchSize = getBulkCreateBatchSize();
+        BulkCreateResult result = new BulkCreateResult();
+        Map<Integer, JSONObject> batch = new LinkedHashMap<>();
+        beginBulkCreate(batchSize);
+        try {
+            for(int index = 0; ; index++) {
+                JSONObject record;
+                try {
+                    if(!records.hasNext()) {
+                        break;
+                    }
+                    record = records.next();
+                } catch (RuntimeException e) {
+                    logger.debug("Invalid bulk creation input", e);
+                    result.addError(index, ExceptionUtils.getRootCauseMessage(e));
+                    break;
+                }
+                if(!readBulkCreateRecord(index, record, result)) {
+                    continue;
+                }
+                batch.put(index, record);
+                try {
+                    doSave(object);
+                    createPostProcess(object);
+                } catch (Throwable e) {
+                    logger.warn("Bulk creation failed, saving the objects of the batch one at a time", e);
+                    retryBulkCreateBatch(batch, result);
+                    continue;
+                }
+                if(batch.size() >= batchSize) {
+                    commitBulkCreateBatch(batch, result);
+                }
+            }
+            if(!batch.isEmpty()) {
+                commitBulkCreateBatch(batch, result);
+            }
+        } finally {
+            endBulkCreate();
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new object and populates it with a record, using the create form.
+     * @return true if the record is valid, false otherwise; in the latter case, its errors are added to the result.
+     */
+    protected boolean readBulkCreateRecord(int index, JSONObject record, BulkCreateResult result) {
+        object = (T) classAccessor.newInstance();
+        createSetup(object);
+        form.readFromObject(object);
+        for(FieldSet fieldSet : form) {
+            for(FormElement element : fieldSet) {
+                element.getErrors().clear();
+            }
+        }
+        FormUtil.readFromJson(form, record);
+        if (form.validate()) {
+            writeFormToObject();
+            if(createValidate(object)) {
+                return true;
+            }
+            List<String> messages = RequestMessages.consumeErrorMessages();
+            result.addError(
+                    index, Collections.emptyMap(),
+                    messages.isEmpty() ? Collections.singletonList("Invalid object") : messages);
+        } else {
+            Map<String, List<String>> fieldErrors = new LinkedHashMap<>();
+            for(FieldSet fieldSet : form) {
+                for(FormElement element : fieldSet) {
+                    if(element instanceof Field && !element.getErrors().isEmpty()) {
+                        fieldErrors.put(
+                                ((Field) element).getPropertyAccessor().getName(),
+                                new ArrayList<>(element.getErrors()));
+                    }
+                }
+            }
+            result.addError(index, fieldErrors, Collections.emptyList());
+        }
+        return false;
+    }
+
+    protected void commitBulkCreateBatch(Map<Integer, JSONObject> batch, BulkCreateResult result) {
+        try {
+            commitBulkCreateBatch();
+            result.addCreated(batch.size());
+            batch.clear();
+        } catch (Throwable e) {
+            logger.warn("Bulk creation failed, saving the objects of the batch one at a time", e);
+            retryBulkCreateBatch(batch, result);
+        }
+    }
+
+    protected void retryBulkCreateBatch(Map<Integer, JSONObject> batch, BulkCreateResult result) {
+        rollbackBulkCreateBatch();
+        for(Map.Entry<Integer, JSONObject> entry : batch.entrySet()) {
+            if(!readBulkCreateRecord(entry.getKey(), entry.getValue(), result)) {
+                continue;
+            }
+            try {
+                doSave(object);
+                createPostProcess(object);
+                commitBulkCreateBatch();
+                result.addCreated(1);
+            } catch (Throwable e) {
+                String rootCauseMessage = ExceptionUtils.getRootCauseMessage(e);
+                logger.debug(rootCauseMessage, e);
+                result.addError(entry.getKey(), rootCauseMessage);
+                rollbackBulkCreateBatch();
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * @return the number of objects that are saved and committed together when creating objects in bulk.
+     * Configured with {@link CrudModule#BULK_CREATE_BATCH_SIZE}.
+     */
+    public int getBulkCreateBatchSize() {
+        return Math.max(1, portofinoConfiguration.getInt(
+                CrudModule.BULK_CREATE_BATCH_SIZE, DEFAULT_BULK_CREATE_BATCH_SIZE));
+    }
+
     protected Response objectCreated() throws URISyntaxException {
         form.readFromObject(object); //Re-read so that the full object is returned
         return Response.status(Response.Status.CREATED).
@@ -2002,6 +2636,14 @@ public abstract class AbstractCrudAction<T> extends AbstractResourceAction {
         this.successReturnUrl = successReturnUrl;
     }
 
+    public String[] getFields() {
+        return fields;
+    }
+
+    public void setFields(String[] fields) {
+        this.fields = fields;
+    }
+
     public SearchForm getSearchForm() {
         return searchForm;
     }
@@ -31,6 +31,7 @@ import com.manydesigns.portofino.model.database.Database;
 import com.manydesigns.portofino.model.database.DatabaseLogic;
 import com.manydesigns.portofino.model.database.ForeignKey;
 import com.manydesigns.portofino.model.database.Table;
+import com.manydesigns.portofino.model.database.platforms.DatabasePlatform;
 import com.manydesigns.portofino.persistence.IdStrategy;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.persistence.QueryUtils;
@@ -48,24 +49,22 @@ import com.manydesigns.portofino.security.RequiresPermissions;
 import com.manydesigns.portofino.security.SupportsPermissions;
 import com.manydesigns.portofino.util.PkHelper;
 import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.expression.Function;
-import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
-import net.sf.jsqlparser.parser.CCJSqlParserManager;
-import net.sf.jsqlparser.statement.select.PlainSelect;
-import net.sf.jsqlparser.statement.select.Select;
-import net.sf.jsqlparser.statement.select.SelectExpressionItem;
-import net.sf.jsqlparser.statement.select.SelectItem;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
 import org.hibernate.exception.ConstraintViolationException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.Serializable;
-import java.io.StringReader;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -92,6 +91,10 @@ public class CrudAction<T> extends AbstractCrudAction<T> {
     //--------------------------------------------------------------------------
 
     public Session session;
+    /**
+     * The session of the request, set aside while a bulk creation uses a dedicated one.
+     */
+    protected Session requestSession;
 
     @Autowired
     public Persistence persistence;
@@ -114,12 +117,8 @@ public class CrudAction<T> extends AbstractCrudAction<T> {
     }
 
     protected long calculateTotalSearchRecords() {
-        TableCriteria criteria = new TableCriteria(baseTable);
-        if(searchForm != null) {
-            searchForm.configureCriteria(criteria);
-        }
         QueryStringWithParameters query =
-                QueryUtils.mergeQuery(getBaseQuery(), criteria, this);
+                QueryUtils.mergeQuery(getBaseQuery(), createSearchConditions(), this);
 
         String queryString = query.getQueryString();
         String totalRecordsQueryString;
@@ -129,36 +128,14 @@ public class CrudAction<T> extends AbstractCrudAction<T> {
             throw new Error(e);
         }
         //TODO gestire count non disponibile (totalRecordsQueryString == null)
-        List<Object> result = QueryUtils.runHqlQuery(session, totalRecordsQueryString, query.getParameters());
+        List<Object> result = QueryUtils.runHqlQuery(
+                session, totalRecordsQueryString, query.getParameters(), null, null,
+                QueryUtils.isCacheable(baseTable));
         return totalSearchRecords = ((Number) result.get(0)).longValue();
     }
 
     protected String generateCountQuery(String queryString) throws JSQLParserException {
-        CCJSqlParserManager parserManager = new CCJSqlParserManager();
-        try {
-            PlainSelect plainSelect =
-                (PlainSelect) ((Select) parserManager.parse(new StringReader(queryString))).getSelectBody();
-            logger.debug("Query string {} contains select", queryString);
-            List<SelectItem> items = plainSelect.getSelectItems();
-            if(items.size() != 1) {
-                logger.error("I don't know how to generate a count query for {}", queryString);
-                return null;
-            }
-            SelectExpressionItem item = (SelectExpressionItem) items.get(0);
-            Function function = new Function();
-            function.setName("count");
-            function.setParameters(new ExpressionList(Collections.singletonList(item.getExpression())));
-            item.setExpression(function);
-            plainSelect.setOrderByElements(null);
-            return plainSelect.toString();
-        } catch(Exception e) {
-            logger.debug("Query string " + queryString + " does not contain select", e);
-            queryString = "SELECT count(*) " + queryString;
-            PlainSelect plainSelect =
-                (PlainSelect) ((Select) parserManager.parse(new StringReader(queryString))).getSelectBody();
-            plainSelect.setOrderByElements(null);
-            return plainSelect.toString();
-        }
+        return QueryUtils.generateCountQuery(queryString);
     }
 
     @Override
@@ -166,6 +143,70 @@ public class CrudAction<T> extends AbstractCrudAction<T> {
         session.getTransaction().commit();
     }
 
+    /**
+     * Saves the objects in a dedicated session, so that errors and rollbacks don't affect the session of the request,
+     * and makes Hibernate send the inserts of each batch to the database using JDBC batching. Note that Hibernate
+     * can't batch the inserts of entities whose id is generated by the database (identity columns).
+     */
+    @Override
+    protected void beginBulkCreate(int batchSize) {
+        requestSession = session;
+        session = openBulkCreateSession(batchSize);
+    }
+
+    /**
+     * Commits the batch and clears the session, so that the saved objects can be garbage collected.
+     */
+    @Override
+    protected void commitBulkCreateBatch() {
+        commitTransaction();
+        session.clear();
+        session.beginTransaction();
+    }
+
+    /**
+     * Rolls back the batch and replaces the session, as a Hibernate session can't be used anymore after an error.
+     */
+    @Override
+    protected void rollbackBulkCreateBatch() {
+        Integer batchSize = session.getJdbcBatchSize();
+        closeBulkCreateSession();
+        session = openBulkCreateSession(batchSize);
+    }
+
+    /**
+     * Closes the session used by the bulk creation and restores the one of the request.
+     */
+    @Override
+    protected void endBulkCreate() {
+        try {
+            closeBulkCreateSession();
+        } finally {
+            session = requestSession;
+            requestSession = null;
+        }
+    }
+
+    protected Session openBulkCreateSession(Integer batchSize) {
+        Session bulkCreateSession =
+                persistence.getDatabaseSetup(getCrudConfiguration().getDatabase()).createSession();
+        bulkCreateSession.setJdbcBatchSize(batchSize);
+        bulkCreateSession.beginTransaction();
+        return bulkCreateSession;
+    }
+
+    protected void closeBulkCreateSession() {
+        try {
+            Transaction transaction = session.getTransaction();
+            if(transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            session.close();
+        } catch (Throwable e) {
+            logger.warn("Couldn't close the bulk creation session: " + ExceptionUtils.getRootCauseMessage(e), e);
+        }
+    }
+
     @Override
     public boolean isCreateEnabled() {
         return classAccessor != null &&
@@ -298,6 +339,24 @@ public class CrudAction<T> extends AbstractCrudAction<T> {
         return this;
     }
 
+    /**
+     * Opens a session for the current thread, since the one used by the request is bound to its thread.
+     */
+    @Override
+    public void attachToCurrentThread() {
+        super.attachToCurrentThread();
+        session = persistence.getSession(getCrudConfiguration().getDatabase());
+    }
+
+    @Override
+    public void detachFromCurrentThread() {
+        try {
+            persistence.closeSessions();
+        } finally {
+            super.detachFromCurrentThread();
+        }
+    }
+
     //**************************************************************************
     // Object loading
     //**************************************************************************
@@ -315,20 +374,23 @@ public class CrudAction<T> extends AbstractCrudAction<T> {
     @SuppressWarnings({"rawtypes", "unchecked"})
     public List<T> loadObjects() {
         try {
-            TableCriteria criteria = new TableCriteria(baseTable);
-            if(searchForm != null) {
-                searchForm.configureCriteria(criteria);
+            List<PropertyAccessor> projectedProperties = getProjectedProperties();
+            QueryStringWithParameters query = getSearchQuery(projectedProperties);
+            if(query == null) {
+                projectedProperties = null;
+                query = getSearchQuery(null);
             }
-            if(!StringUtils.isBlank(sortProperty) && !StringUtils.isBlank(sortDirection)) {
-                try {
-                    PropertyAccessor orderByProperty = getOrderByProperty(sortProperty);
-                    if(orderByProperty != null)
-                        criteria.orderBy(orderByProperty, sortDirection);
-                } catch (NoSuchFieldException e) {
-                    logger.error("Can't order by " + sortProperty + ", property accessor not found", e);
+            List<Object> rows = QueryUtils.runHqlQuery(
+                    session, query.getQueryString(), query.getParameters(),
+                    firstResult, maxResults, QueryUtils.isCacheable(baseTable));
+            if(projectedProperties != null) {
+                objects = new ArrayList<>(rows.size());
+                for(Object row : rows) {
+                    objects.add(createProjectedObject(row, projectedProperties));
                 }
+            } else {
+                objects = (List) rows;
             }
-            objects = (List) QueryUtils.getObjects(session, getBaseQuery(), criteria, this, firstResult, maxResults);
         } catch (ClassCastException e) {
             objects = new ArrayList<>();
             logger.warn("Incorrect Field Type", e);
@@ -337,6 +399,108 @@ public class CrudAction<T> extends AbstractCrudAction<T> {
         return objects;
     }
 
+    /**
+     * Reads the search results with a forward-only cursor, so that they never need to fit in memory all together.
+     * The query runs in a dedicated stateless session, with its own connection, so the objects it loads are not
+     * retained and the session of the request is left untouched.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void scrollObjects(int batchSize, Consumer<? super List<T>> consumer) {
+        List<PropertyAccessor> projectedProperties = getProjectedProperties();
+        QueryStringWithParameters query = getSearchQuery(projectedProperties);
+        if(query == null) {
+            projectedProperties = null;
+            query = getSearchQuery(null);
+        }
+        DatabasePlatform platform =
+                persistence.getConnectionProvider(getCrudConfiguration().getDatabase()).getDatabasePlatform();
+        StatelessSession statelessSession = session.getSessionFactory().openStatelessSession();
+        try(ScrollableResults results = QueryUtils.scrollHqlQuery(
+                statelessSession, query.getQueryString(), query.getParameters(),
+                platform.getStreamingFetchSize(batchSize))) {
+            List<T> batch = new ArrayList<>(batchSize);
+            while(results.next()) {
+                if(projectedProperties != null) {
+                    batch.add(createProjectedObject(results.get(), projectedProperties));
+                } else {
+                    batch.add((T) results.get(0));
+                }
+                if(batch.size() == batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if(!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+        } finally {
+            statelessSession.close();
+        }
+    }
+
+    /**
+     * Creates the criteria of the current search: the conditions of the search form, without any sort order.
+     */
+    protected TableCriteria createSearchConditions() {
+        TableCriteria criteria = new TableCriteria(baseTable);
+        if(searchForm != null) {
+            searchForm.configureCriteria(criteria);
+        }
+        return criteria;
+    }
+
+    /**
+     * Creates the criteria of the current search: the conditions of the search form and the sort order.
+     */
+    protected TableCriteria createSearchCriteria() {
+        TableCriteria criteria = createSearchConditions();
+        if(!StringUtils.isBlank(sortProperty) && !StringUtils.isBlank(sortDirection)) {
+            try {
+                PropertyAccessor orderByProperty = getOrderByProperty(sortProperty);
+                if(orderByProperty != null)
+                    criteria.orderBy(orderByProperty, sortDirection);
+            } catch (NoSuchFieldException e) {
+                logger.error("Can't order by " + sortProperty + ", property accessor not found", e);
+            }
+        }
+        return criteria;
+    }
+
+    /**
+     * Creates the query of the current search, with the conditions of the search form and the sort order.
+     * @param projectedProperties the properties to load, as returned by {@link #getProjectedProperties()}, or null to
+     *                            load whole objects. The properties they require are appended to it if missing, see
+     *                            {@link #addRequiredProperties(List)}.
+     * @return the query, or null if the projection is requested but not possible with the base query.
+     */
+    @Nullable
+    protected QueryStringWithParameters getSearchQuery(@Nullable List<PropertyAccessor> projectedProperties) {
+        QueryStringWithParameters query = QueryUtils.mergeQuery(getBaseQuery(), createSearchCriteria(), this);
+        if(projectedProperties != null) {
+            addRequiredProperties(projectedProperties);
+            query = QueryUtils.getProjectionQuery(query, baseTable.getActualEntityName(), projectedProperties);
+        }
+        return query;
+    }
+
+    /**
+     * Creates an object holding only the given properties, from a row of a projection query. The object is not
+     * attached to the session; it's only meant to be displayed in the search results.
+     * @param row the row, i.e. the values of the properties (or the value itself, if there's a single property).
+     * @param properties the properties, in the same order as the values in the row.
+     * @return the new object.
+     */
+    @SuppressWarnings("unchecked")
+    protected T createProjectedObject(Object row, List<PropertyAccessor> properties) {
+        Object[] values = row instanceof Object[] ? (Object[]) row : new Object[] { row };
+        T object = (T) classAccessor.newInstance();
+        for(int i = 0; i < values.length; i++) {
+            properties.get(i).set(object, values[i]);
+        }
+        return object;
+    }
+
     /**
      * @return an PropertyAccessor object
      */
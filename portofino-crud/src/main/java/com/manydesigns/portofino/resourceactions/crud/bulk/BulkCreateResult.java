@@ -0,0 +1,86 @@
+package com.manydesigns.portofino.resourceactions.crud.bulk;
+
+import org.json.JSONStringer;
+
+import java.util.*;
+
+/**
+ * The outcome of a bulk creation: how many objects have been created, and why the others have not. Records are
+ * identified by their index in the input, starting from 0 (for CSV, the header is not counted).
+ */
+public class BulkCreateResult {
+
+    protected int created;
+    protected final List<RecordError> errors = new ArrayList<>();
+
+    public void addCreated(int count) {
+        created += count;
+    }
+
+    public void addError(int index, Map<String, List<String>> fieldErrors, List<String> messages) {
+        errors.add(new RecordError(index, fieldErrors, messages));
+    }
+
+    public void addError(int index, String message) {
+        addError(index, Collections.emptyMap(), Collections.singletonList(message));
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public List<RecordError> getErrors() {
+        return errors;
+    }
+
+    public String toJson() {
+        JSONStringer js = new JSONStringer();
+        js.object()
+                .key("created").value(created)
+                .key("failed").value(errors.size())
+                .key("errors").array();
+        for(RecordError error : errors) {
+            js.object().key("index").value(error.getIndex());
+            if(!error.getFieldErrors().isEmpty()) {
+                js.key("fields").object();
+                for(Map.Entry<String, List<String>> entry : error.getFieldErrors().entrySet()) {
+                    js.key(entry.getKey()).value(entry.getValue());
+                }
+                js.endObject();
+            }
+            if(!error.getMessages().isEmpty()) {
+                js.key("messages").value(error.getMessages());
+            }
+            js.endObject();
+        }
+        js.endArray().endObject();
+        return js.toString();
+    }
+
+    public static class RecordError {
+        protected final int index;
+        protected final Map<String, List<String>> fieldErrors;
+        protected final List<String> messages;
+
+        public RecordError(int index, Map<String, List<String>> fieldErrors, List<String> messages) {
+            this.index = index;
+            this.fieldErrors = fieldErrors;
+            this.messages = messages;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the validation errors of each field, by property name.
+         */
+        public Map<String, List<String>> getFieldErrors() {
+            return fieldErrors;
+        }
+
+        public List<String> getMessages() {
+            return messages;
+        }
+    }
+}
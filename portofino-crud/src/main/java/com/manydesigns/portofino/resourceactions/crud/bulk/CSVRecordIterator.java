@@ -0,0 +1,71 @@
+package com.manydesigns.portofino.resourceactions.crud.bulk;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Turns the records of a CSV file into JSON objects, that can be read by a form like the ones received by the REST
+ * API. Each value is put, as a string, under the name of the property of its column; columns whose property is null
+ * are ignored.
+ */
+public class CSVRecordIterator implements Iterator<JSONObject> {
+
+    protected final CSVRecordReader reader;
+    protected final List<String> propertyNames;
+    protected JSONObject next;
+    protected boolean finished;
+
+    public CSVRecordIterator(CSVRecordReader reader, List<String> propertyNames) {
+        this.reader = reader;
+        this.propertyNames = propertyNames;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(next == null && !finished) {
+            List<String> values;
+            try {
+                values = reader.readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if(values == null) {
+                finished = true;
+            } else {
+                next = toJson(values);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public JSONObject next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        JSONObject result = next;
+        next = null;
+        return result;
+    }
+
+    protected JSONObject toJson(List<String> values) {
+        if(values.size() > propertyNames.size()) {
+            throw new IllegalArgumentException(
+                    "Record " + reader.getRecordNumber() + " has " + values.size() + " values, but there are only " +
+                    propertyNames.size() + " columns");
+        }
+        JSONObject jsonObject = new JSONObject();
+        for(int i = 0; i < values.size(); i++) {
+            String propertyName = propertyNames.get(i);
+            if(propertyName != null) {
+                jsonObject.put(propertyName, values.get(i));
+            }
+        }
+        return jsonObject;
+    }
+}
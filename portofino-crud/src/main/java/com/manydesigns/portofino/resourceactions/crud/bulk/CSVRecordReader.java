@@ -0,0 +1,116 @@
+package com.manydesigns.portofino.resourceactions.crud.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV (RFC 4180) records one at a time, the counterpart of
+ * {@link com.manydesigns.portofino.resourceactions.crud.export.CSVExporter}. Values can be quoted with double quotes,
+ * in which case they can contain the delimiter, line breaks and doubled double quotes. Records can end with CRLF or
+ * LF. A leading byte order mark and blank lines are skipped.
+ */
+public class CSVRecordReader {
+
+    private static final int NONE = -2;
+
+    protected final Reader reader;
+    protected final char delimiter;
+    protected int pushedBack = NONE;
+    protected boolean started;
+    protected int recordNumber;
+
+    public CSVRecordReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CSVRecordReader(Reader reader, char delimiter) {
+        if(delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Invalid CSV delimiter: " + delimiter);
+        }
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @return the values of the next record, or null if there are no more records.
+     * @throws IOException if the input can't be read or a quoted value is not terminated.
+     */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        while(c == '\r' || c == '\n') {
+            c = read();
+        }
+        if(c == -1) {
+            return null;
+        }
+        recordNumber++;
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while(true) {
+            if(quoted) {
+                if(c == -1) {
+                    throw new IOException("Unterminated quoted value in record " + recordNumber);
+                } else if(c == '"') {
+                    int next = read();
+                    if(next == '"') {
+                        value.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if(c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if(c == delimiter) {
+                values.add(value.toString());
+                value.setLength(0);
+                fieldStart = true;
+            } else if(c == '\r' || c == '\n' || c == -1) {
+                if(c == '\r') {
+                    int next = read();
+                    if(next != '\n') {
+                        pushedBack = next;
+                    }
+                }
+                values.add(value.toString());
+                return values;
+            } else {
+                value.append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+    }
+
+    protected int read() throws IOException {
+        if(pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        int c = reader.read();
+        if(!started) {
+            started = true;
+            if(c == '\uFEFF') {
+                c = reader.read();
+            }
+        }
+        return c;
+    }
+
+    /**
+     * @return the number of records read so far, starting from 1 (the header, if there is one, is counted too).
+     */
+    public int getRecordNumber() {
+        return recordNumber;
+    }
+}
@@ -0,0 +1,67 @@
+package com.manydesigns.portofino.resourceactions.crud.bulk;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the objects of a JSON array one at a time, so that the whole array is never in memory. Malformed input, or
+ * elements that are not objects, cause a {@link org.json.JSONException} when they are reached.
+ */
+public class JSONArrayRecordIterator implements Iterator<JSONObject> {
+
+    protected final JSONTokener tokener;
+    protected boolean started;
+    protected boolean finished;
+    protected JSONObject next;
+
+    public JSONArrayRecordIterator(Reader reader) {
+        this.tokener = new JSONTokener(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(next == null && !finished) {
+            next = readNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public JSONObject next() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        JSONObject result = next;
+        next = null;
+        return result;
+    }
+
+    protected JSONObject readNext() {
+        char c = tokener.nextClean();
+        if(!started) {
+            started = true;
+            if(c != '[') {
+                throw tokener.syntaxError("A JSON array must start with '['");
+            }
+            c = tokener.nextClean();
+        } else if(c == ',') {
+            c = tokener.nextClean();
+        } else if(c != ']') {
+            throw tokener.syntaxError("Expected a ',' or ']'");
+        }
+        if(c == ']') {
+            finished = true;
+            return null;
+        }
+        tokener.back();
+        Object value = tokener.nextValue();
+        if(!(value instanceof JSONObject)) {
+            throw tokener.syntaxError("Expected a JSON object");
+        }
+        return (JSONObject) value;
+    }
+}
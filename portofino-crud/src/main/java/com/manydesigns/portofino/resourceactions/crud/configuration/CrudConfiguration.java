@@ -17,7 +17,7 @@ import java.util.List;
 */
 
 @XmlRootElement(name = "configuration")
-@XmlType(name = "configuration",propOrder = {"name", "searchTitle","createTitle","readTitle","editTitle","variable","largeResultSet","rowsPerPage","useLocalOrder","properties"})
+@XmlType(name = "configuration",propOrder = {"name", "searchTitle","createTitle","readTitle","editTitle","variable","largeResultSet","rowsPerPage","useLocalOrder","summaryProjection","properties"})
 @XmlAccessorType(value = XmlAccessType.NONE)
 public class CrudConfiguration implements ResourceActionConfiguration, ConfigurationWithDefaults {
     public static final String copyright =
@@ -36,6 +36,7 @@ public class CrudConfiguration implements ResourceActionConfiguration, Configura
     protected String variable;
     protected boolean largeResultSet;
     protected boolean useLocalOrder = false;
+    protected boolean summaryProjection = false;
     protected Integer rowsPerPage;
 
     public CrudConfiguration() {
@@ -148,4 +149,16 @@ public class CrudConfiguration implements ResourceActionConfiguration, Configura
     public void setUseLocalOrder(boolean useLocalOrder) {
         this.useLocalOrder = useLocalOrder;
     }
+
+    /**
+     * If true, searches only load the properties in summary (and the primary key) rather than whole objects.
+     */
+    @XmlAttribute(required = false)
+    public boolean isSummaryProjection() {
+        return summaryProjection;
+    }
+
+    public void setSummaryProjection(boolean summaryProjection) {
+        this.summaryProjection = summaryProjection;
+    }
 }
@@ -0,0 +1,192 @@
+package com.manydesigns.portofino.resourceactions.crud.export;
+
+import com.manydesigns.elements.FormElement;
+import com.manydesigns.elements.fields.Field;
+import com.manydesigns.elements.fields.NumericField;
+import com.manydesigns.elements.fields.PasswordField;
+import com.manydesigns.elements.forms.FieldSet;
+import com.manydesigns.elements.forms.TableForm;
+import com.manydesigns.portofino.resourceactions.crud.AbstractCrudAction;
+import org.springframework.http.MediaType;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exports search results and single objects as CSV (RFC 4180). Search results are streamed to the client while they
+ * are read from the database, in batches of {@link #batchSize} rows, so they are never all in memory; unlike the
+ * JSON export, they are not paginated. Values are formatted as they appear in the search results.
+ */
+public class CSVExporter implements CrudExporter {
+
+    public static final MediaType TEXT_CSV = new MediaType("text", "csv");
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    protected final char delimiter;
+    protected final Charset charset;
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+
+    public CSVExporter() {
+        this(',', StandardCharsets.UTF_8);
+    }
+
+    public CSVExporter(char delimiter, Charset charset) {
+        if(delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Invalid CSV delimiter: " + delimiter);
+        }
+        this.delimiter = delimiter;
+        this.charset = charset;
+    }
+
+    @Override
+    public boolean supports(MediaType mediaType) {
+        return mediaType.includes(TEXT_CSV);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public Response.ResponseBuilder exportObject(AbstractCrudAction<?> action) {
+        List<String> labels = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for(FieldSet fieldSet : action.getForm()) {
+            for(FormElement element : fieldSet) {
+                if(element instanceof Field) {
+                    Field field = (Field) element;
+                    labels.add(field.getLabel());
+                    values.add(getValue(field));
+                }
+            }
+        }
+        StreamingOutput output = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset));
+            writeRecord(writer, labels);
+            writeRecord(writer, values);
+            writer.flush();
+        };
+        return createResponse(output, action);
+    }
+
+    @Override
+    public Response.ResponseBuilder exportSearchResults(AbstractCrudAction<?> action) {
+        StreamingOutput output = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset));
+            writeHeader(writer, action.createSearchResultsTableForm(Collections.emptyList()));
+            try {
+                action.scrollSearchResults(batchSize, tableForm -> {
+                    try {
+                        writeRows(writer, tableForm);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return createResponse(output, action);
+    }
+
+    protected Response.ResponseBuilder createResponse(StreamingOutput output, AbstractCrudAction<?> action) {
+        return Response.ok(output)
+                .type(TEXT_CSV.toString())
+                .encoding(charset.name())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=" + action.getActionInstance().getName() + ".csv");
+    }
+
+    protected void writeHeader(Writer writer, TableForm tableForm) throws IOException {
+        List<String> labels = new ArrayList<>();
+        for(TableForm.Column column : tableForm.getColumns()) {
+            labels.add(column.getActualLabel());
+        }
+        writeRecord(writer, labels);
+    }
+
+    protected void writeRows(Writer writer, TableForm tableForm) throws IOException {
+        for(TableForm.Row row : tableForm.getRows()) {
+            List<String> values = new ArrayList<>(row.size());
+            for(Field field : row) {
+                values.add(getValue(field));
+            }
+            writeRecord(writer, values);
+        }
+    }
+
+    protected String getValue(Field field) {
+        if(field instanceof PasswordField) {
+            return PasswordField.PASSWORD_PLACEHOLDER;
+        }
+        if(field instanceof NumericField) {
+            return field.getDisplayValue();
+        }
+        return escapeFormula(field.getDisplayValue());
+    }
+
+    /**
+     * Prevents spreadsheet applications from interpreting a text value as a formula (CSV injection), by prefixing
+     * it with a single quote if it starts with <code>=</code>, <code>+</code>, <code>-</code>, <code>@</code>, a tab
+     * or a carriage return.
+     */
+    protected String escapeFormula(String value) {
+        if(value == null || value.isEmpty()) {
+            return value;
+        }
+        char first = value.charAt(0);
+        if(first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            return "'" + value;
+        }
+        return value;
+    }
+
+    protected void writeRecord(Writer writer, List<String> values) throws IOException {
+        for(int i = 0; i < values.size(); i++) {
+            if(i > 0) {
+                writer.write(delimiter);
+            }
+            writeValue(writer, values.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Writes a value, quoting it if it contains the delimiter, a double quote or a line break. Double quotes inside
+     * quoted values are escaped by doubling them. Null values are written as empty strings.
+     */
+    protected void writeValue(Writer writer, String value) throws IOException {
+        if(value == null) {
+            return;
+        }
+        boolean quote = false;
+        for(int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == delimiter || c == '"' || c == '\r' || c == '\n';
+        }
+        if(quote) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
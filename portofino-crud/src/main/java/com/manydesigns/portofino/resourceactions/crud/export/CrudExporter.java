@@ -7,8 +7,23 @@ import javax.ws.rs.core.Response;
 
 public interface CrudExporter {
 
+    /**
+     * The name under which the time spent exporting is reported in the request timings. Streaming exporters do most
+     * of their work while the response is written, which is reported separately.
+     */
+    String TIMING_NAME = "export";
+
     boolean supports(MediaType mediaType);
     Response.ResponseBuilder exportObject(AbstractCrudAction<?> action);
     Response.ResponseBuilder exportSearchResults(AbstractCrudAction<?> action);
 
+    /**
+     * Whether {@link #exportSearchResults(AbstractCrudAction)} reads all the search results by itself (e.g. with
+     * {@link AbstractCrudAction#scrollSearchResults}) instead of exporting the ones already loaded by the action.
+     * Only such exporters can run in export jobs.
+     */
+    default boolean isStreaming() {
+        return false;
+    }
+
 }
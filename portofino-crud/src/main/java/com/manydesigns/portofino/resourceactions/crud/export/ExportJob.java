@@ -0,0 +1,97 @@
+package com.manydesigns.portofino.resourceactions.crud.export;
+
+import org.joda.time.DateTime;
+
+/**
+ * An export of search results running in the background, see {@link ExportJobService}. When the job is completed,
+ * its result is stored as a blob whose code is {@link #getBlobCode()}.
+ */
+public class ExportJob {
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED;
+
+        public boolean isActive() {
+            return this == PENDING || this == RUNNING;
+        }
+    }
+
+    protected final String id;
+    protected final String owner;
+    protected final String contentType;
+    protected final DateTime createTimestamp = new DateTime();
+    protected volatile Status status = Status.PENDING;
+    protected volatile DateTime completeTimestamp;
+    protected volatile String filename;
+    protected volatile String blobCode;
+    protected volatile long size = -1;
+    protected volatile String errorMessage;
+
+    public ExportJob(String id, String owner, String contentType) {
+        this.id = id;
+        this.owner = owner;
+        this.contentType = contentType;
+    }
+
+    public void start() {
+        status = Status.RUNNING;
+    }
+
+    public void complete(String blobCode, String filename, long size) {
+        this.blobCode = blobCode;
+        this.filename = filename;
+        this.size = size;
+        completeTimestamp = new DateTime();
+        status = Status.COMPLETED;
+    }
+
+    public void fail(String errorMessage) {
+        this.errorMessage = errorMessage;
+        completeTimestamp = new DateTime();
+        status = Status.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return who requested the export: the user or, for anonymous requests, the HTTP session (see
+     * {@link ExportJobService#getOwner(com.manydesigns.portofino.resourceactions.crud.AbstractCrudAction)}).
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public DateTime getCreateTimestamp() {
+        return createTimestamp;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public DateTime getCompleteTimestamp() {
+        return completeTimestamp;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getBlobCode() {
+        return blobCode;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
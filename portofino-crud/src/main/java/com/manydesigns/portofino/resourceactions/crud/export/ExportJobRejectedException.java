@@ -0,0 +1,24 @@
+package com.manydesigns.portofino.resourceactions.crud.export;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Thrown when an export job can't be accepted, either because the user has too many active jobs or because the
+ * queue of jobs is full.
+ */
+public class ExportJobRejectedException extends RuntimeException {
+
+    protected final Response.Status status;
+
+    public ExportJobRejectedException(String message, Response.Status status) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return the HTTP status that best describes the reason of the rejection.
+     */
+    public Response.Status getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,256 @@
+package com.manydesigns.portofino.resourceactions.crud.export;
+
+import com.manydesigns.elements.blobs.Blob;
+import com.manydesigns.elements.blobs.BlobManager;
+import com.manydesigns.elements.util.RandomUtil;
+import com.manydesigns.portofino.resourceactions.crud.AbstractCrudAction;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs exports of CRUD search results in the background, so that they don't tie up a request thread and a database
+ * connection until the client has downloaded them. Jobs run on a bounded pool of threads with a bounded queue, and
+ * each user can only have a limited number of jobs pending or running at the same time. Jobs belong to the user
+ * who started them or, if nobody is logged in, to the HTTP session; anonymous requests without a session can't start
+ * jobs. The output of a job is
+ * stored in a {@link BlobManager}; it's deleted, together with the job, some time after the job has ended.
+ * Jobs are only kept in memory, so they are lost (and their results deleted) when the application is stopped.
+ */
+public class ExportJobService {
+
+    public static final int DEFAULT_THREADS = 2;
+    public static final int DEFAULT_QUEUE_SIZE = 10;
+    public static final int DEFAULT_JOBS_PER_USER = 1;
+    public static final int DEFAULT_TIME_TO_LIVE_MINUTES = 60;
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+    private static final Pattern FILENAME_PATTERN = Pattern.compile("filename=\"?([^\";]+)\"?");
+
+    protected final BlobManager blobManager;
+    protected final int jobsPerUser;
+    protected final long timeToLiveMillis;
+    protected final ThreadPoolExecutor executor;
+    protected final ScheduledExecutorService cleanupExecutor;
+    protected final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    public ExportJobService(BlobManager blobManager) {
+        this(blobManager, DEFAULT_THREADS, DEFAULT_QUEUE_SIZE, DEFAULT_JOBS_PER_USER, DEFAULT_TIME_TO_LIVE_MINUTES);
+    }
+
+    public ExportJobService(
+            BlobManager blobManager, int threads, int queueSize, int jobsPerUser, int timeToLiveMinutes) {
+        this.blobManager = blobManager;
+        this.jobsPerUser = jobsPerUser;
+        this.timeToLiveMillis = TimeUnit.MINUTES.toMillis(timeToLiveMinutes);
+        executor = new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Portofino export job");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        cleanupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Portofino export job cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Math.min(timeToLiveMinutes, 10));
+        cleanupExecutor.scheduleWithFixedDelay(this::deleteExpiredJobs, period, period, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Submits a job that exports the current search results of a CRUD action. The action must be set up as for a
+     * search (search form, sort, etc.); the job then loads and exports the results on another thread. From now on,
+     * the action must not be used by the current request anymore.
+     * @param action the action.
+     * @param exporter the exporter that writes the results.
+     * @param contentType the format of the export, as requested by the client.
+     * @return the new job.
+     * @throws ExportJobRejectedException if the request is anonymous, the current user has too many active jobs, or
+     * the queue is full.
+     */
+    public synchronized ExportJob submit(AbstractCrudAction<?> action, CrudExporter exporter, String contentType) {
+        String owner = getOwner(action);
+        if(owner == null) {
+            throw new ExportJobRejectedException(
+                    "Export jobs require a logged in user or a session", Response.Status.UNAUTHORIZED);
+        }
+        long activeJobs = jobs.values().stream()
+                .filter(j -> Objects.equals(owner, j.getOwner()) && j.getStatus().isActive())
+                .count();
+        if(activeJobs >= jobsPerUser) {
+            throw new ExportJobRejectedException(
+                    "Too many export jobs in progress (maximum " + jobsPerUser + ")",
+                    Response.Status.TOO_MANY_REQUESTS);
+        }
+        ExportJob job = new ExportJob(RandomUtil.createRandomId(), owner, contentType);
+        action.detachFromRequest();
+        Runnable task = action.getSecurity().associateWithCurrentUser(() -> run(job, action, exporter));
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new ExportJobRejectedException(
+                    "The export queue is full, please try again later", Response.Status.SERVICE_UNAVAILABLE);
+        }
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    /**
+     * @return the job with the given id, if it belongs to the user (or session) of the given action.
+     */
+    public ExportJob getJob(String id, AbstractCrudAction<?> action) {
+        ExportJob job = jobs.get(id);
+        String owner = getOwner(action);
+        if(job != null && owner != null && owner.equals(job.getOwner())) {
+            return job;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Identifies who owns the jobs started or looked up by the current request of an action: the logged in user or,
+     * for anonymous requests, the HTTP session.
+     * @return the owner, or null if the request is anonymous and has no session.
+     */
+    protected String getOwner(AbstractCrudAction<?> action) {
+        Object userId = action.getSecurity().getUserId();
+        if(userId != null) {
+            return "user:" + userId;
+        }
+        HttpServletRequest request = action.getContext().getRequest();
+        HttpSession session = request != null ? request.getSession(false) : null;
+        if(session != null && session.getId() != null) {
+            return "session:" + session.getId();
+        }
+        return null;
+    }
+
+    /**
+     * @return the blob holding the result of a completed job, with its metadata loaded.
+     */
+    public Blob getResult(ExportJob job) throws IOException {
+        if(job.getStatus() != ExportJob.Status.COMPLETED) {
+            return null;
+        }
+        Blob blob = new Blob(job.getBlobCode());
+        blobManager.loadMetadata(blob);
+        return blob;
+    }
+
+    public BlobManager getBlobManager() {
+        return blobManager;
+    }
+
+    protected void run(ExportJob job, AbstractCrudAction<?> action, CrudExporter exporter) {
+        job.start();
+        logger.debug("Running export job {}", job.getId());
+        File tempFile = null;
+        try {
+            action.attachToCurrentThread();
+            Response response = action.runExportJob(exporter);
+            tempFile = File.createTempFile("portofino-export-", ".tmp");
+            try(OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                writeEntity(response.getEntity(), outputStream);
+            }
+            Blob blob = new Blob(RandomUtil.createRandomId());
+            blob.setFilename(getFilename(response, action));
+            blob.setContentType(
+                    response.getMediaType() != null ? response.getMediaType().toString() : job.getContentType());
+            blob.setSize(tempFile.length());
+            blob.setCreateTimestamp(new DateTime());
+            try(InputStream inputStream = new FileInputStream(tempFile)) {
+                blob.setInputStream(inputStream);
+                blobManager.save(blob);
+            }
+            job.complete(blob.getCode(), blob.getFilename(), blob.getSize());
+            logger.debug("Export job {} completed", job.getId());
+        } catch (Throwable e) {
+            logger.error("Export job " + job.getId() + " failed", e);
+            //The exception may reveal details of the database or of the application
+            job.fail("The export failed");
+        } finally {
+            try {
+                action.detachFromCurrentThread();
+            } catch (Exception e) {
+                logger.warn("Could not release the resources of export job " + job.getId(), e);
+            }
+            if(tempFile != null && !tempFile.delete()) {
+                logger.warn("Could not delete temporary file {}", tempFile);
+            }
+        }
+    }
+
+    protected void writeEntity(Object entity, OutputStream outputStream) throws IOException {
+        if(entity instanceof StreamingOutput) {
+            ((StreamingOutput) entity).write(outputStream);
+        } else if(entity instanceof String) {
+            outputStream.write(((String) entity).getBytes(StandardCharsets.UTF_8));
+        } else if(entity instanceof byte[]) {
+            outputStream.write((byte[]) entity);
+        } else if(entity instanceof InputStream) {
+            try(InputStream inputStream = (InputStream) entity) {
+                IOUtils.copyLarge(inputStream, outputStream);
+            }
+        } else {
+            throw new IOException("Unsupported export result: " + entity);
+        }
+    }
+
+    protected String getFilename(Response response, AbstractCrudAction<?> action) {
+        String contentDisposition = response.getHeaderString(HttpHeaders.CONTENT_DISPOSITION);
+        if(contentDisposition != null) {
+            Matcher matcher = FILENAME_PATTERN.matcher(contentDisposition);
+            if(matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        return StringUtils.defaultIfEmpty(action.getActionInstance().getName(), "export");
+    }
+
+    public void deleteExpiredJobs() {
+        long now = System.currentTimeMillis();
+        for(ExportJob job : jobs.values()) {
+            DateTime completed = job.getCompleteTimestamp();
+            if(!job.getStatus().isActive() && completed != null && completed.getMillis() + timeToLiveMillis < now) {
+                delete(job);
+            }
+        }
+    }
+
+    protected void delete(ExportJob job) {
+        jobs.remove(job.getId());
+        if(job.getBlobCode() != null) {
+            try {
+                blobManager.delete(new Blob(job.getBlobCode()));
+            } catch (IOException e) {
+                logger.warn("Could not delete the result of export job " + job.getId(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdownNow();
+        executor.shutdownNow();
+        jobs.values().forEach(this::delete);
+    }
+}
@@ -0,0 +1,101 @@
+package com.manydesigns.portofino.resourceactions.crud.export;
+
+import com.manydesigns.elements.FormElement;
+import com.manydesigns.elements.fields.Field;
+import com.manydesigns.elements.forms.FieldSet;
+import com.manydesigns.elements.xls.TableFormXlsxWriter;
+import com.manydesigns.portofino.resourceactions.crud.AbstractCrudAction;
+import org.springframework.http.MediaType;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exports search results and single objects as OOXML spreadsheets (.xlsx), using {@link TableFormXlsxWriter}. Search
+ * results are read from the database in batches while they are written, and only a window of rows is kept in memory;
+ * unlike the JSON export, they are not paginated. Requires Apache POI (poi-ooxml) on the classpath.
+ */
+public class XLSXExporter implements CrudExporter {
+
+    public static final MediaType XLSX =
+            new MediaType("application", "vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    protected final int rowWindow;
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+
+    public XLSXExporter() {
+        this(TableFormXlsxWriter.DEFAULT_ROW_WINDOW);
+    }
+
+    public XLSXExporter(int rowWindow) {
+        this.rowWindow = rowWindow;
+    }
+
+    @Override
+    public boolean supports(MediaType mediaType) {
+        return mediaType.includes(XLSX);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public Response.ResponseBuilder exportObject(AbstractCrudAction<?> action) {
+        List<String> labels = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        for(FieldSet fieldSet : action.getForm()) {
+            for(FormElement element : fieldSet) {
+                if(element instanceof Field) {
+                    labels.add(element.getLabel());
+                    fields.add((Field) element);
+                }
+            }
+        }
+        StreamingOutput output = outputStream -> {
+            try(TableFormXlsxWriter writer = createWriter(action)) {
+                writer.writeHeader(labels);
+                writer.writeRow(fields);
+                writer.write(outputStream);
+            }
+        };
+        return createResponse(output, action);
+    }
+
+    @Override
+    public Response.ResponseBuilder exportSearchResults(AbstractCrudAction<?> action) {
+        StreamingOutput output = outputStream -> {
+            try(TableFormXlsxWriter writer = createWriter(action)) {
+                writer.writeHeader(action.createSearchResultsTableForm(Collections.emptyList()));
+                action.scrollSearchResults(batchSize, writer::writeRows);
+                writer.write(outputStream);
+            }
+        };
+        return createResponse(output, action);
+    }
+
+    protected TableFormXlsxWriter createWriter(AbstractCrudAction<?> action) {
+        return new TableFormXlsxWriter(action.getActionInstance().getName(), rowWindow);
+    }
+
+    protected Response.ResponseBuilder createResponse(StreamingOutput output, AbstractCrudAction<?> action) {
+        return Response.ok(output)
+                .type(XLSX.toString())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=" + action.getActionInstance().getName() + ".xlsx");
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
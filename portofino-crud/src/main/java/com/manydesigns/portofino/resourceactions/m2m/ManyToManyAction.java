@@ -54,6 +54,7 @@ import com.manydesigns.portofino.security.RequiresPermissions;
 import com.manydesigns.portofino.security.SupportsPermissions;
 import com.manydesigns.portofino.util.PkHelper;
 import com.manydesigns.portofino.util.ShortNameUtils;
+import net.sf.jsqlparser.JSQLParserException;
 import ognl.OgnlContext;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Session;
@@ -88,6 +89,7 @@ public class ManyToManyAction extends AbstractResourceAction {
             "Copyright (C) 2005-2020 ManyDesigns srl";
 
     public static final String PERMISSION_UPDATE = "m2m-update";
+    public static final int DEFAULT_BATCH_SIZE = 100;
 
     protected ManyToManyConfiguration m2mConfiguration;
 
@@ -110,6 +112,15 @@ public class ManyToManyAction extends AbstractResourceAction {
     protected Map<Object, Boolean> booleanRelation;
     protected List<String> selectedPrimaryKeys = new ArrayList<String>();
 
+    //Paging and search of the association targets
+    protected String searchString;
+    protected Integer firstResult;
+    protected Integer maxResults;
+    protected Long totalAssociationTargets;
+
+    //Number of associations inserted or deleted in a single JDBC batch
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+
     //Configuration
     protected Form configurationForm;
 
@@ -241,19 +252,95 @@ public class ManyToManyAction extends AbstractResourceAction {
         return selectionProvider;
     }
 
+    /**
+     * Loads the potential association targets and the existing associations among them. If
+     * <code>maxResults</code> is set, only one page of targets is loaded, and only the associations to those targets.
+     */
     protected void loadAssociations() throws NoSuchFieldException {
-        Table table = m2mConfiguration.getActualRelationTable();
-        TableCriteria criteria = new TableCriteria(table);
-        //TODO chiave multipla
-        String onePropertyName = m2mConfiguration.getActualOnePropertyName();
-        PropertyAccessor onePropertyAccessor =
-                relationTableAccessor.getProperty(onePropertyName);
-        //TODO chiave multipla
-        SelectionProviderReference manySelectionProvider = m2mConfiguration.getManySelectionProvider();
-        String manyPropertyName = manySelectionProvider.getActualSelectionProvider().getReferences().get(0).getActualFromColumn().getActualPropertyName();
-        PropertyAccessor manyPropertyAccessor =
-                relationTableAccessor.getProperty(manyPropertyName);
-        criteria = criteria.eq(onePropertyAccessor, onePk);
+        loadPotentiallyAvailableAssociations();
+        PropertyAccessor manyPkAccessor = getManyPkAccessor();
+        List<Object> manyPks = null;
+        if(maxResults != null) {
+            manyPks = new ArrayList<>();
+            for(Object o : potentiallyAvailableAssociations) {
+                manyPks.add(manyPkAccessor.get(o));
+            }
+        }
+        loadExistingAssociations(manyPks);
+        Set<Object> existingKeys = getExistingAssociationKeys();
+        availableAssociations = new ArrayList<Object>();
+        for(Object o : potentiallyAvailableAssociations) {
+            if(!existingKeys.contains(manyPkAccessor.get(o))) {
+                availableAssociations.add(o);
+            }
+        }
+    }
+
+    /**
+     * Loads the association targets, optionally filtered by <code>searchString</code> and limited by
+     * <code>firstResult</code> and <code>maxResults</code>.
+     */
+    protected void loadPotentiallyAvailableAssociations() {
+        DatabaseSelectionProvider manySelectionProvider =
+                (DatabaseSelectionProvider) m2mConfiguration.getManySelectionProvider().getActualSelectionProvider();
+        String hql = manySelectionProvider.getHql();
+        if (StringUtils.isEmpty(hql)) {
+            throw new RuntimeException("Couldn't determine many query");
+        }
+        Session selectionProviderSession = persistence.getSession(manySelectionProvider.getToDatabase());
+        QueryStringWithParameters manyQuery = QueryUtils.mergeQuery(hql, null, this);
+        if(!StringUtils.isBlank(searchString)) {
+            manyQuery = addSearchCondition(manyQuery);
+        }
+        if(maxResults != null) {
+            String countQuery;
+            try {
+                countQuery = QueryUtils.generateCountQuery(manyQuery.getQueryString());
+            } catch (JSQLParserException e) {
+                throw new RuntimeException("Couldn't count the results of the many query", e);
+            }
+            List<Object> count = QueryUtils.runHqlQuery(selectionProviderSession, countQuery, manyQuery.getParameters());
+            totalAssociationTargets = ((Number) count.get(0)).longValue();
+        }
+        potentiallyAvailableAssociations = QueryUtils.runHqlQuery(
+                selectionProviderSession, manyQuery.getQueryString(), manyQuery.getParameters(),
+                firstResult, maxResults);
+    }
+
+    /**
+     * Restricts the association targets to those with a text property that contains the search string, ignoring case.
+     * @param query the query that loads the association targets.
+     * @return the restricted query.
+     */
+    protected QueryStringWithParameters addSearchCondition(QueryStringWithParameters query) {
+        List<String> conditions = new ArrayList<>();
+        for(PropertyAccessor property : manyTableAccessor.getProperties()) {
+            if(String.class.equals(property.getType())) {
+                conditions.add("lower({0}" + property.getName() + ") like {1}");
+            }
+        }
+        if(conditions.isEmpty()) {
+            return query;
+        }
+        return QueryUtils.addCondition(
+                query, m2mConfiguration.getActualManyTable().getActualEntityName(),
+                StringUtils.join(conditions, " OR "), "%" + searchString.toLowerCase() + "%");
+    }
+
+    /**
+     * Loads the associations of the current "one" object.
+     * @param manyPks if not null, only load the associations to these targets.
+     */
+    protected void loadExistingAssociations(Collection<Object> manyPks) throws NoSuchFieldException {
+        TableCriteria criteria = new TableCriteria(m2mConfiguration.getActualRelationTable());
+        criteria = criteria.eq(getOnePropertyAccessor(), onePk);
+        if(manyPks != null) {
+            if(manyPks.isEmpty()) {
+                existingAssociations = new ArrayList<>();
+                return;
+            }
+            criteria = criteria.in(getManyPropertyAccessor(), manyPks.toArray());
+        }
         QueryStringWithParameters queryString;
         try {
             queryString = QueryUtils.mergeQuery(m2mConfiguration.getQuery(), criteria, this);
@@ -263,39 +350,32 @@ public class ManyToManyAction extends AbstractResourceAction {
         }
         existingAssociations =
                 QueryUtils.runHqlQuery(session, queryString.getQueryString(), queryString.getParameters());
-        availableAssociations = new ArrayList<Object>();
-
-        String databaseName = ((DatabaseSelectionProvider) manySelectionProvider.getActualSelectionProvider()).getToDatabase();
-        String hql = ((DatabaseSelectionProvider) manySelectionProvider.getActualSelectionProvider()).getHql();
-
-         if (!StringUtils.isEmpty(hql)) {
-            Session selectionProviderSession = persistence.getSession(databaseName);
+    }
 
-            QueryStringWithParameters manyQuery = QueryUtils.mergeQuery(hql, null, this);
-            potentiallyAvailableAssociations =QueryUtils.runHqlQuery(selectionProviderSession, manyQuery.getQueryString(), manyQuery.getParameters());
-        }else{
-             throw new RuntimeException("Couldn't determine many query");
+    protected Set<Object> getExistingAssociationKeys() throws NoSuchFieldException {
+        PropertyAccessor manyPropertyAccessor = getManyPropertyAccessor();
+        Set<Object> keys = new HashSet<>();
+        for(Object a : existingAssociations) {
+            keys.add(manyPropertyAccessor.get(a));
         }
+        return keys;
+    }
 
-        PropertyAccessor[] manyKeyProperties = manyTableAccessor.getKeyProperties();
-        //TODO handle manyKeyProperties.length > 1
-        PropertyAccessor manyPkAccessor = manyTableAccessor.getProperty(manyKeyProperties[0].getName());
-        for(Object o : potentiallyAvailableAssociations) {
-            Object oPk = manyPkAccessor.get(o);
-            boolean existing = isExistingAssociation(manyPropertyAccessor, oPk);
-            if(!existing) {
-                availableAssociations.add(o);
-            }
-        }
+    //TODO chiave multipla
+    protected PropertyAccessor getOnePropertyAccessor() throws NoSuchFieldException {
+        return relationTableAccessor.getProperty(m2mConfiguration.getActualOnePropertyName());
     }
 
-    private boolean isExistingAssociation(PropertyAccessor manyPropertyAccessor, Object oPk) {
-        for(Object a : existingAssociations) {
-            if(oPk.equals(manyPropertyAccessor.get(a))) {
-                return true;
-            }
-        }
-        return false;
+    //TODO chiave multipla
+    protected PropertyAccessor getManyPropertyAccessor() throws NoSuchFieldException {
+        String manyPropertyName = m2mConfiguration.getManySelectionProvider().getActualSelectionProvider()
+                .getReferences().get(0).getActualFromColumn().getActualPropertyName();
+        return relationTableAccessor.getProperty(manyPropertyName);
+    }
+
+    //TODO handle manyKeyProperties.length > 1
+    protected PropertyAccessor getManyPkAccessor() throws NoSuchFieldException {
+        return manyTableAccessor.getProperty(manyTableAccessor.getKeyProperties()[0].getName());
     }
 
     protected void deleteRelation(Object rel) {
@@ -484,6 +564,14 @@ public class ManyToManyAction extends AbstractResourceAction {
         return oneSelectField;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
         //--------------------------------------------------------------------------
     // REST
     //--------------------------------------------------------------------------
@@ -502,13 +590,21 @@ public class ManyToManyAction extends AbstractResourceAction {
     /**
      * Handles available associations for given key
      * @param key the key string
+     * @param searchString if present, only return the targets with a text property containing this string.
+     * @param firstResult the index of the first target to return.
+     * @param maxResults if present, return at most this number of targets, and their total number as totalRecords.
      * @since 4.2.1
      * @return available associations set results as JSON.
      */
     @GET
     @Path(":availableAssociations/{key}")
     @Produces(MimeTypes.APPLICATION_JSON_UTF8)
-    public Response getAssociations(@PathParam("key") String key) {
+    public Response getAssociations(
+            @PathParam("key") String key, @QueryParam("searchString") String searchString,
+            @QueryParam("firstResult") Integer firstResult, @QueryParam("maxResults") Integer maxResults) {
+        this.searchString = searchString;
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
         try {
             loadOnePk(key);
         }catch (Exception e){
@@ -556,52 +652,102 @@ public class ManyToManyAction extends AbstractResourceAction {
                 logger.error("Cannot get key "+key ,e);
             }
 
-            JSONArray selectedKeysJson = obj.getJSONArray(onePk.toString());
-
-            for( int i=0; i<selectedKeysJson.length();i++ ){
-                selectedPrimaryKeys.add(selectedKeysJson.get(i).toString());
-            }
-
             try {
-                loadAssociations();
+                loadExistingAssociations(null);
             } catch (Exception e) {
                 logger.error("Could not load associations", e);
                 return Response.serverError().entity(e).build();
             }
+            PropertyAccessor manyPropertyAccessor = getManyPropertyAccessor();
+            Map<String, Object> existingByPk = new LinkedHashMap<>();
+            for(Object o : existingAssociations) {
+                //TODO handle manyKeyProperties.length > 1
+                existingByPk.put(OgnlUtils.convertValue(manyPropertyAccessor.get(o), String.class), o);
+            }
 
-            //TODO chiave multipla
-            String onePropertyName = m2mConfiguration.getActualOnePropertyName();
-            PropertyAccessor onePropertyAccessor = relationTableAccessor.getProperty(onePropertyName);
-            //TODO chiave multipla
-            String manyPropertyName = m2mConfiguration.getManySelectionProvider().getActualSelectionProvider().getReferences().get(0).getActualFromColumn().getActualPropertyName();
-            PropertyAccessor manyPropertyAccessor = relationTableAccessor.getProperty(manyPropertyName);
-            PropertyAccessor[] manyKeyProperties = manyTableAccessor.getKeyProperties();
-            //TODO handle manyKeyProperties.length > 1
-            PropertyAccessor manyPkAccessor = manyTableAccessor.getProperty(manyKeyProperties[0].getName());
-            for(String pkString : selectedPrimaryKeys) {
-                Object pkObject = manyTableAccessor.getIdStrategy().getPrimaryKey(pkString.split("/"));
-                Object pk = manyPkAccessor.get(pkObject);
-                if(!isExistingAssociation(manyPropertyAccessor, pk)) {
-                    Object newRelation = saveNewRelation(pk, onePropertyAccessor, manyPropertyAccessor);
-                    existingAssociations.add(newRelation);
+            Set<String> toAdd = new LinkedHashSet<>();
+            Set<String> toRemove = new LinkedHashSet<>();
+            Object selection = obj.get(onePk.toString());
+            if(selection instanceof JSONObject) {
+                //Only the changes, e.g. from a paged view: { "add": [...], "remove": [...] }
+                JSONArray added = ((JSONObject) selection).optJSONArray("add");
+                for(int i = 0; added != null && i < added.length(); i++) {
+                    String pkString = added.get(i).toString();
+                    if(!existingByPk.containsKey(pkString)) {
+                        toAdd.add(pkString);
+                    }
                 }
-            }
-            Iterator it = existingAssociations.iterator();
-            while(it.hasNext()) {
-                Object o = it.next();
-                //TODO handle manyKeyProperties.length > 1
-                Object pkObject = manyPropertyAccessor.get(o);
-                String pkString = OgnlUtils.convertValue(pkObject, String.class);
-                if(!selectedPrimaryKeys.contains(pkString)) {
-                    deleteRelation(o);
-                    it.remove();
+                JSONArray removed = ((JSONObject) selection).optJSONArray("remove");
+                for(int i = 0; removed != null && i < removed.length(); i++) {
+                    String pkString = removed.get(i).toString();
+                    if(existingByPk.containsKey(pkString)) {
+                        toRemove.add(pkString);
+                    }
+                }
+            } else {
+                //The complete set of selected keys
+                JSONArray selectedKeysJson = (JSONArray) selection;
+                for( int i=0; i<selectedKeysJson.length();i++ ){
+                    selectedPrimaryKeys.add(selectedKeysJson.get(i).toString());
+                }
+                Set<String> selected = new HashSet<>(selectedPrimaryKeys);
+                for(String pkString : selected) {
+                    if(!existingByPk.containsKey(pkString)) {
+                        toAdd.add(pkString);
+                    }
+                }
+                for(String pkString : existingByPk.keySet()) {
+                    if(!selected.contains(pkString)) {
+                        toRemove.add(pkString);
+                    }
                 }
             }
+            saveAssociationChanges(toAdd, toRemove, existingByPk);
         }
         session.getTransaction().commit();
         return objectCreated();
     }
 
+    /**
+     * Applies the difference between the old and the new associations, letting Hibernate send the inserts and deletes
+     * to the database in JDBC batches of <code>batchSize</code> statements.
+     * @param toAdd the primary keys of the targets to associate.
+     * @param toRemove the primary keys of the targets to dissociate.
+     * @param existingByPk the existing associations, by the primary key of their target. It is updated with the
+     *                     changes, and becomes the new list of existing associations.
+     */
+    protected void saveAssociationChanges(
+            Collection<String> toAdd, Collection<String> toRemove, Map<String, Object> existingByPk)
+            throws NoSuchFieldException {
+        PropertyAccessor onePropertyAccessor = getOnePropertyAccessor();
+        PropertyAccessor manyPropertyAccessor = getManyPropertyAccessor();
+        PropertyAccessor manyPkAccessor = getManyPkAccessor();
+        logger.debug("Adding {} and removing {} associations", toAdd.size(), toRemove.size());
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            int count = 0;
+            for(String pkString : toRemove) {
+                deleteRelation(existingByPk.remove(pkString));
+                if(++count % batchSize == 0) {
+                    session.flush();
+                }
+            }
+            for(String pkString : toAdd) {
+                Object pkObject = manyTableAccessor.getIdStrategy().getPrimaryKey(pkString.split("/"));
+                Object pk = manyPkAccessor.get(pkObject);
+                existingByPk.put(pkString, saveNewRelation(pk, onePropertyAccessor, manyPropertyAccessor));
+                if(++count % batchSize == 0) {
+                    session.flush();
+                }
+            }
+            session.flush();
+            existingAssociations = new ArrayList<>(existingByPk.values());
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+    }
+
     protected Response objectCreated() throws URISyntaxException {
         return Response.status(Response.Status.CREATED). build();
     }
@@ -658,16 +804,27 @@ public class ManyToManyAction extends AbstractResourceAction {
             booleanRelation = new LinkedHashMap<>();
             ClassAccessor ca = getManyTableAccessor();
             PkHelper pkHelper = new PkHelper(ca);
+            Set<Object> existingKeys;
+            PropertyAccessor manyPkAccessor;
+            try {
+                existingKeys = getExistingAssociationKeys();
+                manyPkAccessor = getManyPkAccessor();
+            } catch (NoSuchFieldException e) {
+                return resourceActionNotConfigured();
+            }
 
             for(Object obj : potentiallyAvailableAssociations) {
                 String pk = StringUtils.join(pkHelper.generatePkStringArray(obj), "/");
                 enumList.put(pk);
                 titleMap.put(pk, ShortNameUtils.getName(ca, obj));
 
-                if(!availableAssociations.contains(obj)) {
+                if(existingKeys.contains(manyPkAccessor.get(obj))) {
                     trueRelations.put(pk);
                 }
             }
+            if(totalAssociationTargets != null) {
+                response.put("totalRecords", totalAssociationTargets);
+            }
 
             model.put(onePk.toString(), trueRelations);
 
@@ -22,6 +22,7 @@ package com.manydesigns.portofino.resourceactions.crud;
 
 import com.manydesigns.elements.ElementsThreadLocals;
 import com.manydesigns.elements.Mode;
+import com.manydesigns.elements.annotations.DatabaseBlob;
 import com.manydesigns.elements.annotations.FileBlob;
 import com.manydesigns.elements.annotations.Required;
 import com.manydesigns.elements.blobs.Blob;
@@ -31,6 +32,7 @@ import com.manydesigns.elements.fields.AbstractBlobField;
 import com.manydesigns.elements.fields.Field;
 import com.manydesigns.elements.fields.FileBlobField;
 import com.manydesigns.elements.reflection.ClassAccessor;
+import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.servlet.MutableHttpServletRequest;
 import com.manydesigns.portofino.PortofinoProperties;
 import com.manydesigns.portofino.actions.ActionDescriptor;
@@ -43,11 +45,15 @@ import com.manydesigns.portofino.model.database.DatabaseLogic;
 import com.manydesigns.portofino.model.database.IncrementGenerator;
 import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.platforms.DatabasePlatformsRegistry;
+import com.manydesigns.portofino.modules.CrudModule;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.resourceactions.ActionContext;
 import com.manydesigns.portofino.resourceactions.ActionInstance;
+import com.manydesigns.portofino.resourceactions.crud.bulk.BulkCreateResult;
+import com.manydesigns.portofino.resourceactions.crud.bulk.JSONArrayRecordIterator;
 import com.manydesigns.portofino.resourceactions.crud.configuration.CrudProperty;
 import com.manydesigns.portofino.resourceactions.crud.configuration.database.CrudConfiguration;
+import com.manydesigns.portofino.resourceactions.crud.export.JSONExporter;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.fileupload.disk.DiskFileItem;
@@ -60,6 +66,8 @@ import org.h2.tools.RunScript;
 import org.hibernate.Session;
 import org.hibernate.jdbc.Work;
 import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.testng.annotations.*;
 
 import javax.ws.rs.core.Application;
@@ -67,9 +75,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static org.testng.Assert.*;
@@ -87,7 +99,7 @@ public class CrudActionTest extends JerseyTest {
 
     @AfterClass
     public void teardownElements() {
-        ElementsThreadLocals.destroy();
+        ElementsThreadLocals.removeElementsContext();
     }
 
     @BeforeMethod
@@ -347,4 +359,188 @@ public class CrudActionTest extends JerseyTest {
         }
     }
 
+    public void testProjectionLoadsRequiredProperties() throws Exception {
+        Column column = DatabaseLogic.findColumnByName(persistence.getModel(), "jpetstore", "PUBLIC", "PRODUCT", "DESCN");
+        Annotation ann = new Annotation(column, DatabaseBlob.class.getName());
+        ann.getProperties().add(new Property("fileNameProperty", "name"));
+        column.getAnnotations().add(ann);
+        persistence.initModel();
+
+        //Database blobs require their file name
+        TestCrudAction crudAction = createCrudAction("from product", "productid", "category", "name", "descn");
+        List<PropertyAccessor> properties = new ArrayList<>();
+        properties.add(crudAction.getClassAccessor().getProperty("descn"));
+        crudAction.addRequiredProperties(properties);
+        assertEquals(propertyNames(properties), "descn,productid,name");
+
+        //The detail link requires the properties it references
+        crudAction = createCrudAction("from product", "productid", "category", "name", "descn");
+        crudAction.readLinkExpression = "/product/%{productid}?category=%{category}";
+        crudAction.fields = new String[] { "name" };
+        properties = crudAction.getProjectedProperties();
+        crudAction.addRequiredProperties(properties);
+        assertEquals(propertyNames(properties), "name,productid,category");
+
+        crudAction.sortProperty = "productid";
+        crudAction.sortDirection = "asc";
+        crudAction.firstResult = 0;
+        crudAction.maxResults = 10;
+        crudAction.loadSearchResults();
+        String json = (String) new JSONExporter().exportSearchResults(crudAction).build().getEntity();
+        JSONObject results = new JSONObject(json);
+        assertEquals(results.getInt("totalRecords"), 16);
+        JSONArray records = results.getJSONArray("records");
+        assertEquals(records.length(), 10);
+        JSONObject record = records.getJSONObject(0);
+        //Only the requested properties are shown, even if others have been loaded
+        assertEquals(record.length(), 2);
+        assertEquals(record.getString("__rowKey"), "AV-CB-01");
+        JSONObject name = record.getJSONObject("name");
+        assertEquals(name.getString("value"), "Amazon Parrot");
+        assertTrue(name.getString("href").endsWith("/product/AV-CB-01?category=BIRDS"), name.getString("href"));
+    }
+
+    public void testBulkCreate() throws Exception {
+        Session requestSession = persistence.getSession("jpetstore");
+        TestCrudAction crudAction = createCrudAction("from category", "catid", "name", "descn");
+        crudAction.portofinoConfiguration = new PropertiesConfiguration();
+        crudAction.portofinoConfiguration.setProperty(CrudModule.BULK_CREATE_BATCH_SIZE, 2);
+        crudAction.setupBulkCreateForm();
+        JSONArray records = new JSONArray()
+                .put(new JSONObject().put("catid", "NEW1").put("name", "New 1"))
+                .put(new JSONObject().put("catid", "NEW2").put("name", "New 2"))
+                .put(new JSONObject().put("catid", "FISH").put("name", "Duplicate")) //Fails when the batch is committed
+                .put(new JSONObject().put("catid", "NEW3").put("name", "New 3"))
+                .put(new JSONObject().put("name", "No id")) //Fails validation
+                .put(new JSONObject().put("catid", "NEW4").put("name", "New 4"));
+        BulkCreateResult result =
+                crudAction.bulkCreate(new JSONArrayRecordIterator(new StringReader(records.toString())));
+
+        //The faulty batch is retried one object at a time, so only the duplicate is rejected
+        assertEquals(result.getCreated(), 4);
+        assertEquals(result.getErrors().size(), 2);
+        BulkCreateResult.RecordError error = result.getErrors().get(0);
+        assertEquals(error.getIndex(), 2);
+        assertTrue(error.getFieldErrors().isEmpty());
+        assertEquals(error.getMessages().size(), 1);
+        error = result.getErrors().get(1);
+        assertEquals(error.getIndex(), 4);
+        assertTrue(error.getFieldErrors().containsKey("catid"));
+
+        //The objects are saved with JDBC batching in a dedicated session; the one of the request is untouched
+        assertNotNull(crudAction.bulkCreateSession);
+        assertNotSame(crudAction.bulkCreateSession, requestSession);
+        assertEquals(crudAction.bulkCreateBatchSize, Integer.valueOf(2));
+        assertFalse(crudAction.bulkCreateSession.isOpen());
+        assertSame(crudAction.session, requestSession);
+        assertSame(persistence.getSession("jpetstore"), requestSession);
+        assertTrue(requestSession.isOpen());
+        assertNull(requestSession.getJdbcBatchSize());
+
+        List<?> names = requestSession
+                .createSQLQuery("select name from category where catid in ('NEW1', 'NEW2', 'NEW3', 'NEW4', 'FISH') order by catid")
+                .list();
+        assertEquals(names, Arrays.asList("Fish", "New 1", "New 2", "New 3", "New 4"));
+    }
+
+    public void testBulkCreateKeepsCommittedBatches() throws Exception {
+        TestCrudAction crudAction = createCrudAction("from category", "catid", "name", "descn");
+        crudAction.portofinoConfiguration = new PropertiesConfiguration();
+        crudAction.portofinoConfiguration.setProperty(CrudModule.BULK_CREATE_BATCH_SIZE, 2);
+        crudAction.setupBulkCreateForm();
+        String input = "[{\"catid\": \"NEW1\"}, {\"catid\": \"NEW2\"}, {\"catid\": \"NEW3\"}, not json]";
+        BulkCreateResult result = crudAction.bulkCreate(new JSONArrayRecordIterator(new StringReader(input)));
+
+        //The records before the malformed one are created, including those of the last, incomplete batch
+        assertEquals(result.getCreated(), 3);
+        assertEquals(result.getErrors().size(), 1);
+        assertEquals(result.getErrors().get(0).getIndex(), 3);
+        Number count = (Number) persistence.getSession("jpetstore")
+                .createSQLQuery("select count(*) from category where catid like 'NEW%'")
+                .uniqueResult();
+        assertEquals(count.intValue(), 3);
+    }
+
+    protected static String propertyNames(List<PropertyAccessor> properties) {
+        StringBuilder sb = new StringBuilder();
+        for(PropertyAccessor property : properties) {
+            if(sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(property.getName());
+        }
+        return sb.toString();
+    }
+
+    protected TestCrudAction createCrudAction(String query, String... propertyNames) throws Exception {
+        MutableHttpServletRequest req = new MutableHttpServletRequest();
+        ElementsThreadLocals.setHttpServletRequest(req);
+        req.getServletContext().setInitParameter("portofino.api.root", "http://fake");
+
+        CrudConfiguration configuration = new CrudConfiguration();
+        configuration.setDatabase("jpetstore");
+        configuration.setQuery(query);
+        for(String propertyName : propertyNames) {
+            CrudProperty property = new CrudProperty();
+            property.setName(propertyName);
+            property.setEnabled(true);
+            property.setInsertable(true);
+            property.setUpdatable(true);
+            property.setInSummary(true);
+            configuration.getProperties().add(property);
+        }
+        configuration.persistence = persistence;
+        configuration.init();
+
+        ActionInstance actionInstance = new ActionInstance(null, null, new ActionDescriptor(), CrudAction.class);
+        actionInstance.setConfiguration(configuration);
+        ActionContext actionContext = new ActionContext();
+        actionContext.setRequest(req);
+        actionContext.setActionPath("");
+        actionContext.setServletContext(req.getServletContext());
+
+        TestCrudAction crudAction = new TestCrudAction();
+        crudAction.persistence = persistence;
+        crudAction.setContext(actionContext);
+        crudAction.setActionInstance(actionInstance);
+        crudAction.init();
+        return crudAction;
+    }
+
+    /**
+     * A CRUD action that ignores permissions and records the result set navigation instead of generating URLs.
+     * It also records the session used to save the objects of a bulk creation.
+     */
+    protected static class TestCrudAction extends CrudAction<Object> {
+
+        String readLinkExpression;
+        Session bulkCreateSession;
+        Integer bulkCreateBatchSize;
+
+        @NotNull
+        @Override
+        protected ClassAccessor filterAccordingToPermissions(ClassAccessor classAccessor) {
+            return classAccessor; //Let's ignore Shiro
+        }
+
+        @Override
+        protected String getUrlEncoding() {
+            return PortofinoProperties.URL_ENCODING_DEFAULT;
+        }
+
+        @Override
+        protected String getReadLinkExpression() {
+            return readLinkExpression != null ? readLinkExpression : super.getReadLinkExpression();
+        }
+
+        @Override
+        protected void createPostProcess(Object object) {
+            super.createPostProcess(object);
+            if(requestSession != null) {
+                bulkCreateSession = session;
+                bulkCreateBatchSize = session.getJdbcBatchSize();
+            }
+        }
+    }
+
 }
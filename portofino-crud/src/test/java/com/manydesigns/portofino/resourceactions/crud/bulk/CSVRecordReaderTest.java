@@ -0,0 +1,66 @@
+package com.manydesigns.portofino.resourceactions.crud.bulk;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+@Test
+public class CSVRecordReaderTest {
+
+    public void testQuoting() throws IOException {
+        CSVRecordReader reader = new CSVRecordReader(
+                new StringReader("\uFEFFplain,\"a,b\",\"say \"\"hi\"\"\",\"two\r\nlines\",,\"\"\r\nlast,line\n"));
+        assertEquals(reader.readRecord(), Arrays.asList("plain", "a,b", "say \"hi\"", "two\r\nlines", "", ""));
+        assertEquals(reader.readRecord(), Arrays.asList("last", "line"));
+        assertNull(reader.readRecord());
+        assertEquals(reader.getRecordNumber(), 2);
+    }
+
+    public void testBlankLinesAndDelimiter() throws IOException {
+        CSVRecordReader reader = new CSVRecordReader(new StringReader("a;b\n\n\r\nc;\"d;e\""), ';');
+        assertEquals(reader.readRecord(), Arrays.asList("a", "b"));
+        assertEquals(reader.readRecord(), Arrays.asList("c", "d;e"));
+        assertNull(reader.readRecord());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testUnterminatedQuote() throws IOException {
+        new CSVRecordReader(new StringReader("a,\"b\n")).readRecord();
+    }
+
+    public void testCSVRecordIterator() throws IOException {
+        CSVRecordReader reader = new CSVRecordReader(new StringReader("name,ignored,age\nJohn,x,42\nJane\n"));
+        reader.readRecord();
+        CSVRecordIterator iterator = new CSVRecordIterator(reader, Arrays.asList("name", null, "age"));
+        JSONObject john = iterator.next();
+        assertEquals(john.getString("name"), "John");
+        assertEquals(john.getString("age"), "42");
+        assertFalse(john.has("ignored"));
+        assertEquals(iterator.next().keySet(), Collections.singleton("name"));
+        assertFalse(iterator.hasNext());
+    }
+
+    public void testJSONArrayRecordIterator() {
+        JSONArrayRecordIterator iterator =
+                new JSONArrayRecordIterator(new StringReader(" [ {\"a\": 1}, {\"b\": [2, 3]} ] "));
+        assertEquals(iterator.next().getInt("a"), 1);
+        assertEquals(iterator.next().getJSONArray("b").length(), 2);
+        assertFalse(iterator.hasNext());
+        assertFalse(new JSONArrayRecordIterator(new StringReader("[]")).hasNext());
+    }
+
+    @Test(expectedExceptions = JSONException.class)
+    public void testJSONArrayOfNonObjects() {
+        JSONArrayRecordIterator iterator = new JSONArrayRecordIterator(new StringReader("[{}, 1]"));
+        iterator.next();
+        iterator.next();
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.manydesigns.portofino.resourceactions.crud.export;
+
+import org.springframework.http.MediaType;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+@Test
+public class CSVExporterTest {
+
+    public void testEscaping() throws IOException {
+        CSVExporter exporter = new CSVExporter();
+        StringWriter writer = new StringWriter();
+        exporter.writeRecord(writer, Arrays.asList("plain", "a,b", "say \"hi\"", "two\nlines", null, ""));
+        assertEquals(writer.toString(), "plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",,\r\n");
+    }
+
+    public void testCustomDelimiter() throws IOException {
+        CSVExporter exporter = new CSVExporter(';', StandardCharsets.ISO_8859_1);
+        StringWriter writer = new StringWriter();
+        exporter.writeRecord(writer, Arrays.asList("a,b", "c;d"));
+        assertEquals(writer.toString(), "a,b;\"c;d\"\r\n");
+    }
+
+    public void testFormulaEscaping() {
+        CSVExporter exporter = new CSVExporter();
+        assertEquals(exporter.escapeFormula("=HYPERLINK(\"http://example.com\")"),
+                "'=HYPERLINK(\"http://example.com\")");
+        assertEquals(exporter.escapeFormula("+1"), "'+1");
+        assertEquals(exporter.escapeFormula("-1"), "'-1");
+        assertEquals(exporter.escapeFormula("@SUM(A1)"), "'@SUM(A1)");
+        assertEquals(exporter.escapeFormula("\tx"), "'\tx");
+        assertEquals(exporter.escapeFormula("a=b"), "a=b");
+        assertEquals(exporter.escapeFormula(""), "");
+        assertNull(exporter.escapeFormula(null));
+    }
+
+    public void testSupports() {
+        CSVExporter exporter = new CSVExporter();
+        assertTrue(exporter.supports(MediaType.parseMediaType("text/csv")));
+        assertFalse(exporter.supports(MediaType.APPLICATION_JSON));
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.manydesigns.portofino.resourceactions.crud.export;
+
+import com.manydesigns.elements.ElementsThreadLocals;
+import com.manydesigns.elements.blobs.HierarchicalBlobManager;
+import com.manydesigns.elements.servlet.MutableHttpServletRequest;
+import com.manydesigns.elements.servlet.MutableHttpSession;
+import com.manydesigns.portofino.actions.Permissions;
+import com.manydesigns.portofino.resourceactions.ActionContext;
+import com.manydesigns.portofino.resourceactions.crud.AbstractCrudAction;
+import com.manydesigns.portofino.resourceactions.crud.CrudAction;
+import com.manydesigns.portofino.security.AccessLevel;
+import com.manydesigns.portofino.security.SecurityFacade;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.vfs2.FileObject;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpSession;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ExportJobServiceTest {
+
+    CountDownLatch release;
+    ExportJobService service;
+
+    @BeforeMethod
+    public void setup() {
+        ElementsThreadLocals.setupDefaultElementsContext();
+        release = new CountDownLatch(1);
+        //Jobs keep running until the test releases them, so they count as active
+        service = new ExportJobService(createBlobManager(), 2, 10, 1, 60) {
+            @Override
+            protected void run(ExportJob job, AbstractCrudAction<?> action, CrudExporter exporter) {
+                job.start();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                job.fail("Released");
+            }
+        };
+    }
+
+    @AfterMethod
+    public void teardown() {
+        release.countDown();
+        service.shutdown();
+        ElementsThreadLocals.removeElementsContext();
+    }
+
+    public void testJobsAreOnlyVisibleToTheirOwner() {
+        ExportJob job = service.submit(createAction("alice", null), new CSVExporter(), "text/csv");
+        assertSame(service.getJob(job.getId(), createAction("alice", null)), job);
+        assertNull(service.getJob(job.getId(), createAction("bob", null)));
+        assertNull(service.getJob(job.getId(), createAction(null, null)));
+        assertNull(service.getJob(job.getId(), createAction(null, "alice")));
+        assertNull(service.getJob("nonexistent", createAction("alice", null)));
+    }
+
+    public void testAnonymousJobsBelongToTheSession() {
+        ExportJob job = service.submit(createAction(null, "session1"), new CSVExporter(), "text/csv");
+        assertSame(service.getJob(job.getId(), createAction(null, "session1")), job);
+        assertNull(service.getJob(job.getId(), createAction(null, "session2")));
+        assertNull(service.getJob(job.getId(), createAction("session1", null)));
+    }
+
+    public void testAnonymousJobsWithoutSessionAreRejected() {
+        try {
+            service.submit(createAction(null, null), new CSVExporter(), "text/csv");
+            fail("Anonymous jobs without a session must be rejected");
+        } catch (ExportJobRejectedException e) {
+            assertEquals(e.getStatus(), Response.Status.UNAUTHORIZED);
+        }
+    }
+
+    public void testJobsPerUser() {
+        service.submit(createAction("alice", null), new CSVExporter(), "text/csv");
+        try {
+            service.submit(createAction("alice", null), new CSVExporter(), "text/csv");
+            fail("Only one active job per user is allowed");
+        } catch (ExportJobRejectedException e) {
+            assertEquals(e.getStatus(), Response.Status.TOO_MANY_REQUESTS);
+        }
+        //Other users are not affected
+        assertNotNull(service.submit(createAction("bob", null), new CSVExporter(), "text/csv"));
+    }
+
+    public void testFailureMessageIsGeneric() throws Exception {
+        ExportJobService service = new ExportJobService(createBlobManager(), 1, 1, 1, 60);
+        try {
+            CrudAction<Object> action = createAction("alice", null, () -> {
+                throw new IllegalStateException("Connection to jdbc:secret://db refused");
+            });
+            ExportJob job = service.submit(action, new CSVExporter(), "text/csv");
+            long deadline = System.currentTimeMillis() + 10000;
+            while(job.getStatus().isActive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(job.getStatus(), ExportJob.Status.FAILED);
+            assertEquals(job.getErrorMessage(), "The export failed");
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    protected HierarchicalBlobManager createBlobManager() {
+        return new HierarchicalBlobManager(
+                new File(System.getProperty("java.io.tmpdir")), "export-{0}.properties", "export-{0}.data");
+    }
+
+    protected CrudAction<Object> createAction(Object userId, String sessionId) {
+        return createAction(userId, sessionId, () -> Response.ok("").build());
+    }
+
+    protected CrudAction<Object> createAction(Object userId, String sessionId, ExportTask task) {
+        //Not named security, which would be shadowed by the inherited field
+        TestSecurity testSecurity = new TestSecurity(userId);
+        CrudAction<Object> action = new CrudAction<Object>() {
+            @Override
+            public SecurityFacade getSecurity() {
+                return testSecurity;
+            }
+
+            //No persistence in these tests
+            @Override
+            public void attachToCurrentThread() {}
+
+            @Override
+            public void detachFromCurrentThread() {}
+
+            @Override
+            public Response runExportJob(CrudExporter exporter) {
+                return task.run();
+            }
+        };
+        MutableHttpServletRequest request = new MutableHttpServletRequest() {
+            @Override
+            public HttpSession getSession(boolean create) {
+                if(sessionId == null) {
+                    return null;
+                }
+                return new MutableHttpSession(getServletContext()) {
+                    @Override
+                    public String getId() {
+                        return sessionId;
+                    }
+                };
+            }
+        };
+        ActionContext context = new ActionContext();
+        context.setRequest(request);
+        context.setServletContext(request.getServletContext());
+        context.setActionPath("/test");
+        action.setContext(context);
+        return action;
+    }
+
+    protected interface ExportTask {
+        Response run();
+    }
+
+    protected static class TestSecurity extends SecurityFacade {
+
+        protected final Object userId;
+
+        public TestSecurity(Object userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public Object getUserId() {
+            return userId;
+        }
+
+        @Override
+        public boolean hasPermissions(
+                Configuration conf, Permissions configuration, AccessLevel accessLevel, String... permissions) {
+            return true;
+        }
+
+        @Override
+        public boolean isAdministrator(Configuration conf) {
+            return false;
+        }
+
+        @Override
+        public Object getSecurityUtilsBean() {
+            return null;
+        }
+
+        @Override
+        public Set<String> getGroups() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void setup(FileObject appDirectory, String adminGroupName, String encryptionAlgorithm) {}
+
+        @Override
+        public boolean isUserAuthenticated() {
+            return userId != null;
+        }
+
+        @Override
+        public Map getUsers() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void checkWebResourceIsAccessible(
+                ContainerRequestContext requestContext, Object resource, Method handler) {}
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.manydesigns.portofino.resourceactions.m2m;
+
+import com.manydesigns.elements.ElementsThreadLocals;
+import com.manydesigns.elements.servlet.MutableHttpServletRequest;
+import com.manydesigns.portofino.actions.ActionDescriptor;
+import com.manydesigns.portofino.config.ConfigurationSource;
+import com.manydesigns.portofino.database.platforms.H2DatabasePlatform;
+import com.manydesigns.portofino.model.database.DatabaseLogic;
+import com.manydesigns.portofino.model.database.ForeignKey;
+import com.manydesigns.portofino.model.database.IncrementGenerator;
+import com.manydesigns.portofino.model.database.Table;
+import com.manydesigns.portofino.model.database.platforms.DatabasePlatformsRegistry;
+import com.manydesigns.portofino.persistence.Persistence;
+import com.manydesigns.portofino.resourceactions.ActionContext;
+import com.manydesigns.portofino.resourceactions.ActionInstance;
+import com.manydesigns.portofino.resourceactions.m2m.configuration.ManyToManyConfiguration;
+import com.manydesigns.portofino.resourceactions.m2m.configuration.SelectionProviderReference;
+import com.manydesigns.portofino.resourceactions.m2m.configuration.ViewType;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.h2.tools.RunScript;
+import org.hibernate.Session;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.annotations.*;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+@Test
+public class ManyToManyActionTest {
+
+    Persistence persistence;
+
+    @BeforeClass
+    public void setupElements() {
+        ElementsThreadLocals.setupDefaultElementsContext();
+    }
+
+    @AfterClass
+    public void teardownElements() {
+        ElementsThreadLocals.removeElementsContext();
+    }
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        FileObject appDir = VFS.getManager().resolveFile("res:com/manydesigns/portofino/resourceactions/crud/model");
+        Configuration configuration = new PropertiesConfiguration();
+        DatabasePlatformsRegistry databasePlatformsRegistry = new DatabasePlatformsRegistry(configuration);
+        databasePlatformsRegistry.addDatabasePlatform(new H2DatabasePlatform());
+        persistence = new Persistence(appDir, new ConfigurationSource(configuration, null), databasePlatformsRegistry);
+        persistence.start();
+        setupJPetStore();
+        persistence.initModel();
+    }
+
+    @AfterMethod
+    public void teardown() {
+        persistence.stop();
+    }
+
+    /**
+     * Loads the JPetStore database, plus a table that links suppliers to the products they sell.
+     */
+    protected void setupJPetStore() throws Exception {
+        Session session = persistence.getSession("jpetstore");
+        session.doWork(connection -> {
+            RunScript.execute(connection, new StringReader("drop table if exists public.supplier_product;"));
+            RunScript.execute(connection, new InputStreamReader(getClass().getResourceAsStream(
+                    "/com/manydesigns/portofino/resourceactions/crud/sql/jpetstore-postgres-schema.sql")));
+            RunScript.execute(connection, new InputStreamReader(getClass().getResourceAsStream(
+                    "/com/manydesigns/portofino/resourceactions/crud/sql/jpetstore-postgres-dataload.sql")));
+            RunScript.execute(connection, new StringReader(
+                    "create table public.supplier_product (" +
+                    "    id int not null," +
+                    "    suppid int not null," +
+                    "    productid varchar(10) not null," +
+                    "    constraint pk_supplier_product primary key (id)," +
+                    "    constraint fk_supplier_product_1 foreign key (suppid) references supplier (suppid)," +
+                    "    constraint fk_supplier_product_2 foreign key (productid) references product (productid)" +
+                    ");" +
+                    "insert into supplier_product values (1, 1, 'FI-SW-01');" +
+                    "insert into supplier_product values (2, 1, 'K9-BD-01');" +
+                    "insert into supplier_product values (3, 1, 'AV-CB-01');" +
+                    "insert into supplier_product values (4, 2, 'FI-SW-02');"));
+        });
+        session.getTransaction().commit();
+        persistence.syncDataModel("jpetstore");
+        Table relationTable = getRelationTable();
+        relationTable.getPrimaryKey().getPrimaryKeyColumns().get(0).setGenerator(new IncrementGenerator());
+    }
+
+    protected Table getRelationTable() {
+        return DatabaseLogic.findTableByName(persistence.getModel(), "jpetstore", "PUBLIC", "SUPPLIER_PRODUCT");
+    }
+
+    public void testPagedAssociations() throws Exception {
+        Set<String> targets = new HashSet<>();
+        for(int firstResult = 0; firstResult < 20; firstResult += 5) {
+            ManyToManyAction action = createAction();
+            JSONObject associations = getAssociations(action, null, firstResult, 5);
+            assertEquals(associations.getInt("totalRecords"), 16);
+            List<String> page = getTargets(associations);
+            assertTrue(page.size() <= 5);
+            targets.addAll(page);
+            //Only the associations to the targets in the page are loaded
+            Set<String> linked = new HashSet<>(Arrays.asList("FI-SW-01", "K9-BD-01", "AV-CB-01"));
+            linked.retainAll(page);
+            assertEquals(getLinkedTargets(associations), linked);
+            assertEquals(action.getExistingAssociations().size(), linked.size());
+        }
+        assertEquals(targets.size(), 16);
+    }
+
+    public void testSearchAssociations() throws Exception {
+        Set<String> matching = new HashSet<>();
+        for(Object productId : persistence.getSession("jpetstore").createSQLQuery(
+                "select productid from product where lower(productid) like '%retriever%' or " +
+                "lower(category) like '%retriever%' or lower(name) like '%retriever%' or " +
+                "lower(descn) like '%retriever%'").list()) {
+            matching.add((String) productId);
+        }
+        assertTrue(matching.containsAll(Arrays.asList("K9-RT-01", "K9-RT-02")));
+
+        JSONObject associations = getAssociations(createAction(), "Retriever", null, null);
+        assertEquals(new HashSet<>(getTargets(associations)), matching);
+        assertFalse(associations.has("totalRecords"));
+
+        associations = getAssociations(createAction(), "Retriever", 0, 1);
+        assertEquals(associations.getInt("totalRecords"), matching.size());
+        assertEquals(getTargets(associations).size(), 1);
+
+        associations = getAssociations(createAction(), "parrot", 0, 10);
+        assertEquals(associations.getInt("totalRecords"), 1);
+        assertEquals(getTargets(associations), Collections.singletonList("AV-CB-01"));
+        assertEquals(getLinkedTargets(associations), Collections.singleton("AV-CB-01"));
+    }
+
+    public void testSaveChanges() throws Exception {
+        ManyToManyAction action = createAction();
+        action.setBatchSize(2);
+        JSONObject changes = new JSONObject();
+        //Adding an existing association and removing a missing one are ignored
+        changes.put("1", new JSONObject()
+                .put("add", new JSONArray().put("FI-SW-02").put("RP-LI-02").put("AV-CB-01"))
+                .put("remove", new JSONArray().put("FI-SW-01").put("K9-PO-02")));
+        action.httpPostJson(changes.toString());
+        assertEquals(getSavedTargets(1), new HashSet<>(Arrays.asList("K9-BD-01", "AV-CB-01", "FI-SW-02", "RP-LI-02")));
+        assertEquals(getSavedTargets(2), Collections.singleton("FI-SW-02"));
+        assertEquals(action.getExistingAssociations().size(), 4);
+
+        //The complete selection replaces the existing associations
+        action = createAction();
+        action.setBatchSize(2);
+        action.httpPostJson(new JSONObject().put("1", new JSONArray().put("K9-BD-01").put("K9-CW-01")).toString());
+        assertEquals(getSavedTargets(1), new HashSet<>(Arrays.asList("K9-BD-01", "K9-CW-01")));
+        assertEquals(getSavedTargets(2), Collections.singleton("FI-SW-02"));
+        assertEquals(action.getExistingAssociations().size(), 2);
+
+        JSONObject associations = getAssociations(createAction(), null, null, null);
+        assertEquals(getLinkedTargets(associations), new HashSet<>(Arrays.asList("K9-BD-01", "K9-CW-01")));
+    }
+
+    /**
+     * Creates the action for a new request, with new sessions as in a web application.
+     */
+    protected ManyToManyAction createAction() throws Exception {
+        persistence.closeSessions();
+        MutableHttpServletRequest req = new MutableHttpServletRequest();
+        ElementsThreadLocals.setHttpServletRequest(req);
+
+        Table relationTable = getRelationTable();
+        ManyToManyConfiguration configuration = new ManyToManyConfiguration();
+        configuration.setDatabase("jpetstore");
+        configuration.setQuery("from " + relationTable.getActualEntityName());
+        configuration.setViewType(ViewType.CHECKBOXES.name());
+        configuration.setOneSelectionProvider(getForeignKeyReference(relationTable, "SUPPLIER"));
+        configuration.setManySelectionProvider(getForeignKeyReference(relationTable, "PRODUCT"));
+        configuration.persistence = persistence;
+        configuration.init();
+
+        ActionInstance actionInstance = new ActionInstance(null, null, new ActionDescriptor(), ManyToManyAction.class);
+        actionInstance.setConfiguration(configuration);
+        ActionContext actionContext = new ActionContext();
+        actionContext.setRequest(req);
+        actionContext.setActionPath("");
+        actionContext.setServletContext(req.getServletContext());
+
+        ManyToManyAction action = new ManyToManyAction();
+        action.persistence = persistence;
+        action.setContext(actionContext);
+        action.setActionInstance(actionInstance);
+        action.init();
+        return action;
+    }
+
+    protected SelectionProviderReference getForeignKeyReference(Table table, String toTableName) {
+        for(ForeignKey foreignKey : table.getForeignKeys()) {
+            if(foreignKey.getToTable().getTableName().equalsIgnoreCase(toTableName)) {
+                SelectionProviderReference reference = new SelectionProviderReference();
+                reference.setForeignKeyName(foreignKey.getName());
+                return reference;
+            }
+        }
+        throw new IllegalArgumentException("No foreign key to " + toTableName);
+    }
+
+    protected JSONObject getAssociations(
+            ManyToManyAction action, String searchString, Integer firstResult, Integer maxResults) {
+        return new JSONObject((String) action.getAssociations("1", searchString, firstResult, maxResults).getEntity());
+    }
+
+    protected List<String> getTargets(JSONObject associations) {
+        JSONArray targets = associations.getJSONObject("schema").getJSONObject("properties")
+                .getJSONObject("1").getJSONObject("items").getJSONArray("enum");
+        List<String> result = new ArrayList<>();
+        for(int i = 0; i < targets.length(); i++) {
+            result.add(targets.getString(i));
+        }
+        return result;
+    }
+
+    protected Set<String> getLinkedTargets(JSONObject associations) {
+        JSONArray linked = associations.getJSONObject("model").getJSONArray("1");
+        Set<String> result = new HashSet<>();
+        for(int i = 0; i < linked.length(); i++) {
+            result.add(linked.getString(i));
+        }
+        return result;
+    }
+
+    protected Set<String> getSavedTargets(int supplierId) {
+        Session session = persistence.getSession("jpetstore");
+        Set<String> result = new HashSet<>();
+        for(Object productId : session
+                .createSQLQuery("select productid from supplier_product where suppid = :suppid")
+                .setParameter("suppid", supplierId)
+                .list()) {
+            result.add((String) productId);
+        }
+        return result;
+    }
+
+}
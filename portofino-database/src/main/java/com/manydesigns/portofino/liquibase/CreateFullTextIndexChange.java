@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.liquibase;
+
+import com.manydesigns.portofino.model.database.platforms.AbstractDatabasePlatform;
+import com.manydesigns.portofino.model.database.platforms.DatabasePlatform;
+import liquibase.Scope;
+import liquibase.change.custom.CustomSqlChange;
+import liquibase.database.Database;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.RawSqlStatement;
+import liquibase.structure.core.Column;
+import liquibase.structure.core.Index;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Liquibase change that creates the index used by full-text searches on a text column. The DDL comes from the
+ * {@link DatabasePlatform} of the database being updated, so the same changelog works on every platform; platforms
+ * without full-text indexes skip the change. Usage:
+ * <pre>
+ * &lt;customChange class="com.manydesigns.portofino.liquibase.CreateFullTextIndexChange"
+ *               tableName="product" columnName="description" /&gt;
+ * </pre>
+ * The change only works when Liquibase is run by Portofino, which publishes the platform in the Liquibase scope
+ * under {@link #PLATFORM_SCOPE_KEY}.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class CreateFullTextIndexChange implements CustomSqlChange {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final String PLATFORM_SCOPE_KEY = "portofino.databasePlatform";
+    private static final Logger logger = LoggerFactory.getLogger(CreateFullTextIndexChange.class);
+
+    protected String catalogName;
+    protected String schemaName;
+    protected String tableName;
+    protected String columnName;
+    protected String indexName;
+
+    @Override
+    public SqlStatement[] generateStatements(Database database) {
+        DatabasePlatform platform = Scope.getCurrentScope().get(PLATFORM_SCOPE_KEY, DatabasePlatform.class);
+        if(platform == null) {
+            logger.warn("No database platform available, not creating full-text index on {}.{}", tableName, columnName);
+            return new SqlStatement[0];
+        }
+        String sql = platform.getFullTextIndexStatement(
+                database.escapeObjectName(getActualIndexName(), Index.class),
+                database.escapeTableName(catalogName, schemaName, tableName),
+                database.escapeObjectName(columnName, Column.class));
+        if(sql == null) {
+            logger.info("{} does not support full-text indexes, not creating one on {}.{}",
+                    platform.getDescription(), tableName, columnName);
+            return new SqlStatement[0];
+        }
+        return new SqlStatement[] { new RawSqlStatement(sql) };
+    }
+
+    public String getActualIndexName() {
+        if(indexName != null) {
+            return indexName;
+        }
+        return AbstractDatabasePlatform.getFullTextIndexName(tableName, columnName);
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Full-text index " + getActualIndexName() + " created on " + tableName + "." + columnName;
+    }
+
+    @Override
+    public void setUp() throws SetupException {}
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {}
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        errors.checkRequiredField("tableName", tableName);
+        errors.checkRequiredField("columnName", columnName);
+        return errors;
+    }
+
+    public String getCatalogName() {
+        return catalogName;
+    }
+
+    public void setCatalogName(String catalogName) {
+        this.catalogName = catalogName;
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public void setSchemaName(String schemaName) {
+        this.schemaName = schemaName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public void setColumnName(String columnName) {
+        this.columnName = columnName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public void setIndexName(String indexName) {
+        this.indexName = indexName;
+    }
+}
@@ -20,6 +20,7 @@
 
 package com.manydesigns.portofino.modules;
 
+import com.manydesigns.elements.fields.DatabaseBlobField;
 import com.manydesigns.portofino.cache.CacheResetListenerRegistry;
 import com.manydesigns.portofino.code.AggregateCodeBase;
 import com.manydesigns.portofino.code.CodeBase;
@@ -36,6 +37,7 @@ import org.apache.commons.vfs2.AllFileSelector;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.hibernate.EntityMode;
+import org.hibernate.engine.jdbc.BlobProxy;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -91,6 +93,17 @@ public class DatabaseModule implements Module, ApplicationContextAware, Applicat
     //Liquibase properties
     public static final String LIQUIBASE_ENABLED = "liquibase.enabled";
 
+    //Synchronization properties
+    public static final String SYNC_THREADS = "database.sync.threads";
+    public static final String SYNC_KEEP_UNCHANGED_TABLES = "database.sync.keepUnchangedTables";
+
+    //Hibernate tuning properties (defaults for all the databases, see SessionFactoryBuilder)
+    public static final String JDBC_BATCH_SIZE = "database.jdbc.batchSize";
+    public static final String JDBC_FETCH_SIZE = "database.jdbc.fetchSize";
+    public static final String JDBC_ORDER_STATEMENTS = "database.jdbc.orderStatements";
+    public static final String BATCH_FETCH_SIZE = "database.batchFetchSize";
+    public static final String QUERY_CACHE_SIZE = "database.cache.queryResults.maxEntries";
+
     //**************************************************************************
     // Logging
     //**************************************************************************
@@ -110,6 +123,8 @@ public class DatabaseModule implements Module, ApplicationContextAware, Applicat
 
     @PostConstruct
     public void init() {
+        //Hibernate copies in memory the contents of Blobs that it did not create itself
+        DatabaseBlobField.setSqlBlobFactory(BlobProxy::generateProxy);
         status = ModuleStatus.ACTIVE;
     }
 
@@ -141,6 +156,11 @@ public class DatabaseModule implements Module, ApplicationContextAware, Applicat
             @Autowired CacheResetListenerRegistry cacheResetListenerRegistry) throws FileSystemException {
         Persistence persistence = new Persistence(applicationDirectory, configuration, databasePlatformsRegistry);
         persistence.cacheResetListenerRegistry = cacheResetListenerRegistry;
+        cacheResetListenerRegistry.getCacheResetListeners().add(e -> {
+            if(e.getSource() != persistence) { //Reloading the model already starts with empty caches
+                persistence.evictSecondLevelCaches();
+            }
+        });
         if(applicationContext != null) { //We may want it to be null when testing
             applicationContext.getAutowireCapableBeanFactory().autowireBean(persistence);
         }
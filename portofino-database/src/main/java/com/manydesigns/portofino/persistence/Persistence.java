@@ -25,6 +25,7 @@ import com.manydesigns.portofino.cache.CacheResetEvent;
 import com.manydesigns.portofino.cache.CacheResetListenerRegistry;
 import com.manydesigns.portofino.config.ConfigurationSource;
 import com.manydesigns.portofino.database.multitenancy.MultiTenant;
+import com.manydesigns.portofino.liquibase.CreateFullTextIndexChange;
 import com.manydesigns.portofino.liquibase.VFSResourceAccessor;
 import com.manydesigns.portofino.model.Model;
 import com.manydesigns.portofino.model.annotations.Enabled;
@@ -43,8 +44,14 @@ import io.reactivex.subjects.BehaviorSubject;
 import io.reactivex.subjects.PublishSubject;
 import liquibase.Contexts;
 import liquibase.Liquibase;
+import liquibase.Scope;
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
 import liquibase.database.DatabaseFactory;
 import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.parser.ChangeLogParserFactory;
 import liquibase.resource.ResourceAccessor;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -63,9 +70,10 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.util.*;
 
@@ -87,6 +95,13 @@ public class Persistence {
     @Deprecated
     public static final String APP_MODEL_FILE = APP_MODEL_DIRECTORY + ".xml";
     public static final String LIQUIBASE_CONTEXT = "liquibase.context";
+    /**
+     * Directory, relative to the application root, where the checksums of the last applied changelogs are recorded.
+     * If set, Liquibase is not run for the schemas whose changelogs have not changed. The checksums are local files,
+     * so in a cluster each node runs Liquibase once by itself (Liquibase's own lock and DATABASECHANGELOG table still
+     * ensure that each change set is applied only once), unless the directory is on storage shared by all the nodes.
+     */
+    public static final String LIQUIBASE_CHECKSUMS = "liquibase.checksums";
     public final static String changelogFileNameTemplate = "liquibase.changelog.xml";
 
     //**************************************************************************
@@ -248,35 +263,125 @@ public class Persistence {
         return applicationDirectory.resolveFile(APP_MODEL_DIRECTORY);
     }
 
+    /**
+     * Runs Liquibase on several databases, one at a time. Liquibase 4.8 keeps its execution scope in a global
+     * variable, so updates can't safely run concurrently.
+     */
+    public void runLiquibase(Collection<Database> databases) {
+        databases.forEach(this::runLiquibase);
+    }
+
     public void runLiquibase(Database database) {
         logger.info("Updating database definitions");
         ResourceAccessor resourceAccessor = new VFSResourceAccessor(applicationDirectory);
         ConnectionProvider connectionProvider = database.getConnectionProvider();
+        String[] contexts = configuration.getProperties().getStringArray(LIQUIBASE_CONTEXT);
         for(Schema schema : database.getSchemas()) {
             String schemaName = schema.getSchemaName();
-            try(Connection connection = connectionProvider.acquireConnection()) {
+            try {
                 FileObject changelogFile = getLiquibaseChangelogFile(schema);
                 if(changelogFile.getType() != FileType.FILE) {
                     logger.info("Changelog file does not exist or is not a normal file, skipping: {}", changelogFile);
                     continue;
                 }
-                logger.info("Running changelog file: {}", changelogFile);
-                JdbcConnection jdbcConnection = new JdbcConnection(connection);
-                liquibase.database.Database lqDatabase =
-                        DatabaseFactory.getInstance().findCorrectDatabaseImplementation(jdbcConnection);
-                lqDatabase.setDefaultSchemaName(schema.getActualSchemaName());
                 String relativeChangelogPath = applicationDirectory.getName().getRelativeName(changelogFile.getName());
-                Liquibase lq = new Liquibase(relativeChangelogPath, resourceAccessor, lqDatabase);
-
-                String[] contexts = configuration.getProperties().getStringArray(LIQUIBASE_CONTEXT);
-                logger.info("Using context {}", Arrays.toString(contexts));
-                lq.update(new Contexts(contexts));
+                FileObject checksumFile = getLiquibaseChecksumFile(schema);
+                String checksum = null;
+                if(checksumFile != null) {
+                    checksum = computeChangelogChecksum(schema, relativeChangelogPath, resourceAccessor, contexts);
+                    if(checksum != null && checksum.equals(readChecksum(checksumFile))) {
+                        logger.info("Changelog file unchanged since it was last applied, skipping: {}", changelogFile);
+                        continue;
+                    }
+                }
+                try(Connection connection = connectionProvider.acquireConnection()) {
+                    logger.info("Running changelog file: {}", changelogFile);
+                    JdbcConnection jdbcConnection = new JdbcConnection(connection);
+                    liquibase.database.Database lqDatabase =
+                            DatabaseFactory.getInstance().findCorrectDatabaseImplementation(jdbcConnection);
+                    lqDatabase.setDefaultSchemaName(schema.getActualSchemaName());
+                    Liquibase lq = new Liquibase(relativeChangelogPath, resourceAccessor, lqDatabase);
+
+                    logger.info("Using context {}", Arrays.toString(contexts));
+                    //Lets custom changes such as CreateFullTextIndexChange generate platform-specific DDL
+                    Map<String, Object> scopeValues = Collections.singletonMap(
+                            CreateFullTextIndexChange.PLATFORM_SCOPE_KEY, connectionProvider.getDatabasePlatform());
+                    Scope.child(scopeValues, () -> lq.update(new Contexts(contexts)));
+                }
+                if(checksum != null) {
+                    writeChecksum(checksumFile, checksum);
+                }
             } catch (Exception e) {
                 logger.error("Couldn't update database: " + schemaName, e);
             }
         }
     }
 
+    /**
+     * Computes a checksum of a changelog that covers all the change sets it includes, the connection and schema it
+     * applies to and the active contexts. It only requires parsing the changelog, not accessing the database.
+     * @return the checksum, or null if the changelog contains change sets that must run every time.
+     */
+    protected String computeChangelogChecksum(
+            Schema schema, String changelogPath, ResourceAccessor resourceAccessor, String[] contexts)
+            throws LiquibaseException, NoSuchAlgorithmException {
+        DatabaseChangeLog changeLog = ChangeLogParserFactory.getInstance()
+                .getParser(changelogPath, resourceAccessor)
+                .parse(changelogPath, new ChangeLogParameters(), resourceAccessor);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        StringBuilder key = new StringBuilder();
+        key.append(schema.getDatabase().getConnectionProvider().getDescription()).append('\n');
+        key.append(schema.getActualSchemaName()).append('\n');
+        key.append(Arrays.toString(contexts)).append('\n');
+        for(ChangeSet changeSet : changeLog.getChangeSets()) {
+            if(changeSet.isAlwaysRun()) {
+                return null;
+            }
+            key.append(changeSet.getFilePath()).append("::").append(changeSet.getId()).append("::")
+               .append(changeSet.getAuthor()).append("::").append(changeSet.generateCheckSum()).append('\n');
+        }
+        StringBuilder checksum = new StringBuilder();
+        for(byte b : digest.digest(key.toString().getBytes(StandardCharsets.UTF_8))) {
+            checksum.append(String.format("%02x", b));
+        }
+        return checksum.toString();
+    }
+
+    protected String readChecksum(FileObject checksumFile) throws IOException {
+        if(!checksumFile.exists()) {
+            return null;
+        }
+        try(BufferedReader reader = new BufferedReader(
+                new InputStreamReader(checksumFile.getContent().getInputStream(), StandardCharsets.UTF_8))) {
+            return reader.readLine();
+        }
+    }
+
+    protected void writeChecksum(FileObject checksumFile, String checksum) {
+        try {
+            checksumFile.getParent().createFolder();
+            try(OutputStream outputStream = checksumFile.getContent().getOutputStream()) {
+                outputStream.write(checksum.getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not record changelog checksum in " + checksumFile.getName().getPath(), e);
+        }
+    }
+
+    /**
+     * @return the file recording the checksum of the last changelog applied to the given schema, or null if
+     * checksums are not recorded. See {@link #LIQUIBASE_CHECKSUMS} about clusters.
+     */
+    public FileObject getLiquibaseChecksumFile(Schema schema) throws FileSystemException {
+        String checksumsDirectory = configuration.getProperties().getString(LIQUIBASE_CHECKSUMS);
+        if(checksumsDirectory == null) {
+            return null;
+        }
+        return applicationDirectory.resolveFile(checksumsDirectory)
+                .resolveFile(schema.getDatabaseName())
+                .resolveFile(schema.getSchemaName() + ".checksum");
+    }
+
     public synchronized void saveXmlModel() throws IOException, JAXBException, ConfigurationException {
         //TODO gestire conflitti con modifiche esterne?
         JAXBContext jc = createModelJAXBContext();
@@ -506,6 +611,16 @@ public class Persistence {
     }
 
     public synchronized void syncDataModel(String databaseName) throws Exception {
+        syncDataModel(databaseName, Collections.emptyList());
+    }
+
+    /**
+     * Synchronizes the model of a database with its actual structure.
+     * @param databaseName the name of the database.
+     * @param tablePatterns if not empty, only the tables matching one of these regular expressions are synchronized;
+     *                      the others are kept as they are in the model.
+     */
+    public synchronized void syncDataModel(String databaseName, Collection<String> tablePatterns) throws Exception {
         Database sourceDatabase = DatabaseLogic.findDatabaseByName(model, databaseName);
         if(sourceDatabase == null) {
             throw new IllegalArgumentException("Database " + databaseName + " does not exist");
@@ -517,6 +632,10 @@ public class Persistence {
         }
         ConnectionProvider connectionProvider = sourceDatabase.getConnectionProvider();
         DatabaseSyncer dbSyncer = new DatabaseSyncer(connectionProvider);
+        dbSyncer.setTablePatterns(tablePatterns);
+        dbSyncer.setThreads(configuration.getProperties().getInt(DatabaseModule.SYNC_THREADS, 4));
+        dbSyncer.setKeepUnchangedTables(
+                configuration.getProperties().getBoolean(DatabaseModule.SYNC_KEEP_UNCHANGED_TABLES, false));
         Database targetDatabase = dbSyncer.syncDatabase(model);
         model.getDatabases().remove(sourceDatabase);
         model.getDatabases().add(targetDatabase);
@@ -543,6 +662,17 @@ public class Persistence {
         return setups.get(databaseName);
     }
 
+    /**
+     * Empties the Hibernate second-level cache of every database, e.g. because the data has been changed outside
+     * the application. Called when a {@link CacheResetEvent} is fired.
+     */
+    public void evictSecondLevelCaches() {
+        for (HibernateDatabaseSetup setup : setups.values()) {
+            logger.debug("Evicting the second-level cache of {}", setup.getDatabase().getDatabaseName());
+            setup.getSessionFactory().getCache().evictAllRegions();
+        }
+    }
+
     public void closeSessions() {
         for (HibernateDatabaseSetup current : setups.values()) {
             closeSession(current);
@@ -593,11 +723,13 @@ public class Persistence {
     public void start() {
         status.onNext(Status.STARTING);
         loadXmlModel();
+        List<Database> connectedDatabases = new ArrayList<>();
         for(Database database : model.getDatabases()) {
             if(ConnectionProvider.STATUS_CONNECTED.equals(database.getConnectionProvider().getStatus())) {
-                runLiquibase(database);
+                connectedDatabases.add(database);
             }
         }
+        runLiquibase(connectedDatabases);
         status.onNext(Status.STARTED);
     }
 
@@ -27,21 +27,29 @@ import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.text.OgnlHqlFormat;
 import com.manydesigns.elements.text.OgnlSqlFormat;
 import com.manydesigns.elements.text.QueryStringWithParameters;
+import com.manydesigns.elements.util.RequestTimings;
 import com.manydesigns.portofino.model.Model;
 import com.manydesigns.portofino.model.database.*;
+import com.manydesigns.portofino.persistence.hibernate.FullTextSearchFunction;
+import com.manydesigns.portofino.persistence.hibernate.SecondLevelCache;
 import com.manydesigns.portofino.reflection.TableAccessor;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.JdbcNamedParameter;
 import net.sf.jsqlparser.expression.Parenthesis;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
 import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.*;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.jdbc.Work;
 import org.hibernate.query.Query;
 import org.jetbrains.annotations.NotNull;
@@ -81,6 +89,11 @@ public class QueryUtils {
             Pattern.compile("(SELECT\\s+.*\\s+)?FROM\\s+([a-z_$\\u0080-\\ufffe]{1}[a-z_$0-9\\u0080-\\ufffe]*).*",
                             Pattern.CASE_INSENSITIVE | Pattern.DOTALL); //. (dot) matches newlines
 
+    /**
+     * The name under which the time spent running queries is reported in the {@link RequestTimings}.
+     */
+    public static final String TIMING_NAME = "db";
+
     protected static final Logger logger = LoggerFactory.getLogger(QueryUtils.class);
 
     /**
@@ -108,7 +121,7 @@ public class QueryUtils {
     public static List<Object[]> runSql(Session session, final String queryString, final Object[] parameters) {
         final List<Object[]> result = new ArrayList<Object[]>();
 
-        try {
+        try(RequestTimings.Span ignored = RequestTimings.span(TIMING_NAME)) {
             session.doWork(new Work() {
                 public void execute(Connection connection) throws SQLException {
                     try (PreparedStatement stmt = connection.prepareStatement(queryString)) {
@@ -157,7 +170,8 @@ public class QueryUtils {
                 queryStringWithParameters.getQueryString(),
                 queryStringWithParameters.getParameters(),
                 firstResult,
-                maxResults
+                maxResults,
+                isCacheable(criteria.getTable())
         );
     }
 
@@ -315,6 +329,12 @@ public class QueryUtils {
                     hqlFormat = "lower({0}) like lower(:p" + (parametersList.size() + initialParameterIndex) + ")";
                     parametersList.add(pattern);
                 }
+            } else if (criterion instanceof TableCriteria.FullTextCriterion) {
+                TableCriteria.FullTextCriterion fullTextCriterion =
+                        (TableCriteria.FullTextCriterion) criterion;
+                hqlFormat = FullTextSearchFunction.NAME + "({0}, :p" +
+                        (parametersList.size() + initialParameterIndex) + ") = 1";
+                parametersList.add(fullTextCriterion.getValue());
             } else if (criterion instanceof TableCriteria.IsNullCriterion) {
                 hqlFormat = "{0} is null";
             } else if (criterion instanceof TableCriteria.IsNotNullCriterion) {
@@ -429,8 +449,10 @@ public class QueryUtils {
             @Nullable Integer firstResult,
             @Nullable Integer maxResults) {
         QueryStringWithParameters result = mergeQuery(queryString, criteria, rootObject);
+        boolean cacheable = criteria != null && isCacheable(criteria.getTable());
 
-        return runHqlQuery(session, result.getQueryString(), result.getParameters(), firstResult, maxResults);
+        return runHqlQuery(
+                session, result.getQueryString(), result.getParameters(), firstResult, maxResults, cacheable);
     }
 
     /**
@@ -578,16 +600,33 @@ public class QueryUtils {
             @Nullable Object[] parameters,
             @Nullable Integer firstResult,
             @Nullable Integer maxResults) {
+        return runHqlQuery(session, queryString, parameters, firstResult, maxResults, false);
+    }
+
+    /**
+     * Runs a HQL query against the database, optionally caching its results in the Hibernate query cache. This is
+     * only effective if the second-level cache is enabled, i.e. if some table is annotated with
+     * {@link SecondLevelCache}; cached results are discarded when any of the queried tables is modified.
+     * @see QueryUtils#isCacheable(Table)
+     * @param session the session
+     * @param queryString the query
+     * @param parameters the query parameters
+     * @param firstResult index of the first result to return
+     * @param maxResults maximum number of results to return
+     * @param cacheable whether the results of the query can be cached
+     * @return the results of the query
+     */
+    public static List<Object> runHqlQuery(
+            Session session,
+            String queryString,
+            @Nullable Object[] parameters,
+            @Nullable Integer firstResult,
+            @Nullable Integer maxResults,
+            boolean cacheable) {
 
         Query query = session.createQuery(queryString);
-        if (parameters != null) {
-            for (int i = 0; i < parameters.length; i++) {
-                if (parameters[i] instanceof Collection) {
-                    query.setParameterList("p" + (i + 1), (Collection) parameters[i]);
-                } else
-                    query.setParameter("p" + (i + 1), parameters[i]);
-            }
-        }
+        setParameters(query, parameters);
+        query.setCacheable(cacheable);
 
         if (firstResult != null) {
             query.setFirstResult(firstResult);
@@ -598,7 +637,7 @@ public class QueryUtils {
         }
 
         //noinspection unchecked
-        try {
+        try(RequestTimings.Span ignored = RequestTimings.span(TIMING_NAME)) {
             List<Object> result = query.list();
             return result;
         } catch (HibernateException e) {
@@ -609,6 +648,56 @@ public class QueryUtils {
         }
     }
 
+    /**
+     * Runs a HQL query against the database, returning its results as a forward-only cursor rather than a list, so
+     * that they don't need to fit in memory. The query is read-only. The caller must close the results. A stateless
+     * session is required so that the loaded entities are not retained; moreover, some drivers can't run other
+     * statements on the same connection while the cursor is open.
+     * @param session the session
+     * @param queryString the query
+     * @param parameters the query parameters
+     * @param fetchSize the fetch size of the statement, see
+     * {@link com.manydesigns.portofino.model.database.platforms.DatabasePlatform#getStreamingFetchSize(int)}
+     * @return the results of the query
+     */
+    public static ScrollableResults scrollHqlQuery(
+            StatelessSession session, String queryString, @Nullable Object[] parameters, int fetchSize) {
+        Query query = session.createQuery(queryString);
+        setParameters(query, parameters);
+        query.setReadOnly(true);
+        query.setFetchSize(fetchSize);
+        try(RequestTimings.Span ignored = RequestTimings.span(TIMING_NAME)) {
+            return query.scroll(ScrollMode.FORWARD_ONLY);
+        } catch (HibernateException e) {
+            logger.error("Error running query", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the results of queries on the given table can be kept in the query cache, according to its
+     * {@link SecondLevelCache} annotation.
+     * @param table the table.
+     * @return true if the table is annotated with {@link SecondLevelCache} and query caching is enabled on it.
+     */
+    public static boolean isCacheable(@Nullable Table table) {
+        if(table == null) {
+            return false;
+        }
+        return table.getJavaAnnotation(SecondLevelCache.class).map(SecondLevelCache::queries).orElse(false);
+    }
+
+    protected static void setParameters(Query query, @Nullable Object[] parameters) {
+        if (parameters != null) {
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i] instanceof Collection) {
+                    query.setParameterList("p" + (i + 1), (Collection) parameters[i]);
+                } else
+                    query.setParameter("p" + (i + 1), parameters[i]);
+            }
+        }
+    }
+
     /**
      * Loads an object by primary key.
      * @param persistence the persistence object
@@ -638,14 +727,16 @@ public class QueryUtils {
         Object result;
         PropertyAccessor[] keyProperties = table.getKeyProperties();
         int size = keyProperties.length;
-        if (size > 1) {
-            result = session.get(actualEntityName, pk);
+        try(RequestTimings.Span ignored = RequestTimings.span(TIMING_NAME)) {
+            if (size > 1) {
+                result = session.get(actualEntityName, pk);
+                return result;
+            }
+            PropertyAccessor propertyAccessor = keyProperties[0];
+            Serializable key = (Serializable) propertyAccessor.get(pk);
+            result = session.get(actualEntityName, key);
             return result;
         }
-        PropertyAccessor propertyAccessor = keyProperties[0];
-        Serializable key = (Serializable) propertyAccessor.get(pk);
-        result = session.get(actualEntityName, key);
-        return result;
     }
 
     /**
@@ -742,6 +833,122 @@ public class QueryUtils {
         }
     }
 
+    /**
+     * Transforms a query into one that counts its results, removing any ORDER BY clause.
+     * @param queryString the query.
+     * @return the count query, or null if the query selects more than one item.
+     */
+    public static String generateCountQuery(String queryString) throws JSQLParserException {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        try {
+            PlainSelect plainSelect =
+                (PlainSelect) ((Select) parserManager.parse(new StringReader(queryString))).getSelectBody();
+            logger.debug("Query string {} contains select", queryString);
+            List<SelectItem> items = plainSelect.getSelectItems();
+            if(items.size() != 1) {
+                logger.error("I don't know how to generate a count query for {}", queryString);
+                return null;
+            }
+            SelectExpressionItem item = (SelectExpressionItem) items.get(0);
+            Function function = new Function();
+            function.setName("count");
+            function.setParameters(new ExpressionList(Collections.singletonList(item.getExpression())));
+            item.setExpression(function);
+            plainSelect.setOrderByElements(null);
+            return plainSelect.toString();
+        } catch(Exception e) {
+            logger.debug("Query string " + queryString + " does not contain select", e);
+            queryString = "SELECT count(*) " + queryString;
+            PlainSelect plainSelect =
+                (PlainSelect) ((Select) parserManager.parse(new StringReader(queryString))).getSelectBody();
+            plainSelect.setOrderByElements(null);
+            return plainSelect.toString();
+        }
+    }
+
+    /**
+     * Adds a condition to a query, in AND with its WHERE clause.
+     * @param query the query.
+     * @param entityName the name of the main entity of the query.
+     * @param condition the condition, in {@link MessageFormat} syntax: <code>{0}</code> is replaced with the alias of
+     *                  the main entity followed by a dot (or with the empty string if the entity has no alias), and
+     *                  <code>{1}</code>, <code>{2}</code>, etc. with the names of the parameters.
+     * @param conditionParameters the values of the parameters of the condition.
+     * @return the new query.
+     */
+    public static QueryStringWithParameters addCondition(
+            QueryStringWithParameters query, String entityName, String condition, Object... conditionParameters) {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        try {
+            PlainSelect parsedQuery = parseQuery(parserManager, query.getQueryString());
+            Alias mainEntityAlias = getEntityAlias(entityName, parsedQuery);
+            Object[] formatArguments = new Object[conditionParameters.length + 1];
+            formatArguments[0] = mainEntityAlias != null ? mainEntityAlias.getName() + "." : "";
+            int firstParameterIndex = query.getParameters().length + 1;
+            for(int i = 0; i < conditionParameters.length; i++) {
+                formatArguments[i + 1] = ":p" + (firstParameterIndex + i);
+            }
+            String formattedCondition = MessageFormat.format(condition, formatArguments);
+            Expression where = parseQuery(parserManager, "FROM " + entityName + WHERE_STRING + formattedCondition)
+                    .getWhere();
+            if(parsedQuery.getWhere() != null) {
+                where = new AndExpression(new Parenthesis(parsedQuery.getWhere()), new Parenthesis(where));
+            }
+            parsedQuery.setWhere(where);
+            String fullQueryString = parsedQuery.toString();
+            if(fullQueryString.toLowerCase().startsWith(FAKE_SELECT_PREFIX)) {
+                fullQueryString = fullQueryString.substring(FAKE_SELECT_PREFIX.length());
+            }
+            List<Object> parameters = new ArrayList<>(Arrays.asList(query.getParameters()));
+            parameters.addAll(Arrays.asList(conditionParameters));
+            return new QueryStringWithParameters(fullQueryString, parameters.toArray());
+        } catch (JSQLParserException e) {
+            throw new RuntimeException("Couldn't add condition " + condition + " to query " + query.getQueryString(), e);
+        }
+    }
+
+    /**
+     * Turns a query that selects whole entities into one that only selects some of their properties, so that the
+     * database doesn't have to read (and transfer) the others. Each result of the new query is an array with the
+     * values of the properties, in the given order (or just the value, if there's only one property).
+     * @param query the query, as returned by {@link #mergeQuery(String, TableCriteria, Object)}.
+     * @param entityName the name of the main entity of the query.
+     * @param properties the properties of the main entity to select.
+     * @return the new query, or null if the query already has a select clause other than the main entity (e.g. it
+     * selects a different entity or computed values), so it cannot be projected.
+     */
+    @Nullable
+    public static QueryStringWithParameters getProjectionQuery(
+            QueryStringWithParameters query, String entityName, List<PropertyAccessor> properties) {
+        CCJSqlParserManager parserManager = new CCJSqlParserManager();
+        PlainSelect parsedQuery;
+        try {
+            parsedQuery = parseQuery(parserManager, query.getQueryString());
+        } catch (JSQLParserException e) {
+            throw new RuntimeException("Couldn't parse query", e);
+        }
+        Alias mainEntityAlias = getEntityAlias(entityName, parsedQuery);
+        String queryString = query.getQueryString().trim();
+        if(queryString.toLowerCase().startsWith("select")) {
+            List<SelectItem> items = parsedQuery.getSelectItems();
+            if(mainEntityAlias == null || items.size() != 1 ||
+               !mainEntityAlias.getName().equals(items.get(0).toString())) {
+                logger.debug("The query {} selects something other than the main entity, not projecting it", query);
+                return null;
+            }
+        }
+        String prefix = mainEntityAlias != null ? mainEntityAlias.getName() + "." : "";
+        List<SelectItem> items = new ArrayList<>();
+        for(PropertyAccessor property : properties) {
+            SelectExpressionItem item = new SelectExpressionItem();
+            item.setExpression(new net.sf.jsqlparser.schema.Column(
+                    new net.sf.jsqlparser.schema.Table(), prefix + property.getName()));
+            items.add(item);
+        }
+        parsedQuery.setSelectItems(items);
+        return new QueryStringWithParameters(parsedQuery.toString(), query.getParameters());
+    }
+
     protected static Alias getEntityAlias(String entityName, PlainSelect query) {
         FromItem fromItem = query.getFromItem();
         if (hasEntityAlias(entityName, fromItem)) {
@@ -773,7 +980,7 @@ public class QueryUtils {
      */
     public static void commit(Persistence persistence, String databaseName) {
         Session session = persistence.getSession(databaseName);
-        try {
+        try(RequestTimings.Span ignored = RequestTimings.span(TIMING_NAME)) {
             session.getTransaction().commit();
         } catch (HibernateException e) {
             persistence.closeSession(databaseName);
@@ -817,7 +1024,9 @@ public class QueryUtils {
                 Object toValue = toPropertyAccessor.get(obj);
                 where.add(criteria.builder.equal(criteria.root.get(fromColumn.getActualPropertyName()), toValue));
             }
-            return session.createQuery(criteria.query.where(where.toArray(new Predicate[0]))).list();
+            try(RequestTimings.Span ignored = RequestTimings.span(TIMING_NAME)) {
+                return session.createQuery(criteria.query.where(where.toArray(new Predicate[0]))).list();
+            }
         } catch (Throwable e) {
             String msg = String.format(
                     "Cannot access relationship %s on entity %s.%s",
@@ -114,6 +114,11 @@ public class TableCriteria extends BaseCriteria {
         return (TableCriteria)super.ilike(accessor, value, textMatchMode);
     }
 
+    @Override
+    public TableCriteria fullText(PropertyAccessor accessor, String value) {
+        return (TableCriteria)super.fullText(accessor, value);
+    }
+
     @Override
     public TableCriteria isNull(PropertyAccessor accessor) {
         return (TableCriteria)super.isNull(accessor);
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import javax.persistence.FetchType;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tunes how the relationships of a table are loaded by Hibernate. Applied to a table in the model, it's read by
+ * {@link SessionFactoryBuilder} when it maps the foreign keys from and to the table. Tables without it use the
+ * defaults of JPA (eager many-to-one, lazy one-to-many) and the batch fetch size of the database
+ * ({@link com.manydesigns.portofino.modules.DatabaseModule#BATCH_FETCH_SIZE}).
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface FetchTuning {
+    String copyright = "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    /**
+     * How many uninitialized instances of the table (lazy references to it) or collections of the table's
+     * one-to-many properties are loaded together, with a single query. 0 means the default of the database.
+     */
+    int batchSize() default 0;
+
+    /**
+     * How the many-to-one properties of the table (its foreign keys) are loaded.
+     */
+    FetchType manyToOne() default FetchType.EAGER;
+
+    /**
+     * How the one-to-many properties of the table (the foreign keys that refer to it) are loaded.
+     */
+    FetchType oneToMany() default FetchType.LAZY;
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import com.manydesigns.portofino.model.database.platforms.DatabasePlatform;
+import org.hibernate.QueryException;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+/**
+ * HQL function that exposes the full-text search condition of a {@link DatabasePlatform}. HQL does not accept a
+ * function call as a condition on its own, so the function must be compared with 1:
+ * <code>portofino_full_text(description, :text) = 1</code>. The rendered SQL is the platform's condition followed by
+ * <code>and 1</code>, so that the comparison becomes a tautology that leaves the condition intact and usable by
+ * the index.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class FullTextSearchFunction implements SQLFunction {
+    public static final String copyright =
+            "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final String NAME = "portofino_full_text";
+
+    protected final DatabasePlatform platform;
+
+    public FullTextSearchFunction(DatabasePlatform platform) {
+        this.platform = platform;
+    }
+
+    @Override
+    public boolean hasArguments() {
+        return true;
+    }
+
+    @Override
+    public boolean hasParenthesesIfNoArguments() {
+        return true;
+    }
+
+    @Override
+    public Type getReturnType(Type firstArgumentType, Mapping mapping) throws QueryException {
+        return StandardBasicTypes.INTEGER;
+    }
+
+    @Override
+    public String render(Type firstArgumentType, List arguments, SessionFactoryImplementor factory)
+            throws QueryException {
+        if(arguments.size() != 2) {
+            throw new QueryException(NAME + " requires two arguments: the column and the search string");
+        }
+        String condition = platform.getFullTextSearchCondition(
+                arguments.get(0).toString(), arguments.get(1).toString());
+        return "(" + condition + ") and 1";
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the rows of a table in the Hibernate second-level cache, an in-process cache shared by all the sessions, so
+ * that loading them by primary key or through a relationship doesn't always hit the database. Meant for lookup
+ * tables and other reference data that rarely changes. It requires hibernate-jcache and Ehcache on the classpath,
+ * see {@link SecondLevelCaches}.
+ * Changes made through Hibernate keep the cache up to date; when the data is changed by other means, the cache must
+ * be cleared by firing a {@link com.manydesigns.portofino.cache.CacheResetEvent}.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface SecondLevelCache {
+    String copyright = "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    /**
+     * How concurrent access to the cached rows is handled. READ_ONLY is the fastest, but the table can't be
+     * updated by the application; TRANSACTIONAL is not supported.
+     */
+    CacheConcurrencyStrategy strategy() default CacheConcurrencyStrategy.READ_WRITE;
+
+    /**
+     * The maximum number of rows kept in the cache; the least recently used ones are evicted first.
+     */
+    long maxEntries() default 1000;
+
+    /**
+     * Whether to cache the one-to-many collections of the table (the foreign keys that refer to it) too. Their
+     * elements should be cached as well, or they will be loaded one at a time.
+     */
+    boolean collections() default false;
+
+    /**
+     * Whether to cache the results of searches on the table and of the selection providers that query it.
+     */
+    boolean queries() default false;
+}
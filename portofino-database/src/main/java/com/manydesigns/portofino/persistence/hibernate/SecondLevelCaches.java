@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package com.manydesigns.portofino.persistence.hibernate;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Creates the in-process caches that back the Hibernate second-level cache of a database, using Ehcache through
+ * JCache (JSR-107). Both hibernate-jcache and Ehcache are optional dependencies: this class must only be used if
+ * {@link #isAvailable()} returns true.
+ *
+ * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+ * @author Angelo Lupo          - angelo.lupo@manydesigns.com
+ * @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+ * @author Alessio Stalla       - alessio.stalla@manydesigns.com
+ */
+public class SecondLevelCaches {
+    public static final String copyright = "Copyright (C) 2005-2022 ManyDesigns srl";
+
+    public static final String REGION_FACTORY_CLASS = "org.hibernate.cache.jcache.internal.JCacheRegionFactory";
+    public static final String CACHING_PROVIDER_CLASS = "org.ehcache.jsr107.EhcacheCachingProvider";
+    /**
+     * The setting that passes the cache manager to hibernate-jcache.
+     */
+    public static final String CACHE_MANAGER_SETTING = "hibernate.javax.cache.cache_manager";
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    private static final Logger logger = LoggerFactory.getLogger(SecondLevelCaches.class);
+
+    public static boolean isAvailable() {
+        ClassLoader classLoader = SecondLevelCaches.class.getClassLoader();
+        try {
+            Class.forName(REGION_FACTORY_CLASS, false, classLoader);
+            Class.forName(CACHING_PROVIDER_CLASS, false, classLoader);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a cache manager with a heap-only cache for each region.
+     * @param name the name of the cache manager, e.g. the name of the database.
+     * @param regionSizes the maximum number of entries of each region, by region name.
+     * @return the new cache manager. It must be closed when the session factory that uses it is closed.
+     */
+    public static CacheManager createCacheManager(String name, Map<String, Long> regionSizes) {
+        ClassLoader classLoader = SecondLevelCaches.class.getClassLoader();
+        Map<String, CacheConfiguration<?, ?>> caches = new HashMap<>();
+        for(Map.Entry<String, Long> region : regionSizes.entrySet()) {
+            logger.debug("Creating cache region {} of {} entries for {}", region.getKey(), region.getValue(), name);
+            caches.put(region.getKey(), CacheConfigurationBuilder.newCacheConfigurationBuilder(
+                    Object.class, Object.class, ResourcePoolsBuilder.heap(region.getValue())).build());
+        }
+        EhcacheCachingProvider provider =
+                (EhcacheCachingProvider) Caching.getCachingProvider(CACHING_PROVIDER_CLASS, classLoader);
+        //Each session factory has its own manager, so that rebuilding the model starts with empty caches
+        URI uri = URI.create("urn:portofino:" + name + ":" + UUID.randomUUID());
+        return provider.getCacheManager(uri, new DefaultConfiguration(caches, classLoader));
+    }
+}
@@ -10,6 +10,7 @@ import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.model.database.TableGenerator;
 import com.manydesigns.portofino.model.database.*;
 import com.manydesigns.portofino.model.database.platforms.DatabasePlatform;
+import com.manydesigns.portofino.modules.DatabaseModule;
 import com.manydesigns.portofino.persistence.hibernate.multitenancy.MultiTenancyImplementation;
 import javassist.*;
 import javassist.bytecode.AnnotationsAttribute;
@@ -24,6 +25,11 @@ import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.VFS;
 import org.hibernate.EntityMode;
 import org.hibernate.MultiTenancyStrategy;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Immutable;
 import org.hibernate.annotations.TypeDef;
@@ -48,6 +54,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.*;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
@@ -70,6 +77,10 @@ public class SessionFactoryBuilder {
     protected final Configuration configuration;
     protected final MultiTenancyImplementation multiTenancyImplementation;
     protected EntityMode entityMode = EntityMode.MAP;
+    protected final boolean secondLevelCacheEnabled;
+    protected Closeable cacheManager;
+
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 1000;
 
     protected static final Set<String> JAVA_KEYWORDS = new HashSet<>();
 
@@ -96,6 +107,12 @@ public class SessionFactoryBuilder {
         if(!StringUtils.isEmpty(entityModeName)) {
             entityMode = EntityMode.parse(entityModeName);
         }
+        boolean anyTableCached = database.getAllTables().stream().anyMatch(t -> getSecondLevelCache(t) != null);
+        secondLevelCacheEnabled = anyTableCached && SecondLevelCaches.isAvailable();
+        if(anyTableCached && !secondLevelCacheEnabled) {
+            logger.warn("Some tables of database {} are marked with @SecondLevelCache, but hibernate-jcache or " +
+                    "Ehcache are missing from the classpath; they won't be cached", database.getDatabaseName());
+        }
     }
 
     public SessionFactoryAndCodeBase buildSessionFactory() {
@@ -226,6 +243,10 @@ public class SessionFactoryBuilder {
             throw new RuntimeException(e);
         }
         MetadataBuilder metadataBuilder = sources.getMetadataBuilder();
+        DatabasePlatform platform = database.getConnectionProvider().getDatabasePlatform();
+        if(platform != null) {
+            metadataBuilder.applySqlFunction(FullTextSearchFunction.NAME, new FullTextSearchFunction(platform));
+        }
         Metadata metadata = metadataBuilder.build();
         if (entityMode == EntityMode.MAP) {
             metadata.getEntityBindings().forEach((PersistentClass c) -> {
@@ -240,6 +261,22 @@ public class SessionFactoryBuilder {
             });
         }
         org.hibernate.boot.SessionFactoryBuilder sessionFactoryBuilder = metadata.getSessionFactoryBuilder();
+        if(cacheManager != null) {
+            Closeable cacheManager = this.cacheManager;
+            sessionFactoryBuilder.addSessionFactoryObservers(new SessionFactoryObserver() {
+                @Override
+                public void sessionFactoryCreated(SessionFactory factory) {}
+
+                @Override
+                public void sessionFactoryClosed(SessionFactory factory) {
+                    try {
+                        cacheManager.close();
+                    } catch (IOException e) {
+                        logger.warn("Could not close the second-level cache", e);
+                    }
+                }
+            });
+        }
         return new SessionFactoryAndCodeBase(sessionFactoryBuilder.build(), codeBase);
     }
 
@@ -252,6 +289,10 @@ public class SessionFactoryBuilder {
                     connectionProvider.getActualHibernateDialectName());
         }
         settings.put(AvailableSettings.JPA_METAMODEL_POPULATION, "enabled");
+        setupJdbcTuning(settings);
+        if(secondLevelCacheEnabled) {
+            setupSecondLevelCache(settings);
+        }
         if(multiTenancyImplementation != null) {
             MultiTenancyStrategy strategy = multiTenancyImplementation.getStrategy();
             if (strategy.requiresMultiTenantConnectionProvider()) {
@@ -268,6 +309,97 @@ public class SessionFactoryBuilder {
         return settings;
     }
 
+    /**
+     * Configures JDBC batching of inserts and updates, the JDBC fetch size and batch fetching of lazy references and
+     * collections, according to the Portofino configuration. Each of them is off, i.e. Hibernate's defaults are left
+     * unchanged, unless its property is set. Each database can override them with the corresponding Hibernate
+     * properties in its hibernate.properties file.
+     */
+    protected void setupJdbcTuning(Map<String, Object> settings) {
+        int batchSize = getInt(DatabaseModule.JDBC_BATCH_SIZE, 0);
+        if(batchSize > 1) {
+            settings.put(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(batchSize));
+            settings.put(AvailableSettings.BATCH_VERSIONED_DATA, "true");
+            if(configuration == null || configuration.getBoolean(DatabaseModule.JDBC_ORDER_STATEMENTS, true)) {
+                //Group the statements by entity, otherwise a batch is broken each time the entity changes
+                settings.put(AvailableSettings.ORDER_INSERTS, "true");
+                settings.put(AvailableSettings.ORDER_UPDATES, "true");
+            }
+        }
+        int fetchSize = getInt(DatabaseModule.JDBC_FETCH_SIZE, 0);
+        if(fetchSize > 0) {
+            settings.put(AvailableSettings.STATEMENT_FETCH_SIZE, String.valueOf(fetchSize));
+        }
+        int batchFetchSize = getInt(DatabaseModule.BATCH_FETCH_SIZE, 0);
+        if(batchFetchSize > 1) {
+            settings.put(AvailableSettings.DEFAULT_BATCH_FETCH_SIZE, String.valueOf(batchFetchSize));
+        }
+    }
+
+    /**
+     * Enables the second-level cache, with a region for each table marked with {@link SecondLevelCache} (and its
+     * collections, if requested), and the query cache if any of the tables caches its queries.
+     */
+    protected void setupSecondLevelCache(Map<String, Object> settings) {
+        Map<String, Long> regions = new LinkedHashMap<>();
+        boolean cacheQueries = false;
+        for(Table table : database.getAllTables()) {
+            SecondLevelCache cache = getSecondLevelCache(table);
+            if(cache == null) {
+                continue;
+            }
+            regions.put(getCacheRegion(table), cache.maxEntries());
+            if(cache.collections()) {
+                for(ForeignKey foreignKey : table.getOneToManyRelationships()) {
+                    regions.put(getCacheRegion(foreignKey), cache.maxEntries());
+                }
+            }
+            cacheQueries |= cache.queries();
+        }
+        if(cacheQueries) {
+            regions.put(SecondLevelCaches.QUERY_RESULTS_REGION,
+                    (long) getInt(DatabaseModule.QUERY_CACHE_SIZE, DEFAULT_QUERY_CACHE_SIZE));
+            //One entry per table, it must be large enough never to evict anything
+            regions.put(SecondLevelCaches.UPDATE_TIMESTAMPS_REGION, Math.max(10000L, database.getAllTables().size()));
+        }
+        logger.info("Enabling the second-level cache of database {} for {} regions",
+                database.getDatabaseName(), regions.size());
+        javax.cache.CacheManager cacheManager =
+                SecondLevelCaches.createCacheManager(database.getDatabaseName(), regions);
+        this.cacheManager = cacheManager;
+        settings.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        settings.put(AvailableSettings.USE_QUERY_CACHE, String.valueOf(cacheQueries));
+        settings.put(AvailableSettings.CACHE_REGION_FACTORY, SecondLevelCaches.REGION_FACTORY_CLASS);
+        settings.put(SecondLevelCaches.CACHE_MANAGER_SETTING, cacheManager);
+    }
+
+    @Nullable
+    protected SecondLevelCache getSecondLevelCache(Table table) {
+        return table.getJavaAnnotation(SecondLevelCache.class).orElse(null);
+    }
+
+    protected String getCacheRegion(Table table) {
+        return table.getActualEntityName();
+    }
+
+    protected String getCacheRegion(ForeignKey oneToMany) {
+        return oneToMany.getToTable().getActualEntityName() + "." + oneToMany.getActualManyPropertyName();
+    }
+
+    protected Annotation makeCacheAnnotation(SecondLevelCache cache, String region, ConstPool constPool) {
+        Annotation annotation = new Annotation(Cache.class.getName(), constPool);
+        EnumMemberValue usage = new EnumMemberValue(constPool);
+        usage.setType(CacheConcurrencyStrategy.class.getName());
+        usage.setValue(cache.strategy().name());
+        annotation.addMemberValue("usage", usage);
+        annotation.addMemberValue("region", new StringMemberValue(region, constPool));
+        return annotation;
+    }
+
+    protected int getInt(String key, int defaultValue) {
+        return configuration != null ? configuration.getInt(key, defaultValue) : defaultValue;
+    }
+
     protected void setupMultiTenantConnection(ConnectionProvider connectionProvider, Map<String, Object> settings) {
         if(connectionProvider instanceof JndiConnectionProvider) {
             logger.debug("JNDI connection provider configured. Using default Hibernate strategy based on JNDI (org.hibernate.engine.jdbc.connections.spi.DataSourceBasedMultiTenantConnectionProviderImpl).");
@@ -498,6 +630,16 @@ public class SessionFactoryBuilder {
         annotation.addMemberValue("name", new StringMemberValue(table.getActualEntityName(), constPool));
         classAnnotations.addAnnotation(annotation);
 
+        FetchTuning fetchTuning = getFetchTuning(table);
+        if(fetchTuning != null && fetchTuning.batchSize() > 0 &&
+           table.getAnnotations().stream().noneMatch(a -> BatchSize.class.equals(a.getJavaAnnotationClass()))) {
+            classAnnotations.addAnnotation(makeBatchSizeAnnotation(fetchTuning.batchSize(), constPool));
+        }
+        SecondLevelCache cache = getSecondLevelCache(table);
+        if(secondLevelCacheEnabled && cache != null) {
+            classAnnotations.addAnnotation(makeCacheAnnotation(cache, getCacheRegion(table), constPool));
+        }
+
         table.getAnnotations().forEach(ann -> {
             Class annotationClass = ann.getJavaAnnotationClass();
             if(javax.persistence.Table.class.equals(annotationClass) || Entity.class.equals(annotationClass)) {
@@ -741,6 +883,10 @@ public class SessionFactoryBuilder {
         AnnotationsAttribute fieldAnnotations = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
         Annotation annotation;
         annotation = new Annotation(ManyToOne.class.getName(), constPool);
+        FetchTuning fetchTuning = getFetchTuning(foreignKey.getFromTable());
+        if(fetchTuning != null) {
+            annotation.addMemberValue("fetch", makeFetchTypeValue(fetchTuning.manyToOne(), constPool));
+        }
         fieldAnnotations.addAnnotation(annotation);
         List<MemberValue> joinColumnsValue = new ArrayList<>();
         for(Reference reference : foreignKey.getReferences()) {
@@ -809,6 +955,17 @@ public class SessionFactoryBuilder {
         annotation.addMemberValue("targetEntity", new ClassMemberValue(referencedClassName, constPool));
         annotation.addMemberValue("mappedBy", new StringMemberValue(foreignKey.getActualOnePropertyName(), constPool));
         //TODO cascade?
+        FetchTuning fetchTuning = getFetchTuning(foreignKey.getToTable());
+        if(fetchTuning != null) {
+            annotation.addMemberValue("fetch", makeFetchTypeValue(fetchTuning.oneToMany(), constPool));
+            if(fetchTuning.batchSize() > 0) {
+                fieldAnnotations.addAnnotation(makeBatchSizeAnnotation(fetchTuning.batchSize(), constPool));
+            }
+        }
+        SecondLevelCache cache = getSecondLevelCache(foreignKey.getToTable());
+        if(secondLevelCacheEnabled && cache != null && cache.collections()) {
+            fieldAnnotations.addAnnotation(makeCacheAnnotation(cache, getCacheRegion(foreignKey), constPool));
+        }
 
         finalizeRelationshipProperty(cc, field, annotation, fieldAnnotations);
     }
@@ -824,6 +981,24 @@ public class SessionFactoryBuilder {
         cc.addMethod(CtNewMethod.setter("set" + accessorName, field));
     }
 
+    @Nullable
+    protected FetchTuning getFetchTuning(Table table) {
+        return table.getJavaAnnotation(FetchTuning.class).orElse(null);
+    }
+
+    protected Annotation makeBatchSizeAnnotation(int size, ConstPool constPool) {
+        Annotation annotation = new Annotation(BatchSize.class.getName(), constPool);
+        annotation.addMemberValue("size", new IntegerMemberValue(constPool, size));
+        return annotation;
+    }
+
+    protected EnumMemberValue makeFetchTypeValue(FetchType fetchType, ConstPool constPool) {
+        EnumMemberValue value = new EnumMemberValue(constPool);
+        value.setType(FetchType.class.getName());
+        value.setValue(fetchType.name());
+        return value;
+    }
+
     protected CtClass getMappedClass(Table table) throws NotFoundException {
         return classPool.get(getMappedClassName(table));
     }
@@ -28,11 +28,13 @@ import com.manydesigns.portofino.model.Model;
 import com.manydesigns.portofino.model.database.*;
 import liquibase.CatalogAndSchema;
 import liquibase.database.DatabaseConnection;
+import liquibase.database.AbstractJdbcDatabase;
 import liquibase.database.DatabaseFactory;
 import liquibase.database.jvm.JdbcConnection;
 import liquibase.snapshot.DatabaseSnapshot;
 import liquibase.snapshot.SnapshotControl;
 import liquibase.snapshot.SnapshotGeneratorFactory;
+import liquibase.structure.DatabaseObject;
 import liquibase.structure.core.ForeignKeyConstraintType;
 import liquibase.structure.core.Relation;
 import net.sf.jsqlparser.JSQLParserException;
@@ -47,13 +49,21 @@ import org.apache.commons.beanutils.BeanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
 import java.lang.reflect.Field;
-import java.sql.Connection;
-import java.sql.Types;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 /**
  * @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
@@ -69,6 +79,9 @@ public class DatabaseSyncer {
             LoggerFactory.getLogger(DatabaseSyncer.class);
 
     protected final ConnectionProvider connectionProvider;
+    protected final List<Pattern> tablePatterns = new ArrayList<>();
+    protected boolean keepUnchangedTables;
+    protected int threads = 1;
 
     public DatabaseSyncer(ConnectionProvider connectionProvider) {
         this.connectionProvider = connectionProvider;
@@ -79,82 +92,296 @@ public class DatabaseSyncer {
         Database targetDatabase = new Database();
         targetDatabase.setDatabaseName(databaseName);
 
-        logger.debug("Acquiring connection");
-        try(Connection conn = connectionProvider.acquireConnection()) {
-            logger.debug("Creating Liquibase connection");
-            DatabaseConnection liquibaseConnection = new JdbcConnection(conn);
-
-            logger.debug("Retrieving source database");
-            Database sourceDatabase =
-                    DatabaseLogic.findDatabaseByName(sourceModel, databaseName);
-            if (sourceDatabase == null) {
-                logger.debug("Source database not found. Creating an empty one.");
-                sourceDatabase = new Database();
-            } else {
-                logger.debug("Source database was already configured. Copying true string and false string.");
-                targetDatabase.setTrueString(sourceDatabase.getTrueString());
-                targetDatabase.setFalseString(sourceDatabase.getFalseString());
-                targetDatabase.setEntityMode(sourceDatabase.getEntityMode());
-            }
-
-            logger.debug("Reading schema names from metadata");
-            List<Schema> schemas = connectionProvider.getDatabase().getSchemas();
-
-            SnapshotGeneratorFactory dsgf = SnapshotGeneratorFactory.getInstance();
-
-            logger.debug("Finding Liquibase database");
-            DatabaseFactory databaseFactory = DatabaseFactory.getInstance();
-            liquibase.database.Database liquibaseDatabase =
-                    databaseFactory.findCorrectDatabaseImplementation(liquibaseConnection);
+        logger.debug("Retrieving source database");
+        Database sourceDatabase =
+                DatabaseLogic.findDatabaseByName(sourceModel, databaseName);
+        if (sourceDatabase == null) {
+            logger.debug("Source database not found. Creating an empty one.");
+            sourceDatabase = new Database();
+        } else {
+            logger.debug("Source database was already configured. Copying true string and false string.");
+            targetDatabase.setTrueString(sourceDatabase.getTrueString());
+            targetDatabase.setFalseString(sourceDatabase.getFalseString());
+            targetDatabase.setEntityMode(sourceDatabase.getEntityMode());
+        }
 
-            for (Schema schema : schemas) {
-                String schemaName = schema.getSchemaName();
-                String actualSchemaName = schema.getActualSchemaName();
-                logger.info("Processing schema: {}", actualSchemaName);
-                Schema sourceSchema = DatabaseLogic.findSchemaByNameIgnoreCase(sourceDatabase, schemaName);
-                if (sourceSchema == null) {
-                    logger.debug("Source schema not found. Creating an empty one.");
-                    sourceSchema = new Schema();
-                    sourceSchema.setSchemaName(schemaName);
-                    sourceSchema.setActualSchemaName(actualSchemaName);
-                    sourceSchema.setCatalog(schema.getCatalog());
-                    sourceSchema.setDatabase(sourceDatabase);
-                }
+        logger.debug("Reading schema names from metadata");
+        List<Schema> schemas = connectionProvider.getDatabase().getSchemas();
+        List<Schema> sourceSchemas = new ArrayList<>();
+        for (Schema schema : schemas) {
+            String schemaName = schema.getSchemaName();
+            Schema sourceSchema = DatabaseLogic.findSchemaByNameIgnoreCase(sourceDatabase, schemaName);
+            if (sourceSchema == null) {
+                logger.debug("Source schema not found. Creating an empty one.");
+                sourceSchema = new Schema();
+                sourceSchema.setSchemaName(schemaName);
+                sourceSchema.setActualSchemaName(schema.getActualSchemaName());
+                sourceSchema.setCatalog(schema.getCatalog());
+                sourceSchema.setDatabase(sourceDatabase);
+            }
+            sourceSchemas.add(sourceSchema);
+        }
 
-                logger.debug("Creating Liquibase database snapshot");
-                String catalog = null;
-                if(sourceSchema.getCatalog() != null) {
-                    catalog = sourceSchema.getCatalog();
+        //Snapshots are taken concurrently, each on its own connection; the model is then built one schema at a time
+        int poolSize = Math.max(1, Math.min(threads, sourceSchemas.size()));
+        logger.debug("Taking snapshots of {} schemas using {} threads", sourceSchemas.size(), poolSize);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            List<Future<SchemaSnapshot>> snapshots = new ArrayList<>();
+            for (Schema sourceSchema : sourceSchemas) {
+                snapshots.add(executor.submit(() -> takeSnapshot(sourceSchema)));
+            }
+            for (int i = 0; i < sourceSchemas.size(); i++) {
+                Schema sourceSchema = sourceSchemas.get(i);
+                SchemaSnapshot snapshot;
+                try {
+                    snapshot = snapshots.get(i).get();
+                } catch (ExecutionException e) {
+                    if(e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
                 }
-                SnapshotControl snapshotControl = new SnapshotControl(liquibaseDatabase);
-                DatabaseSnapshot snapshot =
-                        dsgf.createSnapshot(new CatalogAndSchema(catalog, actualSchemaName), liquibaseDatabase, snapshotControl);
 
                 logger.debug("Synchronizing schema");
                 Schema targetSchema = new Schema();
                 targetSchema.setDatabase(targetDatabase);
-                targetSchema.setCatalog(catalog);
+                targetSchema.setCatalog(sourceSchema.getCatalog());
                 targetSchema.setSchemaName(sourceSchema.getSchemaName());
                 targetSchema.setActualSchemaName(sourceSchema.getActualSchemaName());
                 targetDatabase.getSchemas().add(targetSchema);
                 syncSchema(snapshot, sourceSchema, targetSchema);
             }
+        } finally {
+            executor.shutdownNow();
         }
         targetDatabase.setConnectionProvider(connectionProvider);
         connectionProvider.setDatabase(targetDatabase);
         return targetDatabase;
     }
 
+    /**
+     * Reads the structure of a schema from the database. When the synchronization is incremental, only the tables
+     * that match the {@link #setTablePatterns(Collection) patterns} and, if {@link #setKeepUnchangedTables(boolean)
+     * requested}, whose columns differ from the model are read; the others are kept from the source schema.
+     */
+    protected SchemaSnapshot takeSnapshot(Schema sourceSchema) throws Exception {
+        String actualSchemaName = sourceSchema.getActualSchemaName();
+        logger.info("Processing schema: {}", actualSchemaName);
+        long start = System.currentTimeMillis();
+        logger.debug("Acquiring connection");
+        try(Connection conn = connectionProvider.acquireConnection()) {
+            logger.debug("Creating Liquibase connection");
+            DatabaseConnection liquibaseConnection = new JdbcConnection(conn);
+
+            logger.debug("Finding Liquibase database");
+            DatabaseFactory databaseFactory = DatabaseFactory.getInstance();
+            liquibase.database.Database liquibaseDatabase =
+                    databaseFactory.findCorrectDatabaseImplementation(liquibaseConnection);
+            SnapshotGeneratorFactory dsgf = SnapshotGeneratorFactory.getInstance();
+            SnapshotControl snapshotControl = new SnapshotControl(liquibaseDatabase);
+            CatalogAndSchema catalogAndSchema = new CatalogAndSchema(sourceSchema.getCatalog(), actualSchemaName);
+
+            if(!isIncremental()) {
+                logger.debug("Creating Liquibase database snapshot");
+                DatabaseSnapshot snapshot = dsgf.createSnapshot(catalogAndSchema, liquibaseDatabase, snapshotControl);
+                logger.info("Snapshot of schema {} taken in {}ms", actualSchemaName, System.currentTimeMillis() - start);
+                return new SchemaSnapshot(snapshot, Collections.emptyList());
+            }
+
+            catalogAndSchema = catalogAndSchema.customize(liquibaseDatabase);
+            String jdbcCatalog = catalogAndSchema.getCatalogName();
+            String jdbcSchema = catalogAndSchema.getSchemaName();
+            if(liquibaseDatabase instanceof AbstractJdbcDatabase) {
+                jdbcCatalog = ((AbstractJdbcDatabase) liquibaseDatabase).getJdbcCatalogName(catalogAndSchema);
+                jdbcSchema = ((AbstractJdbcDatabase) liquibaseDatabase).getJdbcSchemaName(catalogAndSchema);
+            }
+            DatabaseMetaData metaData = conn.getMetaData();
+            Map<String, Map<String, String[]>> columns = keepUnchangedTables ?
+                    readColumns(metaData, jdbcCatalog, jdbcSchema) :
+                    Collections.emptyMap();
+            List<DatabaseObject> examples = new ArrayList<>();
+            List<Table> keptTables = new ArrayList<>();
+            try(ResultSet rs = metaData.getTables(jdbcCatalog, jdbcSchema, null, new String[] { "TABLE", "VIEW" })) {
+                while (rs.next()) {
+                    String tableName = rs.getString("TABLE_NAME");
+                    Table sourceTable = DatabaseLogic.findTableByNameIgnoreCase(sourceSchema, tableName);
+                    if (!matchesTablePatterns(actualSchemaName, tableName)) {
+                        if (sourceTable != null) {
+                            keptTables.add(sourceTable);
+                        }
+                    } else if (sourceTable != null && keepUnchangedTables &&
+                               isUnchanged(sourceTable, columns.get(tableName)) &&
+                               hasSameForeignKeys(sourceTable, metaData, jdbcCatalog, jdbcSchema, tableName)) {
+                        logger.debug("Table {} has not changed, keeping it", tableName);
+                        keptTables.add(sourceTable);
+                    } else if ("VIEW".equalsIgnoreCase(rs.getString("TABLE_TYPE"))) {
+                        examples.add(new liquibase.structure.core.View(
+                                catalogAndSchema.getCatalogName(), catalogAndSchema.getSchemaName(), tableName));
+                    } else {
+                        examples.add(new liquibase.structure.core.Table(
+                                catalogAndSchema.getCatalogName(), catalogAndSchema.getSchemaName(), tableName));
+                    }
+                }
+            }
+
+            DatabaseSnapshot snapshot = null;
+            if (!examples.isEmpty()) {
+                logger.debug("Creating Liquibase snapshot of {} tables", examples.size());
+                snapshot = dsgf.createSnapshot(
+                        examples.toArray(new DatabaseObject[0]), liquibaseDatabase, snapshotControl);
+            }
+            logger.info("Snapshot of {} tables of schema {} taken in {}ms, {} tables kept from the model",
+                    examples.size(), actualSchemaName, System.currentTimeMillis() - start, keptTables.size());
+            return new SchemaSnapshot(snapshot, keptTables);
+        }
+    }
+
+    protected boolean isIncremental() {
+        return keepUnchangedTables || !tablePatterns.isEmpty();
+    }
+
+    protected boolean matchesTablePatterns(String schemaName, String tableName) {
+        if(tablePatterns.isEmpty()) {
+            return true;
+        }
+        String qualifiedName = schemaName + "." + tableName;
+        for(Pattern pattern : tablePatterns) {
+            if(pattern.matcher(tableName).matches() || pattern.matcher(qualifiedName).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the columns of all the tables in a schema with a single metadata query.
+     * @return a map from table name to a map from upper-case column name to its type name, size, decimal digits
+     * and nullability, as returned by {@link DatabaseMetaData#getColumns(String, String, String, String)}.
+     */
+    protected Map<String, Map<String, String[]>> readColumns(DatabaseMetaData metaData, String catalog, String schema)
+            throws SQLException {
+        Map<String, Map<String, String[]>> tables = new HashMap<>();
+        try(ResultSet rs = metaData.getColumns(catalog, schema, null, null)) {
+            while (rs.next()) {
+                tables.computeIfAbsent(rs.getString("TABLE_NAME"), k -> new HashMap<>()).put(
+                        rs.getString("COLUMN_NAME").toUpperCase(),
+                        new String[] {
+                                rs.getString("TYPE_NAME"), rs.getString("COLUMN_SIZE"),
+                                rs.getString("DECIMAL_DIGITS"), rs.getString("NULLABLE") });
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Compares the columns of a table in the model with the ones read from the database metadata. Foreign keys are
+     * compared separately by {@link #hasSameForeignKeys(Table, DatabaseMetaData, String, String, String)}.
+     */
+    protected boolean isUnchanged(Table sourceTable, Map<String, String[]> columns) {
+        if(columns == null || columns.size() != sourceTable.getColumns().size()) {
+            return false;
+        }
+        for(Column column : sourceTable.getColumns()) {
+            String[] metadata = columns.get(column.getColumnName().toUpperCase());
+            if(metadata == null || column.getColumnType() == null || !column.getColumnType().equalsIgnoreCase(metadata[0])) {
+                return false;
+            }
+            if(column.getLength() != null && !column.getLength().toString().equals(metadata[1])) {
+                return false;
+            }
+            if(column.getScale() != null && !column.getScale().toString().equals(metadata[2])) {
+                return false;
+            }
+            int nullable = column.isNullable() ? DatabaseMetaData.columnNullable : DatabaseMetaData.columnNoNulls;
+            if(!String.valueOf(nullable).equals(metadata[3]) &&
+               !String.valueOf(DatabaseMetaData.columnNullableUnknown).equals(metadata[3])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the foreign keys of a table in the model with the ones read from the database metadata. It's only
+     * called for tables whose columns are unchanged, so it costs one metadata query per such table.
+     */
+    protected boolean hasSameForeignKeys(
+            Table sourceTable, DatabaseMetaData metaData, String catalog, String schema, String tableName)
+            throws SQLException {
+        Set<String> foreignKeys = new HashSet<>();
+        try(ResultSet rs = metaData.getImportedKeys(catalog, schema, tableName)) {
+            while (rs.next()) {
+                foreignKeys.add(describeReference(
+                        rs.getString("FK_NAME"), rs.getString("FKCOLUMN_NAME"),
+                        rs.getString("PKTABLE_NAME"), rs.getString("PKCOLUMN_NAME")));
+            }
+        }
+        Set<String> sourceForeignKeys = new HashSet<>();
+        for(ForeignKey foreignKey : sourceTable.getForeignKeys()) {
+            for(Reference reference : foreignKey.getReferences()) {
+                sourceForeignKeys.add(describeReference(
+                        foreignKey.getName(), reference.getFromColumn(),
+                        foreignKey.getToTableName(), reference.getToColumn()));
+            }
+        }
+        return foreignKeys.equals(sourceForeignKeys);
+    }
+
+    protected String describeReference(String fkName, String fromColumn, String toTable, String toColumn) {
+        return (fkName + ":" + fromColumn + "->" + toTable + "." + toColumn).toUpperCase();
+    }
+
     public Schema syncSchema(DatabaseSnapshot databaseSnapshot, Schema sourceSchema, Schema targetSchema) {
+        return syncSchema(new SchemaSnapshot(databaseSnapshot, Collections.emptyList()), sourceSchema, targetSchema);
+    }
+
+    public Schema syncSchema(SchemaSnapshot snapshot, Schema sourceSchema, Schema targetSchema) {
         logger.info("Synchronizing schema: {}", sourceSchema.getActualSchemaName());
         copyAnnotations(sourceSchema, targetSchema);
-        syncTables(databaseSnapshot, sourceSchema, targetSchema);
-        syncViews(databaseSnapshot, sourceSchema, targetSchema);
-        syncPrimaryKeys(databaseSnapshot, sourceSchema, targetSchema);
-        syncForeignKeys(databaseSnapshot, sourceSchema, targetSchema);
+        keepTables(snapshot.keptTables, targetSchema);
+        DatabaseSnapshot databaseSnapshot = snapshot.databaseSnapshot;
+        if(databaseSnapshot != null) {
+            syncTables(databaseSnapshot, sourceSchema, targetSchema);
+            syncViews(databaseSnapshot, sourceSchema, targetSchema);
+            syncPrimaryKeys(databaseSnapshot, sourceSchema, targetSchema);
+            syncForeignKeys(databaseSnapshot, sourceSchema, targetSchema);
+        }
         return targetSchema;
     }
 
+    /**
+     * Adds the tables kept from the source model to the target schema. The tables are copied, so that the source
+     * model is left untouched if the synchronization fails or is discarded.
+     */
+    protected void keepTables(List<Table> tables, Schema targetSchema) {
+        if(tables.isEmpty()) {
+            return;
+        }
+        try {
+            JAXBContext jaxbContext = JAXBContext.newInstance(Model.class, View.class);
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            for(Table table : tables) {
+                targetSchema.getTables().add(copyTable(table, targetSchema, marshaller, unmarshaller));
+            }
+        } catch (JAXBException e) {
+            throw new RuntimeException("Couldn't copy the tables kept from the model", e);
+        }
+    }
+
+    /**
+     * Copies a table by round-tripping it through the XML serialization of the model.
+     */
+    protected Table copyTable(Table table, Schema targetSchema, Marshaller marshaller, Unmarshaller unmarshaller)
+            throws JAXBException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        marshaller.marshal(table, buffer);
+        Table copy = (Table) unmarshaller.unmarshal(new ByteArrayInputStream(buffer.toByteArray()));
+        copy.afterUnmarshal(unmarshaller, targetSchema);
+        return copy;
+    }
+
     protected void syncForeignKeys(DatabaseSnapshot databaseSnapshot, Schema sourceSchema, Schema targetSchema) {
         logger.info("Synchronizing foreign keys");
         for(liquibase.structure.core.ForeignKey liquibaseFK : databaseSnapshot.get(liquibase.structure.core.ForeignKey.class)) {
@@ -170,6 +397,11 @@ public class DatabaseSyncer {
                 continue;
             }
 
+            if (DatabaseLogic.findForeignKeyByNameIgnoreCase(targetFromTable, fkName) != null) {
+                logger.debug("Foreign key {} was kept from the model, skipping it", fkName);
+                continue;
+            }
+
             ForeignKey targetFK = new ForeignKey(targetFromTable);
             targetFK.setName(fkName);
 
@@ -179,7 +411,12 @@ public class DatabaseSyncer {
             targetFK.setToDatabase(targetSchema.getDatabaseName());
 
             String pkSchemaName = liquibasePkTable.getSchema().getName();
-            String pkTableName = normalizeTableName(liquibasePkTable, databaseSnapshot);
+            String pkTableName = databaseSnapshot.get(liquibasePkTable) == null ?
+                    findKeptTableName(targetSchema.getDatabase(), pkSchemaName, liquibasePkTable.getName()) :
+                    null;
+            if (pkTableName == null) {
+                pkTableName = normalizeTableName(liquibasePkTable, databaseSnapshot);
+            }
             String logicalSchemaName = pkSchemaName;
             for(Schema schema : sourceSchema.getDatabase().getSchemas()) {
                 if(schema.getActualSchemaName().equals(pkSchemaName)) {
@@ -304,6 +541,20 @@ public class DatabaseSyncer {
         }
     }
 
+    /**
+     * Finds a table that has been kept from the model rather than read in the current snapshot.
+     * @return the name of the table, or null if no such table exists.
+     */
+    protected String findKeptTableName(Database targetDatabase, String actualSchemaName, String tableName) {
+        for(Schema schema : targetDatabase.getSchemas()) {
+            if(schema.getActualSchemaName().equalsIgnoreCase(actualSchemaName)) {
+                Table table = DatabaseLogic.findTableByNameIgnoreCase(schema, tableName);
+                return table != null ? table.getTableName() : null;
+            }
+        }
+        return null;
+    }
+
     protected String normalizeTableName(liquibase.structure.core.Table table, DatabaseSnapshot databaseSnapshot) {
         //Work around MySQL & case-insensitive dbs
         liquibase.structure.core.Table fkTable = databaseSnapshot.get(table);
@@ -337,6 +588,10 @@ public class DatabaseSyncer {
                 logger.error("Could not find table: {}. Skipping PK.", pkTableName);
                 continue;
             }
+            if (targetTable.getPrimaryKey() != null) {
+                logger.debug("Primary key of table {} was kept from the model, skipping it", pkTableName);
+                continue;
+            }
 
             PrimaryKey targetPK = new PrimaryKey(targetTable);
             String primaryKeyName = liquibasePK.getName();
@@ -412,6 +667,10 @@ public class DatabaseSyncer {
         logger.info("Synchronizing tables");
         for (liquibase.structure.core.Table liquibaseTable : databaseSnapshot.get(liquibase.structure.core.Table.class)) {
             String tableName = liquibaseTable.getName();
+            if(DatabaseLogic.findTableByNameIgnoreCase(targetSchema, tableName) != null) {
+                logger.debug("Table {} was kept from the model, skipping it", tableName);
+                continue;
+            }
             logger.info("Processing table: {}", tableName);
             Table sourceTable = DatabaseLogic.findTableByNameIgnoreCase(sourceSchema, tableName);
             if(sourceTable == null) {
@@ -439,6 +698,10 @@ public class DatabaseSyncer {
         logger.info("Synchronizing views");
         for (liquibase.structure.core.View liquibaseView : databaseSnapshot.get(liquibase.structure.core.View.class)) {
             String viewName = liquibaseView.getName();
+            if(DatabaseLogic.findTableByNameIgnoreCase(targetSchema, viewName) != null) {
+                logger.debug("View {} was kept from the model, skipping it", viewName);
+                continue;
+            }
             logger.info("Processing view: {}", viewName);
             Table sourceTable = DatabaseLogic.findTableByNameIgnoreCase(sourceSchema, viewName);
             if(sourceTable == null) {
@@ -649,4 +912,61 @@ public class DatabaseSyncer {
         }
     }
 
+    //**************************************************************************
+    // Getters/setters
+    //**************************************************************************
+
+    public List<Pattern> getTablePatterns() {
+        return tablePatterns;
+    }
+
+    /**
+     * Restricts the synchronization to the tables whose name, or qualified name (schema.table), matches one of the
+     * given regular expressions, ignoring case. The other tables are kept as they are in the model.
+     */
+    public void setTablePatterns(Collection<String> patterns) {
+        tablePatterns.clear();
+        for(String pattern : patterns) {
+            tablePatterns.add(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE));
+        }
+    }
+
+    public boolean isKeepUnchangedTables() {
+        return keepUnchangedTables;
+    }
+
+    /**
+     * If true, tables whose columns match the ones in the model are kept without reading their metadata again.
+     */
+    public void setKeepUnchangedTables(boolean keepUnchangedTables) {
+        this.keepUnchangedTables = keepUnchangedTables;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * The maximum number of schemas whose snapshot is taken concurrently, each using a separate connection.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public static class SchemaSnapshot {
+        /**
+         * The snapshot of the tables to synchronize, or null if none needs to be read from the database.
+         */
+        public final DatabaseSnapshot databaseSnapshot;
+        /**
+         * The tables of the source schema that are kept as they are.
+         */
+        public final List<Table> keptTables;
+
+        public SchemaSnapshot(DatabaseSnapshot databaseSnapshot, List<Table> keptTables) {
+            this.databaseSnapshot = databaseSnapshot;
+            this.keptTables = keptTables;
+        }
+    }
+
 }
@@ -0,0 +1,131 @@
+package com.manydesigns.portofino.database;
+
+import com.manydesigns.elements.ElementsThreadLocals;
+import com.manydesigns.portofino.config.ConfigurationSource;
+import com.manydesigns.portofino.database.platforms.H2DatabasePlatform;
+import com.manydesigns.portofino.model.database.platforms.DatabasePlatformsRegistry;
+import com.manydesigns.portofino.persistence.Persistence;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.testng.Assert.*;
+
+@Test
+public class LiquibaseChecksumTest {
+
+    File directory;
+    String url;
+    File changelog;
+    Configuration configuration;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        ElementsThreadLocals.setupDefaultElementsContext();
+        directory = Files.createTempDirectory("portofino-liquibase").toFile();
+        //Not in memory, as the H2 platform shuts the database down when persistence is stopped
+        url = "jdbc:h2:" + new File(directory, "db").getAbsolutePath();
+        File databaseDir = new File(directory, "portofino-model/liquibasetest");
+        FileUtils.write(new File(databaseDir, "database.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<database databaseName=\"liquibasetest\">\n" +
+                "    <jdbcConnection driver=\"org.h2.Driver\" url=\"" + url + "\" username=\"sa\" password=\"\"/>\n" +
+                "    <schemas><schema schemaName=\"PUBLIC\" /></schemas>\n" +
+                "</database>", StandardCharsets.UTF_8);
+        changelog = new File(databaseDir, "PUBLIC/" + Persistence.changelogFileNameTemplate);
+        writeChangelog("t1");
+        configuration = new PropertiesConfiguration();
+        configuration.setProperty(Persistence.LIQUIBASE_CHECKSUMS, "checksums");
+    }
+
+    @AfterMethod
+    public void teardown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+        ElementsThreadLocals.removeElementsContext();
+    }
+
+    public void testUnchangedChangelogIsSkipped() throws Exception {
+        start();
+        assertTrue(tableExists("T1"));
+        assertTrue(new File(directory, "checksums/liquibasetest/PUBLIC.checksum").isFile());
+
+        //If Liquibase ran again, it would recreate the table
+        execute("drop table t1");
+        execute("delete from databasechangelog");
+        start();
+        assertFalse(tableExists("T1"));
+
+        //A new change set invalidates the checksum
+        writeChangelog("t1", "t2");
+        start();
+        assertTrue(tableExists("T1"));
+        assertTrue(tableExists("T2"));
+    }
+
+    public void testWithoutChecksums() throws Exception {
+        configuration.clearProperty(Persistence.LIQUIBASE_CHECKSUMS);
+        start();
+        assertTrue(tableExists("T1"));
+        assertFalse(new File(directory, "checksums").exists());
+        execute("drop table t1");
+        execute("delete from databasechangelog");
+        start();
+        assertTrue(tableExists("T1"));
+    }
+
+    protected void start() throws Exception {
+        FileObject appDir = VFS.getManager().resolveFile(directory.toURI().toString());
+        DatabasePlatformsRegistry databasePlatformsRegistry = new DatabasePlatformsRegistry(configuration);
+        databasePlatformsRegistry.addDatabasePlatform(new H2DatabasePlatform());
+        Persistence persistence =
+                new Persistence(appDir, new ConfigurationSource(configuration, null), databasePlatformsRegistry);
+        persistence.start();
+        persistence.stop();
+    }
+
+    protected void writeChangelog(String... tables) throws Exception {
+        StringBuilder xml = new StringBuilder(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<databaseChangeLog xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n" +
+                "        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+                "        xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog " +
+                "http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-4.6.xsd\">\n");
+        for(String table : tables) {
+            xml.append("    <changeSet id=\"").append(table).append("\" author=\"test\">\n")
+               .append("        <createTable tableName=\"").append(table).append("\">\n")
+               .append("            <column name=\"id\" type=\"int\"/>\n")
+               .append("        </createTable>\n")
+               .append("    </changeSet>\n");
+        }
+        xml.append("</databaseChangeLog>\n");
+        FileUtils.write(changelog, xml, StandardCharsets.UTF_8);
+    }
+
+    protected void execute(String sql) throws SQLException {
+        try(Connection connection = DriverManager.getConnection(url, "sa", "");
+            Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    protected boolean tableExists(String table) throws SQLException {
+        try(Connection connection = DriverManager.getConnection(url, "sa", "");
+            ResultSet tables = connection.getMetaData().getTables(null, "PUBLIC", table, null)) {
+            return tables.next();
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package com.manydesigns.portofino.database;
 
+import com.manydesigns.portofino.cache.CacheResetEvent;
+import com.manydesigns.portofino.model.Annotation;
 import com.manydesigns.portofino.model.database.DatabaseLogic;
+import com.manydesigns.portofino.model.database.Table;
 import com.manydesigns.portofino.modules.DatabaseModule;
+import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
+import com.manydesigns.portofino.persistence.QueryUtils;
+import com.manydesigns.portofino.persistence.hibernate.FetchTuning;
+import com.manydesigns.portofino.persistence.hibernate.SecondLevelCache;
 import com.manydesigns.portofino.persistence.hibernate.SessionFactoryBuilder;
 import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.Map;
 
-import static org.testng.Assert.assertFalse;
-import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.*;
 
 @Test
 public class POJOPersistenceTest extends PersistenceTest {
@@ -43,6 +60,126 @@ public class POJOPersistenceTest extends PersistenceTest {
         assertTrue(jpetstoreDir.exists());
     }
 
+    @Test
+    public void testFetchTuning() throws Exception {
+        Table product = DatabaseLogic.findTableByName(persistence.getModel(), "jpetstore", "PUBLIC", "PRODUCT");
+        Table category = DatabaseLogic.findTableByName(persistence.getModel(), "jpetstore", "PUBLIC", "CATEGORY");
+        //Without the annotation, the JPA defaults apply
+        assertNull(getMappedClass(product).getAnnotation(BatchSize.class));
+        Field manyToOne = getMappedClass(product).getDeclaredField("fk_product_1");
+        assertEquals(manyToOne.getAnnotation(ManyToOne.class).fetch(), FetchType.EAGER);
+        Field oneToMany = getMappedClass(category).getDeclaredField("fk_product_1");
+        assertEquals(oneToMany.getAnnotation(OneToMany.class).fetch(), FetchType.LAZY);
+        assertNull(oneToMany.getAnnotation(BatchSize.class));
+
+        Annotation annotation = new Annotation(product, FetchTuning.class);
+        annotation.setProperty("batchSize", "7");
+        annotation.setProperty("manyToOne", "LAZY");
+        product.getAnnotations().add(annotation);
+        annotation = new Annotation(category, FetchTuning.class);
+        annotation.setProperty("batchSize", "5");
+        annotation.setProperty("oneToMany", "EAGER");
+        category.getAnnotations().add(annotation);
+        persistence.initModel();
+
+        assertEquals(getMappedClass(product).getAnnotation(BatchSize.class).size(), 7);
+        manyToOne = getMappedClass(product).getDeclaredField("fk_product_1");
+        assertEquals(manyToOne.getAnnotation(ManyToOne.class).fetch(), FetchType.LAZY);
+        oneToMany = getMappedClass(category).getDeclaredField("fk_product_1");
+        assertEquals(oneToMany.getAnnotation(OneToMany.class).fetch(), FetchType.EAGER);
+        assertEquals(oneToMany.getAnnotation(BatchSize.class).size(), 5);
+
+        Session session = persistence.getSession("jpetstore");
+        Object parrot = session.createQuery("from " + getEntityName(product) + " where productid = :id")
+                .setParameter("id", "AV-CB-01")
+                .uniqueResult();
+        assertFalse(Hibernate.isInitialized(get(parrot, "fk_product_1")));
+        Object fish = session.createQuery("from " + getEntityName(category) + " where catid = :id")
+                .setParameter("id", "FISH")
+                .uniqueResult();
+        assertTrue(Hibernate.isInitialized(get(fish, "fk_product_1")));
+    }
+
+    @Test
+    public void testJdbcTuning() {
+        SessionFactoryImplementor sessionFactory =
+                (SessionFactoryImplementor) persistence.getDatabaseSetup("jpetstore").getSessionFactory();
+        SessionFactoryOptions options = sessionFactory.getSessionFactoryOptions();
+        //Hibernate's defaults are unchanged unless configured
+        String dialectBatchSize = sessionFactory.getJdbcServices().getDialect().getDefaultProperties()
+                .getProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "0");
+        assertEquals(options.getJdbcBatchSize(), Integer.parseInt(dialectBatchSize));
+        assertFalse(options.isOrderInsertsEnabled());
+        assertFalse(options.isOrderUpdatesEnabled());
+        assertNull(options.getJdbcFetchSize());
+        assertEquals(options.getDefaultBatchFetchSize(), -1);
+
+        Configuration configuration = databaseModule.configuration.getProperties();
+        configuration.setProperty(DatabaseModule.JDBC_BATCH_SIZE, 50);
+        configuration.setProperty(DatabaseModule.JDBC_FETCH_SIZE, 100);
+        configuration.setProperty(DatabaseModule.BATCH_FETCH_SIZE, 8);
+        persistence.initModel();
+
+        options = persistence.getDatabaseSetup("jpetstore").getSessionFactory().getSessionFactoryOptions();
+        assertEquals(options.getJdbcBatchSize(), 50);
+        assertTrue(options.isOrderInsertsEnabled());
+        assertTrue(options.isOrderUpdatesEnabled());
+        assertEquals(options.getJdbcFetchSize(), Integer.valueOf(100));
+        assertEquals(options.getDefaultBatchFetchSize(), 8);
+
+        configuration.setProperty(DatabaseModule.JDBC_ORDER_STATEMENTS, false);
+        persistence.initModel();
+
+        options = persistence.getDatabaseSetup("jpetstore").getSessionFactory().getSessionFactoryOptions();
+        assertEquals(options.getJdbcBatchSize(), 50);
+        assertFalse(options.isOrderInsertsEnabled());
+        assertFalse(options.isOrderUpdatesEnabled());
+    }
+
+    @Test
+    public void testSecondLevelCache() {
+        Table category = DatabaseLogic.findTableByName(persistence.getModel(), "jpetstore", "PUBLIC", "CATEGORY");
+        assertFalse(QueryUtils.isCacheable(category));
+        Annotation annotation = new Annotation(category, SecondLevelCache.class);
+        annotation.setProperty("queries", "true");
+        category.getAnnotations().add(annotation);
+        persistence.initModel();
+        assertTrue(QueryUtils.isCacheable(category));
+
+        SessionFactory sessionFactory = persistence.getDatabaseSetup("jpetstore").getSessionFactory();
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        Session session = persistence.getSession("jpetstore");
+        assertNotNull(session.get(getEntityName(category), "FISH"));
+        persistence.closeSessions();
+        assertTrue(sessionFactory.getCache().containsEntity(getEntityName(category), "FISH"));
+        assertEquals(statistics.getSecondLevelCacheHitCount(), 0);
+
+        //Another session finds the row in the cache
+        session = persistence.getSession("jpetstore");
+        assertNotNull(session.get(getEntityName(category), "FISH"));
+        persistence.closeSessions();
+        assertEquals(statistics.getSecondLevelCacheHitCount(), 1);
+
+        //Resetting the caches evicts it
+        persistence.cacheResetListenerRegistry.fireReset(new CacheResetEvent(this));
+        assertFalse(sessionFactory.getCache().containsEntity(getEntityName(category), "FISH"));
+        session = persistence.getSession("jpetstore");
+        assertNotNull(session.get(getEntityName(category), "FISH"));
+        persistence.closeSessions();
+        assertEquals(statistics.getSecondLevelCacheHitCount(), 1);
+    }
+
+    protected String getEntityName(Table table) {
+        return SessionFactoryBuilder.getMappedClassName(table, EntityMode.POJO);
+    }
+
+    protected Class<?> getMappedClass(Table table) throws Exception {
+        String databaseName = table.getDatabaseName();
+        String className = SessionFactoryBuilder.getMappedClassName(table, EntityMode.POJO);
+        return persistence.getDatabaseSetup(databaseName).getCodeBase().loadClass(className);
+    }
+
     @Override
     protected Serializable makeEntity(String className, Map<String, Object> data) {
         Object entity;
@@ -36,6 +36,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.*;
 
@@ -591,6 +592,58 @@ public class PersistenceTest {
         persistence.getSession("hibernatetest").createQuery("from test_spaces").list();
     }
 
+    public void testSyncSelectedTables() throws Exception {
+        Table comune = DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "COMUNE");
+        Table domanda = DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "DOMANDA");
+        assertNotNull(comune);
+        assertNotNull(domanda);
+        persistence.syncDataModel("hibernatetest", Collections.singletonList("domanda"));
+        persistence.initModel();
+        Table keptComune =
+                DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "COMUNE");
+        assertNotNull(keptComune);
+        assertEquals(comune.getColumns().size(), keptComune.getColumns().size());
+        for(Column column : comune.getColumns()) {
+            assertNotNull(DatabaseLogic.findColumnByName(keptComune, column.getColumnName()));
+        }
+        assertEquals(comune.getForeignKeys().size(), keptComune.getForeignKeys().size());
+        Table syncedDomanda =
+                DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "DOMANDA");
+        assertNotNull(syncedDomanda);
+        assertNotSame(domanda, syncedDomanda);
+        //Foreign keys to tables kept from the model are preserved
+        assertEquals(domanda.getForeignKeys().size(), syncedDomanda.getForeignKeys().size());
+        assertEquals(2, persistence.getSession("hibernatetest").createQuery("from domanda").list().size());
+    }
+
+    public void testSyncKeepsUnchangedTables() throws Exception {
+        databaseModule.configuration.getProperties().setProperty(DatabaseModule.SYNC_KEEP_UNCHANGED_TABLES, true);
+        Table domanda = DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "DOMANDA");
+        Table table3 = DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "TABLE3");
+        int foreignKeys = table3.getForeignKeys().size();
+        //Rules are read again from the database, so they survive only if the table is kept from the model
+        ForeignKey domandaFK = DatabaseLogic.findForeignKeyByNameIgnoreCase(domanda, "domanda_comune_fkey");
+        domandaFK.setOnDelete("importedKeyCascade");
+        //Only a foreign key changes, the columns stay the same
+        Session session = persistence.getSession("hibernatetest");
+        session.doWork(connection -> {
+            try(Statement statement = connection.createStatement()) {
+                statement.execute("alter table table3 drop constraint table3_tb4_id_fkey");
+            }
+        });
+        session.getTransaction().commit();
+        persistence.closeSessions();
+        persistence.syncDataModel("hibernatetest");
+        persistence.initModel();
+        domanda = DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "DOMANDA");
+        domandaFK = DatabaseLogic.findForeignKeyByNameIgnoreCase(domanda, "domanda_comune_fkey");
+        assertEquals("importedKeyCascade", domandaFK.getOnDelete());
+        //The foreign key that no longer exists is detected and the table is read again
+        table3 = DatabaseLogic.findTableByName(persistence.getModel(), "hibernatetest", "PUBLIC", "TABLE3");
+        assertEquals(foreignKeys - 1, table3.getForeignKeys().size());
+        assertNull(DatabaseLogic.findForeignKeyByNameIgnoreCase(table3, "table3_tb4_id_fkey"));
+    }
+
     public void testSaveModel() throws Exception {
         persistence.stop();
         FileObject modelSource = VFS.getManager().resolveFile("res:com/manydesigns/portofino/database/model");
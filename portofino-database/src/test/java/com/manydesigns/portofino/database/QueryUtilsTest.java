@@ -1,15 +1,22 @@
 package com.manydesigns.portofino.database;
 
+import com.manydesigns.elements.reflection.PropertyAccessor;
 import com.manydesigns.elements.text.QueryStringWithParameters;
 import com.manydesigns.portofino.model.Model;
+import com.manydesigns.portofino.database.platforms.H2DatabasePlatform;
 import com.manydesigns.portofino.model.database.*;
 import com.manydesigns.portofino.persistence.QueryUtils;
 import com.manydesigns.portofino.persistence.TableCriteria;
+import com.manydesigns.portofino.persistence.hibernate.FullTextSearchFunction;
 import com.manydesigns.portofino.reflection.TableAccessor;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
 
 @Test
 public class QueryUtilsTest {
@@ -101,4 +108,90 @@ public class QueryUtilsTest {
         assertEquals("SELECT t, u FROM test_table t, other x WHERE (t.foo = x.bar) AND t.column1 = :p1", queryStringWithParameters.getQueryString());
     }
 
+    public void testProjectionQuery() throws NoSuchFieldException {
+        Model model = new Model();
+        Database database = new Database();
+        database.setDatabaseName("db");
+        model.getDatabases().add(database);
+        Schema schema = new Schema(database);
+        schema.setSchemaName("schema");
+        database.getSchemas().add(schema);
+        Table table = new Table(schema);
+        table.setTableName("test_table");
+        schema.getTables().add(table);
+        for(String columnName : new String[] { "id", "name", "description" }) {
+            Column column = new Column(table);
+            column.setColumnName(columnName);
+            column.setColumnType("varchar");
+            column.setLength(10);
+            column.setScale(0);
+            table.getColumns().add(column);
+        }
+        PrimaryKey primaryKey = new PrimaryKey(table);
+        PrimaryKeyColumn pkColumn = new PrimaryKeyColumn(primaryKey);
+        primaryKey.getPrimaryKeyColumns().add(pkColumn);
+        pkColumn.setColumnName("id");
+        table.setPrimaryKey(primaryKey);
+        model.init(new PropertiesConfiguration());
+
+        TableAccessor tableAccessor = new TableAccessor(table);
+        TableCriteria criteria = new TableCriteria(table);
+        criteria.eq(tableAccessor.getProperty("name"), "x");
+        List<PropertyAccessor> properties = Arrays.asList(tableAccessor.getProperty("id"), tableAccessor.getProperty("name"));
+
+        QueryStringWithParameters query = QueryUtils.getProjectionQuery(
+                QueryUtils.mergeQuery("from test_table t", criteria, null), "test_table", properties);
+        assertEquals("SELECT t.id, t.name FROM test_table t WHERE t.name = :p1", query.getQueryString());
+        assertEquals(1, query.getParameters().length);
+
+        query = QueryUtils.getProjectionQuery(
+                QueryUtils.mergeQuery("select t from test_table t", criteria, null), "test_table", properties);
+        assertEquals("SELECT t.id, t.name FROM test_table t WHERE t.name = :p1", query.getQueryString());
+
+        query = QueryUtils.getProjectionQuery(
+                QueryUtils.mergeQuery("from test_table", criteria, null), "test_table", properties);
+        assertEquals("SELECT id, name FROM test_table WHERE name = :p1", query.getQueryString());
+
+        assertNull(QueryUtils.getProjectionQuery(
+                QueryUtils.mergeQuery("select t, u from test_table t, other u", criteria, null),
+                "test_table", properties));
+    }
+
+    public void testFullTextSearch() throws NoSuchFieldException {
+        Model model = new Model();
+        Database database = new Database();
+        database.setDatabaseName("db");
+        model.getDatabases().add(database);
+        Schema schema = new Schema(database);
+        schema.setSchemaName("schema");
+        database.getSchemas().add(schema);
+        Table table = new Table(schema);
+        table.setTableName("test_table");
+        schema.getTables().add(table);
+        Column column = new Column(table);
+        column.setColumnName("column1");
+        column.setColumnType("varchar");
+        column.setLength(10);
+        column.setScale(0);
+        table.getColumns().add(column);
+        PrimaryKey primaryKey = new PrimaryKey(table);
+        PrimaryKeyColumn pkColumn = new PrimaryKeyColumn(primaryKey);
+        primaryKey.getPrimaryKeyColumns().add(pkColumn);
+        pkColumn.setColumnName("column1");
+        table.setPrimaryKey(primaryKey);
+        model.init(new PropertiesConfiguration());
+
+        TableAccessor tableAccessor = new TableAccessor(table);
+        TableCriteria criteria = new TableCriteria(table);
+        criteria.fullText(tableAccessor.getProperty("column1"), "foo bar");
+        QueryStringWithParameters query = QueryUtils.mergeQuery("from test_table t", criteria, null);
+        assertEquals("FROM test_table t WHERE portofino_full_text(t.column1, :p1) = 1", query.getQueryString());
+        assertEquals(1, query.getParameters().length);
+        assertEquals("foo bar", query.getParameters()[0]);
+
+        //Platforms without full-text search fall back to a case-insensitive substring match
+        FullTextSearchFunction function = new FullTextSearchFunction(new H2DatabasePlatform());
+        assertEquals("(lower(t.column1) like lower('%' || ? || '%')) and 1",
+                function.render(null, Arrays.asList("t.column1", "?"), null));
+    }
 }
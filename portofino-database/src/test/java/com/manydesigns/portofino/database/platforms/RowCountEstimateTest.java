@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2005-2022 ManyDesigns srl.  All rights reserved.
+ * http://www.manydesigns.com/
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.manydesigns.portofino.database.platforms;
+
+import com.manydesigns.portofino.model.database.Database;
+import com.manydesigns.portofino.model.database.Schema;
+import com.manydesigns.portofino.model.database.Table;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.testng.Assert.assertEquals;
+
+/*
+* @author Paolo Predonzani     - paolo.predonzani@manydesigns.com
+* @author Angelo Lupo          - angelo.lupo@manydesigns.com
+* @author Giampiero Granatella - giampiero.granatella@manydesigns.com
+* @author Alessio Stalla       - alessio.stalla@manydesigns.com
+*/
+@Test
+public class RowCountEstimateTest {
+
+    Connection connection;
+    Table table;
+
+    @BeforeMethod
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:estimates", "sa", "");
+        try(Statement statement = connection.createStatement()) {
+            statement.execute("create schema test");
+            statement.execute("create table test.items (id int primary key)");
+            statement.execute("insert into test.items select x from system_range(1, 50)");
+        }
+        Database database = new Database();
+        database.setDatabaseName("estimates");
+        Schema schema = new Schema(database);
+        schema.setSchemaName("TEST");
+        schema.setActualSchemaName("TEST");
+        table = new Table(schema);
+        table.setTableName("ITEMS");
+    }
+
+    @AfterMethod
+    public void teardown() throws SQLException {
+        try(Statement statement = connection.createStatement()) {
+            statement.execute("drop schema test cascade");
+        }
+        connection.close();
+    }
+
+    public void testStatisticsAreUsedWhenAvailable() throws SQLException {
+        H2DatabasePlatform platform = new H2DatabasePlatform() {
+            @Override
+            protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout) {
+                return 1000L;
+            }
+        };
+        assertEquals(platform.estimateRowCount(connection, table, 10, 0), Long.valueOf(1000));
+    }
+
+    public void testScanIsBoundedWithoutStatistics() throws SQLException {
+        H2DatabasePlatform platform = new H2DatabasePlatform();
+        //A result greater than the limit only means that the table has more rows than that
+        assertEquals(platform.estimateRowCount(connection, table, 10, 0), Long.valueOf(11));
+        assertEquals(platform.estimateRowCount(connection, table, 100, 0), Long.valueOf(50));
+    }
+
+    public void testNeverAnalyzedTableIsScanned() throws SQLException {
+        H2DatabasePlatform platform = new H2DatabasePlatform() {
+            @Override
+            protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout)
+                    throws SQLException {
+                //Catalogs report -1 for tables that have never been analyzed
+                return queryRowCount(connection, "select -1 from dual where ? is not null", queryTimeout, "ITEMS");
+            }
+        };
+        assertEquals(platform.estimateRowCount(connection, table, 10, 5), Long.valueOf(11));
+    }
+
+    public void testFailingStatisticsQueryFallsBackToScan() throws SQLException {
+        H2DatabasePlatform platform = new H2DatabasePlatform() {
+            @Override
+            protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout)
+                    throws SQLException {
+                return queryRowCount(connection, "select table_rows from no_such_catalog", queryTimeout);
+            }
+        };
+        assertEquals(platform.estimateRowCount(connection, table, 100, 0), Long.valueOf(50));
+    }
+
+}
@@ -240,6 +240,9 @@ public class Type {
                 return new Class[] { Timestamp.class, DateTime.class, java.sql.Date.class, LocalDateTime.class, ZonedDateTime.class, Instant.class };
             } else if(defaultJavaType == java.sql.Date.class) {
                 return new Class[] { java.sql.Date.class, DateTime.class, LocalDate.class, Timestamp.class }; //TODO Joda LocalDate as well?
+            } else if(jdbcType == Types.BLOB || jdbcType == Types.LONGVARBINARY) {
+                //java.sql.Blob lets large contents be streamed instead of loaded in memory
+                return new Class[] { byte[].class, java.sql.Blob.class };
             } else {
                 if(defaultJavaType != null) {
                     return new Class[] { defaultJavaType };
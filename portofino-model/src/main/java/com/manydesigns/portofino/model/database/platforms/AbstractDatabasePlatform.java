@@ -22,13 +22,12 @@ package com.manydesigns.portofino.model.database.platforms;
 
 import com.manydesigns.portofino.model.database.Column;
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 import org.apache.commons.dbutils.DbUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -149,4 +148,153 @@ public abstract class AbstractDatabasePlatform implements DatabasePlatform {
     protected String getCatalogColumnName() {
         return TABLE_CATALOG;
     }
+
+    public Long estimateRowCount(Connection connection, Table table, long limit, int queryTimeout)
+            throws SQLException {
+        try {
+            Long estimate = getStatisticsRowCount(connection, table, queryTimeout);
+            if(estimate != null) {
+                return estimate;
+            }
+        } catch (SQLException e) {
+            logger.debug("Could not read the statistics of table " + table.getQualifiedName(), e);
+        }
+        return sampleRowCount(connection, table, limit, queryTimeout);
+    }
+
+    /**
+     * Reads the number of rows of a table from the statistics collected by the database's optimizer. The default
+     * implementation returns null; platforms that expose statistics in their catalog override it.
+     * @return the number of rows according to the statistics, or null if the table has never been analyzed.
+     */
+    protected Long getStatisticsRowCount(Connection connection, Table table, int queryTimeout) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Counts the rows of a table by reading at most <code>limit + 1</code> of them, so that the cost is bounded
+     * regardless of the size of the table.
+     */
+    protected Long sampleRowCount(Connection connection, Table table, long limit, int queryTimeout)
+            throws SQLException {
+        String sql = "select 1 from " + quoteTableName(connection, table);
+        try(Statement statement = connection.createStatement()) {
+            statement.setMaxRows((int) Math.min(Integer.MAX_VALUE, limit + 1));
+            statement.setFetchSize((int) Math.min(1000, limit + 1));
+            setQueryTimeout(statement, queryTimeout);
+            long count = 0;
+            try(ResultSet rs = statement.executeQuery(sql)) {
+                while(count <= limit && rs.next()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Runs a catalog query that returns a single row count, binding the given parameters in order.
+     * @return the count, or null if the query returned no rows or a null or negative value.
+     */
+    protected Long queryRowCount(Connection connection, String sql, int queryTimeout, String... parameters)
+            throws SQLException {
+        try(PreparedStatement statement = connection.prepareStatement(sql)) {
+            for(int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            statement.setMaxRows(1);
+            setQueryTimeout(statement, queryTimeout);
+            try(ResultSet rs = statement.executeQuery()) {
+                if(rs.next()) {
+                    Object value = rs.getObject(1);
+                    if(value instanceof Number && ((Number) value).longValue() >= 0) {
+                        return ((Number) value).longValue();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The default implementation matches the search string as a case-insensitive substring, which no index can
+     * help with.
+     */
+    public String getFullTextSearchCondition(String column, String parameter) {
+        return "lower(" + column + ") like lower('%' || " + parameter + " || '%')";
+    }
+
+    public String getFullTextIndexStatement(String indexName, String tableName, String columnName) {
+        return null;
+    }
+
+    /**
+     * @return the name of the full-text index created on a column by default, both by
+     * {@link #ensureFullTextIndex(Connection, Table, String)} and by Liquibase changelogs.
+     */
+    public static String getFullTextIndexName(String tableName, String columnName) {
+        return tableName + "_" + columnName + "_fts";
+    }
+
+    public boolean ensureFullTextIndex(Connection connection, Table table, String columnName) throws SQLException {
+        String sql = getFullTextIndexStatement(
+                quoteIdentifier(connection, getFullTextIndexName(table.getTableName(), columnName)),
+                quoteTableName(connection, table), quoteIdentifier(connection, columnName));
+        if(sql == null || hasFullTextIndex(connection, table, columnName)) {
+            return false;
+        }
+        try(Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+        return true;
+    }
+
+    public int getStreamingFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+
+    /**
+     * Tells whether a column has a full-text index. The default implementation looks for an index with the default
+     * name, see {@link #getFullTextIndexName(String, String)}.
+     */
+    protected boolean hasFullTextIndex(Connection connection, Table table, String columnName) throws SQLException {
+        String indexName = getFullTextIndexName(table.getTableName(), columnName);
+        try(ResultSet rs = connection.getMetaData().getIndexInfo(
+                table.getSchema().getCatalog(), table.getSchemaName(), table.getTableName(), false, true)) {
+            while(rs.next()) {
+                if(indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected String quoteTableName(Connection connection, Table table) throws SQLException {
+        String tableName = quoteIdentifier(connection, table.getTableName());
+        String schemaName = table.getSchemaName();
+        if(schemaName == null) {
+            return tableName;
+        }
+        return quoteIdentifier(connection, schemaName) + "." + tableName;
+    }
+
+    protected String quoteIdentifier(Connection connection, String identifier) throws SQLException {
+        String quote = connection.getMetaData().getIdentifierQuoteString();
+        if(quote == null || " ".equals(quote)) {
+            return identifier;
+        }
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    protected void setQueryTimeout(Statement statement, int seconds) {
+        if(seconds <= 0) {
+            return;
+        }
+        try {
+            statement.setQueryTimeout(seconds);
+        } catch (Exception e) {
+            logger.debug("setQueryTimeout not supported", e);
+        }
+    }
 }
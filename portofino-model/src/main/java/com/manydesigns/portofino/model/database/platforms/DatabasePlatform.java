@@ -23,7 +23,9 @@ package com.manydesigns.portofino.model.database.platforms;
 import com.manydesigns.elements.annotations.Status;
 import com.manydesigns.portofino.model.database.Column;
 import com.manydesigns.portofino.model.database.ConnectionProvider;
+import com.manydesigns.portofino.model.database.Table;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.List;
@@ -64,7 +66,60 @@ public interface DatabasePlatform {
     void shutdown(ConnectionProvider connectionProvider);
 
     List<String[]> getSchemaNames(DatabaseMetaData databaseMetaData) throws SQLException;
-    
+
+    /**
+     * Estimates the number of rows in a table without counting them exactly. Platforms that keep optimizer statistics
+     * read the estimate from the system catalog; otherwise, the rows are counted by scanning at most
+     * <code>limit + 1</code> of them.
+     * @param connection the connection to use.
+     * @param table the table.
+     * @param limit the maximum number of rows to scan when no statistics are available. A result greater than limit
+     *              only means that the table has more than limit rows.
+     * @param queryTimeout the timeout, in seconds, of each query that is issued; 0 means no timeout.
+     * @return the estimated number of rows, or null if it could not be determined.
+     */
+    Long estimateRowCount(Connection connection, Table table, long limit, int queryTimeout) throws SQLException;
+
+    /**
+     * Renders a SQL condition that is true when a text column matches the words in a search string. Platforms that
+     * support full-text search return a condition that can use the index created by
+     * {@link #getFullTextIndexStatement(String, String, String)}; the others fall back to a case-insensitive
+     * substring match.
+     * @param column the (possibly qualified) column expression.
+     * @param parameter the expression that holds the search string, typically a JDBC parameter marker.
+     * @return the SQL condition.
+     */
+    String getFullTextSearchCondition(String column, String parameter);
+
+    /**
+     * Returns the DDL that creates an index supporting {@link #getFullTextSearchCondition(String, String)} on a
+     * column.
+     * @param indexName the name of the index, already quoted if necessary.
+     * @param tableName the (possibly qualified) name of the table, already quoted if necessary.
+     * @param columnName the name of the column, already quoted if necessary.
+     * @return the DDL statement, or null if the platform has no index that helps full-text searches.
+     */
+    String getFullTextIndexStatement(String indexName, String tableName, String columnName);
+
+    /**
+     * Creates the index returned by {@link #getFullTextIndexStatement(String, String, String)} on a column, unless
+     * the column already has one. Some platforms (e.g. MySQL) reject full-text conditions on columns without such an
+     * index.
+     * @param connection the connection to use.
+     * @param table the table.
+     * @param columnName the name of the column.
+     * @return true if the index has been created, false if it already existed or the platform has no such index.
+     */
+    boolean ensureFullTextIndex(Connection connection, Table table, String columnName) throws SQLException;
+
+    /**
+     * Returns the fetch size to set on a statement whose results are read incrementally with a forward-only cursor,
+     * so that the driver doesn't load them all in memory.
+     * @param fetchSize the desired number of rows to fetch from the database at once.
+     * @return the fetch size that makes the driver stream the results; it may differ from the desired one.
+     */
+    int getStreamingFetchSize(int fetchSize);
+
     class TypeDescriptor {
         
         public final String name;
@@ -2,6 +2,7 @@ package com.manydesigns.portofino.resteasy;
 
 import com.manydesigns.portofino.rest.PortofinoApplicationRoot;
 import com.manydesigns.portofino.rest.PortofinoFilter;
+import com.manydesigns.portofino.rest.RequestTimingFilter;
 import com.manydesigns.portofino.rest.messagebodywriters.FormMessageBodyWriter;
 import com.manydesigns.portofino.rest.messagebodywriters.XhtmlFragmentMessageBodyWriter;
 import io.swagger.v3.jaxrs2.integration.resources.OpenApiResource;
@@ -18,6 +19,7 @@ public class PortofinoApplication extends Application {
         classes.add(OpenApiResource.class);
         classes.add(PortofinoApplicationRoot.class);
         classes.add(PortofinoFilter.class);
+        classes.add(RequestTimingFilter.class);
         classes.add(FormMessageBodyWriter.class);
         classes.add(XhtmlFragmentMessageBodyWriter.class);
         //TODO discovery?
@@ -86,6 +86,11 @@ public class ShiroSecurity extends SecurityFacade {
         return null;
     }
 
+    @Override
+    public Runnable associateWithCurrentUser(Runnable task) {
+        return SecurityUtils.getSubject().associateWith(task);
+    }
+
     @Override
     public Set<String> getGroups() {
         return ShiroUtils.getPortofinoRealm().getGroups();
@@ -316,7 +316,7 @@ export class CrudComponent extends Page {
 
   get configurationProperties() {
     return ["name", "database", "query", "searchTitle", "createTitle", "readTitle", "editTitle", "variable",
-            "largeResultSet", "rowsPerPage"]
+            "largeResultSet", "rowsPerPage", "summaryProjection"]
   }
 
   protected getPageSettingsPanel(): PageSettingsPanel {
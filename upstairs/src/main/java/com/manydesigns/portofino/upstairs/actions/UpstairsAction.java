@@ -14,6 +14,7 @@ import com.manydesigns.portofino.actions.Permissions;
 import com.manydesigns.portofino.model.Annotation;
 import com.manydesigns.portofino.model.Model;
 import com.manydesigns.portofino.model.database.*;
+import com.manydesigns.portofino.model.database.platforms.DatabasePlatform;
 import com.manydesigns.portofino.modules.Module;
 import com.manydesigns.portofino.persistence.Persistence;
 import com.manydesigns.portofino.resourceactions.AbstractResourceAction;
@@ -50,6 +51,7 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static com.manydesigns.portofino.ResourceActionsModule.ACTIONS_DIRECTORY;
 
@@ -82,6 +84,14 @@ public class UpstairsAction extends AbstractResourceAction {
     public static final int MULTILINE_THRESHOLD = 256;
     protected int maxDepth = 5;
     protected int maxColumnsInSummary = 5;
+    /**
+     * The number of tables whose statistics are collected concurrently by the wizard.
+     */
+    protected int statisticsThreads = 4;
+    /**
+     * The maximum time, in seconds, spent collecting the statistics of a single table.
+     */
+    protected int statisticsTimeBudget = 10;
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -129,6 +139,20 @@ public class UpstairsAction extends AbstractResourceAction {
                         UpstairsAction.class.getResource("/com/manydesigns/portofino/upstairs/wizard/CrudAction.groovy"));
                 Table userTable = getTable(persistence.getModel(), wizard.usersTable);
                 Column userPasswordColumn = getColumn(userTable, wizard.userPasswordProperty);
+                List<Table> selectedTables = new ArrayList<>();
+                for(TableInfo tableInfo : tables) {
+                    if(tableInfo.selected) {
+                        Table table = DatabaseLogic.findTableByName(
+                                persistence.getModel(), databaseName, tableInfo.schema, tableInfo.table.getTableName());
+                        if(table != null) {
+                            selectedTables.add(table);
+                        }
+                    }
+                }
+                if(userTable != null) {
+                    selectedTables.add(userTable);
+                }
+                collectStatistics(database.getConnectionProvider(), getTablesToAnalyze(selectedTables));
                 boolean userCrudCreated = false;
                 for(TableInfo tableInfo : tables) {
                     if(tableInfo.selected) {
@@ -429,72 +453,198 @@ public class UpstairsAction extends AbstractResourceAction {
         return column.getJdbcType() == Types.BLOB || column.getJdbcType() == Types.LONGVARBINARY;
     }
 
+    /**
+     * Computes the tables the wizard can generate pages for, starting from the given ones: these, and the tables that
+     * reference them, up to {@link #maxDepth} levels.
+     */
+    protected Set<Table> getTablesToAnalyze(Collection<Table> roots) {
+        Set<Table> tables = new LinkedHashSet<>();
+        Collection<Table> level = roots;
+        for(int depth = 1; depth <= maxDepth && !level.isEmpty(); depth++) {
+            List<Table> nextLevel = new ArrayList<>();
+            for(Table table : level) {
+                if(tables.add(table) && depth < maxDepth) {
+                    for(Reference ref : computeChildren(table)) {
+                        nextLevel.add(ref.getActualFromColumn().getTable());
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        return tables;
+    }
+
+    /**
+     * Collects the statistics the wizard needs (whether a table is large, whether its numeric columns are booleans)
+     * for several tables in parallel, on a pool of {@link #statisticsThreads} threads. Each table is given
+     * {@link #statisticsTimeBudget} seconds; the tables that don't complete in time are treated as large, so that
+     * no further analysis based on their data is attempted.
+     */
+    protected void collectStatistics(ConnectionProvider connectionProvider, Collection<Table> tables) {
+        List<Table> toAnalyze = new ArrayList<>();
+        for(Table table : tables) {
+            if(!largeResultSet.containsKey(table)) {
+                toAnalyze.add(table);
+            }
+        }
+        if(toAnalyze.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int threads = Math.max(1, Math.min(statisticsThreads, toAnalyze.size()));
+        logger.info("Collecting statistics for {} tables using {} threads", toAnalyze.size(), threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<Table, Future<?>> results = new LinkedHashMap<>();
+            for(Table table : toAnalyze) {
+                results.put(table, executor.submit(() -> collectStatistics(connectionProvider, table)));
+            }
+            //Tasks enforce their budget with query timeouts; this deadline covers drivers that ignore them
+            long rounds = (toAnalyze.size() + threads - 1) / threads;
+            long deadline = start + (rounds + 1) * statisticsTimeBudget * 1000L;
+            for(Map.Entry<Table, Future<?>> entry : results.entrySet()) {
+                Table table = entry.getKey();
+                try {
+                    entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    entry.getValue().cancel(true);
+                    logger.warn("Could not collect statistics for table {} in time, assuming large result set",
+                            table.getQualifiedName());
+                    largeResultSet.putIfAbsent(table, true);
+                } catch (ExecutionException e) {
+                    logger.error("Could not collect statistics for table " + table.getQualifiedName(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Collected statistics for {} tables in {}ms",
+                toAnalyze.size(), System.currentTimeMillis() - start);
+    }
+
+    protected void collectStatistics(ConnectionProvider connectionProvider, Table table) {
+        long deadline = System.currentTimeMillis() + statisticsTimeBudget * 1000L;
+        try(Connection connection = connectionProvider.acquireConnection()) {
+            boolean large = isLargeResultSet(connectionProvider, connection, table, getRemainingSeconds(deadline));
+            largeResultSet.putIfAbsent(table, large);
+            if(large) {
+                return;
+            }
+            liquibase.database.Database implementation =
+                    DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            for(Column column : table.getColumns()) {
+                if(!isCandidateBooleanColumn(column)) {
+                    continue;
+                }
+                int timeout = getRemainingSeconds(deadline);
+                if(timeout <= 0) {
+                    logger.info("Time budget exhausted for table {}, not detecting boolean columns further",
+                            table.getQualifiedName());
+                    break;
+                }
+                try {
+                    booleanColumns.putIfAbsent(column, isBooleanColumn(table, column, connection, implementation, timeout));
+                } catch (SQLException e) {
+                    logger.debug("Could not determine whether column " + column.getQualifiedName() + " is boolean", e);
+                    booleanColumns.putIfAbsent(column, false);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Could not collect statistics for table " + table.getQualifiedName(), e);
+        }
+    }
+
+    protected static int getRemainingSeconds(long deadline) {
+        return (int) Math.ceil((deadline - System.currentTimeMillis()) / 1000.0);
+    }
+
     protected final Set<Column> detectedBooleanColumns = new HashSet<>();
+    protected final Map<Column, Boolean> booleanColumns = new ConcurrentHashMap<>();
+
+    protected boolean isCandidateBooleanColumn(Column column) {
+        return column.getJdbcType() == Types.INTEGER ||
+               column.getJdbcType() == Types.DECIMAL ||
+               column.getJdbcType() == Types.NUMERIC;
+    }
 
     protected void detectBooleanColumn(ConnectionProvider connectionProvider, Table table, Column column) {
-        if(detectedBooleanColumns.contains(column)) {
+        if(detectedBooleanColumns.contains(column) || !isCandidateBooleanColumn(column)) {
             return;
         }
-        if(column.getJdbcType() == Types.INTEGER || column.getJdbcType() == Types.DECIMAL || column.getJdbcType() == Types.NUMERIC) {
-            logger.info(
-                    "Detecting whether numeric column " + column.getQualifiedName() + " is boolean by examining " +
-                    "its values...");
-
-            //Detect booleans
+        Boolean isBoolean = booleanColumns.get(column);
+        if(isBoolean == null) {
+            //Statistics were not collected in advance
             try(Connection connection = connectionProvider.acquireConnection()) {
                 liquibase.database.Database implementation =
                         DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-                Long count = count(table, column, connection, implementation);
+                isBoolean = isBooleanColumn(table, column, connection, implementation, 1);
+            } catch (Exception e) {
+                logger.debug("Could not determine whether column " + column.getQualifiedName() + " is boolean", e);
+                logger.info("Could not determine whether column " + column.getQualifiedName() + " is boolean");
+                isBoolean = false;
+            }
+        }
+        if(isBoolean) {
+            column.setJavaType(Boolean.class.getName());
+        }
+        detectedBooleanColumns.add(column);
+    }
 
-                if(count == null || count < 10) {
-                    logger.info("Cannot determine if numeric column {} is boolean, count is {}",
-                            column.getQualifiedName(), count);
-                    return;
-                }
+    protected boolean isBooleanColumn(
+            Table table, Column column, Connection connection, liquibase.database.Database implementation,
+            int timeout) throws SQLException {
+        logger.info(
+                "Detecting whether numeric column " + column.getQualifiedName() + " is boolean by examining " +
+                "its values...");
+        Long count = count(table, column, connection, implementation, timeout);
+        if(count == null || count < 10) {
+            logger.info("Cannot determine if numeric column {} is boolean, count is {}",
+                    column.getQualifiedName(), count);
+            return false;
+        }
 
-                String sql =
-                        "select distinct(" + implementation.escapeColumnName(null, null, null, column.getColumnName()) + ") " +
-                        "from " + implementation.escapeTableName(null, table.getSchemaName(), table.getTableName());
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    setQueryTimeout(statement, 1);
-                    statement.setMaxRows(3);
-                    int valueCount;
-                    boolean only0and1;
-                    try (ResultSet rs = statement.executeQuery()) {
-                        valueCount = 0;
-                        only0and1 = true;
-                        while (rs.next()) {
-                            valueCount++;
-                            if (valueCount > 2) {
-                                only0and1 = false;
-                                break;
-                            }
-                            Long value = safeGetLong(rs, 1);
-                            only0and1 &= value != null && (value == 0 || value == 1);
-                        }
-                    }
-                    if (only0and1 && valueCount == 2) {
-                        logger.info("Column appears to be of boolean type.");
-                        column.setJavaType(Boolean.class.getName());
-                    } else {
-                        logger.info("Column appears not to be of boolean type.");
+        String sql =
+                "select distinct(" + implementation.escapeColumnName(null, null, null, column.getColumnName()) + ") " +
+                "from " + implementation.escapeTableName(null, table.getSchemaName(), table.getTableName());
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            setQueryTimeout(statement, timeout);
+            statement.setMaxRows(3);
+            int valueCount;
+            boolean only0and1;
+            try (ResultSet rs = statement.executeQuery()) {
+                valueCount = 0;
+                only0and1 = true;
+                while (rs.next()) {
+                    valueCount++;
+                    if (valueCount > 2) {
+                        only0and1 = false;
+                        break;
                     }
+                    Long value = safeGetLong(rs, 1);
+                    only0and1 &= value != null && (value == 0 || value == 1);
                 }
-            } catch (Exception e) {
-                logger.debug("Could not determine whether column " + column.getQualifiedName() + " is boolean", e);
-                logger.info("Could not determine whether column " + column.getQualifiedName() + " is boolean");
             }
-            detectedBooleanColumns.add(column);
+            if (only0and1 && valueCount == 2) {
+                logger.info("Column appears to be of boolean type.");
+                return true;
+            } else {
+                logger.info("Column appears not to be of boolean type.");
+                return false;
+            }
         }
     }
 
     @Nullable
-    private Long count(Table table, Column column, Connection connection, liquibase.database.Database implementation) throws SQLException {
+    private Long count(
+            Table table, Column column, Connection connection, liquibase.database.Database implementation,
+            int timeout) throws SQLException {
         String sql =
                 "select count(" + implementation.escapeColumnName(null, null, null, column.getColumnName()) + ") " +
                 "from " + implementation.escapeTableName(null, table.getSchemaName(), table.getTableName());
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            setQueryTimeout(statement, 1);
+            setQueryTimeout(statement, timeout);
             statement.setMaxRows(1);
             try (ResultSet rs = statement.executeQuery()) {
                 if (rs.next()) {
@@ -505,52 +655,52 @@ public class UpstairsAction extends AbstractResourceAction {
         return null;
     }
 
-    protected final Map<Table, Boolean> largeResultSet = new HashMap<Table, Boolean>();
+    protected final Map<Table, Boolean> largeResultSet = new ConcurrentHashMap<>();
 
     protected void detectLargeResultSet(ConnectionProvider connectionProvider, Table table, CrudConfiguration configuration) {
         Boolean lrs = largeResultSet.get(table);
-        if(lrs != null) {
-            configuration.setLargeResultSet(lrs);
-            return;
+        if(lrs == null) {
+            //Statistics were not collected in advance
+            try(Connection connection = connectionProvider.acquireConnection()) {
+                lrs = isLargeResultSet(connectionProvider, connection, table, statisticsTimeBudget);
+            } catch (Exception e) {
+                logger.error("Could not determine count", e);
+                lrs = configuration.isLargeResultSet();
+            }
+            largeResultSet.put(table, lrs);
         }
+        configuration.setLargeResultSet(lrs);
+    }
 
-        try(Connection connection = connectionProvider.acquireConnection()) {
-            logger.info("Trying to detect whether table {} has many records...", table.getQualifiedName());
-            liquibase.database.Database implementation =
-                    DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
-            String sql =
-                    "select count(*) from " + implementation.escapeTableName(null, table.getSchemaName(), table.getTableName());
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                setQueryTimeout(statement, 1);
-                statement.setMaxRows(1);
-                try (ResultSet rs = statement.executeQuery()) {
-                    if (rs.next()) {
-                        Long count = safeGetLong(rs, 1);
-                        if (count != null) {
-                            if (count > LARGE_RESULT_SET_THRESHOLD) {
-                                logger.info(
-                                        "Table " + table.getQualifiedName() + " currently has " + count + " rows, which is bigger than " +
-                                                "the threshold (" + LARGE_RESULT_SET_THRESHOLD + ") for large result sets. It will be " +
-                                                "marked as largeResultSet = true and no autodetection based on table data will be " +
-                                                "attempted, in order to keep the processing time reasonable.");
-                                configuration.setLargeResultSet(true);
-                            } else {
-                                logger.info(
-                                        "Table " + table.getQualifiedName() + " currently has " + count + " rows, which is smaller than " +
-                                                "the threshold (" + LARGE_RESULT_SET_THRESHOLD + ") for large result sets. It will be " +
-                                                "analyzed normally.");
-                            }
-                        } else {
-                            logger.warn("Could not determine number of records, assuming large result set");
-                            configuration.setLargeResultSet(true);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Could not determine count", e);
+    /**
+     * Determines whether a table has more than {@link #LARGE_RESULT_SET_THRESHOLD} rows, using the row count estimate
+     * of the database platform rather than an exact count.
+     */
+    protected boolean isLargeResultSet(
+            ConnectionProvider connectionProvider, Connection connection, Table table, int timeout)
+            throws SQLException {
+        logger.info("Trying to detect whether table {} has many records...", table.getQualifiedName());
+        DatabasePlatform platform = connectionProvider.getDatabasePlatform();
+        Long count = platform != null ?
+                platform.estimateRowCount(connection, table, LARGE_RESULT_SET_THRESHOLD, timeout) :
+                null;
+        if (count == null) {
+            logger.warn("Could not determine number of records, assuming large result set");
+            return true;
+        } else if (count > LARGE_RESULT_SET_THRESHOLD) {
+            logger.info(
+                    "Table " + table.getQualifiedName() + " has more than " + LARGE_RESULT_SET_THRESHOLD + " rows " +
+                            "(estimated: " + count + "), which is the threshold for large result sets. It will be " +
+                            "marked as largeResultSet = true and no autodetection based on table data will be " +
+                            "attempted, in order to keep the processing time reasonable.");
+            return true;
+        } else {
+            logger.info(
+                    "Table " + table.getQualifiedName() + " has about " + count + " rows, which is smaller than " +
+                            "the threshold (" + LARGE_RESULT_SET_THRESHOLD + ") for large result sets. It will be " +
+                            "analyzed normally.");
+            return false;
         }
-        largeResultSet.put(table, configuration.isLargeResultSet());
     }
 
     protected void setQueryTimeout(PreparedStatement statement, int seconds) {
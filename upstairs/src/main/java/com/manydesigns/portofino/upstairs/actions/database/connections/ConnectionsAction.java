@@ -386,11 +386,13 @@ public class ConnectionsAction extends AbstractResourceAction {
 
     @POST
     @Path("{databaseName}/:synchronize")
-    public void synchronize(@PathParam("databaseName") String databaseName) throws Exception {
+    public void synchronize(
+            @PathParam("databaseName") String databaseName, @QueryParam("table") List<String> tablePatterns)
+            throws Exception {
         if(DatabaseLogic.findDatabaseByName(persistence.getModel(), databaseName) == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        persistence.syncDataModel(databaseName);
+        persistence.syncDataModel(databaseName, tablePatterns != null ? tablePatterns : Collections.emptyList());
         persistence.initModel();
         persistence.saveXmlModel();
         RequestMessages.addInfoMessage("Model synchronized");
@@ -43,6 +43,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.sql.Connection;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -61,6 +62,7 @@ public class TablesAction extends AbstractResourceAction {
     public static final String DATABASE_BLOB = DatabaseBlob.class.getName();
     public static final String FILE_BLOB = FileBlob.class.getName();
     public static final String HIGHLIGHT_LINKS = HighlightLinks.class.getName();
+    public static final String FULL_TEXT_SEARCH = FullTextSearch.class.getName();
     public static final String MIN_INT_VALUE = MinIntValue.class.getName();
     public static final String MIN_DECIMAL_VALUE = MinDecimalValue.class.getName();
     public static final String MAX_INT_VALUE = MaxIntValue.class.getName();
@@ -89,7 +91,7 @@ public class TablesAction extends AbstractResourceAction {
     public static final List<String> KNOWN_ANNOTATIONS = Arrays.asList(
             FIELD_SIZE, MAX_LENGTH, MULTILINE, RICH_TEXT,
             EMAIL, CAP, CODICE_FISCALE, PARTITA_IVA, PASSWORD, PHONE,
-            HIGHLIGHT_LINKS, REGEXP,
+            HIGHLIGHT_LINKS, FULL_TEXT_SEARCH, REGEXP,
             DATABASE_BLOB, FILE_BLOB,
             MIN_DECIMAL_VALUE, MIN_INT_VALUE, MAX_DECIMAL_VALUE, MAX_INT_VALUE,
             DECIMAL_FORMAT, DATE_FORMAT, ENCRYPTED);
@@ -405,6 +407,13 @@ public class TablesAction extends AbstractResourceAction {
                         a.getProperties().add(new Property("value", value));
                         existing.getAnnotations().add(a);
                         break;
+                    case "fullTextSearch":
+                        if(Boolean.TRUE.equals(e.getValue()) && ensureFullTextIndex(existing)) {
+                            a = new Annotation(FULL_TEXT_SEARCH);
+                            a.getProperties().add(new Property("value", value));
+                            existing.getAnnotations().add(a);
+                        }
+                        break;
                     case "minValue":
                         if(type == Integer.class || type == Long.class || type == BigInteger.class) {
                             a = new Annotation(MIN_INT_VALUE);
@@ -451,6 +460,29 @@ public class TablesAction extends AbstractResourceAction {
         }
     }
 
+    /**
+     * Creates the full-text index of a column, if the database platform requires one and it does not exist yet.
+     * @return false if the index could not be created, in which case an error message is reported to the user.
+     */
+    protected boolean ensureFullTextIndex(Column column) {
+        ConnectionProvider connectionProvider = persistence.getConnectionProvider(column.getDatabaseName());
+        try(Connection connection = connectionProvider.acquireConnection()) {
+            if(connectionProvider.getDatabasePlatform().ensureFullTextIndex(
+                    connection, column.getTable(), column.getColumnName())) {
+                if(!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+                logger.info("Created full-text index on column {}", column.getQualifiedName());
+            }
+            return true;
+        } catch (Exception e) {
+            String msg = "Could not create the full-text index on column " + column.getQualifiedName();
+            logger.error(msg, e);
+            RequestMessages.addErrorMessage(msg); //TODO I18n
+            return false;
+        }
+    }
+
     @Path("{db}/{schema}/{table}/{column}/annotations/{typeName}")
     @GET
     public String getAnnotations(
@@ -480,6 +512,8 @@ public class TablesAction extends AbstractResourceAction {
                 jsonStringer.key("fileBlob");
             } else if(HIGHLIGHT_LINKS.equals(annType)) {
                 jsonStringer.key("highlightLinks");
+            } else if(FULL_TEXT_SEARCH.equals(annType)) {
+                jsonStringer.key("fullTextSearch");
             } else if(MIN_INT_VALUE.equals(annType)) {
                 jsonStringer.key("minValue");
             } else if(MIN_DECIMAL_VALUE.equals(annType)) {
@@ -563,6 +597,7 @@ public class TablesAction extends AbstractResourceAction {
             classAccessor.addProperty(new MutablePropertyAccessor("regexp", String.class));
             classAccessor.addProperty(new MutablePropertyAccessor("highlightLinks", Boolean.class));
             classAccessor.addProperty(new MutablePropertyAccessor("fileBlob", Boolean.class));
+            classAccessor.addProperty(new MutablePropertyAccessor("fullTextSearch", Boolean.class));
             SelectImpl select = new SelectImpl(
                     DisplayMode.DROPDOWN, SearchDisplayMode.DROPDOWN,
                     new String[] {
@@ -581,7 +616,7 @@ public class TablesAction extends AbstractResourceAction {
             classAccessor.addProperty(new MutablePropertyAccessor("fieldSize", Integer.class));
             classAccessor.addProperty(new MutablePropertyAccessor("dateFormat", String.class));
 
-        } else if(byte[].class.isAssignableFrom(type)) {
+        } else if(byte[].class.isAssignableFrom(type) || java.sql.Blob.class.isAssignableFrom(type)) {
             classAccessor.addProperty(new MutablePropertyAccessor("databaseBlobContentTypeProperty", String.class));
             classAccessor.addProperty(new MutablePropertyAccessor("databaseBlobFileNameProperty", String.class));
             classAccessor.addProperty(new MutablePropertyAccessor("databaseBlobTimestampProperty", String.class));